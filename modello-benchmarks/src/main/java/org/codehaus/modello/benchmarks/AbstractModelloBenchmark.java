@@ -0,0 +1,77 @@
+package org.codehaus.modello.benchmarks;
+
+/*
+ * Copyright (c) 2004, Codehaus.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import org.codehaus.modello.core.ModelloCore;
+import org.codehaus.plexus.DefaultPlexusContainer;
+import org.codehaus.plexus.PlexusContainer;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Base of the benchmarks using Modello core from a Plexus container, with every Modello plugin.
+ *
+ * @version $Id$
+ */
+@State( Scope.Benchmark )
+public abstract class AbstractModelloBenchmark
+{
+    @Param( { "maven", "synthetic-10", "synthetic-100", "synthetic-1000" } )
+    public String model;
+
+    private byte[] content;
+
+    private PlexusContainer container;
+
+    private ModelloCore modelloCore;
+
+    @Setup
+    public void setUpContainer()
+        throws Exception
+    {
+        content = BenchmarkModels.getContent( model );
+
+        container = new DefaultPlexusContainer();
+
+        modelloCore = (ModelloCore) container.lookup( ModelloCore.ROLE );
+    }
+
+    @TearDown
+    public void tearDownContainer()
+    {
+        container.dispose();
+    }
+
+    protected byte[] getContent()
+    {
+        return content;
+    }
+
+    protected ModelloCore getModelloCore()
+    {
+        return modelloCore;
+    }
+}
@@ -0,0 +1,91 @@
+package org.codehaus.modello.benchmarks;
+
+/*
+ * Copyright (c) 2004, Codehaus.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.io.xpp3.MavenXpp3Writer;
+
+/**
+ * Documents read by the benchmarks of generated readers, written with the generated Maven model writer.
+ *
+ * @version $Id$
+ */
+final class BenchmarkDocuments
+{
+    private BenchmarkDocuments()
+    {
+    }
+
+    /**
+     * Create a Maven model with a given number of dependencies.
+     *
+     * @param dependencies the number of dependencies
+     * @return the model
+     */
+    static Model createMavenModel( int dependencies )
+    {
+        Model model = new Model();
+
+        model.setModelVersion( "4.0.0" );
+        model.setGroupId( "org.codehaus.modello.benchmarks" );
+        model.setArtifactId( "benchmark-project" );
+        model.setVersion( "1.0-SNAPSHOT" );
+        model.setName( "Benchmark Project" );
+        model.setDescription( "A project with " + dependencies + " dependencies & some entities: <éà>" );
+        model.setUrl( "http://modello.codehaus.org/" );
+
+        for ( int i = 0; i < dependencies; i++ )
+        {
+            Dependency dependency = new Dependency();
+
+            dependency.setGroupId( "org.codehaus.modello.benchmarks.group" + ( i % 10 ) );
+            dependency.setArtifactId( "artifact-" + i );
+            dependency.setVersion( "1." + i );
+            dependency.setType( "jar" );
+
+            model.addDependency( dependency );
+        }
+
+        return model;
+    }
+
+    /**
+     * Create a Maven model document with a given number of dependencies.
+     *
+     * @param dependencies the number of dependencies
+     * @return the XML document
+     */
+    static String createMavenDocument( int dependencies )
+        throws IOException
+    {
+        StringWriter writer = new StringWriter();
+
+        new MavenXpp3Writer().write( writer, createMavenModel( dependencies ) );
+
+        return writer.toString();
+    }
+}
@@ -0,0 +1,166 @@
+package org.codehaus.modello.benchmarks;
+
+/*
+ * Copyright (c) 2004, Codehaus.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+
+import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.ReaderFactory;
+
+/**
+ * Models used by the benchmarks: the Maven model, or a synthetic model with a given number of classes, to measure how
+ * Modello scales with the model size.
+ *
+ * @version $Id$
+ */
+final class BenchmarkModels
+{
+    /** prefix of synthetic model names, followed by their number of classes */
+    static final String SYNTHETIC = "synthetic-";
+
+    private BenchmarkModels()
+    {
+    }
+
+    /**
+     * Get the content of a model.
+     *
+     * @param model <code>maven</code> or <code>synthetic-</code> followed by a number of classes
+     * @return the content of the model descriptor
+     */
+    static byte[] getContent( String model )
+        throws IOException
+    {
+        if ( model.startsWith( SYNTHETIC ) )
+        {
+            int classCount = Integer.parseInt( model.substring( SYNTHETIC.length() ) );
+
+            return createSyntheticModel( classCount ).getBytes( "UTF-8" );
+        }
+
+        InputStream is = BenchmarkModels.class.getResourceAsStream( "/models/" + model + ".mdo" );
+
+        if ( is == null )
+        {
+            throw new FileNotFoundException( "No model named " + model );
+        }
+
+        try
+        {
+            return IOUtil.toByteArray( is );
+        }
+        finally
+        {
+            IOUtil.close( is );
+        }
+    }
+
+    static Reader newReader( byte[] content )
+        throws IOException
+    {
+        return ReaderFactory.newXmlReader( new ByteArrayInputStream( content ) );
+    }
+
+    /**
+     * Create a model with a root class containing a list of each other class. Each class has fields of usual types,
+     * a list of strings and a reference to the next class.
+     */
+    static String createSyntheticModel( int classCount )
+    {
+        StringBuilder buf = new StringBuilder( 1024 + classCount * 1536 );
+
+        buf.append( "<model xml.namespace=\"http://modello.codehaus.org/SYNTHETIC/${version}\"" );
+        buf.append( " xml.schemaLocation=\"http://modello.codehaus.org/synthetic-${version}.xsd\">\n" );
+        buf.append( "  <id>synthetic</id>\n" );
+        buf.append( "  <name>Synthetic</name>\n" );
+        buf.append( "  <defaults>\n" );
+        buf.append( "    <default>\n" );
+        buf.append( "      <key>package</key>\n" );
+        buf.append( "      <value>org.codehaus.modello.benchmarks.synthetic</value>\n" );
+        buf.append( "    </default>\n" );
+        buf.append( "  </defaults>\n" );
+        buf.append( "  <classes>\n" );
+
+        buf.append( "    <class rootElement=\"true\" xml.tagName=\"synthetic\">\n" );
+        buf.append( "      <name>Synthetic</name>\n" );
+        buf.append( "      <version>1.0.0+</version>\n" );
+        buf.append( "      <fields>\n" );
+        appendField( buf, "name", "String", "" );
+        for ( int i = 0; i < classCount; i++ )
+        {
+            appendAssociation( buf, "elements" + i, "Element" + i, "*" );
+        }
+        buf.append( "      </fields>\n" );
+        buf.append( "    </class>\n" );
+
+        for ( int i = 0; i < classCount; i++ )
+        {
+            buf.append( "    <class>\n" );
+            buf.append( "      <name>Element" ).append( i ).append( "</name>\n" );
+            buf.append( "      <version>1.0.0+</version>\n" );
+            buf.append( "      <fields>\n" );
+            appendField( buf, "id", "String", " xml.attribute=\"true\"" );
+            appendField( buf, "description", "String", "" );
+            appendField( buf, "count", "int", "" );
+            appendField( buf, "enabled", "boolean", "" );
+            appendField( buf, "size", "long", "" );
+            appendAssociation( buf, "tags", "String", "*" );
+            if ( i + 1 < classCount )
+            {
+                appendAssociation( buf, "next", "Element" + ( i + 1 ), "1" );
+            }
+            buf.append( "      </fields>\n" );
+            buf.append( "    </class>\n" );
+        }
+
+        buf.append( "  </classes>\n" );
+        buf.append( "</model>\n" );
+
+        return buf.toString();
+    }
+
+    private static void appendField( StringBuilder buf, String name, String type, String attributes )
+    {
+        buf.append( "        <field" ).append( attributes ).append( ">\n" );
+        buf.append( "          <name>" ).append( name ).append( "</name>\n" );
+        buf.append( "          <version>1.0.0+</version>\n" );
+        buf.append( "          <type>" ).append( type ).append( "</type>\n" );
+        buf.append( "        </field>\n" );
+    }
+
+    private static void appendAssociation( StringBuilder buf, String name, String type, String multiplicity )
+    {
+        buf.append( "        <field>\n" );
+        buf.append( "          <name>" ).append( name ).append( "</name>\n" );
+        buf.append( "          <version>1.0.0+</version>\n" );
+        buf.append( "          <association>\n" );
+        buf.append( "            <type>" ).append( type ).append( "</type>\n" );
+        buf.append( "            <multiplicity>" ).append( multiplicity ).append( "</multiplicity>\n" );
+        buf.append( "          </association>\n" );
+        buf.append( "        </field>\n" );
+    }
+}
@@ -0,0 +1,126 @@
+package org.codehaus.modello.benchmarks;
+
+/*
+ * Copyright (c) 2004, Codehaus.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.model.Model;
+import org.apache.maven.model.io.binary.MavenBinaryReader;
+import org.apache.maven.model.io.binary.MavenBinaryWriter;
+import org.apache.maven.model.io.xpp3.MavenXpp3Reader;
+import org.apache.maven.model.io.xpp3.MavenXpp3Writer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reading and writing of Maven models by the generated binary reader and writer, compared with the Xpp3 ones on the
+ * same UTF-8 byte streams.
+ *
+ * @version $Id$
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5 )
+@Measurement( iterations = 5 )
+@Fork( 1 )
+public class BinaryBenchmark
+{
+    /** number of dependencies in the model */
+    @Param( { "0", "100", "10000" } )
+    public int dependencies;
+
+    private Model model;
+
+    private byte[] xmlDocument;
+
+    private byte[] binaryDocument;
+
+    private ByteArrayOutputStream out;
+
+    @Setup
+    public void setUp()
+        throws Exception
+    {
+        model = BenchmarkDocuments.createMavenModel( dependencies );
+
+        out = new ByteArrayOutputStream( 1024 * 1024 );
+
+        new MavenXpp3Writer().write( out, model );
+
+        xmlDocument = out.toByteArray();
+
+        out.reset();
+
+        new MavenBinaryWriter().write( out, model );
+
+        binaryDocument = out.toByteArray();
+    }
+
+    @Benchmark
+    public int writeXpp3()
+        throws Exception
+    {
+        out.reset();
+
+        new MavenXpp3Writer().write( out, model );
+
+        return out.size();
+    }
+
+    @Benchmark
+    public int writeBinary()
+        throws Exception
+    {
+        out.reset();
+
+        new MavenBinaryWriter().write( out, model );
+
+        return out.size();
+    }
+
+    @Benchmark
+    public Model readXpp3()
+        throws Exception
+    {
+        return new MavenXpp3Reader().read( new ByteArrayInputStream( xmlDocument ), true );
+    }
+
+    @Benchmark
+    public Model readBinary()
+        throws Exception
+    {
+        return new MavenBinaryReader().read( new ByteArrayInputStream( binaryDocument ) );
+    }
+}
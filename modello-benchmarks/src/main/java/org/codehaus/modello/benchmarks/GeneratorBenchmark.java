@@ -0,0 +1,114 @@
+package org.codehaus.modello.benchmarks;
+
+/*
+ * Copyright (c) 2004, Codehaus.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import java.io.File;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.codehaus.modello.ModelloParameterConstants;
+import org.codehaus.modello.model.Model;
+import org.codehaus.plexus.util.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Generation by each generator from an already loaded model, including writing the generated files. Each invocation
+ * generates in a new output directory, otherwise the Java generator would only compare with the sources written by
+ * the previous invocation and skip writing them.
+ *
+ * @version $Id$
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 5 )
+@Measurement( iterations = 5 )
+@Fork( 1 )
+public class GeneratorBenchmark
+    extends AbstractModelloBenchmark
+{
+    @Param( { "java", "xpp3-reader", "xpp3-writer", "stax-reader", "stax-writer", "dom4j-reader", "dom4j-writer",
+        "jdom-writer", "xsd", "xdoc" } )
+    public String generator;
+
+    /** the current version of the Maven model, synthetic models have every class in it */
+    private static final String VERSION = "4.0.0";
+
+    private Model loadedModel;
+
+    private File outputDirectory;
+
+    private Properties parameters;
+
+    @Setup
+    public void setUpGeneration()
+        throws Exception
+    {
+        loadedModel = getModelloCore().loadModel( BenchmarkModels.newReader( getContent() ) );
+
+        parameters = new Properties();
+
+        parameters.setProperty( ModelloParameterConstants.VERSION, VERSION );
+
+        parameters.setProperty( ModelloParameterConstants.PACKAGE_WITH_VERSION, Boolean.toString( false ) );
+
+        parameters.setProperty( ModelloParameterConstants.USE_JAVA5, Boolean.toString( true ) );
+    }
+
+    @Setup( Level.Invocation )
+    public void setUpOutputDirectory()
+        throws Exception
+    {
+        outputDirectory = File.createTempFile( "modello-benchmark", "" );
+
+        outputDirectory.delete();
+
+        parameters.setProperty( ModelloParameterConstants.OUTPUT_DIRECTORY, outputDirectory.getAbsolutePath() );
+    }
+
+    @TearDown( Level.Invocation )
+    public void tearDownOutputDirectory()
+        throws Exception
+    {
+        FileUtils.deleteDirectory( outputDirectory );
+    }
+
+    @Benchmark
+    public void generate()
+        throws Exception
+    {
+        getModelloCore().generate( loadedModel, generator, parameters );
+    }
+}
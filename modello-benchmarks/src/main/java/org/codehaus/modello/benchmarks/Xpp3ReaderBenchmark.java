@@ -0,0 +1,153 @@
+package org.codehaus.modello.benchmarks;
+
+/*
+ * Copyright (c) 2004, Codehaus.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.io.xpp3.MavenXpp3Reader;
+import org.codehaus.plexus.util.ReaderFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reading of Maven model documents by the generated Xpp3 reader. Small documents show the fixed cost of each read,
+ * which the reuse of the parser removes. Streaming the dependencies to an item handler reads big documents without
+ * retaining their items, and a projection on the coordinates skips their parsing altogether. UTF-8 input streams are
+ * decoded by the reader itself, instead of the encoding detection of <code>ReaderFactory</code>.
+ *
+ * @version $Id$
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5 )
+@Measurement( iterations = 5 )
+@Fork( 1 )
+public class Xpp3ReaderBenchmark
+{
+    /** number of dependencies in the document */
+    @Param( { "0", "100", "10000" } )
+    public int dependencies;
+
+    @Param( { "false", "true" } )
+    public boolean reuseParser;
+
+    private String document;
+
+    private byte[] documentBytes;
+
+    private MavenXpp3Reader reader;
+
+    private MavenXpp3Reader streamingReader;
+
+    private int streamedDependencies;
+
+    private MavenXpp3Reader projectionReader;
+
+    @Setup
+    public void setUp()
+        throws Exception
+    {
+        document = BenchmarkDocuments.createMavenDocument( dependencies );
+
+        documentBytes = document.getBytes( "UTF-8" );
+
+        reader = new MavenXpp3Reader();
+
+        reader.setReuseParser( reuseParser );
+
+        streamingReader = new MavenXpp3Reader();
+
+        streamingReader.setReuseParser( reuseParser );
+
+        streamingReader.setItemHandler( new MavenXpp3Reader.ItemHandler()
+        {
+            @Override
+            public boolean onDependency( Model parent, Dependency item )
+            {
+                streamedDependencies++;
+
+                return true;
+            }
+        } );
+
+        projectionReader = new MavenXpp3Reader();
+
+        projectionReader.setReuseParser( reuseParser );
+
+        projectionReader.setProjection( Arrays.asList( "groupId", "artifactId", "version" ) );
+    }
+
+    @Benchmark
+    public Model read()
+        throws Exception
+    {
+        return reader.read( new StringReader( document ), true );
+    }
+
+    @Benchmark
+    public int readStreaming()
+        throws Exception
+    {
+        streamedDependencies = 0;
+
+        streamingReader.read( new StringReader( document ), true );
+
+        return streamedDependencies;
+    }
+
+    @Benchmark
+    public Model readProjection()
+        throws Exception
+    {
+        return projectionReader.read( new StringReader( document ), true );
+    }
+
+    @Benchmark
+    public Model readInputStream()
+        throws Exception
+    {
+        return reader.read( new ByteArrayInputStream( documentBytes ), true );
+    }
+
+    @Benchmark
+    public Model readReaderFactory()
+        throws Exception
+    {
+        return reader.read( ReaderFactory.newXmlReader( new ByteArrayInputStream( documentBytes ) ), true );
+    }
+}
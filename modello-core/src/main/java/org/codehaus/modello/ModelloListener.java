@@ -0,0 +1,84 @@
+package org.codehaus.modello;
+
+/*
+ * Copyright (c) 2004, Codehaus.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import java.io.File;
+
+/**
+ * Receives measures of the work done by Modello: how long each phase of model loading and generation took, how much
+ * memory it allocated, and which files were generated. A listener is registered on
+ * {@link org.codehaus.modello.core.AbstractModelloCore#addListener(ModelloListener)}, which gives it to the generators:
+ * since generations can run concurrently, a listener must be thread-safe.
+ *
+ * @version $Id$
+ * @since 1.5
+ */
+public interface ModelloListener
+{
+    /** Reading of the model descriptor. */
+    String PARSE = "parse";
+
+    /** Upgrade of deprecated model attributes. */
+    String UPGRADE = "upgrade";
+
+    /** Computation of the metadata of every element by the metadata plugins. */
+    String METADATA = "metadata";
+
+    /** Validation of the model. */
+    String VALIDATE = "validate";
+
+    /** Complete run of a generator. */
+    String GENERATE = "generate";
+
+    /** Building the source of a model class or interface. */
+    String BUILD = "build";
+
+    /** Printing a built source to memory. */
+    String PRINT = "print";
+
+    /** Writing a generated file. */
+    String WRITE = "write";
+
+    /**
+     * A phase has completed.
+     *
+     * @param generator the id of the generator, or <code>null</code> when loading the model
+     * @param phase the phase, one of the constants of this interface
+     * @param element the name of the model or of the model class the phase worked on
+     * @param nanos the duration of the phase, in nanoseconds
+     * @param allocatedBytes the bytes allocated by the thread running the phase, without the work it handed to other
+     *            threads, or <code>-1</code> if the JVM can't count them
+     * @see PhaseMeasure
+     */
+    void phaseCompleted( String generator, String phase, String element, long nanos, long allocatedBytes );
+
+    /**
+     * A file has been generated.
+     *
+     * @param generator the id of the generator
+     * @param file the generated file
+     * @param bytes the size of the generated content
+     * @param written <code>false</code> if the existing file already had the generated content and was kept
+     */
+    void fileGenerated( String generator, File file, long bytes, boolean written );
+}
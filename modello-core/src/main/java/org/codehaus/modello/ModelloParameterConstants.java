@@ -50,6 +50,25 @@ public class ModelloParameterConstants
 
     public static final String OUTPUT_XSD_FILE_NAME = "modello.output.xsd.file";
 
+    /**
+     * Whether the generation date is written in the header of generated files, defaults to <code>true</code>.
+     * @since 1.5
+     */
+    public static final String OUTPUT_TIMESTAMP = "modello.output.timestamp";
+
+    /**
+     * Number of threads a generator may use to build and print its output concurrently, defaults to <code>1</code>.
+     * @since 1.5
+     */
+    public static final String GENERATION_THREADS = "modello.generation.threads";
+
+    /**
+     * Whether generated writers produce minimal documents, without indentation and without the fields equal to their
+     * default value, defaults to <code>false</code>.
+     * @since 1.5
+     */
+    public static final String COMPACT_OUTPUT = "modello.output.compact";
+
     private ModelloParameterConstants()
     {
     }
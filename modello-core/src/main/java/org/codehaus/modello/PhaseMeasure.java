@@ -0,0 +1,141 @@
+package org.codehaus.modello;
+
+/*
+ * Copyright (c) 2004, Codehaus.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+
+/**
+ * Measure of a phase reported to a {@link ModelloListener}: its duration, and the bytes allocated by the current
+ * thread when the JVM can count them. Allocations are counted through
+ * <code>com.sun.management.ThreadMXBean</code>, looked up by reflection since other JVMs don't provide it.
+ *
+ * @version $Id$
+ * @since 1.5
+ */
+public final class PhaseMeasure
+{
+    /** the allocation counter of the JVM, or <code>null</code> if not supported */
+    private static final Method GET_THREAD_ALLOCATED_BYTES = getThreadAllocatedBytesMethod();
+
+    private long startNanos;
+
+    private long startAllocatedBytes;
+
+    /**
+     * Start measuring a phase.
+     */
+    public PhaseMeasure()
+    {
+        restart();
+    }
+
+    /**
+     * Start measuring the next phase.
+     */
+    public void restart()
+    {
+        startNanos = System.nanoTime();
+        startAllocatedBytes = getCurrentThreadAllocatedBytes();
+    }
+
+    /**
+     * @return the duration of the phase, in nanoseconds
+     */
+    public long getNanos()
+    {
+        return System.nanoTime() - startNanos;
+    }
+
+    /**
+     * @return the bytes allocated by the current thread during the phase, or <code>-1</code> if the JVM can't count
+     *         them
+     */
+    public long getAllocatedBytes()
+    {
+        if ( startAllocatedBytes < 0 )
+        {
+            return -1;
+        }
+
+        long allocatedBytes = getCurrentThreadAllocatedBytes();
+
+        return ( allocatedBytes < 0 ) ? -1 : ( allocatedBytes - startAllocatedBytes );
+    }
+
+    private static long getCurrentThreadAllocatedBytes()
+    {
+        if ( GET_THREAD_ALLOCATED_BYTES == null )
+        {
+            return -1;
+        }
+
+        try
+        {
+            Object bytes = GET_THREAD_ALLOCATED_BYTES.invoke( ManagementFactory.getThreadMXBean(),
+                                                              new Object[] { new Long( Thread.currentThread().getId() ) } );
+
+            return ( (Long) bytes ).longValue();
+        }
+        catch ( Exception e )
+        {
+            return -1;
+        }
+    }
+
+    private static Method getThreadAllocatedBytesMethod()
+    {
+        try
+        {
+            ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+            Class<?> extendedThreadMXBean = Class.forName( "com.sun.management.ThreadMXBean" );
+
+            if ( !extendedThreadMXBean.isInstance( threadMXBean ) )
+            {
+                return null;
+            }
+
+            Method isSupported = extendedThreadMXBean.getMethod( "isThreadAllocatedMemorySupported" );
+            Method isEnabled = extendedThreadMXBean.getMethod( "isThreadAllocatedMemoryEnabled" );
+
+            if ( !Boolean.TRUE.equals( isSupported.invoke( threadMXBean ) )
+                || !Boolean.TRUE.equals( isEnabled.invoke( threadMXBean ) ) )
+            {
+                return null;
+            }
+
+            return extendedThreadMXBean.getMethod( "getThreadAllocatedBytes", long.class );
+        }
+        catch ( Exception e )
+        {
+            // not a HotSpot JVM
+            return null;
+        }
+        catch ( LinkageError e )
+        {
+            return null;
+        }
+    }
+}
@@ -23,12 +23,16 @@ package org.codehaus.modello.core;
  */
 
 import org.codehaus.modello.ModelloException;
+import org.codehaus.modello.ModelloListener;
 import org.codehaus.modello.model.Model;
 import org.codehaus.modello.model.ModelValidationException;
 import org.codehaus.plexus.logging.AbstractLogEnabled;
 
+import java.io.File;
 import java.io.Reader;
 import java.io.Writer;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * @author <a href="mailto:trygvis@inamo.no">Trygve Laugst&oslash;l</a>
@@ -38,6 +42,27 @@ public abstract class AbstractModelloCore
     extends AbstractLogEnabled
     implements ModelloCore
 {
+    private final List<ModelloListener> listeners = new CopyOnWriteArrayList<ModelloListener>();
+
+    private final ModelloListener multicaster = new ModelloListener()
+    {
+        public void phaseCompleted( String generator, String phase, String element, long nanos, long allocatedBytes )
+        {
+            for ( ModelloListener listener : listeners )
+            {
+                listener.phaseCompleted( generator, phase, element, nanos, allocatedBytes );
+            }
+        }
+
+        public void fileGenerated( String generator, File file, long bytes, boolean written )
+        {
+            for ( ModelloListener listener : listeners )
+            {
+                listener.fileGenerated( generator, file, bytes, written );
+            }
+        }
+    };
+
     // ----------------------------------------------------------------------
     // Partial ModelloCore implementation
     // ----------------------------------------------------------------------
@@ -53,4 +78,39 @@ public abstract class AbstractModelloCore
     {
         saveModel( model, writer );
     }
+
+    // ----------------------------------------------------------------------
+    // Listeners
+    // ----------------------------------------------------------------------
+
+    /**
+     * Register a listener to measure the loading of models and the generations.
+     *
+     * @param listener the listener, which must be thread-safe
+     * @since 1.5
+     */
+    public void addListener( ModelloListener listener )
+    {
+        listeners.add( listener );
+    }
+
+    /**
+     * Unregister a listener.
+     *
+     * @param listener the listener
+     * @since 1.5
+     */
+    public void removeListener( ModelloListener listener )
+    {
+        listeners.remove( listener );
+    }
+
+    /**
+     * @return a listener notifying every registered listener, or <code>null</code> if none is registered
+     * @since 1.5
+     */
+    protected ModelloListener getListener()
+    {
+        return listeners.isEmpty() ? null : multicaster;
+    }
 }
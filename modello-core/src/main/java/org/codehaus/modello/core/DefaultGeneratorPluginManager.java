@@ -25,6 +25,13 @@ package org.codehaus.modello.core;
 import org.codehaus.modello.ModelloRuntimeException;
 import org.codehaus.modello.plugin.AbstractPluginManager;
 import org.codehaus.modello.plugin.ModelloGenerator;
+import org.codehaus.plexus.PlexusConstants;
+import org.codehaus.plexus.PlexusContainer;
+import org.codehaus.plexus.component.repository.exception.ComponentLifecycleException;
+import org.codehaus.plexus.component.repository.exception.ComponentLookupException;
+import org.codehaus.plexus.context.Context;
+import org.codehaus.plexus.context.ContextException;
+import org.codehaus.plexus.personality.plexus.lifecycle.phase.Contextualizable;
 
 /**
  * @author <a href="mailto:trygvis@inamo.no">Trygve Laugst&oslash;l</a>
@@ -32,8 +39,10 @@ import org.codehaus.modello.plugin.ModelloGenerator;
  */
 public class DefaultGeneratorPluginManager
     extends AbstractPluginManager<ModelloGenerator>
-    implements GeneratorPluginManager
+    implements GeneratorPluginManager, Contextualizable
 {
+    private PlexusContainer container;
+
     public ModelloGenerator getGeneratorPlugin( String generatorId )
     {
         ModelloGenerator generator = getPlugin( generatorId );
@@ -50,4 +59,47 @@ public class DefaultGeneratorPluginManager
     {
         return hasPlugin( generatorId );
     }
+
+    public synchronized ModelloGenerator newGeneratorPlugin( String generatorId )
+    {
+        ModelloGenerator generator = getGeneratorPlugin( generatorId );
+
+        if ( container == null )
+        {
+            // not managed by Plexus: only the injected instance is available
+            return generator;
+        }
+
+        try
+        {
+            return (ModelloGenerator) container.lookup( ModelloGenerator.class.getName(), generatorId );
+        }
+        catch ( ComponentLookupException e )
+        {
+            throw new ModelloRuntimeException( "Unable to lookup generator plugin: '" + generatorId + "'.", e );
+        }
+    }
+
+    public synchronized void releaseGeneratorPlugin( ModelloGenerator generator )
+    {
+        if ( container == null || getPlugins().containsValue( generator ) )
+        {
+            return;
+        }
+
+        try
+        {
+            container.release( generator );
+        }
+        catch ( ComponentLifecycleException e )
+        {
+            getLogger().warn( "Unable to release generator plugin " + generator.getClass().getName(), e );
+        }
+    }
+
+    public void contextualize( Context ctx )
+        throws ContextException
+    {
+        container = (PlexusContainer) ctx.get( PlexusConstants.PLEXUS_KEY );
+    }
 }
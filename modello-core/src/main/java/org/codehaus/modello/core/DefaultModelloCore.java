@@ -23,7 +23,9 @@ package org.codehaus.modello.core;
  */
 
 import org.codehaus.modello.ModelloException;
+import org.codehaus.modello.ModelloListener;
 import org.codehaus.modello.ModelloRuntimeException;
+import org.codehaus.modello.PhaseMeasure;
 import org.codehaus.modello.core.io.ModelReader;
 import org.codehaus.modello.metadata.AssociationMetadata;
 import org.codehaus.modello.metadata.ClassMetadata;
@@ -39,6 +41,7 @@ import org.codehaus.modello.model.ModelDefault;
 import org.codehaus.modello.model.ModelField;
 import org.codehaus.modello.model.ModelInterface;
 import org.codehaus.modello.model.ModelValidationException;
+import org.codehaus.modello.plugin.AbstractModelloGenerator;
 import org.codehaus.modello.plugin.ModelloGenerator;
 import org.codehaus.plexus.util.IOUtil;
 import org.codehaus.plexus.util.ReaderFactory;
@@ -49,6 +52,7 @@ import java.io.Reader;
 import java.io.Writer;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 
@@ -174,21 +178,47 @@ public class DefaultModelloCore
     public Model loadModel( Reader reader )
         throws ModelloException, ModelValidationException
     {
+        ModelloListener listener = getListener();
+
+        PhaseMeasure measure = ( listener == null ) ? null : new PhaseMeasure();
+
         ModelReader modelReader = new ModelReader();
         Model model = modelReader.loadModel( reader );
 
         model.initialize();
 
+        phaseCompleted( listener, null, ModelloListener.PARSE, model.getName(), measure );
+
         // keep backward compatibility with Modello attributes model changes
         upgradeModelloModel( modelReader, model );
 
+        phaseCompleted( listener, null, ModelloListener.UPGRADE, model.getName(), measure );
+
         handlePluginsMetadata( modelReader, model );
 
+        phaseCompleted( listener, null, ModelloListener.METADATA, model.getName(), measure );
+
         validate( model );
 
+        phaseCompleted( listener, null, ModelloListener.VALIDATE, model.getName(), measure );
+
         return model;
     }
 
+    /**
+     * Notify the listeners that a phase has completed, then start measuring the next one.
+     */
+    private void phaseCompleted( ModelloListener listener, String generator, String phase, String element,
+                                 PhaseMeasure measure )
+    {
+        if ( listener != null )
+        {
+            listener.phaseCompleted( generator, phase, element, measure.getNanos(), measure.getAllocatedBytes() );
+
+            measure.restart();
+        }
+    }
+
     /**
      * Handle Plugins Metadata.
      *
@@ -373,8 +403,27 @@ public class DefaultModelloCore
             parameters = new Properties();
         }
 
-        ModelloGenerator generator = generatorPluginManager.getGeneratorPlugin( outputType );
+        // use a generator of our own, so that concurrent generations don't share its state
+        ModelloGenerator generator = generatorPluginManager.newGeneratorPlugin( outputType );
+
+        ModelloListener listener = getListener();
 
-        generator.generate( model, parameters );
+        if ( generator instanceof AbstractModelloGenerator )
+        {
+            ( (AbstractModelloGenerator) generator ).setListener( outputType, listener );
+        }
+
+        PhaseMeasure measure = ( listener == null ) ? null : new PhaseMeasure();
+
+        try
+        {
+            generator.generate( model, parameters );
+
+            phaseCompleted( listener, outputType, ModelloListener.GENERATE, model.getName(), measure );
+        }
+        finally
+        {
+            generatorPluginManager.releaseGeneratorPlugin( generator );
+        }
     }
 }
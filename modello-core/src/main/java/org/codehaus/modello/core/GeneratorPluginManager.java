@@ -42,4 +42,25 @@ public interface GeneratorPluginManager
     ModelloGenerator getGeneratorPlugin( String generatorId );
 
     boolean hasGeneratorPlugin( String generatorId );
+
+    /**
+     * Look up a new instance of a generator, that won't be shared with other callers: generators keep state while
+     * generating, so concurrent generations each need their own instance.
+     * A new instance is only returned for generators declared with the <code>per-lookup</code> instantiation
+     * strategy, as every generator shipped with Modello is.
+     * The generator must be given back with {@link #releaseGeneratorPlugin(ModelloGenerator)} once used.
+     *
+     * @param generatorId the generator id
+     * @return a generator instance
+     * @since 1.5
+     */
+    ModelloGenerator newGeneratorPlugin( String generatorId );
+
+    /**
+     * Release a generator obtained with {@link #newGeneratorPlugin(String)}.
+     *
+     * @param generator the generator to release
+     * @since 1.5
+     */
+    void releaseGeneratorPlugin( ModelloGenerator generator );
 }
@@ -54,6 +54,15 @@ public interface ModelloCore
     Model translate( Reader reader, String inputType, Properties parameters )
         throws ModelloException, ModelValidationException;
 
+    /**
+     * Generate output from a model. Each call uses its own generator instance, then concurrent calls can be done
+     * on the same model, with different parameters.
+     *
+     * @param model the model
+     * @param outputType the generator id
+     * @param parameters the generator parameters
+     * @throws ModelloException
+     */
     void generate( Model model, String outputType, Properties parameters )
         throws ModelloException;
 }
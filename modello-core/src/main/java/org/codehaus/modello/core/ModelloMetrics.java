@@ -0,0 +1,239 @@
+package org.codehaus.modello.core;
+
+/*
+ * Copyright (c) 2004, Codehaus.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import org.codehaus.modello.ModelloListener;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Listener collecting the measures of Modello, to report where time and memory go: for each generator and phase, then
+ * for the slowest model elements, and the generated files.
+ *
+ * @version $Id$
+ * @since 1.5
+ */
+public class ModelloMetrics
+    implements ModelloListener
+{
+    private static final int SLOWEST_ELEMENTS = 20;
+
+    private static final double NANOS_PER_MILLI = 1000000.0;
+
+    private static final double BYTES_PER_KILOBYTE = 1024.0;
+
+    private final Map<String, Timing> phases = new LinkedHashMap<String, Timing>();
+
+    private final Map<String, Timing> elements = new LinkedHashMap<String, Timing>();
+
+    private final Map<String, Output> outputs = new LinkedHashMap<String, Output>();
+
+    public synchronized void phaseCompleted( String generator, String phase, String element, long nanos,
+                                             long allocatedBytes )
+    {
+        String name = ( generator == null ) ? phase : ( generator + ' ' + phase );
+
+        getTiming( phases, name ).add( nanos, allocatedBytes );
+
+        getTiming( elements, name + ' ' + element ).add( nanos, allocatedBytes );
+    }
+
+    public synchronized void fileGenerated( String generator, File file, long bytes, boolean written )
+    {
+        Output output = outputs.get( generator );
+
+        if ( output == null )
+        {
+            output = new Output();
+
+            outputs.put( generator, output );
+        }
+
+        output.files++;
+        output.bytes += bytes;
+
+        if ( written )
+        {
+            output.written++;
+        }
+    }
+
+    private static Timing getTiming( Map<String, Timing> timings, String name )
+    {
+        Timing timing = timings.get( name );
+
+        if ( timing == null )
+        {
+            timing = new Timing( name );
+
+            timings.put( name, timing );
+        }
+
+        return timing;
+    }
+
+    /**
+     * @param generator the generator id, or <code>null</code> for model loading
+     * @param phase the phase
+     * @return the total duration of the phase, in nanoseconds
+     */
+    public synchronized long getTotalTime( String generator, String phase )
+    {
+        Timing timing = phases.get( ( generator == null ) ? phase : ( generator + ' ' + phase ) );
+
+        return ( timing == null ) ? 0 : timing.total;
+    }
+
+    /**
+     * @param generator the generator id, or <code>null</code> for model loading
+     * @param phase the phase
+     * @return the total bytes allocated by the phase, or <code>-1</code> if the JVM can't count them
+     */
+    public synchronized long getAllocatedBytes( String generator, String phase )
+    {
+        Timing timing = phases.get( ( generator == null ) ? phase : ( generator + ' ' + phase ) );
+
+        return ( timing == null ) ? 0 : timing.allocated;
+    }
+
+    /**
+     * @param generator the generator id
+     * @return the number of bytes generated
+     */
+    public synchronized long getGeneratedBytes( String generator )
+    {
+        Output output = outputs.get( generator );
+
+        return ( output == null ) ? 0 : output.bytes;
+    }
+
+    /**
+     * Write a summary report of the collected measures.
+     *
+     * @param writer the writer, which is not closed
+     * @throws IOException
+     */
+    public synchronized void writeReport( Writer writer )
+        throws IOException
+    {
+        PrintWriter out = new PrintWriter( writer );
+
+        out.println( String.format( "%-48s %8s %12s %12s %16s", "Phase", "count", "total (ms)", "max (ms)",
+                                    "allocated (KB)" ) );
+
+        for ( Timing timing : phases.values() )
+        {
+            out.println( String.format( "%-48s %8d %12.2f %12.2f %16s", timing.name, timing.count,
+                                        timing.total / NANOS_PER_MILLI, timing.max / NANOS_PER_MILLI,
+                                        formatAllocated( timing.allocated ) ) );
+        }
+
+        out.println();
+        out.println( String.format( "%-48s %8s %12s %12s", "Generated files", "files", "written", "bytes" ) );
+
+        for ( Map.Entry<String, Output> entry : outputs.entrySet() )
+        {
+            Output output = entry.getValue();
+
+            out.println( String.format( "%-48s %8d %12d %12d", entry.getKey(), output.files, output.written,
+                                        output.bytes ) );
+        }
+
+        List<Timing> slowest = new ArrayList<Timing>( elements.values() );
+
+        Collections.sort( slowest, new Comparator<Timing>()
+        {
+            public int compare( Timing t1, Timing t2 )
+            {
+                return ( t1.total > t2.total ) ? -1 : ( ( t1.total == t2.total ) ? 0 : 1 );
+            }
+        } );
+
+        out.println();
+        out.println( String.format( "%-48s %8s %12s %16s", "Slowest elements", "count", "total (ms)",
+                                    "allocated (KB)" ) );
+
+        for ( Timing timing : slowest.subList( 0, Math.min( SLOWEST_ELEMENTS, slowest.size() ) ) )
+        {
+            out.println( String.format( "%-48s %8d %12.2f %16s", timing.name, timing.count,
+                                        timing.total / NANOS_PER_MILLI, formatAllocated( timing.allocated ) ) );
+        }
+
+        out.flush();
+
+        if ( out.checkError() )
+        {
+            throw new IOException( "Unable to write Modello metrics report." );
+        }
+    }
+
+    private static String formatAllocated( long allocatedBytes )
+    {
+        return ( allocatedBytes < 0 ) ? "n/a" : String.format( "%.1f", allocatedBytes / BYTES_PER_KILOBYTE );
+    }
+
+    private static class Timing
+    {
+        private final String name;
+
+        private int count;
+
+        private long total;
+
+        private long max;
+
+        /** total bytes allocated, <code>-1</code> once a measure couldn't count them */
+        private long allocated;
+
+        Timing( String name )
+        {
+            this.name = name;
+        }
+
+        void add( long nanos, long allocatedBytes )
+        {
+            count++;
+            total += nanos;
+            max = Math.max( max, nanos );
+            allocated = ( ( allocated < 0 ) || ( allocatedBytes < 0 ) ) ? -1 : ( allocated + allocatedBytes );
+        }
+    }
+
+    private static class Output
+    {
+        private int files;
+
+        private int written;
+
+        private long bytes;
+    }
+}
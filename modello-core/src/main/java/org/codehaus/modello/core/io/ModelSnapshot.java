@@ -0,0 +1,185 @@
+package org.codehaus.modello.core.io;
+
+/*
+ * Copyright (c) 2004, Codehaus.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.TreeSet;
+
+import org.codehaus.modello.ModelloRuntimeException;
+import org.codehaus.modello.core.ModelloCore;
+import org.codehaus.modello.model.Model;
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Binary snapshot of a loaded and validated model, with its metadata, to avoid reading and validating the model
+ * descriptor again while it is unchanged.
+ * A snapshot is used only if it was written from the same model descriptor content, with the same Modello version
+ * and the same metadata plugins.
+ *
+ * @version $Id$
+ * @since 1.5
+ */
+public class ModelSnapshot
+{
+    private static final String FORMAT = "modello-snapshot-1";
+
+    private final String key;
+
+    /**
+     * @param modelloCore the Modello core which loads the models: its metadata plugins are part of the snapshot key
+     */
+    public ModelSnapshot( ModelloCore modelloCore )
+    {
+        Package modelPackage = Model.class.getPackage();
+
+        String version = ( modelPackage == null ) ? null : modelPackage.getImplementationVersion();
+
+        this.key = version + " " + new TreeSet<String>( modelloCore.getMetadataPluginManager().getPlugins().keySet() );
+    }
+
+    /**
+     * Read a model from a snapshot.
+     *
+     * @param snapshotFile the snapshot file
+     * @param content the current content of the model descriptor
+     * @return the model, or <code>null</code> if the snapshot doesn't exist, is unreadable or out of date
+     */
+    public Model read( File snapshotFile, byte[] content )
+    {
+        if ( !snapshotFile.isFile() )
+        {
+            return null;
+        }
+
+        ObjectInputStream in = null;
+
+        try
+        {
+            in = new ObjectInputStream( new BufferedInputStream( new FileInputStream( snapshotFile ) ) );
+
+            if ( !FORMAT.equals( in.readUTF() ) || !key.equals( in.readUTF() ) )
+            {
+                return null;
+            }
+
+            if ( !Arrays.equals( digest( content ), (byte[]) in.readObject() ) )
+            {
+                return null;
+            }
+
+            return (Model) in.readObject();
+        }
+        catch ( IOException e )
+        {
+            return null;
+        }
+        catch ( ClassNotFoundException e )
+        {
+            return null;
+        }
+        catch ( ClassCastException e )
+        {
+            return null;
+        }
+        finally
+        {
+            IOUtil.close( in );
+        }
+    }
+
+    /**
+     * Write a snapshot of a model. The snapshot is written in a temporary file first, then concurrent builds never
+     * read a partial snapshot.
+     *
+     * @param snapshotFile the snapshot file
+     * @param content the content of the model descriptor the model was loaded from
+     * @param model the loaded and validated model
+     * @throws IOException
+     */
+    public void write( File snapshotFile, byte[] content, Model model )
+        throws IOException
+    {
+        File directory = snapshotFile.getAbsoluteFile().getParentFile();
+
+        directory.mkdirs();
+
+        File tmpFile = File.createTempFile( snapshotFile.getName(), ".tmp", directory );
+
+        ObjectOutputStream out = null;
+
+        try
+        {
+            out = new ObjectOutputStream( new BufferedOutputStream( new FileOutputStream( tmpFile ) ) );
+
+            out.writeUTF( FORMAT );
+
+            out.writeUTF( key );
+
+            out.writeObject( digest( content ) );
+
+            out.writeObject( model );
+
+            out.close();
+
+            out = null;
+
+            if ( !tmpFile.renameTo( snapshotFile ) )
+            {
+                snapshotFile.delete();
+
+                if ( !tmpFile.renameTo( snapshotFile ) )
+                {
+                    throw new IOException( "Unable to write model snapshot " + snapshotFile );
+                }
+            }
+        }
+        finally
+        {
+            IOUtil.close( out );
+
+            tmpFile.delete();
+        }
+    }
+
+    private static byte[] digest( byte[] content )
+    {
+        try
+        {
+            return MessageDigest.getInstance( "SHA-1" ).digest( content );
+        }
+        catch ( NoSuchAlgorithmException e )
+        {
+            throw new ModelloRuntimeException( "SHA-1 digest is not available.", e );
+        }
+    }
+}
@@ -22,10 +22,16 @@ package org.codehaus.modello.metadata;
  * SOFTWARE.
  */
 
+import java.io.Serializable;
+
 /**
+ * Metadata added to model elements by metadata plugins. Metadata is serialized with the model, then must contain
+ * only serializable values.
+ *
  * @author <a href="mailto:trygvis@inamo.no">Trygve Laugst&oslash;l</a>
  * @version $Id$
  */
 public interface Metadata
+    extends Serializable
 {
 }
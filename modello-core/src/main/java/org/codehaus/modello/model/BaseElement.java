@@ -25,6 +25,7 @@ package org.codehaus.modello.model;
 import org.codehaus.modello.ModelloRuntimeException;
 import org.codehaus.modello.metadata.Metadata;
 
+import java.io.Serializable;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.ArrayList;
@@ -39,6 +40,7 @@ import java.util.List;
  * @version $Id$
  */
 public abstract class BaseElement
+    implements Serializable
 {
     private String name;
 
@@ -52,7 +54,7 @@ public abstract class BaseElement
 
     private Version deprecatedVersion;
 
-    private transient Map<String, Metadata> metadata = new HashMap<String, Metadata>();
+    private Map<String, Metadata> metadata = new HashMap<String, Metadata>();
 
     private boolean nameRequired;
 
@@ -214,7 +216,7 @@ public abstract class BaseElement
             return System.identityHashCode( this );
         }
 
-        return name.hashCode() + versionRange.toString().hashCode();
+        return name.hashCode() + versionRange.hashCode();
     }
 
     /**
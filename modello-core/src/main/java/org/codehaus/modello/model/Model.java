@@ -27,10 +27,14 @@ import org.codehaus.modello.metadata.ModelMetadata;
 import org.codehaus.modello.plugin.model.ModelClassMetadata;
 import org.codehaus.plexus.util.StringUtils;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * @author <a href="mailto:jason@modello.org">Jason van Zyl</a>
@@ -48,14 +52,19 @@ public class Model
 
     private List<ModelInterface> interfaces = new ArrayList<ModelInterface>();
 
-    private transient Map<String,List<ModelClass>> classMap = new HashMap<String,List<ModelClass>>();
+    private transient Map<String,VersionRangeIndex<ModelClass>> classMap =
+        new HashMap<String,VersionRangeIndex<ModelClass>>();
 
     private transient Map<String,ModelDefault> defaultMap = new HashMap<String,ModelDefault>();
 
-    private transient Map<String,List<ModelInterface>> interfaceMap = new HashMap<String,List<ModelInterface>>();
+    private transient Map<String,VersionRangeIndex<ModelInterface>> interfaceMap =
+        new HashMap<String,VersionRangeIndex<ModelInterface>>();
 
     private VersionDefinition versionDefinition;
 
+    private transient ConcurrentMap<Version, ModelVersionView> versionViews =
+        new ConcurrentHashMap<Version, ModelVersionView>();
+
     public Model()
     {
         super( true );
@@ -140,19 +149,15 @@ public class Model
         return classes;
     }
 
+    /**
+     * Returns the classes of a version. The list is computed once for each version, and can't be modified.
+     *
+     * @param version the version
+     * @return the classes of the version
+     */
     public List<ModelClass> getClasses( Version version )
     {
-        List<ModelClass> classList = new ArrayList<ModelClass>();
-
-        for ( ModelClass currentClass : classes )
-        {
-            if ( version.inside( currentClass.getVersionRange() ) )
-            {
-                classList.add( currentClass );
-            }
-        }
-
-        return classList;
+        return getVersionView( version ).getClasses();
     }
 
     public ModelClass getClass( String type, Version version )
@@ -182,30 +187,18 @@ public class Model
 
     private ModelClass getModelClass( String type, VersionRange versionRange )
     {
-        List<ModelClass> classList = classMap.get( type );
+        VersionRangeIndex<ModelClass> classIndex = classMap.get( type );
 
-        ModelClass value = null;
-        if ( classList != null )
-        {
-            for ( ModelClass modelClass : classList )
-            {
-                if ( versionRange.getFromVersion().inside( modelClass.getVersionRange() )
-                     && versionRange.getToVersion().inside( modelClass.getVersionRange() ) )
-                {
-                    value = modelClass;
-                }
-            }
-        }
-        return value;
+        return ( classIndex == null ) ? null : classIndex.get( versionRange );
     }
 
     public void addClass( ModelClass modelClass )
     {
         if ( classMap.containsKey( modelClass.getName() ) )
         {
-            List<ModelClass> classList = classMap.get( modelClass.getName() );
+            VersionRangeIndex<ModelClass> classIndex = classMap.get( modelClass.getName() );
 
-            for ( ModelClass currentClass : classList )
+            for ( ModelClass currentClass : classIndex )
             {
                 if ( VersionUtil.isInConflict( modelClass.getVersionRange(), currentClass.getVersionRange() ) )
                 {
@@ -215,14 +208,14 @@ public class Model
         }
         else
         {
-            List<ModelClass> classList = new ArrayList<ModelClass>();
-
-            classMap.put( modelClass.getName(), classList );
+            classMap.put( modelClass.getName(), new VersionRangeIndex<ModelClass>() );
         }
 
         getAllClasses().add( modelClass );
 
         classMap.get( modelClass.getName() ).add( modelClass );
+
+        clearVersionViews();
     }
 
     // ----------------------------------------------------------------------
@@ -286,19 +279,15 @@ public class Model
         return interfaces;
     }
 
+    /**
+     * Returns the interfaces of a version. The list is computed once for each version, and can't be modified.
+     *
+     * @param version the version
+     * @return the interfaces of the version
+     */
     public List<ModelInterface> getInterfaces( Version version )
     {
-        List<ModelInterface> interfaceList = new ArrayList<ModelInterface>();
-
-        for ( ModelInterface currentInterface : interfaces )
-        {
-            if ( version.inside( currentInterface.getVersionRange() ) )
-            {
-                interfaceList.add( currentInterface );
-            }
-        }
-
-        return interfaceList;
+        return getVersionView( version ).getInterfaces();
     }
 
     public ModelInterface getInterface( String type, Version version )
@@ -321,30 +310,18 @@ public class Model
 
     private ModelInterface getModelInterface( String type, VersionRange versionRange )
     {
-        List<ModelInterface> interfaceList = interfaceMap.get( type );
+        VersionRangeIndex<ModelInterface> interfaceIndex = interfaceMap.get( type );
 
-        if ( interfaceList != null )
-        {
-            for ( ModelInterface modelInterface : interfaceList )
-            {
-                if ( versionRange.getFromVersion().inside( modelInterface.getVersionRange() )
-                     && versionRange.getToVersion().inside( modelInterface.getVersionRange() ) )
-                {
-                    return modelInterface;
-                }
-            }
-        }
-
-        return null;
+        return ( interfaceIndex == null ) ? null : interfaceIndex.get( versionRange );
     }
 
     public void addInterface( ModelInterface modelInterface )
     {
         if ( interfaceMap.containsKey( modelInterface.getName() ) )
         {
-            List<ModelInterface> interfaceList = interfaceMap.get( modelInterface.getName() );
+            VersionRangeIndex<ModelInterface> interfaceIndex = interfaceMap.get( modelInterface.getName() );
 
-            for ( ModelInterface currentInterface : interfaceList )
+            for ( ModelInterface currentInterface : interfaceIndex )
             {
                 if ( VersionUtil.isInConflict( modelInterface.getVersionRange(), currentInterface.getVersionRange() ) )
                 {
@@ -354,14 +331,14 @@ public class Model
         }
         else
         {
-            List<ModelInterface> interfaceList = new ArrayList<ModelInterface>();
-
-            interfaceMap.put( modelInterface.getName(), interfaceList );
+            interfaceMap.put( modelInterface.getName(), new VersionRangeIndex<ModelInterface>() );
         }
 
         getAllInterfaces().add( modelInterface );
 
         interfaceMap.get( modelInterface.getName() ).add( modelInterface );
+
+        clearVersionViews();
     }
 
     public ModelType getType( String type, Version version )
@@ -389,6 +366,53 @@ public class Model
             "There is no class or interface '" + type + "' in the version range '" + versionRange.toString() + "'." );
     }
 
+    private void readObject( ObjectInputStream in )
+        throws IOException, ClassNotFoundException
+    {
+        in.defaultReadObject();
+
+        versionViews = new ConcurrentHashMap<Version, ModelVersionView>();
+
+        classMap = new HashMap<String, VersionRangeIndex<ModelClass>>();
+
+        for ( ModelClass modelClass : classes )
+        {
+            VersionRangeIndex<ModelClass> classIndex = classMap.get( modelClass.getName() );
+
+            if ( classIndex == null )
+            {
+                classIndex = new VersionRangeIndex<ModelClass>();
+
+                classMap.put( modelClass.getName(), classIndex );
+            }
+
+            classIndex.add( modelClass );
+        }
+
+        defaultMap = new HashMap<String, ModelDefault>();
+
+        for ( ModelDefault modelDefault : defaults )
+        {
+            defaultMap.put( modelDefault.getKey(), modelDefault );
+        }
+
+        interfaceMap = new HashMap<String, VersionRangeIndex<ModelInterface>>();
+
+        for ( ModelInterface modelInterface : interfaces )
+        {
+            VersionRangeIndex<ModelInterface> interfaceIndex = interfaceMap.get( modelInterface.getName() );
+
+            if ( interfaceIndex == null )
+            {
+                interfaceIndex = new VersionRangeIndex<ModelInterface>();
+
+                interfaceMap.put( modelInterface.getName(), interfaceIndex );
+            }
+
+            interfaceIndex.add( modelInterface );
+        }
+    }
+
     public void initialize()
     {
         for ( ModelClass modelClass : classes )
@@ -400,6 +424,39 @@ public class Model
         {
             modelInterface.initialize( this );
         }
+
+        clearVersionViews();
+    }
+
+    // ----------------------------------------------------------------------
+    // Version views
+    // ----------------------------------------------------------------------
+
+    ModelVersionView getVersionView( Version version )
+    {
+        ModelVersionView view = versionViews.get( version );
+
+        if ( view == null )
+        {
+            view = new ModelVersionView( this, version );
+
+            ModelVersionView previous = versionViews.putIfAbsent( version, view );
+
+            if ( previous != null )
+            {
+                view = previous;
+            }
+        }
+
+        return view;
+    }
+
+    /**
+     * Drop the views of every version, when the model changes.
+     */
+    void clearVersionViews()
+    {
+        versionViews.clear();
     }
 
     public void validateElement()
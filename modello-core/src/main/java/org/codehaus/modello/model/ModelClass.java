@@ -26,6 +26,8 @@ import org.codehaus.modello.ModelloRuntimeException;
 import org.codehaus.modello.metadata.ClassMetadata;
 import org.codehaus.plexus.util.StringUtils;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -48,7 +50,8 @@ public class ModelClass
 
     private List<ModelField> fields;
 
-    private transient Map<String, List<ModelField>> fieldMap = new HashMap<String, List<ModelField>>();
+    private transient Map<String, VersionRangeIndex<ModelField>> fieldMap =
+        new HashMap<String, VersionRangeIndex<ModelField>>();
 
     public ModelClass()
     {
@@ -68,6 +71,11 @@ public class ModelClass
     public void setSuperClass( String superClass )
     {
         this.superClass = superClass;
+
+        if ( getModel() != null )
+        {
+            getModel().clearVersionViews();
+        }
     }
 
     // ----------------------------------------------------------------------
@@ -146,18 +154,13 @@ public class ModelClass
 
     public ModelField getField( String type, VersionRange versionRange )
     {
-        List<ModelField> fieldList = fieldMap.get( type );
+        VersionRangeIndex<ModelField> fieldIndex = fieldMap.get( type );
+
+        ModelField modelField = ( fieldIndex == null ) ? null : fieldIndex.get( versionRange );
 
-        if ( fieldList != null )
+        if ( modelField != null )
         {
-            for ( ModelField modelField : fieldList )
-            {
-                if ( versionRange.getFromVersion().inside( modelField.getVersionRange() )
-                    && versionRange.getToVersion().inside( modelField.getVersionRange() ) )
-                {
-                    return modelField;
-                }
-            }
+            return modelField;
         }
 
         throw new ModelloRuntimeException( "There are no field '" + type + "' in version range '" + versionRange.toString() + "'." );
@@ -167,9 +170,9 @@ public class ModelClass
     {
         if ( fieldMap.containsKey( modelField.getName() ) )
         {
-            List<ModelField> fieldList = fieldMap.get( modelField.getName() );
+            VersionRangeIndex<ModelField> fieldIndex = fieldMap.get( modelField.getName() );
 
-            for ( ModelField currentField : fieldList )
+            for ( ModelField currentField : fieldIndex )
             {
                 if ( VersionUtil.isInConflict( modelField.getVersionRange(), currentField.getVersionRange() ) )
                 {
@@ -179,14 +182,17 @@ public class ModelClass
         }
         else
         {
-            List<ModelField> fieldList = new ArrayList<ModelField>();
-
-            fieldMap.put( modelField.getName(), fieldList );
+            fieldMap.put( modelField.getName(), new VersionRangeIndex<ModelField>() );
         }
 
         getAllFields().add( modelField );
 
         fieldMap.get( modelField.getName() ).add( modelField );
+
+        if ( getModel() != null )
+        {
+            getModel().clearVersionViews();
+        }
     }
 
     // ----------------------------------------------------------------------
@@ -208,6 +214,28 @@ public class ModelClass
         return getMetadata( ClassMetadata.class, key );
     }
 
+    private void readObject( ObjectInputStream in )
+        throws IOException, ClassNotFoundException
+    {
+        in.defaultReadObject();
+
+        fieldMap = new HashMap<String, VersionRangeIndex<ModelField>>();
+
+        for ( ModelField modelField : getAllFields() )
+        {
+            VersionRangeIndex<ModelField> fieldIndex = fieldMap.get( modelField.getName() );
+
+            if ( fieldIndex == null )
+            {
+                fieldIndex = new VersionRangeIndex<ModelField>();
+
+                fieldMap.put( modelField.getName(), fieldIndex );
+            }
+
+            fieldIndex.add( modelField );
+        }
+    }
+
     public void initialize( Model model )
     {
         super.initialize( model );
@@ -233,6 +261,9 @@ public class ModelClass
             {
                 isInternalSuperClass = false;
             }
+
+            // inherited fields depend on the super class being internal
+            getModel().clearVersionViews();
         }
 
         if ( getModel().getDefault( ModelDefault.CHECK_DEPRECATION ).getBoolean() )
@@ -22,6 +22,8 @@ package org.codehaus.modello.model;
  * SOFTWARE.
  */
 
+import java.io.Serializable;
+
 /**
  * Default values for a model, that can be overrided with <code>defaults</code> element of the model descriptor.
  *
@@ -30,6 +32,7 @@ package org.codehaus.modello.model;
  * @version $Id$
  */
 public class ModelDefault
+    implements Serializable
 {
     public static final String CHECK_DEPRECATION = "checkDeprecation";
 
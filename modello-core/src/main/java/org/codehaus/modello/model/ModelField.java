@@ -44,7 +44,7 @@ public class ModelField
 
     private String alias;
 
-    private transient ModelClass modelClass;
+    private ModelClass modelClass;
 
     private static final String[] PRIMITIVE_TYPES =
         { "boolean", "Boolean", "char", "Character", "byte", "Byte", "short", "Short", "int", "Integer", "long",
@@ -22,6 +22,8 @@ package org.codehaus.modello.model;
  * SOFTWARE.
  */
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -41,7 +43,7 @@ public abstract class ModelType
 
     private List<CodeSegment> codeSegments;
 
-    private transient Model model;
+    private Model model;
 
     private transient Map<String, CodeSegment> codeSegmentMap = new HashMap<String, CodeSegment>();
 
@@ -180,42 +182,31 @@ public abstract class ModelType
      */
     public List<ModelField> getFields( Version version )
     {
-        List<ModelField> fieldList = new ArrayList<ModelField>();
+        ModelVersionView view = getVersionView( version );
 
-        for ( ModelField currentField : getAllFields() )
+        if ( view != null )
         {
-            if ( version.inside( currentField.getVersionRange() ) )
-            {
-                fieldList.add( currentField );
-            }
+            return view.getFields( this );
         }
 
-        return fieldList;
+        return ModelVersionView.filter( getAllFields(), version );
     }
 
     public List<ModelField> getAllFields( Version version, boolean withInheritedField )
     {
-        List<ModelField> allFieldsList = new ArrayList<ModelField>();
-
-        List<ModelField> fieldList = new ArrayList<ModelField>();
-
-        for ( ModelField currentField : getAllFields( withInheritedField ) )
+        if ( !withInheritedField )
         {
-            if ( version.inside( currentField.getVersionRange() ) )
-            {
-                allFieldsList.add( currentField );
-            }
+            return getFields( version );
         }
 
-        for ( ModelField currentField : allFieldsList )
+        ModelVersionView view = getVersionView( version );
+
+        if ( view != null )
         {
-            if ( version.inside( currentField.getVersionRange() ) )
-            {
-                fieldList.add( currentField );
-            }
+            return view.getAllFieldsWithInherited( this );
         }
 
-        return fieldList;
+        return ModelVersionView.filter( getAllFields( true ), version );
     }
 
     public boolean hasField( String type, Version version )
@@ -239,6 +230,13 @@ public abstract class ModelType
 
     public List<ModelField> getIdentifierFields( Version version )
     {
+        ModelVersionView view = getVersionView( version );
+
+        if ( view != null )
+        {
+            return view.getIdentifierFields( this );
+        }
+
         List<ModelField> identifierFields = new ArrayList<ModelField>();
 
         for ( ModelField field : getFields( version ) )
@@ -256,6 +254,34 @@ public abstract class ModelType
     //
     // ----------------------------------------------------------------------
 
+    /**
+     * @return the view of the model for the version, or <code>null</code> if this type is not part of a model
+     */
+    private ModelVersionView getVersionView( Version version )
+    {
+        if ( model == null )
+        {
+            return null;
+        }
+
+        ModelVersionView view = model.getVersionView( version );
+
+        return view.contains( this ) ? view : null;
+    }
+
+    private void readObject( ObjectInputStream in )
+        throws IOException, ClassNotFoundException
+    {
+        in.defaultReadObject();
+
+        codeSegmentMap = new HashMap<String, CodeSegment>();
+
+        for ( CodeSegment codeSegment : getAllCodeSegments() )
+        {
+            codeSegmentMap.put( codeSegment.getName(), codeSegment );
+        }
+    }
+
     public void initialize( Model model )
     {
         this.model = model;
@@ -0,0 +1,171 @@
+package org.codehaus.modello.model;
+
+/*
+ * Copyright (c) 2004, Codehaus.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The elements of a model in one version. Generators query the same version over and over: the classes and
+ * interfaces are computed once, and the fields of each type the first time they are queried.
+ * A view is dropped by its model as soon as the model changes.
+ *
+ * @version $Id$
+ * @since 1.5
+ */
+class ModelVersionView
+{
+    private final Version version;
+
+    private final List<ModelClass> classes;
+
+    private final List<ModelInterface> interfaces;
+
+    /** the fields of every type of the model, by type identity since class equality ignores versions */
+    private final Map<ModelType, TypeFields> types = new IdentityHashMap<ModelType, TypeFields>();
+
+    ModelVersionView( Model model, Version version )
+    {
+        this.version = version;
+
+        List<ModelClass> classes = new ArrayList<ModelClass>();
+
+        for ( ModelClass modelClass : model.getAllClasses() )
+        {
+            if ( version.inside( modelClass.getVersionRange() ) )
+            {
+                classes.add( modelClass );
+            }
+
+            types.put( modelClass, new TypeFields() );
+        }
+
+        this.classes = Collections.unmodifiableList( classes );
+
+        List<ModelInterface> interfaces = new ArrayList<ModelInterface>();
+
+        for ( ModelInterface modelInterface : model.getAllInterfaces() )
+        {
+            if ( version.inside( modelInterface.getVersionRange() ) )
+            {
+                interfaces.add( modelInterface );
+            }
+
+            types.put( modelInterface, new TypeFields() );
+        }
+
+        this.interfaces = Collections.unmodifiableList( interfaces );
+    }
+
+    List<ModelClass> getClasses()
+    {
+        return classes;
+    }
+
+    List<ModelInterface> getInterfaces()
+    {
+        return interfaces;
+    }
+
+    /**
+     * @return <code>true</code> if the type is part of the model, then its fields can be queried from this view
+     */
+    boolean contains( ModelType type )
+    {
+        return types.containsKey( type );
+    }
+
+    synchronized List<ModelField> getFields( ModelType type )
+    {
+        TypeFields typeFields = types.get( type );
+
+        if ( typeFields.fields == null )
+        {
+            typeFields.fields = Collections.unmodifiableList( filter( type.getAllFields(), version ) );
+        }
+
+        return typeFields.fields;
+    }
+
+    synchronized List<ModelField> getIdentifierFields( ModelType type )
+    {
+        TypeFields typeFields = types.get( type );
+
+        if ( typeFields.identifierFields == null )
+        {
+            List<ModelField> identifierFields = new ArrayList<ModelField>();
+
+            for ( ModelField field : getFields( type ) )
+            {
+                if ( field.isIdentifier() )
+                {
+                    identifierFields.add( field );
+                }
+            }
+
+            typeFields.identifierFields = Collections.unmodifiableList( identifierFields );
+        }
+
+        return typeFields.identifierFields;
+    }
+
+    synchronized List<ModelField> getAllFieldsWithInherited( ModelType type )
+    {
+        TypeFields typeFields = types.get( type );
+
+        if ( typeFields.allFields == null )
+        {
+            typeFields.allFields = Collections.unmodifiableList( filter( type.getAllFields( true ), version ) );
+        }
+
+        return typeFields.allFields;
+    }
+
+    static List<ModelField> filter( List<ModelField> fields, Version version )
+    {
+        List<ModelField> fieldList = new ArrayList<ModelField>();
+
+        for ( ModelField currentField : fields )
+        {
+            if ( version.inside( currentField.getVersionRange() ) )
+            {
+                fieldList.add( currentField );
+            }
+        }
+
+        return fieldList;
+    }
+
+    private static class TypeFields
+    {
+        private List<ModelField> fields;
+
+        private List<ModelField> identifierFields;
+
+        /** fields including the fields inherited from super classes */
+        private List<ModelField> allFields;
+    }
+}
@@ -22,6 +22,8 @@ package org.codehaus.modello.model;
  * SOFTWARE.
  */
 
+import java.io.Serializable;
+
 import org.codehaus.modello.ModelloRuntimeException;
 import org.codehaus.plexus.util.StringUtils;
 
@@ -33,15 +35,17 @@ import org.codehaus.plexus.util.StringUtils;
  * @version $Id$
  */
 public class Version
-    implements Comparable<Version>
+    implements Comparable<Version>, Serializable
 {
     public static final Version INFINITE = new Version( "32767.32767.32767" );
 
-    private short major;
+    /** offset to keep the order of negative parts in the packed value */
+    private static final int PART_OFFSET = 1 << 15;
 
-    private short minor;
+    private static final int PART_MASK = 0xFFFF;
 
-    private short micro;
+    /** major, minor and micro parts packed in 16 bits each, then versions compare as numbers */
+    private final long value;
 
     public Version( String version )
     {
@@ -78,11 +82,8 @@ public class Version
 
         try
         {
-            major = Short.parseShort( majorString );
-
-            minor = Short.parseShort( minorString );
-
-            micro = Short.parseShort( microString );
+            value = pack( Short.parseShort( majorString ), Short.parseShort( minorString ),
+                          Short.parseShort( microString ) );
         }
         catch ( NumberFormatException e )
         {
@@ -90,19 +91,30 @@ public class Version
         }
     }
 
+    private static long pack( short major, short minor, short micro )
+    {
+        return ( (long) ( major + PART_OFFSET ) << 32 ) | ( (long) ( minor + PART_OFFSET ) << 16 )
+            | ( micro + PART_OFFSET );
+    }
+
+    private int unpack( int shift )
+    {
+        return (int) ( ( value >>> shift ) & PART_MASK ) - PART_OFFSET;
+    }
+
     public int getMajor()
     {
-        return major;
+        return unpack( 32 );
     }
 
     public int getMinor()
     {
-        return minor;
+        return unpack( 16 );
     }
 
     public int getMicro()
     {
-        return micro;
+        return unpack( 0 );
     }
 
     /**
@@ -112,22 +124,7 @@ public class Version
      */
     public boolean greaterThan( Version other )
     {
-        if ( this.major != other.major )
-        {
-            return major > other.major;
-        }
-
-        if ( this.minor != other.minor )
-        {
-            return this.minor > other.minor;
-        }
-
-        if ( this.micro != other.micro )
-        {
-            return this.micro > other.micro;
-        }
-
-        return false;
+        return value > other.value;
     }
 
     /**
@@ -137,22 +134,7 @@ public class Version
      */
     public boolean greaterOrEqualsThan( Version other )
     {
-        if ( this.major != other.major )
-        {
-            return major >= other.major;
-        }
-
-        if ( this.minor != other.minor )
-        {
-            return this.minor >= other.minor;
-        }
-
-        if ( this.micro != other.micro )
-        {
-            return this.micro >= other.micro;
-        }
-
-        return false;
+        return value >= other.value;
     }
 
     /**
@@ -162,22 +144,7 @@ public class Version
      */
     public boolean lesserThan( Version other )
     {
-        if ( this.major != other.major )
-        {
-            return major < other.major;
-        }
-
-        if ( this.minor != other.minor )
-        {
-            return this.minor < other.minor;
-        }
-
-        if ( this.micro != other.micro )
-        {
-            return this.micro < other.micro;
-        }
-
-        return false;
+        return value < other.value;
     }
 
     /**
@@ -187,40 +154,16 @@ public class Version
      */
     public boolean lesserOrEqualsThan( Version other )
     {
-        if ( this.major != other.major )
-        {
-            return major <= other.major;
-        }
-
-        if ( this.minor != other.minor )
-        {
-            return this.minor <= other.minor;
-        }
-
-        if ( this.micro != other.micro )
-        {
-            return this.micro <= other.micro;
-        }
-
-        return false;
+        return value <= other.value;
     }
 
     public boolean inside( VersionRange range )
     {
-        if ( range.getFromVersion().equals( this ) )
-        {
-            return true;
-        }
-        else if ( ( this.greaterThan( range.getFromVersion() ) ) && ( this.lesserThan( range.getToVersion() ) ) )
-        {
-            return true;
-        }
-        else if ( this.equals( range.getFromVersion() ) || this.equals( range.getToVersion() ) )
-        {
-            return true;
-        }
+        long from = range.getFromVersion().value;
+
+        long to = range.getToVersion().value;
 
-        return false;
+        return value == from || value == to || ( value > from && value < to );
     }
 
     // ----------------------------------------------------------------------
@@ -236,12 +179,20 @@ public class Version
 
         Version other = (Version) object;
 
-        return this.major == other.major && this.minor == other.minor && this.micro == other.micro;
+        return this.value == other.value;
     }
 
     public int hashCode()
     {
-        return toString( "", null ).hashCode();
+        return (int) ( value ^ ( value >>> 32 ) );
+    }
+
+    /**
+     * Keeps {@link #INFINITE} unique when a model is deserialized.
+     */
+    private Object readResolve()
+    {
+        return equals( INFINITE ) ? INFINITE : this;
     }
 
     public String toString()
@@ -251,16 +202,16 @@ public class Version
 
     public String toString( String prefix, String separator )
     {
-        return prefix + major + separator + minor + separator + micro;
+        return prefix + getMajor() + separator + getMinor() + separator + getMicro();
     }
 
     public int compareTo( Version otherVersion )
     {
-        if ( greaterThan( otherVersion ) )
+        if ( value > otherVersion.value )
         {
             return +1;
         }
-        else if ( equals( otherVersion ) )
+        else if ( value == otherVersion.value )
         {
             return 0;
         }
@@ -22,7 +22,10 @@ package org.codehaus.modello.model;
  * SOFTWARE.
  */
 
+import java.io.Serializable;
+
 public class VersionDefinition
+    implements Serializable
 {
     private String type;
 
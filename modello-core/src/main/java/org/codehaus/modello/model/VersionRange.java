@@ -22,6 +22,8 @@ package org.codehaus.modello.model;
  * SOFTWARE.
  */
 
+import java.io.Serializable;
+
 /**
  * A version range. Can be of 3 forms:<ul>
  * <li><code>x.y.z</code>: a range of only one precise version,</li>
@@ -32,6 +34,7 @@ package org.codehaus.modello.model;
  * @version $Id$
  */
 public class VersionRange
+    implements Serializable
 {
     private static final String VERSION_SEPARATOR = "/";
 
@@ -91,7 +94,7 @@ public class VersionRange
 
     public int hashCode()
     {
-        return fromVersion.hashCode() + toVersion.hashCode();
+        return 31 * fromVersion.hashCode() + toVersion.hashCode();
     }
 
     public boolean equals( Object obj )
@@ -0,0 +1,105 @@
+package org.codehaus.modello.model;
+
+/*
+ * Copyright (c) 2004, Codehaus.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * The elements with the same name in a model, sorted by the start of their version range. Version ranges of
+ * elements with the same name don't overlap, then the element for a version range is found by binary search.
+ *
+ * @version $Id$
+ * @since 1.5
+ */
+class VersionRangeIndex<T extends BaseElement>
+    implements Iterable<T>
+{
+    private final List<T> elements = new ArrayList<T>( 2 );
+
+    void add( T element )
+    {
+        int index = indexOf( element.getVersionRange().getFromVersion() );
+
+        // after the elements starting before or with this one, to keep insertion order for equal starts
+        elements.add( index + 1, element );
+    }
+
+    /**
+     * Get the element whose version range contains the given version range.
+     *
+     * @param versionRange the version range
+     * @return the element, or <code>null</code> if no element contains the version range
+     */
+    T get( VersionRange versionRange )
+    {
+        int index = indexOf( versionRange.getFromVersion() );
+
+        if ( index < 0 )
+        {
+            return null;
+        }
+
+        T element = elements.get( index );
+
+        if ( versionRange.getFromVersion().inside( element.getVersionRange() )
+            && versionRange.getToVersion().inside( element.getVersionRange() ) )
+        {
+            return element;
+        }
+
+        return null;
+    }
+
+    public Iterator<T> iterator()
+    {
+        return elements.iterator();
+    }
+
+    /**
+     * @return the index of the last element starting before or with the version, or -1 if there is none
+     */
+    private int indexOf( Version version )
+    {
+        int low = 0;
+
+        int high = elements.size() - 1;
+
+        while ( low <= high )
+        {
+            int middle = ( low + high ) >>> 1;
+
+            if ( elements.get( middle ).getVersionRange().getFromVersion().greaterThan( version ) )
+            {
+                high = middle - 1;
+            }
+            else
+            {
+                low = middle + 1;
+            }
+        }
+
+        return high;
+    }
+}
@@ -23,14 +23,20 @@ package org.codehaus.modello.plugin;
  */
 
 import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Properties;
+import java.util.regex.Pattern;
 
 import org.codehaus.modello.ModelloException;
+import org.codehaus.modello.ModelloListener;
+import org.codehaus.modello.PhaseMeasure;
 import org.codehaus.modello.ModelloParameterConstants;
 import org.codehaus.modello.ModelloRuntimeException;
 import org.codehaus.modello.model.Model;
@@ -47,7 +53,9 @@ import org.codehaus.plexus.context.Context;
 import org.codehaus.plexus.context.ContextException;
 import org.codehaus.plexus.logging.AbstractLogEnabled;
 import org.codehaus.plexus.personality.plexus.lifecycle.phase.Contextualizable;
+import org.codehaus.plexus.util.IOUtil;
 import org.codehaus.plexus.util.StringUtils;
+import org.codehaus.plexus.util.WriterFactory;
 
 /**
  * @author <a href="mailto:jason@modello.org">Jason van Zyl</a>
@@ -60,6 +68,9 @@ public abstract class AbstractModelloGenerator
 {
     private static final DateFormat DATE_FORMAT = new SimpleDateFormat( "yyyy-MM-dd HH:mm:ss" );
 
+    private static final Pattern HEADER_TIMESTAMP =
+        Pattern.compile( " on \\d{4}-\\d{2}-\\d{2} \\d{2}:\\d{2}:\\d{2}," );
+
     private Model model;
 
     private File outputDirectory;
@@ -70,8 +81,14 @@ public abstract class AbstractModelloGenerator
 
     private String encoding;
 
+    private boolean timestamp;
+
     private BuildContext buildContext;
 
+    private String generatorId;
+
+    private ModelloListener listener;
+
     protected void initialize( Model model, Properties parameters )
         throws ModelloException
     {
@@ -87,6 +104,9 @@ public abstract class AbstractModelloGenerator
             getParameter( parameters, ModelloParameterConstants.PACKAGE_WITH_VERSION ) ).booleanValue();
 
         encoding = parameters.getProperty( ModelloParameterConstants.ENCODING );
+
+        timestamp = Boolean.valueOf(
+            getParameter( parameters, ModelloParameterConstants.OUTPUT_TIMESTAMP, "true" ) ).booleanValue();
     }
 
     protected Model getModel()
@@ -114,16 +134,113 @@ public abstract class AbstractModelloGenerator
         return encoding;
     }
 
+    /**
+     * @return <code>true</code> if the generation date is written in the header
+     */
+    protected boolean isTimestamp()
+    {
+        return timestamp;
+    }
+
     protected String getHeader()
     {
         String version = getClass().getPackage().getImplementationVersion();
+
+        String date = "";
+        if ( timestamp )
+        {
+            // DateFormat is not thread-safe and generators may print headers concurrently
+            synchronized ( DATE_FORMAT )
+            {
+                date = " on " + DATE_FORMAT.format( new Date() );
+            }
+        }
+
         return "=================== DO NOT EDIT THIS FILE ====================\n"
-            + "Generated by Modello" + ( ( version == null ) ? "" : ( ' ' + version ) ) + " on "
-            + DATE_FORMAT.format( new Date() ) + ",\n"
+            + "Generated by Modello" + ( ( version == null ) ? "" : ( ' ' + version ) ) + date + ",\n"
             + "any modifications will be overwritten.\n"
             + "==============================================================";
     }
 
+    /**
+     * Remove the generation date from generated content, to compare it with content generated at another time.
+     *
+     * @param content content starting with the header
+     * @return the content without generation date
+     * @see #getHeader()
+     */
+    protected String removeHeaderTimestamp( String content )
+    {
+        return HEADER_TIMESTAMP.matcher( content ).replaceFirst( "," );
+    }
+
+    /**
+     * Set the listener to notify of the measures of this generator.
+     *
+     * @param generatorId the id of this generator, given to the listener
+     * @param listener the listener, or <code>null</code> to measure nothing
+     * @since 1.5
+     */
+    public void setListener( String generatorId, ModelloListener listener )
+    {
+        this.generatorId = generatorId;
+        this.listener = listener;
+    }
+
+    /**
+     * @return <code>true</code> if a listener is notified of the measures of this generator
+     * @since 1.5
+     */
+    protected boolean isMeasured()
+    {
+        return listener != null;
+    }
+
+    /**
+     * Start measuring a phase.
+     *
+     * @return the measure, or <code>null</code> if no listener is notified of the measures of this generator
+     * @since 1.5
+     */
+    protected PhaseMeasure startPhase()
+    {
+        return ( listener == null ) ? null : new PhaseMeasure();
+    }
+
+    /**
+     * Notify the listener that a phase has completed, then start measuring the next one with the same measure.
+     *
+     * @param phase the phase, see {@link ModelloListener}
+     * @param element the name of the model element
+     * @param measure the measure returned by {@link #startPhase()}
+     * @since 1.5
+     */
+    protected void phaseCompleted( String phase, String element, PhaseMeasure measure )
+    {
+        if ( ( listener != null ) && ( measure != null ) )
+        {
+            listener.phaseCompleted( generatorId, phase, element, measure.getNanos(), measure.getAllocatedBytes() );
+
+            measure.restart();
+        }
+    }
+
+    /**
+     * Notify the listener that a file has been generated.
+     *
+     * @param file the generated file
+     * @param bytes the size of the generated content
+     * @param written <code>false</code> if the existing file was kept
+     * @since 1.5
+     */
+    protected void fileGenerated( File file, long bytes, boolean written )
+    {
+        if ( listener != null )
+        {
+            listener.fileGenerated( generatorId, file, bytes, written );
+        }
+    }
+
     protected boolean isClassInModel( String fieldType, Model model )
     {
         try
@@ -297,4 +414,36 @@ public abstract class AbstractModelloGenerator
     {
         return buildContext;
     }
+
+    /**
+     * Write a generated file through the build context. Generators for several versions may run concurrently and
+     * share the build context, which is not thread-safe: every generated file is written through this method, one at
+     * a time.
+     *
+     * @param f the file to write
+     * @param content the content of the file
+     * @param encoding the encoding of the file, or <code>null</code> for the platform encoding
+     * @throws IOException
+     * @since 1.5
+     */
+    protected void writeFile( File f, String content, String encoding )
+        throws IOException
+    {
+        synchronized ( buildContext )
+        {
+            OutputStream os = buildContext.newFileOutputStream( f );
+
+            Writer writer = ( encoding == null ) ? WriterFactory.newPlatformWriter( os )
+                            : WriterFactory.newWriter( os, encoding );
+
+            try
+            {
+                writer.write( content );
+            }
+            finally
+            {
+                IOUtil.close( writer );
+            }
+        }
+    }
 }
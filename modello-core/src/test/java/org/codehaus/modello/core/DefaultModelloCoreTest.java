@@ -22,6 +22,9 @@ package org.codehaus.modello.core;
  * SOFTWARE.
  */
 
+import java.io.StringWriter;
+
+import org.codehaus.modello.ModelloListener;
 import org.codehaus.modello.ModelloRuntimeException;
 import org.codehaus.plexus.PlexusTestCase;
 
@@ -82,4 +85,51 @@ public class DefaultModelloCoreTest
             assertEquals( "Duplicate field in MyClass: MyAssociation.", ex.getMessage() );
         }
     }
+
+    public void testListener()
+        throws Exception
+    {
+        AbstractModelloCore modello = (AbstractModelloCore) lookup( ModelloCore.ROLE );
+
+        ModelloMetrics metrics = new ModelloMetrics();
+
+        modello.addListener( metrics );
+
+        try
+        {
+            modello.loadModel( getTestFile( "src/test/resources/models/simple.mdo" ) );
+        }
+        finally
+        {
+            modello.removeListener( metrics );
+        }
+
+        String report = toReport( metrics );
+
+        String[] phases = { ModelloListener.PARSE, ModelloListener.UPGRADE, ModelloListener.METADATA,
+            ModelloListener.VALIDATE };
+
+        for ( int i = 0; i < phases.length; i++ )
+        {
+            assertTrue( "Missing phase " + phases[i] + " in:\n" + report, report.contains( phases[i] ) );
+        }
+
+        // counted on HotSpot, -1 elsewhere
+        assertTrue( metrics.getAllocatedBytes( null, ModelloListener.PARSE ) != 0 );
+
+        // not notified anymore
+        modello.loadModel( getTestFile( "src/test/resources/models/simple.mdo" ) );
+
+        assertEquals( report, toReport( metrics ) );
+    }
+
+    private String toReport( ModelloMetrics metrics )
+        throws Exception
+    {
+        StringWriter report = new StringWriter();
+
+        metrics.writeReport( report );
+
+        return report.toString();
+    }
 }
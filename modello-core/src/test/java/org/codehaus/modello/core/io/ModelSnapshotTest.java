@@ -0,0 +1,95 @@
+package org.codehaus.modello.core.io;
+
+/*
+ * Copyright (c) 2004, Jason van Zyl
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import org.codehaus.modello.core.ModelloCore;
+import org.codehaus.modello.model.Model;
+import org.codehaus.modello.model.ModelClass;
+import org.codehaus.modello.model.ModelField;
+import org.codehaus.modello.model.Version;
+import org.codehaus.modello.model.VersionRange;
+import org.codehaus.plexus.PlexusTestCase;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.ReaderFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+
+/**
+ * @version $Id$
+ */
+public class ModelSnapshotTest
+    extends PlexusTestCase
+{
+    public void testSnapshot()
+        throws Exception
+    {
+        ModelloCore modello = (ModelloCore) lookup( ModelloCore.ROLE );
+
+        byte[] content = FileUtils.fileRead( getTestFile( "src/test/resources/models/simple.mdo" ) ).getBytes( "UTF-8" );
+
+        Model model = modello.loadModel( ReaderFactory.newXmlReader( new ByteArrayInputStream( content ) ) );
+
+        File snapshotFile = getTestFile( "target/snapshots/simple.ser" );
+
+        snapshotFile.delete();
+
+        ModelSnapshot snapshot = new ModelSnapshot( modello );
+
+        assertNull( snapshot.read( snapshotFile, content ) );
+
+        snapshot.write( snapshotFile, content, model );
+
+        Model read = snapshot.read( snapshotFile, content );
+
+        assertNotNull( read );
+
+        assertNotSame( model, read );
+
+        assertEquals( "simple", read.getId() );
+
+        assertEquals( "foo.bar", read.getDefaultPackageName( false, null ) );
+
+        // needs the model metadata
+        assertEquals( "Boy", read.getRoot( new Version( "1.0.0" ) ) );
+
+        assertEquals( 2, read.getClasses( new Version( "1.0.0" ) ).size() );
+
+        ModelClass boy = read.getClass( "Boy", new VersionRange( "1.0.0" ) );
+
+        assertSame( read, boy.getModel() );
+
+        ModelField name = boy.getField( "name", new VersionRange( "1.0.0" ) );
+
+        assertSame( boy, name.getModelClass() );
+
+        assertTrue( name.isIdentifier() );
+
+        ModelField age = read.getClass( "Girl", new Version( "1.0.0" ) ).getField( "age", new Version( "1.0.0" ) );
+
+        assertTrue( age.getVersionRange().isToInfinite() );
+
+        // the snapshot is out of date when the model content changes
+        assertNull( snapshot.read( snapshotFile, new String( content, "UTF-8" ).replace( "Boy", "Man" ).getBytes() ) );
+    }
+}
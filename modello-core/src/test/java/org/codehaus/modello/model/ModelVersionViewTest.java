@@ -0,0 +1,160 @@
+package org.codehaus.modello.model;
+
+/*
+ * Copyright (c) 2004, Jason van Zyl
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * @version $Id$
+ */
+public class ModelVersionViewTest
+    extends TestCase
+{
+    private Model model;
+
+    protected void setUp()
+        throws Exception
+    {
+        super.setUp();
+
+        model = new Model();
+
+        model.addClass( newClass( "Base", "1.0.0+" ) );
+
+        ModelClass child = newClass( "Child", "2.0.0+" );
+
+        child.setSuperClass( "Base" );
+
+        model.addClass( child );
+
+        model.initialize();
+
+        child.validateElement();
+    }
+
+    private ModelClass newClass( String name, String versionRange )
+    {
+        ModelClass modelClass = new ModelClass( model, name );
+
+        modelClass.setVersionRange( new VersionRange( versionRange ) );
+
+        modelClass.addField( newField( modelClass, name.toLowerCase() + "Id", "1.0.0+", true ) );
+
+        modelClass.addField( newField( modelClass, name.toLowerCase() + "Name", "2.0.0+", false ) );
+
+        return modelClass;
+    }
+
+    private ModelField newField( ModelClass modelClass, String name, String versionRange, boolean identifier )
+    {
+        ModelField field = new ModelField( modelClass, name );
+
+        field.setVersionRange( new VersionRange( versionRange ) );
+
+        field.setIdentifier( identifier );
+
+        return field;
+    }
+
+    public void testClasses()
+    {
+        Version version = new Version( "1.0.0" );
+
+        List<ModelClass> classes = model.getClasses( version );
+
+        assertEquals( 1, classes.size() );
+
+        assertSame( "The classes of a version should be computed once.", classes, model.getClasses( version ) );
+
+        assertEquals( 2, model.getClasses( new Version( "2.0.0" ) ).size() );
+
+        try
+        {
+            classes.clear();
+
+            fail( "The classes of a version can't be modified." );
+        }
+        catch ( UnsupportedOperationException e )
+        {
+            // expected
+        }
+    }
+
+    public void testFields()
+    {
+        Version version = new Version( "2.0.0" );
+
+        ModelClass child = model.getClass( "Child", version );
+
+        assertEquals( 2, child.getFields( version ).size() );
+
+        assertSame( child.getFields( version ), child.getFields( version ) );
+
+        assertEquals( 1, child.getIdentifierFields( version ).size() );
+
+        assertEquals( "childId", child.getIdentifierFields( version ).get( 0 ).getName() );
+
+        assertEquals( 4, child.getAllFields( version, true ).size() );
+
+        assertEquals( 1, model.getClass( "Base", new Version( "1.0.0" ) ).getFields( new Version( "1.0.0" ) ).size() );
+    }
+
+    public void testModelChanges()
+    {
+        Version version = new Version( "2.0.0" );
+
+        ModelClass base = model.getClass( "Base", version );
+
+        List<ModelClass> classes = model.getClasses( version );
+
+        assertEquals( 4, model.getClass( "Child", version ).getAllFields( version, true ).size() );
+
+        base.addField( newField( base, "baseDescription", "2.0.0+", false ) );
+
+        assertEquals( 3, base.getFields( version ).size() );
+
+        assertEquals( "Inherited fields should be updated.", 5,
+                      model.getClass( "Child", version ).getAllFields( version, true ).size() );
+
+        model.addClass( newClass( "Other", "1.0.0+" ) );
+
+        assertNotSame( classes, model.getClasses( version ) );
+
+        assertEquals( 3, model.getClasses( version ).size() );
+    }
+
+    public void testDetachedClass()
+    {
+        Version version = new Version( "1.0.0" );
+
+        ModelClass detached = newClass( "Detached", "1.0.0+" );
+
+        assertEquals( 1, detached.getFields( version ).size() );
+
+        detached.addField( newField( detached, "other", "1.0.0+", false ) );
+
+        assertEquals( 2, detached.getFields( version ).size() );
+    }
+}
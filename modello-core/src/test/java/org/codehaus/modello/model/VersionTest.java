@@ -94,6 +94,75 @@ public class VersionTest
         assertGreaterThan( "0.0.2", "0.0.1" );
     }
 
+    public void testPartsLimits()
+    {
+        Version version = new Version( "-1.32767.0" );
+
+        assertEquals( -1, version.getMajor() );
+
+        assertEquals( 32767, version.getMinor() );
+
+        assertEquals( 0, version.getMicro() );
+
+        assertEquals( "-1.32767.0", version.toString() );
+
+        assertGreaterThan( "0.0.0", "-1.32767.32767" );
+
+        assertGreaterThan( "1.0.0", "0.32767.32767" );
+
+        assertTrue( Version.INFINITE.greaterThan( new Version( "32767.32767.32766" ) ) );
+    }
+
+    public void testEqualsAndHashCode()
+    {
+        assertEquals( new Version( "1.2.3" ), new Version( "1.2.3" ) );
+
+        assertEquals( new Version( "1.2.3" ).hashCode(), new Version( "1.2.3" ).hashCode() );
+
+        assertEquals( 0, new Version( "1.2" ).compareTo( new Version( "1.2.0" ) ) );
+
+        assertEquals( -1, new Version( "1.2.3" ).compareTo( new Version( "1.3.0" ) ) );
+
+        assertEquals( new VersionRange( "1.0.0+" ), new VersionRange( "1.0.0+" ) );
+
+        assertEquals( new VersionRange( "1.0.0+" ).hashCode(), new VersionRange( "1.0.0+" ).hashCode() );
+    }
+
+    public void testVersionRangeIndex()
+    {
+        VersionRangeIndex<ModelField> index = new VersionRangeIndex<ModelField>();
+
+        // added out of order
+        index.add( newField( "2.0.0/2.9.9" ) );
+
+        index.add( newField( "3.0.0+" ) );
+
+        index.add( newField( "1.0.0/1.9.9" ) );
+
+        assertNull( index.get( new VersionRange( "0.9.0" ) ) );
+
+        assertEquals( "1.0.0/1.9.9", index.get( new VersionRange( "1.0.0" ) ).getDescription() );
+
+        assertEquals( "1.0.0/1.9.9", index.get( new VersionRange( "1.9.9" ) ).getDescription() );
+
+        assertEquals( "2.0.0/2.9.9", index.get( new VersionRange( "2.5.0" ) ).getDescription() );
+
+        assertEquals( "3.0.0+", index.get( new VersionRange( "4.0.0+" ) ).getDescription() );
+
+        assertNull( "A range over several elements has no element.", index.get( new VersionRange( "1.5.0/2.5.0" ) ) );
+    }
+
+    private ModelField newField( String versionRange )
+    {
+        ModelField field = new ModelField( null, "field" );
+
+        field.setVersionRange( new VersionRange( versionRange ) );
+
+        field.setDescription( versionRange );
+
+        return field;
+    }
+
     private void assertGreaterThan( String foo, String bar )
     {
         assertTrue( new Version( foo ).greaterThan( new Version( bar ) ) );
@@ -24,11 +24,18 @@ package org.codehaus.modello.maven;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.maven.model.Resource;
 import org.apache.maven.plugin.AbstractMojo;
@@ -36,11 +43,15 @@ import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.project.MavenProject;
 import org.codehaus.modello.ModelloException;
 import org.codehaus.modello.ModelloParameterConstants;
+import org.codehaus.modello.core.AbstractModelloCore;
 import org.codehaus.modello.core.ModelloCore;
+import org.codehaus.modello.core.ModelloMetrics;
 import org.codehaus.modello.model.Model;
 import org.codehaus.modello.model.ModelValidationException;
 import org.sonatype.plexus.build.incremental.BuildContext;
+import org.codehaus.plexus.util.IOUtil;
 import org.codehaus.plexus.util.StringUtils;
+import org.codehaus.plexus.util.WriterFactory;
 
 /**
  * @author <a href="mailto:trygvis@inamo.no">Trygve Laugst&oslash;l</a>
@@ -127,6 +138,68 @@ public abstract class AbstractModelloGeneratorMojo
      */
     private boolean useJava5;
 
+    /**
+     * Number of threads a generator may use to build and print sources concurrently. The default value generates
+     * sources serially.
+     *
+     * @parameter expression="${modello.generationThreads}" default-value="1"
+     * @since 1.5
+     */
+    private int generationThreads = 1;
+
+    /**
+     * Number of versions, among the current version and the packaged versions, to generate concurrently. The default
+     * value generates versions one after the other.
+     *
+     * @parameter expression="${modello.versionThreads}" default-value="1"
+     * @since 1.5
+     */
+    private int versionThreads = 1;
+
+    /**
+     * Write the generation date in the header of generated files. Without it, generating again from an unchanged
+     * model gives identical files.
+     *
+     * @parameter expression="${modello.outputTimestamp}" default-value="true"
+     * @since 1.5
+     */
+    private boolean outputTimestamp = true;
+
+    /**
+     * Generate writers producing minimal documents: without indentation and without the fields equal to their default
+     * value. The documents are still read by the generated readers.
+     *
+     * @parameter expression="${modello.compactOutput}" default-value="false"
+     * @since 1.5
+     */
+    private boolean compactOutput;
+
+    /**
+     * Store validated models in binary snapshots, reused by next builds while the model file is unchanged, instead
+     * of reading and validating the model file again.
+     *
+     * @parameter expression="${modello.useModelSnapshots}" default-value="false"
+     * @since 1.5
+     */
+    private boolean useModelSnapshots;
+
+    /**
+     * The directory of model snapshots.
+     *
+     * @parameter expression="${modello.snapshotDirectory}" default-value="${project.build.directory}/modello-snapshots"
+     * @since 1.5
+     */
+    private File modelSnapshotDirectory;
+
+    /**
+     * File to append a report of the time spent in each phase of model loading and generation, and of the size of
+     * generated files. No report is written by default.
+     *
+     * @parameter expression="${modello.metricsReport}"
+     * @since 1.5
+     */
+    private File metricsReport;
+
     /** @component */
     private BuildContext buildContext;
 
@@ -136,6 +209,28 @@ public abstract class AbstractModelloGeneratorMojo
 
     protected abstract String getGeneratorType();
 
+    /**
+     * Gives the generators to run on each model: the model is loaded once and given to each of them.
+     *
+     * @return the generator types, by default the single {@link #getGeneratorType()}
+     * @since 1.5
+     */
+    protected List<String> getGeneratorTypes()
+    {
+        return Collections.singletonList( getGeneratorType() );
+    }
+
+    /**
+     * Gives the number of generator types to run concurrently for each version.
+     *
+     * @return the number of threads, by default 1 to run them one after the other
+     * @since 1.5
+     */
+    protected int getGeneratorThreads()
+    {
+        return 1;
+    }
+
     public abstract File getOutputDirectory();
 
     protected boolean producesCompilableResult()
@@ -202,6 +297,12 @@ public abstract class AbstractModelloGeneratorMojo
 
         parameters.setProperty( ModelloParameterConstants.USE_JAVA5, Boolean.toString( useJava5 ) );
 
+        parameters.setProperty( ModelloParameterConstants.GENERATION_THREADS, Integer.toString( generationThreads ) );
+
+        parameters.setProperty( ModelloParameterConstants.OUTPUT_TIMESTAMP, Boolean.toString( outputTimestamp ) );
+
+        parameters.setProperty( ModelloParameterConstants.COMPACT_OUTPUT, Boolean.toString( compactOutput ) );
+
         if ( encoding != null )
         {
             parameters.setProperty( ModelloParameterConstants.ENCODING, encoding );
@@ -213,12 +314,33 @@ public abstract class AbstractModelloGeneratorMojo
         //
         // ----------------------------------------------------------------------
 
+        ModelloMetrics metrics = null;
+
+        if ( metricsReport != null )
+        {
+            if ( modelloCore instanceof AbstractModelloCore )
+            {
+                metrics = new ModelloMetrics();
+
+                ( (AbstractModelloCore) modelloCore ).addListener( metrics );
+            }
+            else
+            {
+                getLog().warn( "Metrics are not reported by " + modelloCore.getClass().getName() );
+            }
+        }
+
         try
         {
             for ( int i = 0; i < models.length; i++ )
             {
                 doExecute( models[i], outputDirectory, parameters );
             }
+
+            if ( metrics != null )
+            {
+                writeMetricsReport( metrics );
+            }
         }
         catch ( FileNotFoundException e )
         {
@@ -236,6 +358,44 @@ public abstract class AbstractModelloGeneratorMojo
         {
             throw new MojoExecutionException( "Couldn't read file.", e );
         }
+        finally
+        {
+            if ( metrics != null )
+            {
+                ( (AbstractModelloCore) modelloCore ).removeListener( metrics );
+            }
+        }
+    }
+
+    private void writeMetricsReport( ModelloMetrics metrics )
+        throws MojoExecutionException
+    {
+        // other executions may have already reported to the same file
+        metricsReport.getParentFile().mkdirs();
+
+        Writer writer = null;
+
+        try
+        {
+            writer = WriterFactory.newWriter( new FileOutputStream( metricsReport, true ), "UTF-8" );
+
+            writer.write( "Modello " + StringUtils.join( getGeneratorTypes().iterator(), ", " ) + " on "
+                + StringUtils.join( models, ", " ) + "\n\n" );
+
+            metrics.writeReport( writer );
+
+            writer.write( "\n" );
+        }
+        catch ( IOException e )
+        {
+            throw new MojoExecutionException( "Couldn't write metrics report " + metricsReport + ".", e );
+        }
+        finally
+        {
+            IOUtil.close( writer );
+        }
+
+        getLog().info( "Modello metrics report: " + metricsReport );
     }
 
     /**
@@ -259,20 +419,57 @@ public abstract class AbstractModelloGeneratorMojo
 
         getLog().info( "Working on model: " + modelStr );
 
-        Model model = modelloCore.loadModel( new File( basedir, modelStr ) );
+        File snapshotDirectory = useModelSnapshots ? modelSnapshotDirectory : null;
+
+        ModelCache modelCache = ModelCache.getInstance( getPluginContext() );
+
+        Model model = modelCache.loadModel( modelloCore, new File( basedir, modelStr ), snapshotDirectory );
 
         // TODO: dynamically resolve/load the generator type
-        getLog().info( "Generating current version: " + version );
-        modelloCore.generate( model, getGeneratorType(), parameters );
+        List<Properties> versionParameters = new ArrayList<Properties>();
+
+        versionParameters.add( copyParameters( parameters ) );
 
         for ( String version : packagedVersions )
         {
-            parameters.setProperty( ModelloParameterConstants.VERSION, version );
+            Properties packagedParameters = copyParameters( parameters );
+
+            packagedParameters.setProperty( ModelloParameterConstants.VERSION, version );
+
+            packagedParameters.setProperty( ModelloParameterConstants.PACKAGE_WITH_VERSION, Boolean.toString( true ) );
+
+            versionParameters.add( packagedParameters );
+        }
+
+        List<String> generatorTypes = getGeneratorTypes();
+
+        List<Generation> generations = new ArrayList<Generation>();
+
+        for ( int i = 0; i < versionParameters.size(); i++ )
+        {
+            for ( String generatorType : generatorTypes )
+            {
+                Properties generatorParameters = copyParameters( versionParameters.get( i ) );
+
+                generations.add( new Generation( generatorType, generatorParameters, i == 0 ) );
+            }
+        }
 
-            parameters.setProperty( ModelloParameterConstants.PACKAGE_WITH_VERSION, Boolean.toString( true ) );
+        int threads = Math.min( Math.max( versionThreads, 1 ) * Math.max( getGeneratorThreads(), 1 ),
+                                generations.size() );
 
-            getLog().info( "Generating packaged version: " + version );
-            modelloCore.generate( model, getGeneratorType(), parameters );
+        if ( threads > 1 )
+        {
+            generateConcurrently( model, generations, threads );
+        }
+        else
+        {
+            for ( Generation generation : generations )
+            {
+                logGeneration( generation, generatorTypes.size() > 1 );
+
+                modelloCore.generate( model, generation.generatorType, generation.parameters );
+            }
         }
 
         if ( producesCompilableResult() && project != null )
@@ -288,6 +485,126 @@ public abstract class AbstractModelloGeneratorMojo
         }
     }
 
+    /**
+     * Runs the generations on worker threads: ModelloCore uses a new generator instance for each call, and each
+     * generation gets its own copy of the parameters.
+     */
+    private void generateConcurrently( final Model model, List<Generation> generations, int threads )
+        throws ModelloException
+    {
+        ExecutorService executor = Executors.newFixedThreadPool( threads );
+
+        boolean multipleGenerators = getGeneratorTypes().size() > 1;
+
+        try
+        {
+            List<Future<?>> futures = new ArrayList<Future<?>>( generations.size() );
+
+            for ( final Generation generation : generations )
+            {
+                logGeneration( generation, multipleGenerators );
+
+                futures.add( executor.submit( new Callable<Object>()
+                {
+                    public Object call()
+                        throws ModelloException
+                    {
+                        modelloCore.generate( model, generation.generatorType, generation.parameters );
+
+                        return null;
+                    }
+                } ) );
+            }
+
+            for ( Future<?> future : futures )
+            {
+                waitFor( future );
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    private void waitFor( Future<?> generation )
+        throws ModelloException
+    {
+        try
+        {
+            generation.get();
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+
+            throw new ModelloException( "Interrupted while generating.", e );
+        }
+        catch ( ExecutionException e )
+        {
+            Throwable cause = e.getCause();
+
+            if ( cause instanceof ModelloException )
+            {
+                throw (ModelloException) cause;
+            }
+            else if ( cause instanceof RuntimeException )
+            {
+                throw (RuntimeException) cause;
+            }
+            else if ( cause instanceof Error )
+            {
+                throw (Error) cause;
+            }
+
+            throw new ModelloException( "Error generating.", cause );
+        }
+    }
+
+    private void logGeneration( Generation generation, boolean multipleGenerators )
+    {
+        String version = generation.parameters.getProperty( ModelloParameterConstants.VERSION );
+
+        String generator = multipleGenerators ? " [" + generation.generatorType + "]" : "";
+
+        if ( generation.current )
+        {
+            getLog().info( "Generating current version: " + version + generator );
+        }
+        else
+        {
+            getLog().info( "Generating packaged version: " + version + generator );
+        }
+    }
+
+    private Properties copyParameters( Properties parameters )
+    {
+        Properties copy = new Properties();
+
+        copy.putAll( parameters );
+
+        return copy;
+    }
+
+    /**
+     * One generator to run on a version of the model.
+     */
+    private static class Generation
+    {
+        private final String generatorType;
+
+        private final Properties parameters;
+
+        private final boolean current;
+
+        Generation( String generatorType, Properties parameters, boolean current )
+        {
+            this.generatorType = generatorType;
+            this.parameters = parameters;
+            this.current = current;
+        }
+    }
+
     // ----------------------------------------------------------------------
     // Accessors
     // ----------------------------------------------------------------------
@@ -332,6 +649,66 @@ public abstract class AbstractModelloGeneratorMojo
         this.modelloCore = modelloCore;
     }
 
+    public int getGenerationThreads()
+    {
+        return generationThreads;
+    }
+
+    public void setGenerationThreads( int generationThreads )
+    {
+        this.generationThreads = generationThreads;
+    }
+
+    public boolean isOutputTimestamp()
+    {
+        return outputTimestamp;
+    }
+
+    public void setOutputTimestamp( boolean outputTimestamp )
+    {
+        this.outputTimestamp = outputTimestamp;
+    }
+
+    public int getVersionThreads()
+    {
+        return versionThreads;
+    }
+
+    public void setVersionThreads( int versionThreads )
+    {
+        this.versionThreads = versionThreads;
+    }
+
+    public boolean isUseModelSnapshots()
+    {
+        return useModelSnapshots;
+    }
+
+    public void setUseModelSnapshots( boolean useModelSnapshots )
+    {
+        this.useModelSnapshots = useModelSnapshots;
+    }
+
+    public File getModelSnapshotDirectory()
+    {
+        return modelSnapshotDirectory;
+    }
+
+    public void setModelSnapshotDirectory( File modelSnapshotDirectory )
+    {
+        this.modelSnapshotDirectory = modelSnapshotDirectory;
+    }
+
+    public File getMetricsReport()
+    {
+        return metricsReport;
+    }
+
+    public void setMetricsReport( File metricsReport )
+    {
+        this.metricsReport = metricsReport;
+    }
+
     public void setBuildContext( BuildContext context )
     {
         this.buildContext = context;
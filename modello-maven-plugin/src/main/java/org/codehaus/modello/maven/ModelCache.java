@@ -0,0 +1,237 @@
+package org.codehaus.modello.maven;
+
+/*
+ * Copyright (c) 2004, Codehaus.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.codehaus.modello.ModelloException;
+import org.codehaus.modello.ModelloRuntimeException;
+import org.codehaus.modello.core.ModelloCore;
+import org.codehaus.modello.core.io.ModelSnapshot;
+import org.codehaus.modello.model.Model;
+import org.codehaus.modello.model.ModelValidationException;
+import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.ReaderFactory;
+
+/**
+ * Cache of loaded models, shared by every Modello goal run on the same project in the same build: the same model is
+ * usually used by several goals, which would each parse, upgrade and validate it again.
+ * The cache is kept in the plugin context, which belongs to the Maven session: it is dropped with the session, and
+ * doesn't keep models, and the plugin classes they reference, in long-lived JVMs running several builds.
+ * An entry is reused only if the model file still has the same modification date, size and SHA-1 digest.
+ * Generators only read models, so a cached model can be used by several goals.
+ * Models can also be stored in binary snapshots, to be reused by the next builds.
+ *
+ * @version $Id$
+ */
+class ModelCache
+{
+    private static final int MAX_ENTRIES = 16;
+
+    private static final String PLUGIN_CONTEXT_KEY = ModelCache.class.getName();
+
+    private final Map<String, Entry> entries = new LinkedHashMap<String, Entry>( 16, 0.75f, true )
+    {
+        protected boolean removeEldestEntry( Map.Entry<String, Entry> eldest )
+        {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    /**
+     * Get the cache of a plugin context, creating it on first use.
+     *
+     * @param pluginContext the plugin context of the mojo, or <code>null</code> if the mojo is not run by Maven
+     * @return the cache of the plugin context, or a new cache if there is no plugin context
+     * @since 1.5
+     */
+    @SuppressWarnings( "unchecked" )
+    static ModelCache getInstance( Map pluginContext )
+    {
+        if ( pluginContext == null )
+        {
+            return new ModelCache();
+        }
+
+        synchronized ( pluginContext )
+        {
+            ModelCache cache = (ModelCache) pluginContext.get( PLUGIN_CONTEXT_KEY );
+
+            if ( cache == null )
+            {
+                cache = new ModelCache();
+
+                pluginContext.put( PLUGIN_CONTEXT_KEY, cache );
+            }
+
+            return cache;
+        }
+    }
+
+    /**
+     * Get a model from the cache, or load it with Modello core if the file is not in the cache or has changed.
+     *
+     * @param modelloCore the Modello core used to load the model
+     * @param file the model file
+     * @return the loaded and validated model
+     */
+    Model loadModel( ModelloCore modelloCore, File file )
+        throws IOException, ModelloException, ModelValidationException
+    {
+        return loadModel( modelloCore, file, null );
+    }
+
+    /**
+     * Get a model from the cache, or from its snapshot if the file is not in the cache or has changed, or load it with
+     * Modello core and write its snapshot if the snapshot is missing or out of date.
+     *
+     * @param modelloCore the Modello core used to load the model
+     * @param file the model file
+     * @param snapshotDirectory the directory containing model snapshots, or <code>null</code> to use no snapshot
+     * @return the loaded and validated model
+     * @since 1.5
+     */
+    Model loadModel( ModelloCore modelloCore, File file, File snapshotDirectory )
+        throws IOException, ModelloException, ModelValidationException
+    {
+        String key = file.getCanonicalPath();
+
+        long lastModified = file.lastModified();
+
+        byte[] content = read( file );
+
+        byte[] digest = digest( content );
+
+        synchronized ( entries )
+        {
+            Entry entry = entries.get( key );
+
+            if ( entry != null && entry.lastModified == lastModified && entry.length == content.length
+                && Arrays.equals( entry.digest, digest ) )
+            {
+                return entry.model;
+            }
+        }
+
+        Model model = null;
+
+        if ( snapshotDirectory != null )
+        {
+            ModelSnapshot snapshot = new ModelSnapshot( modelloCore );
+
+            File snapshotFile = getSnapshotFile( snapshotDirectory, file, key );
+
+            model = snapshot.read( snapshotFile, content );
+
+            if ( model == null )
+            {
+                model = modelloCore.loadModel( ReaderFactory.newXmlReader( new ByteArrayInputStream( content ) ) );
+
+                snapshot.write( snapshotFile, content, model );
+            }
+        }
+        else
+        {
+            model = modelloCore.loadModel( ReaderFactory.newXmlReader( new ByteArrayInputStream( content ) ) );
+        }
+
+        synchronized ( entries )
+        {
+            entries.put( key, new Entry( lastModified, content.length, digest, model ) );
+        }
+
+        return model;
+    }
+
+    private static File getSnapshotFile( File snapshotDirectory, File file, String key )
+    {
+        // the path hash keeps apart models with the same file name
+        return new File( snapshotDirectory, file.getName() + '-' + Integer.toHexString( key.hashCode() ) + ".ser" );
+    }
+
+    /**
+     * Empty the cache.
+     */
+    void clear()
+    {
+        synchronized ( entries )
+        {
+            entries.clear();
+        }
+    }
+
+    private static byte[] read( File file )
+        throws IOException
+    {
+        InputStream is = new FileInputStream( file );
+
+        try
+        {
+            return IOUtil.toByteArray( is );
+        }
+        finally
+        {
+            IOUtil.close( is );
+        }
+    }
+
+    private static byte[] digest( byte[] content )
+    {
+        try
+        {
+            return MessageDigest.getInstance( "SHA-1" ).digest( content );
+        }
+        catch ( NoSuchAlgorithmException e )
+        {
+            throw new ModelloRuntimeException( "SHA-1 digest is not available.", e );
+        }
+    }
+
+    private static class Entry
+    {
+        private final long lastModified;
+
+        private final long length;
+
+        private final byte[] digest;
+
+        private final Model model;
+
+        Entry( long lastModified, long length, byte[] digest, Model model )
+        {
+            this.lastModified = lastModified;
+            this.length = length;
+            this.digest = digest;
+            this.model = model;
+        }
+    }
+}
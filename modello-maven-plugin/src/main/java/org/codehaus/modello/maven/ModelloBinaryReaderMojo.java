@@ -0,0 +1,37 @@
+package org.codehaus.modello.maven;
+
+import java.io.File;
+
+/**
+ * Creates a binary reader from the model.
+ *
+ * @version $Id$
+ * @goal binary-reader
+ * @phase generate-sources
+ */
+public class ModelloBinaryReaderMojo
+    extends AbstractModelloGeneratorMojo
+{
+    /**
+     * The output directory of the generated binary reader.
+     *
+     * @parameter expression="${basedir}/target/generated-sources/modello"
+     * @required
+     */
+    private File outputDirectory;
+
+    protected String getGeneratorType()
+    {
+        return "binary-reader";
+    }
+
+    public File getOutputDirectory()
+    {
+        return outputDirectory;
+    }
+
+    public void setOutputDirectory( File outputDirectory )
+    {
+        this.outputDirectory = outputDirectory;
+    }
+}
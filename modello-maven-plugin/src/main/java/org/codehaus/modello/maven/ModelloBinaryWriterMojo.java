@@ -0,0 +1,37 @@
+package org.codehaus.modello.maven;
+
+import java.io.File;
+
+/**
+ * Creates a binary writer from the model.
+ *
+ * @version $Id$
+ * @goal binary-writer
+ * @phase generate-sources
+ */
+public class ModelloBinaryWriterMojo
+    extends AbstractModelloGeneratorMojo
+{
+    /**
+     * The output directory of the generated binary writer.
+     *
+     * @parameter expression="${basedir}/target/generated-sources/modello"
+     * @required
+     */
+    private File outputDirectory;
+
+    protected String getGeneratorType()
+    {
+        return "binary-writer";
+    }
+
+    public File getOutputDirectory()
+    {
+        return outputDirectory;
+    }
+
+    public void setOutputDirectory( File outputDirectory )
+    {
+        this.outputDirectory = outputDirectory;
+    }
+}
@@ -24,8 +24,10 @@ package org.codehaus.modello.maven;
 
 import org.apache.maven.plugin.MojoExecutionException;
 import org.codehaus.modello.plugin.ModelloGenerator;
+import org.codehaus.plexus.util.StringUtils;
 
 import java.io.File;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -78,6 +80,20 @@ import java.util.Map;
  *   &lt;/plugin&gt;
  * </pre>
  *
+ * <p>
+ * Several generators can also be run from a single execution, loading the model only once:
+ * </p>
+ * <pre>
+ *     &lt;configuration&gt;
+ *       &lt;generatorIds&gt;
+ *         &lt;generatorId&gt;java&lt;/generatorId&gt;
+ *         &lt;generatorId&gt;xpp3-reader&lt;/generatorId&gt;
+ *         &lt;generatorId&gt;xpp3-writer&lt;/generatorId&gt;
+ *       &lt;/generatorIds&gt;
+ *       &lt;generatorThreads&gt;3&lt;/generatorThreads&gt;
+ *     &lt;/configuration&gt;
+ * </pre>
+ *
  * @author <a href="mailto:joakim@erdfelt.com">Joakim Erdfelt</a>
  * @version $Id$
  *
@@ -98,6 +114,24 @@ public class ModelloGenerateMojo
      */
     private String generatorId;
 
+    /**
+     * Ids of the generators to run, instead of the single <code>generatorId</code>. The model is loaded once and given
+     * to every generator.
+     *
+     * @parameter
+     * @since 1.5
+     */
+    private List<String> generatorIds;
+
+    /**
+     * Number of generators from <code>generatorIds</code> to run concurrently. The default value runs them one after
+     * the other.
+     *
+     * @parameter expression="${modello.generatorThreads}" default-value="1"
+     * @since 1.5
+     */
+    private int generatorThreads = 1;
+
     /**
      * The output directory of the generated source files.
      *
@@ -111,21 +145,65 @@ public class ModelloGenerateMojo
         return generatorId;
     }
 
+    protected List<String> getGeneratorTypes()
+    {
+        if ( generatorIds == null || generatorIds.isEmpty() )
+        {
+            return super.getGeneratorTypes();
+        }
+
+        return generatorIds;
+    }
+
+    protected int getGeneratorThreads()
+    {
+        return generatorThreads;
+    }
+
     public File getOutputDirectory()
     {
         return outputDirectory;
     }
 
+    public void setOutputDirectory( File outputDirectory )
+    {
+        this.outputDirectory = outputDirectory;
+    }
+
+    public void setGeneratorMap( Map<String, ModelloGenerator> generatorMap )
+    {
+        this.generatorMap = generatorMap;
+    }
+
+    public void setGeneratorId( String generatorId )
+    {
+        this.generatorId = generatorId;
+    }
+
+    public void setGeneratorIds( List<String> generatorIds )
+    {
+        this.generatorIds = generatorIds;
+    }
+
+    public void setGeneratorThreads( int generatorThreads )
+    {
+        this.generatorThreads = generatorThreads;
+    }
+
     public void execute()
         throws MojoExecutionException
     {
-        if ( !generatorMap.containsKey( generatorId ) )
+        for ( String id : getGeneratorTypes() )
         {
-            throw new MojoExecutionException( "Unable to execute modello, generator id [" + generatorId
-                            + "] not found.  (Available generator ids : " + generatorMap.keySet() + ")" );
+            if ( !generatorMap.containsKey( id ) )
+            {
+                throw new MojoExecutionException( "Unable to execute modello, generator id [" + id
+                                + "] not found.  (Available generator ids : " + generatorMap.keySet() + ")" );
+            }
         }
 
-        getLog().info( "[modello:generate {generator: " + generatorId + "}]" );
+        getLog().info( "[modello:generate {generator: " + StringUtils.join( getGeneratorTypes().iterator(), ", " )
+                       + "}]" );
 
         super.execute();
     }
@@ -0,0 +1,121 @@
+package org.codehaus.modello.maven;
+
+/*
+ * Copyright (c) 2004, Codehaus.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.codehaus.modello.core.ModelloCore;
+import org.codehaus.modello.model.Model;
+import org.codehaus.modello.model.ModelClass;
+import org.codehaus.modello.model.Version;
+import org.codehaus.modello.plugin.java.metadata.JavaClassMetadata;
+import org.codehaus.modello.plugins.xml.metadata.XmlFieldMetadata;
+import org.codehaus.plexus.PlexusTestCase;
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * @version $Id$
+ */
+public class ModelCacheTest
+    extends PlexusTestCase
+{
+    public void testModelCache()
+        throws Exception
+    {
+        ModelloCore modelloCore = (ModelloCore) lookup( ModelloCore.ROLE );
+
+        File modelFile = getTestFile( "target/model-cache/java-model.mdo" );
+
+        FileUtils.copyFile( getTestFile( "src/test/resources/java-model.mdo" ), modelFile );
+
+        ModelCache cache = new ModelCache();
+
+        Model model = cache.loadModel( modelloCore, modelFile );
+
+        assertSame( "The unchanged model should be reused.", model, cache.loadModel( modelloCore, modelFile ) );
+
+        // same date and size, but different content
+        long lastModified = modelFile.lastModified();
+
+        String content = FileUtils.fileRead( modelFile );
+
+        FileUtils.fileWrite( modelFile.getPath(), content.replace( "Model", "Modem" ) );
+
+        modelFile.setLastModified( lastModified );
+
+        Model modified = cache.loadModel( modelloCore, modelFile );
+
+        assertNotSame( "The changed model should be loaded again.", model, modified );
+
+        assertNotNull( modified.getClass( "Modem", new Version( "1.0.0" ) ) );
+
+        assertSame( modified, cache.loadModel( modelloCore, modelFile ) );
+    }
+
+    public void testPluginContext()
+    {
+        Map<String, Object> pluginContext = new HashMap<String, Object>();
+
+        ModelCache cache = ModelCache.getInstance( pluginContext );
+
+        assertSame( "The cache should be kept in the plugin context.", cache, ModelCache.getInstance( pluginContext ) );
+
+        assertNotSame( "Another session should get another cache.", cache,
+                       ModelCache.getInstance( new HashMap<String, Object>() ) );
+
+        assertNotSame( cache, ModelCache.getInstance( null ) );
+    }
+
+    public void testModelSnapshot()
+        throws Exception
+    {
+        ModelloCore modelloCore = (ModelloCore) lookup( ModelloCore.ROLE );
+
+        File modelFile = getTestFile( "src/test/resources/java-model.mdo" );
+
+        File snapshotDirectory = getTestFile( "target/model-cache/snapshots" );
+
+        FileUtils.deleteDirectory( snapshotDirectory );
+
+        ModelCache cache = new ModelCache();
+
+        Model model = cache.loadModel( modelloCore, modelFile, snapshotDirectory );
+
+        assertEquals( "A snapshot should be written.", 1, snapshotDirectory.listFiles().length );
+
+        cache.clear();
+
+        Model snapshot = cache.loadModel( modelloCore, modelFile, snapshotDirectory );
+
+        assertNotSame( model, snapshot );
+
+        ModelClass modelClass = snapshot.getClass( "Model", new Version( "1.0.0" ) );
+
+        assertNotNull( "The snapshot should contain the plugins metadata.",
+                       modelClass.getMetadata( JavaClassMetadata.ID ) );
+
+        assertNotNull( modelClass.getField( "extend", new Version( "1.0.0" ) ).getMetadata( XmlFieldMetadata.ID ) );
+    }
+}
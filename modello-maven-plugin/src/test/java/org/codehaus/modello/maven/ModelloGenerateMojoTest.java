@@ -0,0 +1,159 @@
+package org.codehaus.modello.maven;
+
+/*
+ * Copyright (c) 2004, Codehaus.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.codehaus.modello.core.ModelloCore;
+import org.codehaus.modello.plugin.ModelloGenerator;
+import org.codehaus.plexus.PlexusTestCase;
+import org.codehaus.plexus.util.FileUtils;
+import org.sonatype.plexus.build.incremental.BuildContext;
+
+/**
+ * @version $Id$
+ */
+public class ModelloGenerateMojoTest
+    extends PlexusTestCase
+{
+    public void testModelloGenerateMojoMultipleGenerators()
+        throws Exception
+    {
+        ModelloCore modelloCore = (ModelloCore) lookup( ModelloCore.ROLE );
+
+        BuildContext buildContext = (BuildContext) lookup( BuildContext.class );
+
+        @SuppressWarnings( "unchecked" )
+        Map<String, ModelloGenerator> generatorMap = getContainer().lookupMap( ModelloGenerator.class.getName() );
+
+        ModelloGenerateMojo mojo = new ModelloGenerateMojo();
+
+        File outputDirectory = getTestFile( "target/generate-test" );
+
+        FileUtils.deleteDirectory( outputDirectory );
+
+        mojo.setOutputDirectory( outputDirectory );
+
+        mojo.setModels( new String[] { getTestPath( "src/test/resources/generate-model.mdo" ) } );
+
+        mojo.setVersion( "1.0.0" );
+
+        mojo.setPackagedVersions( Arrays.asList( new String[] { "1.0.0" } ) );
+
+        mojo.setGeneratorIds( Arrays.asList( new String[] { "java", "xpp3-reader", "xpp3-writer" } ) );
+
+        mojo.setGeneratorThreads( 3 );
+
+        mojo.setGeneratorMap( generatorMap );
+
+        mojo.setModelloCore( modelloCore );
+
+        mojo.setBuildContext( buildContext );
+
+        mojo.execute();
+
+        String[] files = { "Model.java", "NewModel.java", "io/xpp3/GenerateTestXpp3Reader.java",
+            "io/xpp3/GenerateTestXpp3Writer.java", "v1_0_0/Model.java", "v1_0_0/io/xpp3/GenerateTestXpp3Reader.java",
+            "v1_0_0/io/xpp3/GenerateTestXpp3Writer.java" };
+
+        for ( int i = 0; i < files.length; i++ )
+        {
+            File file = new File( outputDirectory, "org/codehaus/mojo/modello/generatetest/" + files[i] );
+
+            assertTrue( "The generated file doesn't exist: '" + file.getAbsolutePath() + "'.", file.exists() );
+        }
+    }
+
+    public void testModelloGenerateMojoUnknownGenerator()
+        throws Exception
+    {
+        @SuppressWarnings( "unchecked" )
+        Map<String, ModelloGenerator> generatorMap = getContainer().lookupMap( ModelloGenerator.class.getName() );
+
+        ModelloGenerateMojo mojo = new ModelloGenerateMojo();
+
+        mojo.setOutputDirectory( getTestFile( "target/generate-test" ) );
+
+        mojo.setGeneratorIds( Arrays.asList( new String[] { "java", "unknown" } ) );
+
+        mojo.setGeneratorMap( generatorMap );
+
+        try
+        {
+            mojo.execute();
+
+            fail( "An unknown generator id should fail." );
+        }
+        catch ( MojoExecutionException e )
+        {
+            assertTrue( e.getMessage(), e.getMessage().indexOf( "[unknown]" ) >= 0 );
+        }
+    }
+
+    public void testModelloGenerateMojoMetricsReport()
+        throws Exception
+    {
+        @SuppressWarnings( "unchecked" )
+        Map<String, ModelloGenerator> generatorMap = getContainer().lookupMap( ModelloGenerator.class.getName() );
+
+        ModelloGenerateMojo mojo = new ModelloGenerateMojo();
+
+        File outputDirectory = getTestFile( "target/generate-metrics-test" );
+
+        FileUtils.deleteDirectory( outputDirectory );
+
+        File metricsReport = new File( outputDirectory, "metrics.txt" );
+
+        mojo.setOutputDirectory( outputDirectory );
+
+        mojo.setModels( new String[] { getTestPath( "src/test/resources/generate-model.mdo" ) } );
+
+        mojo.setVersion( "1.0.0" );
+
+        mojo.setGeneratorIds( Arrays.asList( new String[] { "java", "xpp3-reader" } ) );
+
+        mojo.setGeneratorMap( generatorMap );
+
+        mojo.setModelloCore( (ModelloCore) lookup( ModelloCore.ROLE ) );
+
+        mojo.setBuildContext( (BuildContext) lookup( BuildContext.class ) );
+
+        mojo.setMetricsReport( metricsReport );
+
+        // without plugin context, the mojo uses a new model cache and loads the model again to measure it
+        mojo.execute();
+
+        String report = FileUtils.fileRead( metricsReport, "UTF-8" );
+
+        String[] lines = { "Modello java, xpp3-reader on ", "parse", "validate", "java generate", "java build",
+            "java print", "java write", "xpp3-reader generate", "xpp3-reader write", "allocated (KB)" };
+
+        for ( int i = 0; i < lines.length; i++ )
+        {
+            assertTrue( "Missing '" + lines[i] + "' in report:\n" + report, report.indexOf( lines[i] ) >= 0 );
+        }
+    }
+}
@@ -39,6 +39,18 @@ public class ModelloJavaMojoTest
 {
     public void testModelloJavaMojo()
         throws Exception
+    {
+        executeModelloJavaMojo( 1 );
+    }
+
+    public void testModelloJavaMojoConcurrentVersions()
+        throws Exception
+    {
+        executeModelloJavaMojo( 3 );
+    }
+
+    private void executeModelloJavaMojo( int versionThreads )
+        throws Exception
     {
         ModelloCore modelloCore = (ModelloCore) lookup( ModelloCore.ROLE );
 
@@ -66,6 +78,8 @@ public class ModelloJavaMojoTest
 
         mojo.setPackagedVersions( Arrays.asList( new String[] { "0.9.0", "1.0.0" } ) );
 
+        mojo.setVersionThreads( versionThreads );
+
         mojo.setModelloCore( modelloCore );
         
         mojo.setBuildContext( buildContext );
@@ -0,0 +1,268 @@
+package org.codehaus.modello.plugin.binary;
+
+/*
+ * Copyright (c) 2004, Codehaus.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import org.codehaus.modello.ModelloException;
+import org.codehaus.modello.model.ModelAssociation;
+import org.codehaus.modello.model.ModelClass;
+import org.codehaus.modello.model.ModelField;
+import org.codehaus.modello.plugin.java.AbstractJavaModelloGenerator;
+import org.codehaus.modello.plugin.java.javasource.JClass;
+import org.codehaus.modello.plugin.java.javasource.JField;
+import org.codehaus.modello.plugin.java.javasource.JType;
+
+import java.util.List;
+
+/**
+ * Base class of the generators of binary readers and writers. A binary document is made of the <code>MDLB</code>
+ * magic bytes, the format version byte, then the root object. An object is a sequence of fields ended by a
+ * <code>0</code> varint: each field is a varint tag, <code>( id &lt;&lt; 3 ) | wireType</code>, followed by its value.
+ * <p/>
+ * Each class has its own field ids: the positions of its fields, for every version, starting at <code>1</code>. The
+ * fields of its super class are written as an object with the id <code>0</code>. A field keeps its id in every
+ * version of the model where it exists, and readers skip the fields unknown to their version or written with another
+ * wire type.
+ * <p/>
+ * Field ids are thus only stable while new fields are appended to the fields of a class, in the model file and in
+ * any version: inserting or removing a field before other fields of the same class renumbers them, and documents
+ * written with the previous model can't be read anymore. Fields added to a subclass or to a super class never
+ * renumber the fields of the other classes.
+ *
+ * @since 1.5
+ */
+public abstract class AbstractBinaryGenerator
+    extends AbstractJavaModelloGenerator
+{
+    /** Varint value: boolean, char, zigzag encoded byte, short, int, long and Date milliseconds. */
+    protected static final int VARINT = 0;
+
+    /** Little endian 8 bytes value: double. */
+    protected static final int FIXED64 = 1;
+
+    /** String reference: <code>0</code> for null, <code>1</code> followed by a new string, or a back-reference. */
+    protected static final int STRING = 2;
+
+    /** Little endian 4 bytes value: float. */
+    protected static final int FIXED32 = 3;
+
+    /** Object: fields ended by a <code>0</code> varint, for associations and DOM. */
+    protected static final int OBJECT = 4;
+
+    /** List: varint size, varint wire type of the items then the items, for collections and maps. */
+    protected static final int LIST = 5;
+
+    private static final String[] WIRE_TYPE_NAMES = { "VARINT", "FIXED64", "STRING", "FIXED32", "OBJECT", "LIST" };
+
+    protected String getFileName( String suffix )
+    {
+        return getModel().getName() + suffix;
+    }
+
+    protected String getPackageName()
+    {
+        return getModel().getDefaultPackageName( isPackageWithVersion(), getGeneratedVersion() ) + ".io.binary";
+    }
+
+    /**
+     * Add the header and wire type constants shared by the reader and the writer.
+     */
+    protected void addFormatConstants( JClass jClass )
+    {
+        JField field = new JField( JType.BYTE.createArray(), "MAGIC" );
+        field.getModifiers().setStatic( true );
+        field.getModifiers().setFinal( true );
+        field.setInitString( "{ 'M', 'D', 'L', 'B' }" );
+        field.setComment( "The magic bytes starting binary documents." );
+        jClass.addField( field );
+
+        field = new JField( JType.INT, "FORMAT_VERSION" );
+        field.getModifiers().setStatic( true );
+        field.getModifiers().setFinal( true );
+        field.setInitString( "1" );
+        field.setComment( "The version of the binary format." );
+        jClass.addField( field );
+
+        for ( int i = 0; i < WIRE_TYPE_NAMES.length; i++ )
+        {
+            field = new JField( JType.INT, WIRE_TYPE_NAMES[i] );
+            field.getModifiers().setStatic( true );
+            field.getModifiers().setFinal( true );
+            field.setInitString( Integer.toString( i ) );
+            field.setComment( "Wire type." );
+            jClass.addField( field );
+        }
+    }
+
+    protected String getWireTypeName( int wireType )
+    {
+        return WIRE_TYPE_NAMES[wireType];
+    }
+
+    /**
+     * Return the expression of the tag of a field, used by the writer and as the <code>case</code> label of the
+     * reader.
+     */
+    protected String getTag( ModelField field )
+        throws ModelloException
+    {
+        return "( " + getFieldId( field ) + " << 3 ) | " + getWireTypeName( getWireType( field ) );
+    }
+
+    /**
+     * Return the expression of the tag of the fields of the super class.
+     */
+    protected String getSuperClassTag()
+    {
+        return "( 0 << 3 ) | OBJECT";
+    }
+
+    /**
+     * Return the id of a field: its position in the fields of every version of the class declaring it.
+     */
+    protected int getFieldId( ModelField field )
+        throws ModelloException
+    {
+        List<ModelField> fields = field.getModelClass().getAllFields();
+
+        for ( int i = 0; i < fields.size(); i++ )
+        {
+            if ( fields.get( i ) == field )
+            {
+                return i + 1;
+            }
+        }
+
+        throw new ModelloException( "The field '" + field.getName() + "' doesn't belong to the class '"
+            + field.getModelClass().getName() + "'." );
+    }
+
+    /**
+     * Return the super class of a class, if it belongs to the model.
+     *
+     * @return the super class, or <code>null</code>
+     */
+    protected ModelClass getModelSuperClass( ModelClass modelClass )
+    {
+        String superClass = modelClass.getSuperClass();
+
+        if ( superClass == null || !isClassInModel( superClass, getModel() ) )
+        {
+            return null;
+        }
+
+        return getModel().getClass( superClass, getGeneratedVersion() );
+    }
+
+    protected int getWireType( ModelField field )
+        throws ModelloException
+    {
+        if ( field instanceof ModelAssociation )
+        {
+            return ( (ModelAssociation) field ).isOneMultiplicity() ? OBJECT : LIST;
+        }
+
+        return getWireType( field.getType(), field );
+    }
+
+    /**
+     * Return the wire type of a field type, or of the items of a collection.
+     */
+    protected int getWireType( String type, ModelField field )
+        throws ModelloException
+    {
+        if ( "boolean".equals( type ) || "Boolean".equals( type ) || "char".equals( type )
+            || "Character".equals( type ) || "byte".equals( type ) || "Byte".equals( type ) || "short".equals( type )
+            || "Short".equals( type ) || "int".equals( type ) || "Integer".equals( type ) || "long".equals( type )
+            || "Long".equals( type ) || isDate( type ) )
+        {
+            return VARINT;
+        }
+        else if ( "double".equals( type ) || "Double".equals( type ) )
+        {
+            return FIXED64;
+        }
+        else if ( "float".equals( type ) || "Float".equals( type ) )
+        {
+            return FIXED32;
+        }
+        else if ( "String".equals( type ) )
+        {
+            return STRING;
+        }
+        else if ( "DOM".equals( type ) )
+        {
+            return OBJECT;
+        }
+
+        throw new ModelloException( "The binary format doesn't support the type '" + type + "' of the field '"
+            + field.getName() + "' in the class '" + field.getModelClass().getName() + "'." );
+    }
+
+    protected boolean isDate( String type )
+    {
+        return "Date".equals( type ) || "java.util.Date".equals( type );
+    }
+
+    protected boolean isWrapper( String type )
+    {
+        return "Boolean".equals( type ) || "Character".equals( type ) || "Byte".equals( type )
+            || "Short".equals( type ) || "Integer".equals( type ) || "Long".equals( type ) || "Float".equals( type )
+            || "Double".equals( type );
+    }
+
+    /**
+     * Return the primitive type of a wrapper type.
+     */
+    protected String getPrimitiveType( String wrapperType )
+    {
+        if ( "Integer".equals( wrapperType ) )
+        {
+            return "int";
+        }
+        else if ( "Character".equals( wrapperType ) )
+        {
+            return "char";
+        }
+
+        return uncapitalise( wrapperType );
+    }
+
+    /**
+     * Return whether the model uses DOM fields, written as <code>Xpp3Dom</code> objects.
+     */
+    protected boolean requiresDomSupport( List<ModelClass> modelClasses )
+    {
+        for ( ModelClass modelClass : modelClasses )
+        {
+            for ( ModelField field : modelClass.getFields( getGeneratedVersion() ) )
+            {
+                if ( "DOM".equals( field.getType() ) )
+                {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+}
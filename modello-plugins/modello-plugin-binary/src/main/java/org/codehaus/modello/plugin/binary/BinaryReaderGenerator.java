@@ -0,0 +1,743 @@
+package org.codehaus.modello.plugin.binary;
+
+/*
+ * Copyright (c) 2004, Codehaus.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import org.codehaus.modello.ModelloException;
+import org.codehaus.modello.model.Model;
+import org.codehaus.modello.model.ModelAssociation;
+import org.codehaus.modello.model.ModelClass;
+import org.codehaus.modello.model.ModelDefault;
+import org.codehaus.modello.model.ModelField;
+import org.codehaus.modello.plugin.java.javasource.JClass;
+import org.codehaus.modello.plugin.java.javasource.JField;
+import org.codehaus.modello.plugin.java.javasource.JMethod;
+import org.codehaus.modello.plugin.java.javasource.JParameter;
+import org.codehaus.modello.plugin.java.javasource.JSourceCode;
+import org.codehaus.modello.plugin.java.javasource.JSourceWriter;
+import org.codehaus.modello.plugin.java.javasource.JType;
+import org.codehaus.modello.plugin.java.metadata.JavaClassMetadata;
+import org.codehaus.modello.plugin.java.metadata.JavaFieldMetadata;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Generate a reader of the binary format described in {@link AbstractBinaryGenerator}: the fields unknown to the
+ * generated version of the model, or written with another wire type, are skipped.
+ *
+ * @since 1.5
+ */
+public class BinaryReaderGenerator
+    extends AbstractBinaryGenerator
+{
+    public void generate( Model model, Properties parameters )
+        throws ModelloException
+    {
+        initialize( model, parameters );
+
+        try
+        {
+            generateBinaryReader();
+        }
+        catch ( IOException ex )
+        {
+            throw new ModelloException( "Exception while generating Binary Reader.", ex );
+        }
+    }
+
+    private void generateBinaryReader()
+        throws ModelloException, IOException
+    {
+        Model objectModel = getModel();
+
+        String packageName = getPackageName();
+
+        String unmarshallerName = getFileName( "BinaryReader" );
+
+        JSourceWriter sourceWriter = newJSourceWriter( packageName, unmarshallerName );
+
+        JClass jClass = new JClass( packageName + '.' + unmarshallerName );
+        initHeader( jClass );
+        suppressAllWarnings( objectModel, jClass );
+
+        jClass.addImport( "java.io.EOFException" );
+        jClass.addImport( "java.io.IOException" );
+        jClass.addImport( "java.io.InputStream" );
+        jClass.addImport( "java.util.List" );
+
+        addModelImports( jClass, null );
+
+        addFormatConstants( jClass );
+
+        JField field = new JField( new JClass( "InputStream" ), "in" );
+        field.setComment( "The stream being read." );
+        jClass.addField( field );
+
+        field = new JField( JType.BYTE.createArray(), "buffer" );
+        field.getModifiers().setFinal( true );
+        field.setInitString( "new byte[8192]" );
+        field.setComment( "The bytes read from the stream." );
+        jClass.addField( field );
+
+        field = new JField( JType.INT, "position" );
+        field.setComment( "The position of the next byte to decode in the buffer." );
+        jClass.addField( field );
+
+        field = new JField( JType.INT, "limit" );
+        field.setComment( "The number of bytes in the buffer." );
+        jClass.addField( field );
+
+        field = new JField( JType.CHAR.createArray(), "chars" );
+        field.setInitString( "new char[256]" );
+        field.setComment( "The characters of the ASCII string being decoded." );
+        jClass.addField( field );
+
+        field = new JField( new JClass( "List" ), "strings" );
+        field.setComment( "The strings already read, by reference." );
+        jClass.addField( field );
+
+        String root = objectModel.getRoot( getGeneratedVersion() );
+
+        // ----------------------------------------------------------------------
+        // Write the read( InputStream ) method which will do the unmarshalling.
+        // ----------------------------------------------------------------------
+
+        JMethod unmarshall = new JMethod( "read", new JClass( root ), null );
+
+        unmarshall.addParameter( new JParameter( new JClass( "InputStream" ), "stream" ) );
+
+        unmarshall.addException( new JClass( "IOException" ) );
+
+        unmarshall.setComment( "Reads a binary document. As the stream is read by blocks, bytes following the "
+            + "document may be consumed too." );
+
+        JSourceCode sc = unmarshall.getSourceCode();
+
+        sc.add( "in = stream;" );
+        sc.add( "strings = new java.util.ArrayList();" );
+        sc.add( "try" );
+        sc.add( "{" );
+        sc.indent();
+        sc.add( "require( MAGIC.length + 1 );" );
+        sc.add( "for ( int i = 0; i < MAGIC.length; i++ )" );
+        sc.add( "{" );
+        sc.indent();
+        sc.add( "if ( buffer[i] != MAGIC[i] )" );
+        sc.add( "{" );
+        sc.addIndented( "throw new IOException( \"Not a binary " + objectModel.getName() + " document\" );" );
+        sc.add( "}" );
+        sc.unindent();
+        sc.add( "}" );
+        sc.add( "if ( buffer[MAGIC.length] > FORMAT_VERSION )" );
+        sc.add( "{" );
+        sc.addIndented( "throw new IOException( \"Unsupported binary format version: \" + buffer[MAGIC.length] );" );
+        sc.add( "}" );
+        sc.add( "position = MAGIC.length + 1;" );
+        sc.add( "return read" + root + "();" );
+        sc.unindent();
+        sc.add( "}" );
+        sc.add( "finally" );
+        sc.add( "{" );
+        sc.indent();
+        sc.add( "in = null;" );
+        sc.add( "position = 0;" );
+        sc.add( "limit = 0;" );
+        sc.add( "strings = null;" );
+        sc.unindent();
+        sc.add( "}" );
+
+        jClass.addMethod( unmarshall );
+
+        List<ModelClass> modelClasses = getClasses( objectModel );
+
+        for ( ModelClass clazz : modelClasses )
+        {
+            writeClass( clazz, jClass );
+        }
+
+        if ( requiresDomSupport( modelClasses ) )
+        {
+            jClass.addImport( "org.codehaus.plexus.util.xml.Xpp3Dom" );
+            writeDomMethod( jClass );
+        }
+
+        writeHelpers( jClass );
+
+        jClass.print( sourceWriter );
+
+        sourceWriter.close();
+    }
+
+    private void writeClass( ModelClass modelClass, JClass jClass )
+        throws ModelloException
+    {
+        String className = modelClass.getName();
+
+        String uncapClassName = uncapitalise( className );
+
+        JavaClassMetadata javaClassMetadata = (JavaClassMetadata) modelClass.getMetadata( JavaClassMetadata.ID );
+
+        JMethod unmarshall;
+
+        JSourceCode sc;
+
+        if ( !javaClassMetadata.isAbstract() )
+        {
+            unmarshall = new JMethod( "read" + className, new JClass( className ), null );
+            unmarshall.getModifiers().makePrivate();
+
+            unmarshall.addException( new JClass( "IOException" ) );
+
+            unmarshall.getSourceCode().add( "return read" + className + "( new " + className + "() );" );
+
+            jClass.addMethod( unmarshall );
+        }
+
+        unmarshall = new JMethod( "read" + className, new JClass( className ), null );
+        unmarshall.getModifiers().makePrivate();
+
+        unmarshall.addParameter( new JParameter( new JClass( className ), uncapClassName ) );
+
+        unmarshall.addException( new JClass( "IOException" ) );
+
+        unmarshall.setComment( "Reads the fields of a " + className + ", or of one of its subclasses, up to the "
+            + "<code>0</code> tag." );
+
+        sc = unmarshall.getSourceCode();
+
+        sc.add( "for ( int tag = readVarint(); tag != 0; tag = readVarint() )" );
+        sc.add( "{" );
+        sc.indent();
+        sc.add( "switch ( tag )" );
+        sc.add( "{" );
+        sc.indent();
+
+        ModelClass superClass = getModelSuperClass( modelClass );
+
+        if ( superClass != null )
+        {
+            sc.add( "case " + getSuperClassTag() + ":" );
+            sc.add( "{" );
+            sc.addIndented( "read" + superClass.getName() + "( " + uncapClassName + " );" );
+            sc.addIndented( "break;" );
+            sc.add( "}" );
+        }
+
+        for ( ModelField field : modelClass.getFields( getGeneratedVersion() ) )
+        {
+            JavaFieldMetadata javaFieldMetadata = (JavaFieldMetadata) field.getMetadata( JavaFieldMetadata.ID );
+
+            if ( !javaFieldMetadata.isSetter() )
+            {
+                continue;
+            }
+
+            sc.add( "case " + getTag( field ) + ":" );
+            sc.add( "{" );
+            sc.indent();
+
+            String setter = uncapClassName + ".set" + capitalise( field.getName() );
+
+            String type = field.getType();
+
+            if ( field instanceof ModelAssociation )
+            {
+                ModelAssociation association = (ModelAssociation) field;
+
+                String toType = association.getTo();
+
+                String associationName = association.getName();
+
+                if ( association.isOneMultiplicity() )
+                {
+                    sc.add( setter + "( read" + toType + "() );" );
+                }
+                else if ( ModelDefault.LIST.equals( type ) || ModelDefault.SET.equals( type ) )
+                {
+                    boolean inModel = isClassInModel( toType, modelClass.getModel() );
+
+                    sc.add( type + " " + associationName + " = " + getDefaultValue( association ) + ";" );
+                    sc.add( setter + "( " + associationName + " );" );
+                    sc.add( "for ( int n = readListSize( "
+                        + ( inModel ? "OBJECT" : getWireTypeName( getWireType( toType, field ) ) ) + " ); n > 0; n-- )" );
+                    sc.add( "{" );
+                    sc.addIndented( associationName + ".add( "
+                        + ( inModel ? "read" + toType + "()" : getValue( toType, field ) ) + " );" );
+                    sc.add( "}" );
+                }
+                else
+                {
+                    //Map or Properties: keys and values alternate
+
+                    sc.add( "for ( int n = readListSize( STRING ) / 2; n > 0; n-- )" );
+                    sc.add( "{" );
+                    sc.indent();
+                    sc.add( "String key = readString();" );
+                    sc.add( uncapClassName + ".add" + capitalise( singular( associationName ) )
+                        + "( key, readString() );" );
+                    sc.unindent();
+                    sc.add( "}" );
+                }
+            }
+            else
+            {
+                sc.add( setter + "( " + getValue( type, field ) + " );" );
+            }
+
+            sc.add( "break;" );
+            sc.unindent();
+            sc.add( "}" );
+        }
+
+        sc.add( "default:" );
+        sc.add( "{" );
+        sc.addIndented( "skip( tag & 7 );" );
+        sc.add( "}" );
+
+        sc.unindent();
+        sc.add( "}" );
+        sc.unindent();
+        sc.add( "}" );
+
+        sc.add( "return " + uncapClassName + ";" );
+
+        jClass.addMethod( unmarshall );
+    }
+
+    /**
+     * Return the expression decoding a value of a type supported by {@link #getWireType(String, ModelField)}.
+     */
+    private String getValue( String type, ModelField field )
+        throws ModelloException
+    {
+        String value;
+
+        String primitiveType = isWrapper( type ) ? getPrimitiveType( type ) : type;
+
+        if ( "boolean".equals( primitiveType ) )
+        {
+            value = "readVarint() != 0";
+        }
+        else if ( "char".equals( primitiveType ) )
+        {
+            value = "(char) readVarint()";
+        }
+        else if ( "byte".equals( primitiveType ) || "short".equals( primitiveType ) )
+        {
+            value = "(" + primitiveType + ") readSignedVarint()";
+        }
+        else if ( "int".equals( primitiveType ) )
+        {
+            value = "readSignedVarint()";
+        }
+        else if ( "long".equals( primitiveType ) )
+        {
+            value = "readSignedVarLong()";
+        }
+        else if ( "double".equals( primitiveType ) )
+        {
+            value = "Double.longBitsToDouble( readFixed64() )";
+        }
+        else if ( "float".equals( primitiveType ) )
+        {
+            value = "Float.intBitsToFloat( readFixed32() )";
+        }
+        else if ( isDate( type ) )
+        {
+            return "new java.util.Date( readSignedVarLong() )";
+        }
+        else if ( "DOM".equals( type ) )
+        {
+            return "readDom()";
+        }
+        else
+        {
+            // checks the type is supported
+            getWireType( type, field );
+
+            return "readString()";
+        }
+
+        if ( isWrapper( type ) )
+        {
+            if ( useJava5 || "Boolean".equals( type ) )
+            {
+                value = type + ".valueOf( " + value + " )";
+            }
+            else
+            {
+                value = "new " + type + "( " + value + " )";
+            }
+        }
+
+        return value;
+    }
+
+    private void writeDomMethod( JClass jClass )
+    {
+        JMethod method = new JMethod( "readDom", new JClass( "Xpp3Dom" ), null );
+        method.getModifiers().makePrivate();
+        method.addException( new JClass( "IOException" ) );
+
+        JSourceCode sc = method.getSourceCode();
+
+        sc.add( "String name = null;" );
+        sc.add( "String value = null;" );
+        sc.add( "List attributes = new java.util.ArrayList();" );
+        sc.add( "List children = new java.util.ArrayList();" );
+
+        sc.add( "for ( int tag = readVarint(); tag != 0; tag = readVarint() )" );
+        sc.add( "{" );
+        sc.indent();
+        sc.add( "switch ( tag )" );
+        sc.add( "{" );
+        sc.indent();
+
+        sc.add( "case ( 1 << 3 ) | STRING:" );
+        sc.add( "{" );
+        sc.indent();
+        sc.add( "name = readString();" );
+        sc.add( "break;" );
+        sc.unindent();
+        sc.add( "}" );
+
+        sc.add( "case ( 2 << 3 ) | STRING:" );
+        sc.add( "{" );
+        sc.indent();
+        sc.add( "value = readString();" );
+        sc.add( "break;" );
+        sc.unindent();
+        sc.add( "}" );
+
+        sc.add( "case ( 3 << 3 ) | LIST:" );
+        sc.add( "{" );
+        sc.indent();
+        sc.add( "for ( int n = readListSize( STRING ); n > 0; n-- )" );
+        sc.add( "{" );
+        sc.addIndented( "attributes.add( readString() );" );
+        sc.add( "}" );
+        sc.add( "break;" );
+        sc.unindent();
+        sc.add( "}" );
+
+        sc.add( "case ( 4 << 3 ) | LIST:" );
+        sc.add( "{" );
+        sc.indent();
+        sc.add( "for ( int n = readListSize( OBJECT ); n > 0; n-- )" );
+        sc.add( "{" );
+        sc.addIndented( "children.add( readDom() );" );
+        sc.add( "}" );
+        sc.add( "break;" );
+        sc.unindent();
+        sc.add( "}" );
+
+        sc.add( "default:" );
+        sc.add( "{" );
+        sc.addIndented( "skip( tag & 7 );" );
+        sc.add( "}" );
+
+        sc.unindent();
+        sc.add( "}" );
+        sc.unindent();
+        sc.add( "}" );
+
+        sc.add( "Xpp3Dom dom = new Xpp3Dom( name );" );
+        sc.add( "dom.setValue( value );" );
+        sc.add( "for ( int i = 0; i + 1 < attributes.size(); i += 2 )" );
+        sc.add( "{" );
+        sc.addIndented( "dom.setAttribute( (String) attributes.get( i ), (String) attributes.get( i + 1 ) );" );
+        sc.add( "}" );
+        sc.add( "for ( int i = 0; i < children.size(); i++ )" );
+        sc.add( "{" );
+        sc.addIndented( "dom.addChild( (Xpp3Dom) children.get( i ) );" );
+        sc.add( "}" );
+        sc.add( "return dom;" );
+
+        jClass.addMethod( method );
+    }
+
+    /**
+     * Write the methods decoding the values from the buffer.
+     */
+    private void writeHelpers( JClass jClass )
+    {
+        JMethod method = new JMethod( "require" );
+        method.getModifiers().makePrivate();
+        method.addParameter( new JParameter( JType.INT, "length" ) );
+        method.addException( new JClass( "IOException" ) );
+        method.setComment( "Makes sure <code>length</code> bytes, at most the size of the buffer, are available "
+            + "from <code>position</code>." );
+        JSourceCode sc = method.getSourceCode();
+        sc.add( "if ( limit - position < length )" );
+        sc.add( "{" );
+        sc.indent();
+        sc.add( "System.arraycopy( buffer, position, buffer, 0, limit - position );" );
+        sc.add( "limit -= position;" );
+        sc.add( "position = 0;" );
+        sc.add( "while ( limit < length )" );
+        sc.add( "{" );
+        sc.indent();
+        sc.add( "int read = in.read( buffer, limit, buffer.length - limit );" );
+        sc.add( "if ( read < 0 )" );
+        sc.add( "{" );
+        sc.addIndented( "throw new EOFException( \"Unexpected end of binary document\" );" );
+        sc.add( "}" );
+        sc.add( "limit += read;" );
+        sc.unindent();
+        sc.add( "}" );
+        sc.unindent();
+        sc.add( "}" );
+        jClass.addMethod( method );
+
+        method = new JMethod( "readByte", JType.BYTE, null );
+        method.getModifiers().makePrivate();
+        method.addException( new JClass( "IOException" ) );
+        sc = method.getSourceCode();
+        sc.add( "if ( position == limit )" );
+        sc.add( "{" );
+        sc.addIndented( "require( 1 );" );
+        sc.add( "}" );
+        sc.add( "return buffer[position++];" );
+        jClass.addMethod( method );
+
+        method = new JMethod( "readVarint", JType.INT, null );
+        method.getModifiers().makePrivate();
+        method.addException( new JClass( "IOException" ) );
+        sc = method.getSourceCode();
+        sc.add( "int value = 0;" );
+        sc.add( "for ( int shift = 0; shift < 32; shift += 7 )" );
+        sc.add( "{" );
+        sc.indent();
+        sc.add( "byte b = readByte();" );
+        sc.add( "value |= ( b & 0x7F ) << shift;" );
+        sc.add( "if ( b >= 0 )" );
+        sc.add( "{" );
+        sc.addIndented( "return value;" );
+        sc.add( "}" );
+        sc.unindent();
+        sc.add( "}" );
+        sc.add( "throw new IOException( \"Malformed varint\" );" );
+        jClass.addMethod( method );
+
+        method = new JMethod( "readVarLong", JType.LONG, null );
+        method.getModifiers().makePrivate();
+        method.addException( new JClass( "IOException" ) );
+        sc = method.getSourceCode();
+        sc.add( "long value = 0;" );
+        sc.add( "for ( int shift = 0; shift < 64; shift += 7 )" );
+        sc.add( "{" );
+        sc.indent();
+        sc.add( "byte b = readByte();" );
+        sc.add( "value |= (long) ( b & 0x7F ) << shift;" );
+        sc.add( "if ( b >= 0 )" );
+        sc.add( "{" );
+        sc.addIndented( "return value;" );
+        sc.add( "}" );
+        sc.unindent();
+        sc.add( "}" );
+        sc.add( "throw new IOException( \"Malformed varint\" );" );
+        jClass.addMethod( method );
+
+        method = new JMethod( "readSignedVarint", JType.INT, null );
+        method.getModifiers().makePrivate();
+        method.addException( new JClass( "IOException" ) );
+        method.setComment( "Reads a zigzag encoded varint." );
+        sc = method.getSourceCode();
+        sc.add( "int value = readVarint();" );
+        sc.add( "return ( value >>> 1 ) ^ -( value & 1 );" );
+        jClass.addMethod( method );
+
+        method = new JMethod( "readSignedVarLong", JType.LONG, null );
+        method.getModifiers().makePrivate();
+        method.addException( new JClass( "IOException" ) );
+        sc = method.getSourceCode();
+        sc.add( "long value = readVarLong();" );
+        sc.add( "return ( value >>> 1 ) ^ -( value & 1 );" );
+        jClass.addMethod( method );
+
+        method = new JMethod( "readFixed32", JType.INT, null );
+        method.getModifiers().makePrivate();
+        method.addException( new JClass( "IOException" ) );
+        sc = method.getSourceCode();
+        sc.add( "require( 4 );" );
+        sc.add( "int value = ( buffer[position] & 0xFF ) | ( ( buffer[position + 1] & 0xFF ) << 8 )" );
+        sc.addIndented( "| ( ( buffer[position + 2] & 0xFF ) << 16 ) | ( ( buffer[position + 3] & 0xFF ) << 24 );" );
+        sc.add( "position += 4;" );
+        sc.add( "return value;" );
+        jClass.addMethod( method );
+
+        method = new JMethod( "readFixed64", JType.LONG, null );
+        method.getModifiers().makePrivate();
+        method.addException( new JClass( "IOException" ) );
+        sc = method.getSourceCode();
+        sc.add( "long low = readFixed32() & 0xFFFFFFFFL;" );
+        sc.add( "return low | ( (long) readFixed32() << 32 );" );
+        jClass.addMethod( method );
+
+        method = new JMethod( "readString", new JClass( "String" ), null );
+        method.getModifiers().makePrivate();
+        method.addException( new JClass( "IOException" ) );
+        method.setComment( "Reads a reference to a string: <code>0</code> for null, a back-reference to a string "
+            + "already read,\nor <code>1</code> followed by the length and the UTF-8 bytes of a new string." );
+        sc = method.getSourceCode();
+        sc.add( "int reference = readVarint();" );
+        sc.add( "if ( reference == 0 )" );
+        sc.add( "{" );
+        sc.addIndented( "return null;" );
+        sc.add( "}" );
+        sc.add( "else if ( reference > 1 )" );
+        sc.add( "{" );
+        sc.indent();
+        sc.add( "if ( reference - 2 >= strings.size() )" );
+        sc.add( "{" );
+        sc.addIndented( "throw new IOException( \"Invalid string reference: \" + reference );" );
+        sc.add( "}" );
+        sc.add( "return (String) strings.get( reference - 2 );" );
+        sc.unindent();
+        sc.add( "}" );
+        sc.add( "int length = readVarint();" );
+        sc.add( "if ( length < 0 )" );
+        sc.add( "{" );
+        sc.addIndented( "throw new IOException( \"Malformed string length: \" + length );" );
+        sc.add( "}" );
+        sc.add( "String value;" );
+        sc.add( "if ( length <= buffer.length )" );
+        sc.add( "{" );
+        sc.indent();
+        sc.add( "require( length );" );
+        sc.add( "// ASCII strings are decoded from the buffer, other ones by the JDK" );
+        sc.add( "if ( chars.length < length )" );
+        sc.add( "{" );
+        sc.addIndented( "chars = new char[Math.max( length, chars.length * 2 )];" );
+        sc.add( "}" );
+        sc.add( "int ascii = 0;" );
+        sc.add( "while ( ascii < length && buffer[position + ascii] >= 0 )" );
+        sc.add( "{" );
+        sc.indent();
+        sc.add( "chars[ascii] = (char) buffer[position + ascii];" );
+        sc.add( "ascii++;" );
+        sc.unindent();
+        sc.add( "}" );
+        sc.add( "if ( ascii == length )" );
+        sc.add( "{" );
+        sc.addIndented( "value = new String( chars, 0, length );" );
+        sc.add( "}" );
+        sc.add( "else" );
+        sc.add( "{" );
+        sc.addIndented( "value = new String( buffer, position, length, \"UTF-8\" );" );
+        sc.add( "}" );
+        sc.add( "position += length;" );
+        sc.unindent();
+        sc.add( "}" );
+        sc.add( "else" );
+        sc.add( "{" );
+        sc.indent();
+        sc.add( "byte[] bytes = new byte[length];" );
+        sc.add( "int count = Math.min( limit - position, length );" );
+        sc.add( "System.arraycopy( buffer, position, bytes, 0, count );" );
+        sc.add( "position += count;" );
+        sc.add( "while ( count < length )" );
+        sc.add( "{" );
+        sc.indent();
+        sc.add( "int read = in.read( bytes, count, length - count );" );
+        sc.add( "if ( read < 0 )" );
+        sc.add( "{" );
+        sc.addIndented( "throw new EOFException( \"Unexpected end of binary document\" );" );
+        sc.add( "}" );
+        sc.add( "count += read;" );
+        sc.unindent();
+        sc.add( "}" );
+        sc.add( "value = new String( bytes, \"UTF-8\" );" );
+        sc.unindent();
+        sc.add( "}" );
+        sc.add( "strings.add( value );" );
+        sc.add( "return value;" );
+        jClass.addMethod( method );
+
+        method = new JMethod( "readListSize", JType.INT, null );
+        method.getModifiers().makePrivate();
+        method.addParameter( new JParameter( JType.INT, "wireType" ) );
+        method.addException( new JClass( "IOException" ) );
+        method.setComment( "Reads the header of a list: the items of another wire type than the expected one are "
+            + "skipped." );
+        sc = method.getSourceCode();
+        sc.add( "int size = readVarint();" );
+        sc.add( "if ( size < 0 )" );
+        sc.add( "{" );
+        sc.addIndented( "throw new IOException( \"Malformed list size: \" + size );" );
+        sc.add( "}" );
+        sc.add( "int itemWireType = readVarint();" );
+        sc.add( "if ( itemWireType != wireType )" );
+        sc.add( "{" );
+        sc.indent();
+        sc.add( "for ( int i = 0; i < size; i++ )" );
+        sc.add( "{" );
+        sc.addIndented( "skip( itemWireType );" );
+        sc.add( "}" );
+        sc.add( "return 0;" );
+        sc.unindent();
+        sc.add( "}" );
+        sc.add( "return size;" );
+        jClass.addMethod( method );
+
+        method = new JMethod( "skip" );
+        method.getModifiers().makePrivate();
+        method.addParameter( new JParameter( JType.INT, "wireType" ) );
+        method.addException( new JClass( "IOException" ) );
+        method.setComment( "Skips a value, from a field unknown to this version of the model." );
+        sc = method.getSourceCode();
+        sc.add( "switch ( wireType )" );
+        sc.add( "{" );
+        sc.indent();
+        sc.add( "case VARINT:" );
+        sc.addIndented( "readVarLong();" );
+        sc.addIndented( "break;" );
+        sc.add( "case FIXED64:" );
+        sc.addIndented( "readFixed64();" );
+        sc.addIndented( "break;" );
+        sc.add( "case STRING:" );
+        sc.addIndented( "// new strings are kept for the references following" );
+        sc.addIndented( "readString();" );
+        sc.addIndented( "break;" );
+        sc.add( "case FIXED32:" );
+        sc.addIndented( "readFixed32();" );
+        sc.addIndented( "break;" );
+        sc.add( "case OBJECT:" );
+        sc.indent();
+        sc.add( "for ( int tag = readVarint(); tag != 0; tag = readVarint() )" );
+        sc.add( "{" );
+        sc.addIndented( "skip( tag & 7 );" );
+        sc.add( "}" );
+        sc.add( "break;" );
+        sc.unindent();
+        sc.add( "case LIST:" );
+        sc.addIndented( "readListSize( -1 );" );
+        sc.addIndented( "break;" );
+        sc.add( "default:" );
+        sc.addIndented( "throw new IOException( \"Unknown wire type: \" + wireType );" );
+        sc.unindent();
+        sc.add( "}" );
+        jClass.addMethod( method );
+    }
+}
@@ -0,0 +1,543 @@
+package org.codehaus.modello.plugin.binary;
+
+/*
+ * Copyright (c) 2004, Codehaus.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import org.codehaus.modello.ModelloException;
+import org.codehaus.modello.model.Model;
+import org.codehaus.modello.model.ModelAssociation;
+import org.codehaus.modello.model.ModelClass;
+import org.codehaus.modello.model.ModelDefault;
+import org.codehaus.modello.model.ModelField;
+import org.codehaus.modello.plugin.java.javasource.JClass;
+import org.codehaus.modello.plugin.java.javasource.JField;
+import org.codehaus.modello.plugin.java.javasource.JMethod;
+import org.codehaus.modello.plugin.java.javasource.JParameter;
+import org.codehaus.modello.plugin.java.javasource.JSourceCode;
+import org.codehaus.modello.plugin.java.javasource.JSourceWriter;
+import org.codehaus.modello.plugin.java.javasource.JType;
+import org.codehaus.modello.plugin.java.metadata.JavaFieldMetadata;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Generate a writer of the binary format described in {@link AbstractBinaryGenerator}: the values are encoded in a
+ * reused buffer, and strings already written are replaced by back-references.
+ *
+ * @since 1.5
+ */
+public class BinaryWriterGenerator
+    extends AbstractBinaryGenerator
+{
+    public void generate( Model model, Properties parameters )
+        throws ModelloException
+    {
+        initialize( model, parameters );
+
+        try
+        {
+            generateBinaryWriter();
+        }
+        catch ( IOException ex )
+        {
+            throw new ModelloException( "Exception while generating Binary Writer.", ex );
+        }
+    }
+
+    private void generateBinaryWriter()
+        throws ModelloException, IOException
+    {
+        Model objectModel = getModel();
+
+        String packageName = getPackageName();
+
+        String marshallerName = getFileName( "BinaryWriter" );
+
+        JSourceWriter sourceWriter = newJSourceWriter( packageName, marshallerName );
+
+        JClass jClass = new JClass( packageName + '.' + marshallerName );
+        initHeader( jClass );
+        suppressAllWarnings( objectModel, jClass );
+
+        jClass.addImport( "java.io.IOException" );
+        jClass.addImport( "java.io.OutputStream" );
+        jClass.addImport( "java.util.Iterator" );
+        jClass.addImport( "java.util.Map" );
+
+        addModelImports( jClass, null );
+
+        addFormatConstants( jClass );
+
+        JField field = new JField( new JClass( "OutputStream" ), "out" );
+        field.setComment( "The stream being written." );
+        jClass.addField( field );
+
+        field = new JField( JType.BYTE.createArray(), "buffer" );
+        field.getModifiers().setFinal( true );
+        field.setInitString( "new byte[8192]" );
+        field.setComment( "The bytes encoded but not yet written to the stream." );
+        jClass.addField( field );
+
+        field = new JField( JType.INT, "count" );
+        field.setComment( "The number of bytes in the buffer." );
+        jClass.addField( field );
+
+        field = new JField( new JClass( "Map" ), "strings" );
+        field.setComment( "The references of the strings already written." );
+        jClass.addField( field );
+
+        String root = objectModel.getRoot( getGeneratedVersion() );
+
+        String rootElementParameterName = uncapitalise( root );
+
+        // ----------------------------------------------------------------------
+        // Write the write( OutputStream, Model ) method which will do the marshalling.
+        // ----------------------------------------------------------------------
+
+        JMethod marshall = new JMethod( "write" );
+
+        marshall.addParameter( new JParameter( new JClass( "OutputStream" ), "stream" ) );
+        marshall.addParameter( new JParameter( new JClass( root ), rootElementParameterName ) );
+
+        marshall.addException( new JClass( "java.io.IOException" ) );
+
+        JSourceCode sc = marshall.getSourceCode();
+
+        sc.add( "out = stream;" );
+        sc.add( "strings = new java.util.HashMap();" );
+        sc.add( "try" );
+        sc.add( "{" );
+        sc.indent();
+        sc.add( "System.arraycopy( MAGIC, 0, buffer, 0, MAGIC.length );" );
+        sc.add( "buffer[MAGIC.length] = (byte) FORMAT_VERSION;" );
+        sc.add( "count = MAGIC.length + 1;" );
+        sc.add( "write" + root + "( " + rootElementParameterName + " );" );
+        sc.add( "out.write( buffer, 0, count );" );
+        sc.unindent();
+        sc.add( "}" );
+        sc.add( "finally" );
+        sc.add( "{" );
+        sc.indent();
+        sc.add( "out = null;" );
+        sc.add( "count = 0;" );
+        sc.add( "strings = null;" );
+        sc.unindent();
+        sc.add( "}" );
+
+        jClass.addMethod( marshall );
+
+        List<ModelClass> modelClasses = getClasses( objectModel );
+
+        for ( ModelClass clazz : modelClasses )
+        {
+            writeClass( clazz, jClass );
+        }
+
+        if ( requiresDomSupport( modelClasses ) )
+        {
+            jClass.addImport( "org.codehaus.plexus.util.xml.Xpp3Dom" );
+            writeDomMethod( jClass );
+        }
+
+        writeHelpers( jClass );
+
+        jClass.print( sourceWriter );
+
+        sourceWriter.close();
+    }
+
+    private void writeClass( ModelClass modelClass, JClass jClass )
+        throws ModelloException
+    {
+        String className = modelClass.getName();
+
+        String uncapClassName = uncapitalise( className );
+
+        JMethod marshall = new JMethod( "write" + className );
+        marshall.getModifiers().makePrivate();
+
+        marshall.addParameter( new JParameter( new JClass( className ), uncapClassName ) );
+
+        marshall.addException( new JClass( "java.io.IOException" ) );
+
+        marshall.setComment( "Writes the fields of a " + className + ", or of one of its subclasses, then the "
+            + "<code>0</code> tag." );
+
+        JSourceCode sc = marshall.getSourceCode();
+
+        ModelClass superClass = getModelSuperClass( modelClass );
+
+        if ( superClass != null )
+        {
+            sc.add( "writeVarint( " + getSuperClassTag() + " );" );
+            sc.add( "write" + superClass.getName() + "( " + uncapClassName + " );" );
+        }
+
+        for ( ModelField field : modelClass.getFields( getGeneratedVersion() ) )
+        {
+            JavaFieldMetadata javaFieldMetadata = (JavaFieldMetadata) field.getMetadata( JavaFieldMetadata.ID );
+
+            if ( !javaFieldMetadata.isGetter() )
+            {
+                continue;
+            }
+
+            String type = field.getType();
+
+            String value = uncapClassName + "." + getPrefix( javaFieldMetadata ) + capitalise( field.getName() ) + "()";
+
+            sc.add( getValueChecker( type, value, field ) );
+            sc.add( "{" );
+            sc.indent();
+
+            sc.add( "writeVarint( " + getTag( field ) + " );" );
+
+            if ( field instanceof ModelAssociation )
+            {
+                ModelAssociation association = (ModelAssociation) field;
+
+                String toType = association.getTo();
+
+                if ( association.isOneMultiplicity() )
+                {
+                    sc.add( "write" + toType + "( (" + toType + ") " + value + " );" );
+                }
+                else if ( ModelDefault.LIST.equals( type ) || ModelDefault.SET.equals( type ) )
+                {
+                    boolean inModel = isClassInModel( toType, modelClass.getModel() );
+
+                    sc.add( "writeVarint( " + value + ".size() );" );
+                    sc.add( "writeVarint( " + ( inModel ? "OBJECT" : getWireTypeName( getWireType( toType, field ) ) )
+                        + " );" );
+                    sc.add( "for ( Iterator iter = " + value + ".iterator(); iter.hasNext(); )" );
+                    sc.add( "{" );
+                    sc.indent();
+                    if ( inModel )
+                    {
+                        sc.add( "write" + toType + "( (" + toType + ") iter.next() );" );
+                    }
+                    else
+                    {
+                        writeValue( sc, toType, "( (" + toType + ") iter.next() )", field );
+                    }
+                    sc.unindent();
+                    sc.add( "}" );
+                }
+                else
+                {
+                    //Map or Properties: keys and values alternate
+
+                    sc.add( "writeVarint( " + value + ".size() * 2 );" );
+                    sc.add( "writeVarint( STRING );" );
+                    sc.add( "for ( Iterator iter = " + value + ".entrySet().iterator(); iter.hasNext(); )" );
+                    sc.add( "{" );
+                    sc.indent();
+                    sc.add( "Map.Entry entry = (Map.Entry) iter.next();" );
+                    sc.add( "writeString( (String) entry.getKey() );" );
+                    sc.add( "writeString( (String) entry.getValue() );" );
+                    sc.unindent();
+                    sc.add( "}" );
+                }
+            }
+            else
+            {
+                writeValue( sc, type, value, field );
+            }
+
+            sc.unindent();
+            sc.add( "}" );
+        }
+
+        sc.add( "writeVarint( 0 );" );
+
+        jClass.addMethod( marshall );
+    }
+
+    /**
+     * Write the encoding of a value of a type supported by {@link #getWireType(String, ModelField)}.
+     */
+    private void writeValue( JSourceCode sc, String type, String value, ModelField field )
+        throws ModelloException
+    {
+        if ( isWrapper( type ) )
+        {
+            value = value + "." + getPrimitiveType( type ) + "Value()";
+        }
+
+        if ( "boolean".equals( type ) || "Boolean".equals( type ) )
+        {
+            sc.add( "writeVarint( " + value + " ? 1 : 0 );" );
+        }
+        else if ( "char".equals( type ) || "Character".equals( type ) )
+        {
+            sc.add( "writeVarint( " + value + " );" );
+        }
+        else if ( "long".equals( type ) || "Long".equals( type ) )
+        {
+            sc.add( "writeSignedVarLong( " + value + " );" );
+        }
+        else if ( isDate( type ) )
+        {
+            sc.add( "writeSignedVarLong( " + value + ".getTime() );" );
+        }
+        else if ( "double".equals( type ) || "Double".equals( type ) )
+        {
+            sc.add( "writeFixed64( Double.doubleToLongBits( " + value + " ) );" );
+        }
+        else if ( "float".equals( type ) || "Float".equals( type ) )
+        {
+            sc.add( "writeFixed32( Float.floatToIntBits( " + value + " ) );" );
+        }
+        else if ( "String".equals( type ) )
+        {
+            sc.add( "writeString( " + value + " );" );
+        }
+        else if ( "DOM".equals( type ) )
+        {
+            sc.add( "writeDom( (Xpp3Dom) " + value + " );" );
+        }
+        else if ( getWireType( type, field ) == VARINT )
+        {
+            // byte, short and int
+            sc.add( "writeSignedVarint( " + value + " );" );
+        }
+    }
+
+    private void writeDomMethod( JClass jClass )
+    {
+        JMethod method = new JMethod( "writeDom" );
+        method.getModifiers().makePrivate();
+        method.addParameter( new JParameter( new JClass( "Xpp3Dom" ), "dom" ) );
+        method.addException( new JClass( "java.io.IOException" ) );
+
+        JSourceCode sc = method.getSourceCode();
+
+        sc.add( "writeVarint( ( 1 << 3 ) | STRING );" );
+        sc.add( "writeString( dom.getName() );" );
+
+        sc.add( "if ( dom.getValue() != null )" );
+        sc.add( "{" );
+        sc.indent();
+        sc.add( "writeVarint( ( 2 << 3 ) | STRING );" );
+        sc.add( "writeString( dom.getValue() );" );
+        sc.unindent();
+        sc.add( "}" );
+
+        sc.add( "String[] attributeNames = dom.getAttributeNames();" );
+        sc.add( "if ( attributeNames.length > 0 )" );
+        sc.add( "{" );
+        sc.indent();
+        sc.add( "writeVarint( ( 3 << 3 ) | LIST );" );
+        sc.add( "writeVarint( attributeNames.length * 2 );" );
+        sc.add( "writeVarint( STRING );" );
+        sc.add( "for ( int i = 0; i < attributeNames.length; i++ )" );
+        sc.add( "{" );
+        sc.indent();
+        sc.add( "writeString( attributeNames[i] );" );
+        sc.add( "writeString( dom.getAttribute( attributeNames[i] ) );" );
+        sc.unindent();
+        sc.add( "}" );
+        sc.unindent();
+        sc.add( "}" );
+
+        sc.add( "if ( dom.getChildCount() > 0 )" );
+        sc.add( "{" );
+        sc.indent();
+        sc.add( "writeVarint( ( 4 << 3 ) | LIST );" );
+        sc.add( "writeVarint( dom.getChildCount() );" );
+        sc.add( "writeVarint( OBJECT );" );
+        sc.add( "for ( int i = 0; i < dom.getChildCount(); i++ )" );
+        sc.add( "{" );
+        sc.addIndented( "writeDom( dom.getChild( i ) );" );
+        sc.add( "}" );
+        sc.unindent();
+        sc.add( "}" );
+
+        sc.add( "writeVarint( 0 );" );
+
+        jClass.addMethod( method );
+    }
+
+    /**
+     * Write the methods encoding the values in the buffer.
+     */
+    private void writeHelpers( JClass jClass )
+    {
+        JMethod method = new JMethod( "ensure" );
+        method.getModifiers().makePrivate();
+        method.addParameter( new JParameter( JType.INT, "length" ) );
+        method.addException( new JClass( "java.io.IOException" ) );
+        method.setComment( "Makes room for <code>length</code> bytes in the buffer, at most its size." );
+        JSourceCode sc = method.getSourceCode();
+        sc.add( "if ( buffer.length - count < length )" );
+        sc.add( "{" );
+        sc.indent();
+        sc.add( "out.write( buffer, 0, count );" );
+        sc.add( "count = 0;" );
+        sc.unindent();
+        sc.add( "}" );
+        jClass.addMethod( method );
+
+        method = new JMethod( "writeVarint" );
+        method.getModifiers().makePrivate();
+        method.addParameter( new JParameter( JType.INT, "value" ) );
+        method.addException( new JClass( "java.io.IOException" ) );
+        sc = method.getSourceCode();
+        sc.add( "ensure( 5 );" );
+        sc.add( "while ( ( value & ~0x7F ) != 0 )" );
+        sc.add( "{" );
+        sc.indent();
+        sc.add( "buffer[count++] = (byte) ( ( value & 0x7F ) | 0x80 );" );
+        sc.add( "value >>>= 7;" );
+        sc.unindent();
+        sc.add( "}" );
+        sc.add( "buffer[count++] = (byte) value;" );
+        jClass.addMethod( method );
+
+        method = new JMethod( "writeVarLong" );
+        method.getModifiers().makePrivate();
+        method.addParameter( new JParameter( JType.LONG, "value" ) );
+        method.addException( new JClass( "java.io.IOException" ) );
+        sc = method.getSourceCode();
+        sc.add( "ensure( 10 );" );
+        sc.add( "while ( ( value & ~0x7FL ) != 0 )" );
+        sc.add( "{" );
+        sc.indent();
+        sc.add( "buffer[count++] = (byte) ( ( value & 0x7F ) | 0x80 );" );
+        sc.add( "value >>>= 7;" );
+        sc.unindent();
+        sc.add( "}" );
+        sc.add( "buffer[count++] = (byte) value;" );
+        jClass.addMethod( method );
+
+        method = new JMethod( "writeSignedVarint" );
+        method.getModifiers().makePrivate();
+        method.addParameter( new JParameter( JType.INT, "value" ) );
+        method.addException( new JClass( "java.io.IOException" ) );
+        method.setComment( "Writes a zigzag encoded varint, short for small negative values too." );
+        method.setSourceCode( "writeVarint( ( value << 1 ) ^ ( value >> 31 ) );" );
+        jClass.addMethod( method );
+
+        method = new JMethod( "writeSignedVarLong" );
+        method.getModifiers().makePrivate();
+        method.addParameter( new JParameter( JType.LONG, "value" ) );
+        method.addException( new JClass( "java.io.IOException" ) );
+        method.setSourceCode( "writeVarLong( ( value << 1 ) ^ ( value >> 63 ) );" );
+        jClass.addMethod( method );
+
+        method = new JMethod( "writeFixed32" );
+        method.getModifiers().makePrivate();
+        method.addParameter( new JParameter( JType.INT, "value" ) );
+        method.addException( new JClass( "java.io.IOException" ) );
+        sc = method.getSourceCode();
+        sc.add( "ensure( 4 );" );
+        sc.add( "buffer[count++] = (byte) value;" );
+        sc.add( "buffer[count++] = (byte) ( value >> 8 );" );
+        sc.add( "buffer[count++] = (byte) ( value >> 16 );" );
+        sc.add( "buffer[count++] = (byte) ( value >> 24 );" );
+        jClass.addMethod( method );
+
+        method = new JMethod( "writeFixed64" );
+        method.getModifiers().makePrivate();
+        method.addParameter( new JParameter( JType.LONG, "value" ) );
+        method.addException( new JClass( "java.io.IOException" ) );
+        sc = method.getSourceCode();
+        sc.add( "writeFixed32( (int) value );" );
+        sc.add( "writeFixed32( (int) ( value >>> 32 ) );" );
+        jClass.addMethod( method );
+
+        method = new JMethod( "writeString" );
+        method.getModifiers().makePrivate();
+        method.addParameter( new JParameter( new JClass( "String" ), "value" ) );
+        method.addException( new JClass( "java.io.IOException" ) );
+        method.setComment( "Writes a reference to a string: <code>0</code> for null, a back-reference to a string "
+            + "already written,\nor <code>1</code> followed by the length and the UTF-8 bytes of a new string." );
+        sc = method.getSourceCode();
+        sc.add( "if ( value == null )" );
+        sc.add( "{" );
+        sc.indent();
+        sc.add( "writeVarint( 0 );" );
+        sc.add( "return;" );
+        sc.unindent();
+        sc.add( "}" );
+        sc.add( "Integer reference = (Integer) strings.get( value );" );
+        sc.add( "if ( reference != null )" );
+        sc.add( "{" );
+        sc.indent();
+        sc.add( "writeVarint( reference.intValue() );" );
+        sc.add( "return;" );
+        sc.unindent();
+        sc.add( "}" );
+        sc.add( "strings.put( value, " + ( useJava5 ? "Integer.valueOf" : "new Integer" )
+            + "( strings.size() + 2 ) );" );
+        sc.add( "writeVarint( 1 );" );
+        sc.add( "int length = value.length();" );
+        sc.add( "int ascii = 0;" );
+        sc.add( "while ( ascii < length && value.charAt( ascii ) < 0x80 )" );
+        sc.add( "{" );
+        sc.addIndented( "ascii++;" );
+        sc.add( "}" );
+        sc.add( "if ( ascii == length && length <= buffer.length - 5 )" );
+        sc.add( "{" );
+        sc.indent();
+        sc.add( "// ASCII strings are copied to the buffer, other ones encoded by the JDK" );
+        sc.add( "writeVarint( length );" );
+        sc.add( "ensure( length );" );
+        sc.add( "for ( int i = 0; i < length; i++ )" );
+        sc.add( "{" );
+        sc.addIndented( "buffer[count++] = (byte) value.charAt( i );" );
+        sc.add( "}" );
+        sc.unindent();
+        sc.add( "}" );
+        sc.add( "else" );
+        sc.add( "{" );
+        sc.addIndented( "writeBytes( value.getBytes( \"UTF-8\" ) );" );
+        sc.add( "}" );
+        jClass.addMethod( method );
+
+        method = new JMethod( "writeBytes" );
+        method.getModifiers().makePrivate();
+        method.addParameter( new JParameter( JType.BYTE.createArray(), "bytes" ) );
+        method.addException( new JClass( "java.io.IOException" ) );
+        method.setComment( "Writes the length of <code>bytes</code> then the bytes." );
+        sc = method.getSourceCode();
+        sc.add( "writeVarint( bytes.length );" );
+        sc.add( "if ( bytes.length <= buffer.length - count )" );
+        sc.add( "{" );
+        sc.indent();
+        sc.add( "System.arraycopy( bytes, 0, buffer, count, bytes.length );" );
+        sc.add( "count += bytes.length;" );
+        sc.unindent();
+        sc.add( "}" );
+        sc.add( "else" );
+        sc.add( "{" );
+        sc.indent();
+        sc.add( "out.write( buffer, 0, count );" );
+        sc.add( "out.write( bytes );" );
+        sc.add( "count = 0;" );
+        sc.unindent();
+        sc.add( "}" );
+        jClass.addMethod( method );
+    }
+}
@@ -0,0 +1,81 @@
+package org.codehaus.modello.plugin.binary;
+
+/*
+ * Copyright (c) 2004, Codehaus.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import org.codehaus.modello.AbstractModelloJavaGeneratorTest;
+import org.codehaus.modello.ModelloParameterConstants;
+import org.codehaus.modello.core.ModelloCore;
+import org.codehaus.modello.model.Model;
+
+import java.util.Properties;
+
+/**
+ * Test the binary generators, with a model evolving between two versions, and with two revisions of a model file:
+ * each version or revision is generated in its own package, and the verifier reads documents written by one version
+ * or revision with the other one.
+ */
+public class BinaryGeneratorTest
+    extends AbstractModelloJavaGeneratorTest
+{
+    public BinaryGeneratorTest()
+    {
+        super( "binary" );
+    }
+
+    public void testBinaryGenerator()
+        throws Throwable
+    {
+        ModelloCore modello = (ModelloCore) container.lookup( ModelloCore.ROLE );
+
+        Model model = modello.loadModel( getXmlResourceReader( "/binary.mdo" ) );
+
+        String[] versions = { "1.0.0", "2.0.0" };
+
+        for ( int i = 0; i < versions.length; i++ )
+        {
+            Properties parameters = getModelloParameters( versions[i] );
+            parameters.setProperty( ModelloParameterConstants.PACKAGE_WITH_VERSION, Boolean.toString( true ) );
+
+            modello.generate( model, "java", parameters );
+            modello.generate( model, "binary-writer", parameters );
+            modello.generate( model, "binary-reader", parameters );
+        }
+
+        String[] revisions = { "/revision-1.mdo", "/revision-2.mdo" };
+
+        for ( int i = 0; i < revisions.length; i++ )
+        {
+            model = modello.loadModel( getXmlResourceReader( revisions[i] ) );
+
+            Properties parameters = getModelloParameters( "1.0.0" );
+
+            modello.generate( model, "java", parameters );
+            modello.generate( model, "binary-writer", parameters );
+            modello.generate( model, "binary-reader", parameters );
+        }
+
+        compileGeneratedSources();
+
+        verifyCompiledGeneratedSources( "org.codehaus.modello.generator.binary.BinaryVerifier" );
+    }
+}
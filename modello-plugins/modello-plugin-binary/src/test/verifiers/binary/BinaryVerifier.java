@@ -0,0 +1,375 @@
+package org.codehaus.modello.generator.binary;
+
+/*
+ * Copyright (c) 2004, Codehaus.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import junit.framework.Assert;
+import org.codehaus.modello.test.binary.v1_0_0.io.binary.CacheBinaryReader;
+import org.codehaus.modello.test.binary.v1_0_0.io.binary.CacheBinaryWriter;
+import org.codehaus.modello.test.binary.v2_0_0.Cache;
+import org.codehaus.modello.test.binary.v2_0_0.Entry;
+import org.codehaus.modello.test.binary.v2_0_0.Person;
+import org.codehaus.modello.verifier.Verifier;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Date;
+
+/**
+ * @version $Id$
+ */
+public class BinaryVerifier
+    extends Verifier
+{
+    public void verify()
+        throws IOException
+    {
+        verifyRoundTrip();
+
+        verifyStringReferences();
+
+        verifyOlderReader();
+
+        verifyNewerReader();
+
+        verifyRevisions();
+
+        verifyInvalidDocuments();
+    }
+
+    private Cache createCache()
+    {
+        Cache cache = new Cache();
+        cache.setName( "cache \u00e9\u20ac\ud834\udd1e" );
+        cache.setCreated( new Date( 1234567890123L ) );
+        cache.setSize( -5000000000L );
+        cache.setRatio( Math.PI );
+        cache.setWeight( -1.5f );
+        cache.setLevel( (short) -300 );
+        cache.setFlag( (byte) -128 );
+        cache.setLetter( '\u00e9' );
+        cache.setEnabled( false );
+        cache.setCount( "many" );
+        cache.setTimeout( new Integer( Integer.MIN_VALUE ) );
+        cache.setShared( Boolean.FALSE );
+
+        StringBuffer description = new StringBuffer();
+        for ( int i = 0; i < 2000; i++ )
+        {
+            description.append( "line " ).append( i ).append( '\n' );
+        }
+        cache.setDescription( description.toString() );
+
+        for ( int i = 0; i < 3; i++ )
+        {
+            Entry entry = new Entry();
+            entry.setKey( "key" + i );
+            entry.setValue( i == 1 ? null : "value" );
+            entry.setHits( i * 1000 );
+            cache.addEntry( entry );
+        }
+
+        cache.addTag( "first" );
+        cache.addTag( "second" );
+        cache.addId( "id" );
+        cache.addProperty( "key0", "value" );
+        cache.addProperty( "other", "" );
+
+        Person owner = new Person();
+        owner.setName( "owner" );
+        owner.setEmail( "owner@codehaus.org" );
+        owner.setAge( 42 );
+        cache.setOwner( owner );
+
+        Xpp3Dom configuration = new Xpp3Dom( "configuration" );
+        configuration.setAttribute( "combine.children", "append" );
+        Xpp3Dom child = new Xpp3Dom( "child" );
+        child.setValue( "value" );
+        configuration.addChild( child );
+        configuration.addChild( new Xpp3Dom( "empty" ) );
+        cache.setConfiguration( configuration );
+
+        Entry old = new Entry();
+        old.setKey( "old" );
+        cache.addHistory( old );
+
+        return cache;
+    }
+
+    private byte[] write( Cache cache )
+        throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        new org.codehaus.modello.test.binary.v2_0_0.io.binary.CacheBinaryWriter().write( out, cache );
+
+        return out.toByteArray();
+    }
+
+    private Cache read( byte[] bytes )
+        throws IOException
+    {
+        return new org.codehaus.modello.test.binary.v2_0_0.io.binary.CacheBinaryReader().read(
+            new ByteArrayInputStream( bytes ) );
+    }
+
+    public void verifyRoundTrip()
+        throws IOException
+    {
+        Cache expected = createCache();
+
+        Cache actual = read( write( expected ) );
+
+        Assert.assertEquals( expected.getName(), actual.getName() );
+        Assert.assertEquals( expected.getCreated(), actual.getCreated() );
+        Assert.assertEquals( expected.getSize(), actual.getSize() );
+        Assert.assertEquals( expected.getRatio(), actual.getRatio(), 0 );
+        Assert.assertEquals( expected.getWeight(), actual.getWeight(), 0 );
+        Assert.assertEquals( expected.getLevel(), actual.getLevel() );
+        Assert.assertEquals( expected.getFlag(), actual.getFlag() );
+        Assert.assertEquals( expected.getLetter(), actual.getLetter() );
+        Assert.assertEquals( expected.isEnabled(), actual.isEnabled() );
+        Assert.assertEquals( expected.getCount(), actual.getCount() );
+        Assert.assertEquals( expected.getTimeout(), actual.getTimeout() );
+        Assert.assertEquals( expected.isShared(), actual.isShared() );
+        Assert.assertEquals( expected.getDescription(), actual.getDescription() );
+
+        Assert.assertEquals( 3, actual.getEntries().size() );
+        for ( int i = 0; i < 3; i++ )
+        {
+            Entry expectedEntry = (Entry) expected.getEntries().get( i );
+            Entry actualEntry = (Entry) actual.getEntries().get( i );
+
+            Assert.assertEquals( expectedEntry.getKey(), actualEntry.getKey() );
+            Assert.assertEquals( expectedEntry.getValue(), actualEntry.getValue() );
+            Assert.assertEquals( expectedEntry.getHits(), actualEntry.getHits() );
+        }
+
+        Assert.assertEquals( expected.getTags(), actual.getTags() );
+        Assert.assertEquals( expected.getIds(), actual.getIds() );
+        Assert.assertEquals( expected.getProperties(), actual.getProperties() );
+
+        Assert.assertEquals( "owner", actual.getOwner().getName() );
+        Assert.assertEquals( "owner@codehaus.org", actual.getOwner().getEmail() );
+        Assert.assertEquals( 42, actual.getOwner().getAge() );
+
+        Assert.assertEquals( expected.getConfiguration(), actual.getConfiguration() );
+        Assert.assertEquals( "append", ( (Xpp3Dom) actual.getConfiguration() ).getAttribute( "combine.children" ) );
+
+        Assert.assertEquals( 1, actual.getHistory().size() );
+        Assert.assertEquals( "old", ( (Entry) actual.getHistory().get( 0 ) ).getKey() );
+
+        // fields equal to their default value are not written
+        Cache empty = read( write( new Cache() ) );
+
+        Assert.assertNull( empty.getName() );
+        Assert.assertTrue( empty.isEnabled() );
+        Assert.assertEquals( 0, empty.getEntries().size() );
+        Assert.assertNull( empty.getOwner() );
+    }
+
+    public void verifyStringReferences()
+        throws IOException
+    {
+        Cache cache = new Cache();
+
+        for ( int i = 0; i < 100; i++ )
+        {
+            Entry entry = new Entry();
+            entry.setKey( "org.codehaus.modello" );
+            entry.setValue( "modello-plugin-binary" );
+            cache.addEntry( entry );
+        }
+
+        byte[] bytes = write( cache );
+
+        // each entry takes 6 bytes: 2 tags, 2 references and the end of the object
+        Assert.assertTrue( "string references are used, size " + bytes.length, bytes.length < 100 * 6 + 60 );
+
+        Cache actual = read( bytes );
+
+        Assert.assertEquals( 100, actual.getEntries().size() );
+        Assert.assertEquals( "modello-plugin-binary", ( (Entry) actual.getEntries().get( 99 ) ).getValue() );
+    }
+
+    /**
+     * A document written with 2.0.0 is read with 1.0.0: the fields added in 2.0.0, and the count field now written as
+     * a String, are skipped.
+     */
+    public void verifyOlderReader()
+        throws IOException
+    {
+        org.codehaus.modello.test.binary.v1_0_0.Cache cache =
+            new CacheBinaryReader().read( new ByteArrayInputStream( write( createCache() ) ) );
+
+        Assert.assertEquals( "cache \u00e9\u20ac\ud834\udd1e", cache.getName() );
+        Assert.assertEquals( -5000000000L, cache.getSize() );
+        Assert.assertEquals( 0, cache.getCount() );
+        Assert.assertEquals( new Integer( Integer.MIN_VALUE ), cache.getTimeout() );
+        Assert.assertEquals( 3, cache.getEntries().size() );
+        Assert.assertEquals( "key2",
+                             ( (org.codehaus.modello.test.binary.v1_0_0.Entry) cache.getEntries().get( 2 ) ).getKey() );
+        Assert.assertEquals( 2, cache.getTags().size() );
+        Assert.assertEquals( "owner", cache.getOwner().getName() );
+        Assert.assertEquals( "owner@codehaus.org", cache.getOwner().getEmail() );
+        Assert.assertEquals( "child", ( (Xpp3Dom) cache.getConfiguration() ).getChild( 0 ).getName() );
+    }
+
+    /**
+     * A document written with 1.0.0 is read with 2.0.0: the count field written as an int is skipped.
+     */
+    public void verifyNewerReader()
+        throws IOException
+    {
+        org.codehaus.modello.test.binary.v1_0_0.Cache cache = new org.codehaus.modello.test.binary.v1_0_0.Cache();
+        cache.setName( "old cache" );
+        cache.setCount( 12 );
+        cache.setLetter( 'x' );
+
+        org.codehaus.modello.test.binary.v1_0_0.Person owner = new org.codehaus.modello.test.binary.v1_0_0.Person();
+        owner.setName( "owner" );
+        cache.setOwner( owner );
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new CacheBinaryWriter().write( out, cache );
+
+        Cache actual = read( out.toByteArray() );
+
+        Assert.assertEquals( "old cache", actual.getName() );
+        Assert.assertNull( actual.getCount() );
+        Assert.assertEquals( 'x', actual.getLetter() );
+        Assert.assertNull( actual.getDescription() );
+        Assert.assertEquals( "owner", actual.getOwner().getName() );
+        Assert.assertEquals( 0, actual.getOwner().getAge() );
+    }
+
+    /**
+     * A document written with the first revision of a model is read with the second one, which appended fields to a
+     * subclass and to its super class, and the other way round: the fields of both classes keep their ids.
+     */
+    public void verifyRevisions()
+        throws IOException
+    {
+        org.codehaus.modello.test.binary.revision1.Contact first =
+            new org.codehaus.modello.test.binary.revision1.Contact();
+        first.setName( "first" );
+        first.setEmail( "first@codehaus.org" );
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new org.codehaus.modello.test.binary.revision1.io.binary.RevisionBinaryWriter().write( out, first );
+
+        org.codehaus.modello.test.binary.revision2.Contact second =
+            new org.codehaus.modello.test.binary.revision2.io.binary.RevisionBinaryReader().read(
+                new ByteArrayInputStream( out.toByteArray() ) );
+
+        Assert.assertEquals( "first", second.getName() );
+        Assert.assertEquals( "first@codehaus.org", second.getEmail() );
+        Assert.assertNull( second.getNickname() );
+        Assert.assertNull( second.getPhone() );
+
+        second.setName( "second" );
+        second.setNickname( "2nd" );
+        second.setPhone( "555" );
+
+        out = new ByteArrayOutputStream();
+        new org.codehaus.modello.test.binary.revision2.io.binary.RevisionBinaryWriter().write( out, second );
+
+        first = new org.codehaus.modello.test.binary.revision1.io.binary.RevisionBinaryReader().read(
+            new ByteArrayInputStream( out.toByteArray() ) );
+
+        Assert.assertEquals( "second", first.getName() );
+        Assert.assertEquals( "first@codehaus.org", first.getEmail() );
+    }
+
+    public void verifyInvalidDocuments()
+        throws IOException
+    {
+        byte[] bytes = write( createCache() );
+
+        byte[] truncated = new byte[bytes.length / 2];
+        System.arraycopy( bytes, 0, truncated, 0, truncated.length );
+
+        try
+        {
+            read( truncated );
+
+            Assert.fail( "truncated document" );
+        }
+        catch ( EOFException e )
+        {
+            // expected
+        }
+
+        bytes[0] = '<';
+
+        try
+        {
+            read( bytes );
+
+            Assert.fail( "not a binary document" );
+        }
+        catch ( IOException e )
+        {
+            Assert.assertEquals( "Not a binary Cache document", e.getMessage() );
+        }
+
+        // a negative string length: name field, new string, length -1
+        byte[] header = { 'M', 'D', 'L', 'B', 1 };
+        byte[] negativeLength = { ( 1 << 3 ) | 2, 1, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F };
+
+        try
+        {
+            read( concat( header, negativeLength ) );
+
+            Assert.fail( "negative string length" );
+        }
+        catch ( IOException e )
+        {
+            Assert.assertEquals( "Malformed string length: -1", e.getMessage() );
+        }
+
+        // a negative list size: entries field, size -1
+        byte[] negativeSize = { ( 15 << 3 ) | 5, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F };
+
+        try
+        {
+            read( concat( header, negativeSize ) );
+
+            Assert.fail( "negative list size" );
+        }
+        catch ( IOException e )
+        {
+            Assert.assertEquals( "Malformed list size: -1", e.getMessage() );
+        }
+    }
+
+    private byte[] concat( byte[] first, byte[] second )
+    {
+        byte[] bytes = new byte[first.length + second.length];
+        System.arraycopy( first, 0, bytes, 0, first.length );
+        System.arraycopy( second, 0, bytes, first.length, second.length );
+        return bytes;
+    }
+}
@@ -29,10 +29,13 @@ import org.codehaus.modello.model.ModelClass;
 import org.codehaus.modello.model.ModelDefault;
 import org.codehaus.modello.model.ModelField;
 import org.codehaus.modello.plugin.java.javasource.JClass;
+import org.codehaus.modello.plugin.java.javasource.JConstructor;
+import org.codehaus.modello.plugin.java.javasource.JField;
 import org.codehaus.modello.plugin.java.javasource.JMethod;
 import org.codehaus.modello.plugin.java.javasource.JParameter;
 import org.codehaus.modello.plugin.java.javasource.JSourceCode;
 import org.codehaus.modello.plugin.java.javasource.JSourceWriter;
+import org.codehaus.modello.plugin.java.javasource.JType;
 import org.codehaus.modello.plugin.java.metadata.JavaFieldMetadata;
 import org.codehaus.modello.plugin.model.ModelClassMetadata;
 import org.codehaus.modello.plugins.xml.AbstractXmlJavaGenerator;
@@ -41,7 +44,9 @@ import org.codehaus.modello.plugins.xml.metadata.XmlFieldMetadata;
 import org.codehaus.modello.plugins.xml.metadata.XmlModelMetadata;
 
 import java.io.IOException;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 
 /**
@@ -57,6 +62,11 @@ public class Dom4jWriterGenerator
 
     private boolean requiresDomSupport;
 
+    /**
+     * The constants of the qualified names used by the writer, by element name or <code>@</code> attribute name.
+     */
+    private Map<String, String> qNames;
+
     public void generate( Model model, Properties parameters )
         throws ModelloException
     {
@@ -64,6 +74,8 @@ public class Dom4jWriterGenerator
 
         requiresDomSupport = false;
 
+        qNames = new LinkedHashMap<String, String>();
+
         try
         {
             generateDom4jWriter();
@@ -100,6 +112,8 @@ public class Dom4jWriterGenerator
         jClass.addImport( "org.dom4j.DocumentException" );
         jClass.addImport( "org.dom4j.DocumentFactory" );
         jClass.addImport( "org.dom4j.Element" );
+        jClass.addImport( "org.dom4j.Namespace" );
+        jClass.addImport( "org.dom4j.QName" );
         jClass.addImport( "org.dom4j.io.OutputFormat" );
         jClass.addImport( "org.dom4j.io.XMLWriter" );
 
@@ -127,12 +141,10 @@ public class Dom4jWriterGenerator
 
         sc.add( "Document document = new DocumentFactory().createDocument();" );
 
-        sc.add( "write" + root + "( " + variableName + ", \"" + rootElement + "\", document );" );
+        sc.add( "write" + root + "( " + variableName + ", " + getQName( rootElement, false ) + ", document );" );
 
-        // TODO: pretty printing optional
-        sc.add( "OutputFormat format = OutputFormat.createPrettyPrint();" );
-        sc.add( "format.setLineSeparator( System.getProperty( \"line.separator\" ) );" );
-        sc.add( "XMLWriter serializer = new XMLWriter( writer, format );" );
+        writeOutputFormat( sc );
+        sc.add( "XMLWriter serializer = new ScanningXMLWriter( writer, format );" );
 
         sc.add( "serializer.write( document );" );
 
@@ -153,13 +165,11 @@ public class Dom4jWriterGenerator
 
         sc.add( "Document document = new DocumentFactory().createDocument();" );
 
-        sc.add( "write" + root + "( " + variableName + ", \"" + rootElement + "\", document );" );
+        sc.add( "write" + root + "( " + variableName + ", " + getQName( rootElement, false ) + ", document );" );
 
-        // TODO: pretty printing optional
-        sc.add( "OutputFormat format = OutputFormat.createPrettyPrint();" );
-        sc.add( "format.setLineSeparator( System.getProperty( \"line.separator\" ) );" );
+        writeOutputFormat( sc );
         sc.add( "format.setEncoding( " + variableName + ".getModelEncoding() );" );
-        sc.add( "XMLWriter serializer = new XMLWriter( stream, format );" );
+        sc.add( "XMLWriter serializer = new ScanningXMLWriter( stream, format );" );
 
         sc.add( "serializer.write( document );" );
 
@@ -167,6 +177,10 @@ public class Dom4jWriterGenerator
 
         writeAllClasses( objectModel, jClass );
 
+        writeQNames( objectModel, jClass );
+
+        writeScanningXMLWriter( jClass );
+
         if ( requiresDomSupport )
         {
             jClass.addImport( "org.codehaus.plexus.util.xml.Xpp3Dom" );
@@ -178,6 +192,24 @@ public class Dom4jWriterGenerator
         sourceWriter.close();
     }
 
+    /**
+     * Writes the creation of the output <code>format</code>: pretty printed, unless the output is compact. The compact
+     * format keeps texts as they are, unlike <code>OutputFormat.createCompactFormat()</code> which trims them.
+     */
+    private void writeOutputFormat( JSourceCode sc )
+    {
+        if ( compactOutput )
+        {
+            sc.add( "OutputFormat format = new OutputFormat();" );
+            sc.add( "format.setNewLineAfterDeclaration( false );" );
+        }
+        else
+        {
+            sc.add( "OutputFormat format = OutputFormat.createPrettyPrint();" );
+            sc.add( "format.setLineSeparator( System.getProperty( \"line.separator\" ) );" );
+        }
+    }
+
     private void writeAllClasses( Model objectModel, JClass jClass )
         throws ModelloException
     {
@@ -198,7 +230,7 @@ public class Dom4jWriterGenerator
         marshall.getModifiers().makePrivate();
 
         marshall.addParameter( new JParameter( new JClass( className ), uncapClassName ) );
-        marshall.addParameter( new JParameter( new JClass( "String" ), "tagName" ) );
+        marshall.addParameter( new JParameter( new JClass( "QName" ), "tagName" ) );
 
         ModelClassMetadata classMetadata = (ModelClassMetadata) modelClass.getMetadata( ModelClassMetadata.ID );
 
@@ -219,7 +251,7 @@ public class Dom4jWriterGenerator
         if ( classMetadata.isRootElement() && ( xmlModelMetadata.getNamespace() != null ) )
         {
             String namespace = xmlModelMetadata.getNamespace( getGeneratedVersion() );
-            sc.add( "Element element = parentElement.addElement( tagName, \"" + namespace + "\" );" );
+            sc.add( "Element element = parentElement.addElement( tagName );" );
 
             if ( xmlModelMetadata.getSchemaLocation() != null )
             {
@@ -266,7 +298,7 @@ public class Dom4jWriterGenerator
                 sc.add( getValueChecker( type, value, field ) );
 
                 sc.add( "{" );
-                sc.addIndented( "element.addAttribute( \"" + fieldTagName + "\", "
+                sc.addIndented( "element.addAttribute( " + getQName( fieldTagName, true ) + ", "
                                 + getValue( field.getType(), value, xmlFieldMetadata ) + " );" );
                 sc.add( "}" );
             }
@@ -324,7 +356,8 @@ public class Dom4jWriterGenerator
                 sc.add( getValueChecker( type, value, association ) );
 
                 sc.add( "{" );
-                sc.addIndented( "write" + association.getTo() + "( " + value + ", \"" + fieldTagName + "\", element );" );
+                sc.addIndented( "write" + association.getTo() + "( " + value + ", " + getQName( fieldTagName, false )
+                    + ", element );" );
                 sc.add( "}" );
             }
             else
@@ -352,7 +385,7 @@ public class Dom4jWriterGenerator
 
                     if ( wrappedItems )
                     {
-                        sc.add( "listElement = element.addElement( \"" + fieldTagName + "\" );" );
+                        sc.add( "listElement = element.addElement( " + getQName( fieldTagName, false ) + " );" );
                     }
 
                     sc.add( "for ( Iterator iter = " + value + ".iterator(); iter.hasNext(); )" );
@@ -364,14 +397,14 @@ public class Dom4jWriterGenerator
                     {
                         sc.add( toType + " o = (" + toType + ") iter.next();" );
 
-                        sc.add( "write" + toType + "( o, \"" + valuesTagName + "\", listElement );" );
+                        sc.add( "write" + toType + "( o, " + getQName( valuesTagName, false ) + ", listElement );" );
                     }
                     else
                     {
                         sc.add( toType + " " + singular( uncapitalise( field.getName() ) ) + " = (" + toType
                             + ") iter.next();" );
 
-                        sc.add( "listElement.addElement( \"" + valuesTagName + "\" ).setText( "
+                        sc.add( "listElement.addElement( " + getQName( valuesTagName, false ) + " ).setText( "
                             + singular( uncapitalise( field.getName() ) ) + " );" );
                     }
 
@@ -394,7 +427,7 @@ public class Dom4jWriterGenerator
 
                     if ( wrappedItems )
                     {
-                        sc.add( "listElement = element.addElement( \"" + fieldTagName + "\" );" );
+                        sc.add( "listElement = element.addElement( " + getQName( fieldTagName, false ) + " );" );
                     }
 
                     sc.add( "for ( Iterator iter = " + value + ".keySet().iterator(); iter.hasNext(); )" );
@@ -408,10 +441,10 @@ public class Dom4jWriterGenerator
 
                     if ( xmlAssociationMetadata.isMapExplode() )
                     {
-                        sc.add( "Element assocElement = listElement.addElement( \"" + singular( associationName )
-                            + "\" );" );
-                        sc.add( "assocElement.addElement( \"key\" ).setText( key );" );
-                        sc.add( "assocElement.addElement( \"value\" ).setText( value );" );
+                        sc.add( "Element assocElement = listElement.addElement( "
+                            + getQName( singular( associationName ), false ) + " );" );
+                        sc.add( "assocElement.addElement( " + getQName( "key", false ) + " ).setText( key );" );
+                        sc.add( "assocElement.addElement( " + getQName( "value", false ) + " ).setText( value );" );
                     }
                     else
                     {
@@ -441,7 +474,7 @@ public class Dom4jWriterGenerator
             }
             else
             {
-                sc.add( "element.addElement( \"" + fieldTagName + "\" ).setText( "
+                sc.add( "element.addElement( " + getQName( fieldTagName, false ) + " ).setText( "
                     + getValue( field.getType(), value, xmlFieldMetadata ) + " );" );
             }
 
@@ -450,6 +483,142 @@ public class Dom4jWriterGenerator
         }
     }
 
+    /**
+     * Returns the constant of the qualified name of an element or an attribute, which is created once instead of
+     * being resolved by Dom4j for each element.
+     */
+    private String getQName( String name, boolean attribute )
+    {
+        String key = ( attribute ? "@" : "" ) + name;
+
+        String constant = qNames.get( key );
+
+        if ( constant == null )
+        {
+            String prefix = attribute ? "ATTRIBUTE_" : "TAG_";
+
+            StringBuilder buffer = new StringBuilder( prefix );
+            for ( char c : name.toCharArray() )
+            {
+                if ( Character.isUpperCase( c ) && buffer.length() > prefix.length() )
+                {
+                    buffer.append( '_' );
+                }
+                buffer.append( Character.isJavaIdentifierPart( c ) ? Character.toUpperCase( c ) : '_' );
+            }
+
+            constant = buffer.toString();
+            for ( int i = 2; qNames.containsValue( constant ); i++ )
+            {
+                constant = buffer.toString() + '_' + i;
+            }
+
+            qNames.put( key, constant );
+        }
+
+        return constant;
+    }
+
+    private void writeQNames( Model objectModel, JClass jClass )
+    {
+        XmlModelMetadata xmlModelMetadata = (XmlModelMetadata) objectModel.getMetadata( XmlModelMetadata.ID );
+
+        JField field = new JField( new JClass( "Namespace" ), "NAMESPACE" );
+        field.setComment( "The namespace of the elements, inherited from the root element." );
+        field.getModifiers().setStatic( true );
+        field.getModifiers().setFinal( true );
+        field.getModifiers().makePrivate();
+        if ( xmlModelMetadata.getNamespace() != null )
+        {
+            field.setInitString( "Namespace.get( \"" + xmlModelMetadata.getNamespace( getGeneratedVersion() ) + "\" )" );
+        }
+        else
+        {
+            field.setInitString( "Namespace.NO_NAMESPACE" );
+        }
+        jClass.addField( field );
+
+        for ( Map.Entry<String, String> entry : qNames.entrySet() )
+        {
+            String key = entry.getKey();
+
+            field = new JField( new JClass( "QName" ), entry.getValue() );
+            field.getModifiers().setStatic( true );
+            field.getModifiers().setFinal( true );
+            field.getModifiers().makePrivate();
+            if ( key.startsWith( "@" ) )
+            {
+                field.setInitString( "QName.get( \"" + key.substring( 1 ) + "\" )" );
+            }
+            else
+            {
+                field.setInitString( "QName.get( \"" + key + "\", NAMESPACE )" );
+            }
+            jClass.addField( field );
+        }
+    }
+
+    /**
+     * Write the <code>ScanningXMLWriter</code>, which scans the texts for the characters to escape before escaping
+     * them: most texts have none and are written as is.
+     */
+    private void writeScanningXMLWriter( JClass jClass )
+    {
+        JClass writerClass = jClass.createInnerClass( "ScanningXMLWriter" );
+        writerClass.getModifiers().setStatic( true );
+        writerClass.getModifiers().makePrivate();
+        writerClass.setSuperClass( "XMLWriter" );
+        writerClass.getJDocComment().setComment( "XML writer escaping only the texts having characters to escape." );
+
+        for ( String output : new String[] { "Writer", "OutputStream" } )
+        {
+            JConstructor constructor = writerClass.createConstructor( new JParameter[] {
+                new JParameter( new JClass( output ), "out" ), new JParameter( new JClass( "OutputFormat" ), "format" ) } );
+            if ( "OutputStream".equals( output ) )
+            {
+                constructor.addException( new JClass( "java.io.UnsupportedEncodingException" ) );
+            }
+            constructor.getSourceCode().add( "super( out, format );" );
+        }
+
+        JMethod method = new JMethod( "escapeElementEntities", new JClass( "String" ), null );
+        method.getModifiers().makeProtected();
+        method.addParameter( new JParameter( new JClass( "String" ), "text" ) );
+        method.setSourceCode( "return hasEntities( text, false ) ? super.escapeElementEntities( text ) : text;" );
+        writerClass.addMethod( method );
+
+        method = new JMethod( "escapeAttributeEntities", new JClass( "String" ), null );
+        method.getModifiers().makeProtected();
+        method.addParameter( new JParameter( new JClass( "String" ), "text" ) );
+        method.setSourceCode( "return hasEntities( text, true ) ? super.escapeAttributeEntities( text ) : text;" );
+        writerClass.addMethod( method );
+
+        method = new JMethod( "hasEntities", JType.BOOLEAN, null );
+        method.getModifiers().makePrivate();
+        method.setComment( "Tells if a text has characters escaped by <code>XMLWriter</code>." );
+        method.addParameter( new JParameter( new JClass( "String" ), "text" ) );
+        method.addParameter( new JParameter( JType.BOOLEAN, "attribute" ) );
+        JSourceCode sc = method.getSourceCode();
+        sc.add( "int max = getMaximumAllowedCharacter();" );
+        sc.add( "if ( max <= 0 )" );
+        sc.add( "{" );
+        sc.addIndented( "max = Character.MAX_VALUE;" );
+        sc.add( "}" );
+        sc.add( "for ( int i = 0, length = text.length(); i < length; i++ )" );
+        sc.add( "{" );
+        sc.indent();
+        sc.add( "char c = text.charAt( i );" );
+        sc.add( "if ( c < 0x20 || c == '<' || c == '>' || c == '&' || c > max" );
+        sc.add( "    || ( attribute && ( c == '\"' || c == '\\'' ) ) )" );
+        sc.add( "{" );
+        sc.addIndented( "return true;" );
+        sc.add( "}" );
+        sc.unindent();
+        sc.add( "}" );
+        sc.add( "return false;" );
+        writerClass.addMethod( method );
+    }
+
     private void writeDomHelpers( JClass jClass )
     {
         JMethod method = new JMethod( "writeXpp3DomToElement" );
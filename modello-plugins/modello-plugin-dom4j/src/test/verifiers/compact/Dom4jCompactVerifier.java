@@ -0,0 +1,75 @@
+package org.codehaus.modello.generator.xml.dom4j;
+
+/*
+ * Copyright (c) 2004, Codehaus.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import org.codehaus.modello.test.compact.CompactDocument;
+import org.codehaus.modello.test.compact.io.dom4j.CompactDom4jReader;
+import org.codehaus.modello.test.compact.io.dom4j.CompactDom4jWriter;
+import org.codehaus.modello.test.features.Features;
+import org.codehaus.modello.test.features.io.dom4j.ModelloFeaturesTestDom4jReader;
+import org.codehaus.modello.test.features.io.dom4j.ModelloFeaturesTestDom4jWriter;
+import org.codehaus.modello.verifier.AbstractCompactVerifier;
+
+import java.io.Reader;
+import java.io.StringWriter;
+
+/**
+ * Verifies the documents written in compact output mode by the Dom4j writers.
+ *
+ * @version $Id$
+ */
+public class Dom4jCompactVerifier
+    extends AbstractCompactVerifier
+{
+    protected Object readFeatures( Reader reader )
+        throws Exception
+    {
+        return new ModelloFeaturesTestDom4jReader().read( reader );
+    }
+
+    protected String writeFeatures( Object features )
+        throws Exception
+    {
+        StringWriter buffer = new StringWriter();
+
+        new ModelloFeaturesTestDom4jWriter().write( buffer, (Features) features );
+
+        return buffer.toString();
+    }
+
+    protected Object readDocument( Reader reader )
+        throws Exception
+    {
+        return new CompactDom4jReader().read( reader );
+    }
+
+    protected String writeDocument( Object document )
+        throws Exception
+    {
+        StringWriter buffer = new StringWriter();
+
+        new CompactDom4jWriter().write( buffer, (CompactDocument) document );
+
+        return buffer.toString();
+    }
+}
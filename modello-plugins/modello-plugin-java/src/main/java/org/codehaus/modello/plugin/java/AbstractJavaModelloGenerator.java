@@ -24,8 +24,7 @@ package org.codehaus.modello.plugin.java;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.OutputStream;
-import java.io.Writer;
+import java.io.StringWriter;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
@@ -36,7 +35,10 @@ import java.util.Locale;
 import java.util.Properties;
 
 import org.codehaus.modello.ModelloException;
+import org.codehaus.modello.ModelloListener;
+import org.codehaus.modello.PhaseMeasure;
 import org.codehaus.modello.ModelloParameterConstants;
+import org.codehaus.modello.ModelloRuntimeException;
 import org.codehaus.modello.model.BaseElement;
 import org.codehaus.modello.model.Model;
 import org.codehaus.modello.model.ModelAssociation;
@@ -55,8 +57,8 @@ import org.codehaus.modello.plugin.java.metadata.JavaClassMetadata;
 import org.codehaus.modello.plugin.java.metadata.JavaFieldMetadata;
 import org.codehaus.modello.plugin.java.metadata.JavaModelMetadata;
 import org.codehaus.modello.plugin.model.ModelClassMetadata;
+import org.codehaus.plexus.util.FileUtils;
 import org.codehaus.plexus.util.StringUtils;
-import org.codehaus.plexus.util.WriterFactory;
 
 /**
  * AbstractJavaModelloGenerator - similar in scope to {@link AbstractModelloGenerator} but with features that
@@ -70,6 +72,8 @@ public abstract class AbstractJavaModelloGenerator
 {
     protected boolean useJava5 = false;
 
+    private int generationThreads = 1;
+
     protected void initialize( Model model, Properties parameters )
         throws ModelloException
     {
@@ -77,10 +81,30 @@ public abstract class AbstractJavaModelloGenerator
 
         useJava5 = Boolean.valueOf( getParameter( parameters,
                                                   ModelloParameterConstants.USE_JAVA5, "false" ) ).booleanValue();
+
+        String threads = getParameter( parameters, ModelloParameterConstants.GENERATION_THREADS, "1" );
+        try
+        {
+            generationThreads = Math.max( 1, Integer.parseInt( threads.trim() ) );
+        }
+        catch ( NumberFormatException e )
+        {
+            throw new ModelloException( "Invalid value for parameter '" + ModelloParameterConstants.GENERATION_THREADS
+                + "': '" + threads + "'.", e );
+        }
     }
 
     /**
-     * Create a new java source file writer, with configured encoding.
+     * @return the number of threads that can be used to generate sources concurrently, <code>1</code> for serial
+     */
+    protected int getGenerationThreads()
+    {
+        return generationThreads;
+    }
+
+    /**
+     * Create a new java source file writer, with configured encoding. The source is rendered to memory, then written
+     * when the writer is closed, only if it differs from the existing file.
      *
      * @param packageName the package of the source file to create
      * @param className the class of the source file to create
@@ -89,22 +113,124 @@ public abstract class AbstractJavaModelloGenerator
      */
     protected JSourceWriter newJSourceWriter( String packageName, String className )
         throws IOException
+    {
+        final File f = getSourceFile( packageName, className );
+
+        return new JSourceWriter( new StringWriter()
+        {
+            public void close()
+                throws IOException
+            {
+                super.close();
+
+                try
+                {
+                    writeSource( f, toString() );
+                }
+                catch ( IOException e )
+                {
+                    // JSourceWriter ignores IOException on close
+                    throw new ModelloRuntimeException( "Unable to write " + f.getAbsolutePath(), e );
+                }
+            }
+        } );
+    }
+
+    /**
+     * Write an already printed java source file, with configured encoding. Nothing is written if the existing file
+     * already has the same content, apart from the generation date in the header: unchanged sources keep their
+     * modification time and don't trigger recompilation.
+     *
+     * @param packageName the package of the source file to create
+     * @param className the class of the source file to create
+     * @param source the content of the source file
+     * @throws IOException
+     * @see #printSource(JStructure)
+     */
+    protected void writeSource( String packageName, String className, String source )
+        throws IOException
+    {
+        writeSource( getSourceFile( packageName, className ), source );
+    }
+
+    /**
+     * Print a java class or interface to memory: printing can then be done by worker threads while only the
+     * generating thread writes files through the build context.
+     *
+     * @param structure the class or interface to print
+     * @return the java source
+     */
+    protected String printSource( JStructure structure )
+    {
+        StringWriter buffer = new StringWriter();
+
+        JSourceWriter sourceWriter = new JSourceWriter( buffer );
+
+        structure.print( sourceWriter );
+
+        sourceWriter.close();
+
+        return buffer.toString();
+    }
+
+    private File getSourceFile( String packageName, String className )
     {
         String directory = packageName.replace( '.', File.separatorChar );
 
-        File f = new File( new File( getOutputDirectory(), directory ), className + ".java" );
+        return new File( new File( getOutputDirectory(), directory ), className + ".java" );
+    }
+
+    private void writeSource( File f, String source )
+        throws IOException
+    {
+        PhaseMeasure measure = startPhase();
+
+        if ( isUpToDate( f, source ) )
+        {
+            sourceGenerated( f, source, false, measure );
+
+            return;
+        }
 
         if ( !f.getParentFile().exists() )
         {
             f.getParentFile().mkdirs();
         }
 
-        OutputStream os = getBuildContext().newFileOutputStream( f );
+        writeFile( f, source, getEncoding() );
+
+        sourceGenerated( f, source, true, measure );
+    }
+
+    private void sourceGenerated( File f, String source, boolean written, PhaseMeasure measure )
+        throws IOException
+    {
+        if ( isMeasured() )
+        {
+            phaseCompleted( ModelloListener.WRITE, f.getName(), measure );
+
+            byte[] bytes = ( getEncoding() == null ) ? source.getBytes() : source.getBytes( getEncoding() );
+
+            fileGenerated( f, bytes.length, written );
+        }
+    }
+
+    private boolean isUpToDate( File f, String source )
+        throws IOException
+    {
+        if ( !f.isFile() )
+        {
+            return false;
+        }
+
+        String existing = ( getEncoding() == null ) ? FileUtils.fileRead( f ) : FileUtils.fileRead( f, getEncoding() );
 
-        Writer writer = ( getEncoding() == null ) ? WriterFactory.newPlatformWriter( os )
-                        : WriterFactory.newWriter( os, getEncoding() );
+        if ( isTimestamp() )
+        {
+            return removeHeaderTimestamp( existing ).equals( removeHeaderTimestamp( source ) );
+        }
 
-        return new JSourceWriter( writer );
+        return existing.equals( source );
     }
 
     private JComment getHeaderComment()
@@ -24,14 +24,26 @@ package org.codehaus.modello.plugin.java;
 
 import java.io.IOException;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.codehaus.modello.ModelloException;
+import org.codehaus.modello.ModelloListener;
+import org.codehaus.modello.PhaseMeasure;
 import org.codehaus.modello.ModelloRuntimeException;
 import org.codehaus.modello.model.CodeSegment;
 import org.codehaus.modello.model.Model;
@@ -109,6 +121,8 @@ public class JavaModelloGenerator
         // Generate the classes.
         // ----------------------------------------------------------------------
 
+        List<ModelClass> modelClasses = new ArrayList<ModelClass>();
+
         for ( ModelClass modelClass : objectModel.getClasses( getGeneratedVersion() ) )
         {
             JavaClassMetadata javaClassMetadata = (JavaClassMetadata) modelClass.getMetadata( JavaClassMetadata.ID );
@@ -119,139 +133,269 @@ public class JavaModelloGenerator
                 continue;
             }
 
-            String packageName = modelClass.getPackageName( isPackageWithVersion(), getGeneratedVersion() );
-
-            JSourceWriter sourceWriter = newJSourceWriter( packageName, modelClass.getName() );
-
-            JClass jClass = new JClass( packageName + '.' + modelClass.getName() );
+            modelClasses.add( modelClass );
+        }
 
-            initHeader( jClass );
+        if ( getGenerationThreads() > 1 && modelClasses.size() > 1 )
+        {
+            generateClassesConcurrently( modelClasses, locationTrackerClass, sourceTrackerClass,
+                                         locationTrackerInterface );
+        }
+        else
+        {
+            for ( ModelClass modelClass : modelClasses )
+            {
+                String source =
+                    buildSource( modelClass, locationTrackerClass, sourceTrackerClass, locationTrackerInterface );
 
-            suppressAllWarnings( objectModel, jClass );
+                String packageName = modelClass.getPackageName( isPackageWithVersion(), getGeneratedVersion() );
 
-            if ( StringUtils.isNotEmpty( modelClass.getDescription() ) )
-            {
-                jClass.getJDocComment().setComment( appendPeriod( modelClass.getDescription() ) );
+                writeSource( packageName, modelClass.getName(), source );
             }
+        }
+    }
 
-            addModelImports( jClass, modelClass );
+    /**
+     * Build and print classes with a bounded pool of worker threads. Every class is independent from the others, so
+     * it can be built and printed to memory by any worker: files are then written by the current thread, in model
+     * order, since the build context is not expected to be thread-safe.
+     */
+    private void generateClassesConcurrently( List<ModelClass> modelClasses, final ModelClass locationTrackerClass,
+                                              final ModelClass sourceTrackerClass,
+                                              final String locationTrackerInterface )
+        throws ModelloException, IOException
+    {
+        ExecutorService executor =
+            Executors.newFixedThreadPool( Math.min( getGenerationThreads(), modelClasses.size() ) );
 
-            jClass.getModifiers().setAbstract( javaClassMetadata.isAbstract() );
+        try
+        {
+            List<Future<String>> sources = new ArrayList<Future<String>>( modelClasses.size() );
 
-            boolean superClassInModel = false;
-            if ( modelClass.getSuperClass() != null )
+            for ( final ModelClass modelClass : modelClasses )
             {
-                jClass.setSuperClass( modelClass.getSuperClass() );
-                superClassInModel = isClassInModel( modelClass.getSuperClass(), objectModel );
+                sources.add( executor.submit( new Callable<String>()
+                {
+                    public String call()
+                        throws ModelloException
+                    {
+                        return buildSource( modelClass, locationTrackerClass, sourceTrackerClass,
+                                            locationTrackerInterface );
+                    }
+                } ) );
             }
 
-            for ( String implementedInterface : modelClass.getInterfaces() )
+            for ( int i = 0; i < modelClasses.size(); i++ )
             {
-                jClass.addInterface( implementedInterface );
-            }
+                ModelClass modelClass = modelClasses.get( i );
 
-            jClass.addInterface( Serializable.class.getName() );
+                String packageName = modelClass.getPackageName( isPackageWithVersion(), getGeneratedVersion() );
 
-            if ( useJava5 && !modelClass.getAnnotations().isEmpty() )
-            {
-                for ( String annotation : modelClass.getAnnotations() )
-                {
-                    jClass.appendAnnotation( annotation );
-                }
+                writeSource( packageName, modelClass.getName(), getSource( sources.get( i ) ) );
             }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    private String getSource( Future<String> source )
+        throws ModelloException
+    {
+        try
+        {
+            return source.get();
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
 
-            JSourceCode jConstructorSource = new JSourceCode();
+            throw new ModelloException( "Interrupted while generating Java.", e );
+        }
+        catch ( ExecutionException e )
+        {
+            Throwable cause = e.getCause();
 
-            for ( ModelField modelField : modelClass.getFields( getGeneratedVersion() ) )
+            if ( cause instanceof ModelloException )
             {
-                if ( modelField instanceof ModelAssociation )
-                {
-                    createAssociation( jClass, (ModelAssociation) modelField, jConstructorSource );
-                }
-                else
-                {
-                    createField( jClass, modelField );
-                }
+                throw (ModelloException) cause;
             }
-
-            if ( !jConstructorSource.isEmpty() )
+            else if ( cause instanceof RuntimeException )
+            {
+                throw (RuntimeException) cause;
+            }
+            else if ( cause instanceof Error )
             {
-                // Ironic that we are doing lazy init huh?
-                JConstructor jConstructor = jClass.createConstructor();
-                jConstructor.setSourceCode( jConstructorSource );
-                jClass.addConstructor( jConstructor );
+                throw (Error) cause;
             }
 
-            // ----------------------------------------------------------------------
-            // equals() / hashCode() / toString()
-            // ----------------------------------------------------------------------
+            throw new ModelloException( "Exception while generating Java.", cause );
+        }
+    }
+
+    /**
+     * Build a class, then print it to memory.
+     */
+    private String buildSource( ModelClass modelClass, ModelClass locationTrackerClass,
+                                ModelClass sourceTrackerClass, String locationTrackerInterface )
+        throws ModelloException
+    {
+        PhaseMeasure measure = startPhase();
 
-            List<ModelField> identifierFields = modelClass.getIdentifierFields( getGeneratedVersion() );
+        JClass jClass = generateClass( modelClass, locationTrackerClass, sourceTrackerClass, locationTrackerInterface );
 
-            if ( identifierFields.size() != 0 )
-            {
-                JMethod equals = generateEquals( modelClass );
+        phaseCompleted( ModelloListener.BUILD, modelClass.getName(), measure );
 
-                jClass.addMethod( equals );
+        String source = printSource( jClass );
 
-                JMethod hashCode = generateHashCode( modelClass );
+        phaseCompleted( ModelloListener.PRINT, modelClass.getName(), measure );
 
-                jClass.addMethod( hashCode );
+        return source;
+    }
 
-                JMethod toString = generateToString( modelClass );
+    private JClass generateClass( ModelClass modelClass, ModelClass locationTrackerClass,
+                                  ModelClass sourceTrackerClass, String locationTrackerInterface )
+        throws ModelloException
+    {
+        Model objectModel = getModel();
 
-                jClass.addMethod( toString );
-            }
+        JavaClassMetadata javaClassMetadata = (JavaClassMetadata) modelClass.getMetadata( JavaClassMetadata.ID );
 
-            boolean cloneLocations = !superClassInModel && modelClass != sourceTrackerClass;
-            JMethod[] cloneMethods = generateClone( modelClass, cloneLocations ? locationTrackerClass : null );
-            if ( cloneMethods.length > 0 )
-            {
-                jClass.addInterface( Cloneable.class.getName() );
-                jClass.addMethods( cloneMethods );
-            }
+        String packageName = modelClass.getPackageName( isPackageWithVersion(), getGeneratedVersion() );
+
+        JClass jClass = new JClass( packageName + '.' + modelClass.getName() );
+
+        initHeader( jClass );
+
+        suppressAllWarnings( objectModel, jClass );
+
+        if ( StringUtils.isNotEmpty( modelClass.getDescription() ) )
+        {
+            jClass.getJDocComment().setComment( appendPeriod( modelClass.getDescription() ) );
+        }
+
+        addModelImports( jClass, modelClass );
+
+        jClass.getModifiers().setAbstract( javaClassMetadata.isAbstract() );
+
+        boolean superClassInModel = false;
+        if ( modelClass.getSuperClass() != null )
+        {
+            jClass.setSuperClass( modelClass.getSuperClass() );
+            superClassInModel = isClassInModel( modelClass.getSuperClass(), objectModel );
+        }
+
+        for ( String implementedInterface : modelClass.getInterfaces() )
+        {
+            jClass.addInterface( implementedInterface );
+        }
+
+        jClass.addInterface( Serializable.class.getName() );
 
-            if ( modelClass.getCodeSegments( getGeneratedVersion() ) != null )
+        if ( useJava5 && !modelClass.getAnnotations().isEmpty() )
+        {
+            for ( String annotation : modelClass.getAnnotations() )
             {
-                for ( CodeSegment codeSegment : modelClass.getCodeSegments( getGeneratedVersion() ) )
-                {
-                    jClass.addSourceCode( codeSegment.getCode() );
-                }
+                jClass.appendAnnotation( annotation );
             }
+        }
 
-            ModelClassMetadata modelClassMetadata = (ModelClassMetadata) modelClass.getMetadata( ModelClassMetadata.ID );
+        JSourceCode jConstructorSource = new JSourceCode();
 
-            if ( modelClassMetadata != null )
+        for ( ModelField modelField : modelClass.getFields( getGeneratedVersion() ) )
+        {
+            if ( modelField instanceof ModelAssociation )
             {
-                if ( modelClassMetadata.isRootElement() )
-                {
-                    ModelField modelEncoding = new ModelField( modelClass, "modelEncoding" );
-                    modelEncoding.setType( "String" );
-                    modelEncoding.setDefaultValue( "UTF-8" );
-                    modelEncoding.addMetadata( new JavaFieldMetadata() );
-                    createField( jClass, modelEncoding );
-                }
+                createAssociation( jClass, (ModelAssociation) modelField, jConstructorSource );
             }
-
-            if ( modelClass == locationTrackerClass )
+            else
             {
-                jClass.addInterface( locationTrackerInterface );
+                createField( jClass, modelField );
+            }
+        }
 
-                generateLocationBean( jClass, modelClass, sourceTrackerClass );
+        if ( !jConstructorSource.isEmpty() )
+        {
+            // Ironic that we are doing lazy init huh?
+            JConstructor jConstructor = jClass.createConstructor();
+            jConstructor.setSourceCode( jConstructorSource );
+            jClass.addConstructor( jConstructor );
+        }
 
-                generateLocationTracking( jClass, modelClass, locationTrackerClass );
-            }
-            else if ( locationTrackerClass != null && modelClass != sourceTrackerClass && !superClassInModel)
+        // ----------------------------------------------------------------------
+        // equals() / hashCode() / toString()
+        // ----------------------------------------------------------------------
+
+        List<ModelField> identifierFields = modelClass.getIdentifierFields( getGeneratedVersion() );
+
+        if ( identifierFields.size() != 0 )
+        {
+            JMethod equals = generateEquals( modelClass );
+
+            jClass.addMethod( equals );
+
+            JMethod hashCode = generateHashCode( modelClass );
+
+            jClass.addMethod( hashCode );
+
+            JMethod toString = generateToString( modelClass );
+
+            jClass.addMethod( toString );
+        }
+
+        boolean cloneLocations = !superClassInModel && modelClass != sourceTrackerClass;
+        JMethod[] cloneMethods = generateClone( modelClass, cloneLocations ? locationTrackerClass : null );
+        if ( cloneMethods.length > 0 )
+        {
+            jClass.addInterface( Cloneable.class.getName() );
+            jClass.addMethods( cloneMethods );
+        }
+
+        JMethod writeObject = generateWriteObject( modelClass );
+        if ( writeObject != null )
+        {
+            jClass.addMethod( writeObject );
+        }
+
+        if ( modelClass.getCodeSegments( getGeneratedVersion() ) != null )
+        {
+            for ( CodeSegment codeSegment : modelClass.getCodeSegments( getGeneratedVersion() ) )
             {
-                jClass.addInterface( locationTrackerInterface );
+                jClass.addSourceCode( codeSegment.getCode() );
+            }
+        }
+
+        ModelClassMetadata modelClassMetadata = (ModelClassMetadata) modelClass.getMetadata( ModelClassMetadata.ID );
 
-                generateLocationTracking( jClass, modelClass, locationTrackerClass );
+        if ( modelClassMetadata != null )
+        {
+            if ( modelClassMetadata.isRootElement() )
+            {
+                ModelField modelEncoding = new ModelField( modelClass, "modelEncoding" );
+                modelEncoding.setType( "String" );
+                modelEncoding.setDefaultValue( "UTF-8" );
+                modelEncoding.addMetadata( new JavaFieldMetadata() );
+                createField( jClass, modelEncoding );
             }
+        }
+
+        if ( modelClass == locationTrackerClass )
+        {
+            jClass.addInterface( locationTrackerInterface );
+
+            generateLocationBean( jClass, modelClass, sourceTrackerClass );
 
-            jClass.print( sourceWriter );
+            generateLocationTracking( jClass, modelClass, locationTrackerClass );
+        }
+        else if ( locationTrackerClass != null && modelClass != sourceTrackerClass && !superClassInModel)
+        {
+            jClass.addInterface( locationTrackerInterface );
 
-            sourceWriter.close();
+            generateLocationTracking( jClass, modelClass, locationTrackerClass );
         }
+
+        return jClass;
     }
 
     private void generateInterface( ModelInterface modelInterface )
@@ -456,6 +600,48 @@ public class JavaModelloGenerator
         return hashCode;
     }
 
+    /**
+     * Generate the <code>writeObject()</code> method of a class with lazy fields, which loads them before the default
+     * serialization since their loaders are transient.
+     *
+     * @return the method, or <code>null</code> if the class has no lazy field
+     */
+    private JMethod generateWriteObject( ModelClass modelClass )
+    {
+        JMethod writeObject = new JMethod( "writeObject" );
+
+        writeObject.getModifiers().makePrivate();
+
+        writeObject.addParameter( new JParameter( new JClass( "java.io.ObjectOutputStream" ), "out" ) );
+
+        writeObject.addException( new JClass( "java.io.IOException" ) );
+
+        writeObject.getJDocComment().setComment( "Load the lazy fields before they are serialized." );
+
+        JSourceCode sc = writeObject.getSourceCode();
+
+        for ( ModelField modelField : modelClass.getFields( getGeneratedVersion() ) )
+        {
+            JavaFieldMetadata javaFieldMetadata = (JavaFieldMetadata) modelField.getMetadata( JavaFieldMetadata.ID );
+
+            if ( javaFieldMetadata.isLazy() )
+            {
+                sc.add( "load" + capitalise( modelField.getName() ) + "();" );
+            }
+        }
+
+        if ( sc.isEmpty() )
+        {
+            return null;
+        }
+
+        sc.add( "" );
+
+        sc.add( "out.defaultWriteObject();" );
+
+        return writeObject;
+    }
+
     private JMethod[] generateClone( ModelClass modelClass, ModelClass locationClass )
         throws ModelloException
     {
@@ -484,6 +670,26 @@ public class JavaModelloGenerator
         sc.add( "{" );
         sc.indent();
 
+        // the copy must not share the loaders of lazy fields, which would set the fields of this object
+        boolean lazyFields = false;
+
+        for ( ModelField modelField : modelClass.getFields( getGeneratedVersion() ) )
+        {
+            JavaFieldMetadata javaFieldMetadata = (JavaFieldMetadata) modelField.getMetadata( JavaFieldMetadata.ID );
+
+            if ( javaFieldMetadata.isLazy() )
+            {
+                sc.add( "load" + capitalise( modelField.getName() ) + "();" );
+
+                lazyFields = true;
+            }
+        }
+
+        if ( lazyFields )
+        {
+            sc.add( "" );
+        }
+
         sc.add( modelClass.getName() + " copy = (" + modelClass.getName() + ") super.clone();" );
 
         sc.add( "" );
@@ -605,6 +811,18 @@ public class JavaModelloGenerator
             sc.unindent();
             sc.add( "}" );
             sc.add( "" );
+
+            if ( modelClass != locationClass && isCompactLocations( locationClass ) )
+            {
+                String positionsField = singular( locationField ) + "Positions";
+                sc.add( "if ( copy." + positionsField + " != null )" );
+                sc.add( "{" );
+                sc.indent();
+                sc.add( "copy." + positionsField + " = (long[]) copy." + positionsField + ".clone();" );
+                sc.unindent();
+                sc.add( "}" );
+                sc.add( "" );
+            }
         }
 
         String cloneHook = getCloneHook( modelClass );
@@ -767,6 +985,12 @@ public class JavaModelloGenerator
         ModelClassMetadata metadata = (ModelClassMetadata) locationClass.getMetadata( ModelClassMetadata.ID );
         String locationField = metadata.getLocationTracker();
 
+        if ( modelClass != locationClass && isCompactLocations( locationClass ) )
+        {
+            generateCompactLocationTracking( jClass, modelClass, locationClass );
+            return;
+        }
+
         String fieldType = "java.util.Map" + ( useJava5 ? "<Object, " + locationClass.getName() + ">" : "" );
         String fieldImpl = "java.util.LinkedHashMap" + ( useJava5 ? "<Object, " + locationClass.getName() + ">" : "" );
 
@@ -805,6 +1029,234 @@ public class JavaModelloGenerator
         jClass.addMethod( jMethod );
     }
 
+    private boolean isCompactLocations( ModelClass locationClass )
+    {
+        return ( (JavaClassMetadata) locationClass.getMetadata( JavaClassMetadata.ID ) ).isCompactLocations();
+    }
+
+    /**
+     * Generate the location tracking of a class with compact storage: the locations of the class and of its fields
+     * are stored as line and column numbers packed in a <code>long</code>, in an array indexed by the ordinal of the
+     * field. The map of locations is used only for other keys, like the fields with many multiplicity which locations
+     * track the locations of their items.
+     */
+    private void generateCompactLocationTracking( JClass jClass, ModelClass modelClass, ModelClass locationClass )
+        throws ModelloException
+    {
+        ModelClassMetadata metadata = (ModelClassMetadata) locationClass.getMetadata( ModelClassMetadata.ID );
+        String locationField = metadata.getLocationTracker();
+        String location = singular( locationField );
+        String positionsField = location + "Positions";
+
+        ModelClass sourceClass = getModel().getSourceTracker( getGeneratedVersion() );
+        String sourceField = null;
+        String sourceGetter = null;
+        if ( sourceClass != null )
+        {
+            String sourceTracker =
+                ( (ModelClassMetadata) sourceClass.getMetadata( ModelClassMetadata.ID ) ).getSourceTracker();
+            sourceField = location + capitalise( sourceTracker );
+            sourceGetter = "get" + capitalise( sourceTracker ) + "()";
+        }
+
+        List<String> keys = getCompactLocationKeys( modelClass );
+
+        String fieldType = "java.util.Map" + ( useJava5 ? "<Object, " + locationClass.getName() + ">" : "" );
+        String fieldImpl = "java.util.LinkedHashMap" + ( useJava5 ? "<Object, " + locationClass.getName() + ">" : "" );
+
+        // private java.util.Map<Object, Location> locations;
+        JField jField = new JField( new JType( fieldType ), locationField );
+        jClass.addField( jField );
+
+        // private long[] locationPositions;
+        jField = new JField( new JArrayType( new JType( "long" ), useJava5 ), positionsField );
+        jField.setComment( "The line and column numbers of the locations of fields, packed in a <code>long</code> and "
+            + "indexed by field ordinal." );
+        jClass.addField( jField );
+
+        // private Source locationSource;
+        if ( sourceClass != null )
+        {
+            jField = new JField( new JType( sourceClass.getName() ), sourceField );
+            jField.setComment( "The source of the locations of fields." );
+            jClass.addField( jField );
+        }
+
+        JMethod jMethod;
+        JSourceCode sc;
+
+        // public Location getLocation( Object key )
+        jMethod = new JMethod( "get" + capitalise( location ), new JType( locationClass.getName() ), null );
+        jMethod.addParameter( new JParameter( new JType( "Object" ), "key" ) );
+        sc = jMethod.getSourceCode();
+        sc.add( "int ordinal = " + location + "Ordinal( key );" );
+        sc.add( "if ( ordinal >= 0 && " + positionsField + " != null && " + positionsField + "[ordinal] != 0 )" );
+        sc.add( "{" );
+        sc.indent();
+        sc.add( "long position = " + positionsField + "[ordinal];" );
+        sc.add( "return new " + locationClass.getName() + "( (int) ( position >> 32 ), (int) position"
+            + ( sourceClass != null ? ", " + sourceField : "" ) + " );" );
+        sc.unindent();
+        sc.add( "}" );
+        sc.add( "return ( " + locationField + " != null ) ? " + locationField + ".get( key ) : null;" );
+        jMethod.setComment( "" );
+        jClass.addMethod( jMethod );
+
+        // public void setLocation( Object key, Location location )
+        jMethod = new JMethod( "set" + capitalise( location ) );
+        jMethod.addParameter( new JParameter( new JType( "Object" ), "key" ) );
+        jMethod.addParameter( new JParameter( new JType( locationClass.getName() ), location ) );
+        sc = jMethod.getSourceCode();
+        sc.add( "if ( " + location + " != null )" );
+        sc.add( "{" );
+        sc.indent();
+        sc.add( "int ordinal = " + location + "Ordinal( key );" );
+        sc.add( "if ( ordinal >= 0 )" );
+        sc.add( "{" );
+        sc.indent();
+        sc.add( "long position = ( (long) " + location + ".getLineNumber() << 32 ) | ( " + location
+            + ".getColumnNumber() & 0xFFFFFFFFL );" );
+        // locations tracking other locations, or from another source, need the map
+        String condition = "position != 0 && " + location + ".get" + capitalise( locationField ) + "() == null";
+        if ( sourceClass != null )
+        {
+            condition += " && ( " + positionsField + " == null || " + location + "." + sourceGetter + " == "
+                + sourceField + " )";
+        }
+        sc.add( "if ( " + condition + " )" );
+        sc.add( "{" );
+        sc.indent();
+        sc.add( "if ( " + positionsField + " == null )" );
+        sc.add( "{" );
+        sc.indent();
+        sc.add( positionsField + " = new long[" + keys.size() + "];" );
+        if ( sourceClass != null )
+        {
+            sc.add( sourceField + " = " + location + "." + sourceGetter + ";" );
+        }
+        sc.unindent();
+        sc.add( "}" );
+        sc.add( positionsField + "[ordinal] = position;" );
+        sc.add( "if ( this." + locationField + " != null )" );
+        sc.add( "{" );
+        sc.addIndented( "this." + locationField + ".remove( key );" );
+        sc.add( "}" );
+        sc.add( "return;" );
+        sc.unindent();
+        sc.add( "}" );
+        sc.add( "if ( " + positionsField + " != null )" );
+        sc.add( "{" );
+        sc.addIndented( positionsField + "[ordinal] = 0;" );
+        sc.add( "}" );
+        sc.unindent();
+        sc.add( "}" );
+        sc.add( "if ( this." + locationField + " == null )" );
+        sc.add( "{" );
+        sc.addIndented( "this." + locationField + " = new " + fieldImpl + "();" );
+        sc.add( "}" );
+        sc.add( "this." + locationField + ".put( key, " + location + " );" );
+        sc.unindent();
+        sc.add( "}" );
+        jMethod.setComment( "" );
+        jClass.addMethod( jMethod );
+
+        // private static int locationOrdinal( Object key )
+        jMethod = new JMethod( location + "Ordinal", JType.INT, null );
+        jMethod.getModifiers().makePrivate();
+        jMethod.getModifiers().setStatic( true );
+        jMethod.addParameter( new JParameter( new JType( "Object" ), "key" ) );
+        jMethod.setComment( "Gets the index of the packed location of a field, or -1 if its location is kept in the "
+            + "map." );
+        sc = jMethod.getSourceCode();
+
+        // the keys grouped by hash code, computed now since String.hashCode() is specified
+        Map<Integer, List<String>> keysByHash = new TreeMap<Integer, List<String>>();
+        for ( String key : keys )
+        {
+            List<String> sameHash = keysByHash.get( key.hashCode() );
+            if ( sameHash == null )
+            {
+                sameHash = new ArrayList<String>();
+                keysByHash.put( key.hashCode(), sameHash );
+            }
+            sameHash.add( key );
+        }
+
+        sc.add( "if ( key instanceof String )" );
+        sc.add( "{" );
+        sc.indent();
+        sc.add( "switch ( key.hashCode() )" );
+        sc.add( "{" );
+        sc.indent();
+        for ( Map.Entry<Integer, List<String>> entry : keysByHash.entrySet() )
+        {
+            sc.add( "case " + entry.getKey() + ":" );
+            sc.indent();
+            for ( String key : entry.getValue() )
+            {
+                sc.add( "if ( \"" + key + "\".equals( key ) )" );
+                sc.add( "{" );
+                sc.addIndented( "return " + keys.indexOf( key ) + ";" );
+                sc.add( "}" );
+            }
+            sc.add( "break;" );
+            sc.unindent();
+        }
+        sc.unindent();
+        sc.add( "}" );
+        sc.unindent();
+        sc.add( "}" );
+        sc.add( "return -1;" );
+        jClass.addMethod( jMethod );
+    }
+
+    /**
+     * Get the keys of the locations stored packed by a class: the empty key of the class itself, then the names of
+     * the fields of the class and of its subclasses in the model, except fields with many multiplicity.
+     */
+    private List<String> getCompactLocationKeys( ModelClass modelClass )
+    {
+        Set<String> keys = new LinkedHashSet<String>();
+
+        keys.add( "" );
+
+        for ( ModelClass currentClass : getModel().getClasses( getGeneratedVersion() ) )
+        {
+            if ( isSubclassOf( currentClass, modelClass ) )
+            {
+                for ( ModelField modelField : currentClass.getFields( getGeneratedVersion() ) )
+                {
+                    if ( !( modelField instanceof ModelAssociation )
+                        || !( (ModelAssociation) modelField ).isManyMultiplicity() )
+                    {
+                        keys.add( modelField.getName() );
+                    }
+                }
+            }
+        }
+
+        return new ArrayList<String>( keys );
+    }
+
+    private boolean isSubclassOf( ModelClass modelClass, ModelClass superClass )
+    {
+        for ( ModelClass currentClass = modelClass;; )
+        {
+            if ( currentClass == superClass )
+            {
+                return true;
+            }
+
+            String superClassName = currentClass.getSuperClass();
+            if ( StringUtils.isEmpty( superClassName ) || !isClassInModel( superClassName, getModel() ) )
+            {
+                return false;
+            }
+
+            currentClass = getModel().getClass( superClassName, getGeneratedVersion() );
+        }
+    }
+
     private void generateLocationBean( JClass jClass, ModelClass locationClass, ModelClass sourceClass )
         throws ModelloException
     {
@@ -1147,6 +1599,11 @@ public class JavaModelloGenerator
 
         jClass.addField( field );
 
+        if ( javaFieldMetadata.isLazy() )
+        {
+            createLazyLoader( jClass, field );
+        }
+
         if ( javaFieldMetadata.isGetter() )
         {
             jClass.addMethod( createGetter( field, modelField ) );
@@ -1200,11 +1657,94 @@ public class JavaModelloGenerator
         }
         getter.getJDocComment().setComment( appendPeriod( comment.toString() ) );
 
+        if ( javaFieldMetadata.isLazy() )
+        {
+            getter.getSourceCode().add( "load" + propertyName + "();" );
+
+            getter.getSourceCode().add( "" );
+        }
+
         getter.getSourceCode().add( "return " + interfaceCast + "this." + field.getName() + ";" );
 
         return getter;
     }
 
+    /**
+     * Create the loader of a lazy field: a <code>Runnable</code> set by a reader, which is run on the first access to
+     * the field to set its value. The loader is volatile and run while holding the lock of the object, so that
+     * concurrent first accesses run it once and all see the field value.
+     */
+    private void createLazyLoader( JClass jClass, JField field )
+    {
+        String propertyName = capitalise( field.getName() );
+
+        String loaderName = field.getName() + "Loader";
+
+        JField loader = new JField( new JClass( "Runnable" ), loaderName );
+
+        loader.getModifiers().setTransient( true );
+
+        loader.getModifiers().setVolatile( true );
+
+        loader.setComment( "The loader of the " + field.getName() + " field, until it is run." );
+
+        jClass.addField( loader );
+
+        JMethod setter = new JMethod( "set" + propertyName + "Loader" );
+
+        setter.getJDocComment().setComment( "Set the loader of the " + field.getName() + " field, run on first access "
+            + "to the field to set its value.\nThe loader is discarded if the field is set before." );
+
+        setter.addParameter( new JParameter( new JClass( "Runnable" ), loaderName ) );
+
+        setter.getSourceCode().add( "this." + loaderName + " = " + loaderName + ";" );
+
+        jClass.addMethod( setter );
+
+        JMethod load = new JMethod( "load" + propertyName );
+
+        load.getModifiers().makePrivate();
+
+        load.getJDocComment().setComment( "Run the loader of the " + field.getName() + " field, if any." );
+
+        JSourceCode sc = load.getSourceCode();
+
+        sc.add( "if ( " + loaderName + " != null )" );
+
+        sc.add( "{" );
+
+        sc.indent();
+
+        sc.add( "synchronized ( this )" );
+
+        sc.add( "{" );
+
+        sc.indent();
+
+        // the loader sets the field through its setter, which discards the loader
+        sc.add( "Runnable loader = " + loaderName + ";" );
+
+        sc.add( "" );
+
+        sc.add( "if ( loader != null )" );
+
+        sc.add( "{" );
+
+        sc.addIndented( "loader.run();" );
+
+        sc.add( "}" );
+
+        sc.unindent();
+
+        sc.add( "}" );
+
+        sc.unindent();
+
+        sc.add( "}" );
+
+        jClass.addMethod( load );
+    }
+
     private JMethod createSetter( JField field, ModelField modelField )
         throws ModelloException
     {
@@ -1231,6 +1771,8 @@ public class JavaModelloGenerator
 
         JSourceCode sc = setter.getSourceCode();
 
+        JavaFieldMetadata javaFieldMetadata = (JavaFieldMetadata) modelField.getMetadata( JavaFieldMetadata.ID );
+
         if ( modelField instanceof ModelAssociation )
         {
             ModelAssociation modelAssociation = (ModelAssociation) modelField;
@@ -1294,6 +1836,14 @@ public class JavaModelloGenerator
             sc.add( "this." + field.getName() + " = " + field.getName() + ";" );
         }
 
+        if ( javaFieldMetadata.isLazy() )
+        {
+            // the loader is discarded once the field is set: a thread seeing no loader sees the field value
+            sc.add( "" );
+
+            sc.add( "this." + field.getName() + "Loader = null;" );
+        }
+
         return setter;
     }
 
@@ -1391,6 +1941,11 @@ public class JavaModelloGenerator
 
             jClass.addField( jField );
 
+            if ( javaFieldMetadata.isLazy() )
+            {
+                createLazyLoader( jClass, jField );
+            }
+
             if ( javaFieldMetadata.isGetter() )
             {
                 String propertyName = capitalise( jField.getName() );
@@ -1399,6 +1954,13 @@ public class JavaModelloGenerator
 
                 JSourceCode sc = getter.getSourceCode();
 
+                if ( javaFieldMetadata.isLazy() )
+                {
+                    sc.add( "load" + propertyName + "();" );
+
+                    sc.add( "" );
+                }
+
                 if ( StringUtils.equals( javaAssociationMetadata.getInitializationMode(),
                                          JavaAssociationMetadata.LAZY_INIT ) )
                 {
@@ -67,6 +67,8 @@ package org.codehaus.modello.plugin.java.javasource;
  * SOFTWARE.
  */
 
+import java.util.Vector;
+
 /**
  * A class for handling source code for a constructor of a JClass
  * @author <a href="mailto:kvisco@intalio.com">Keith Visco</a>
@@ -92,6 +94,11 @@ public class JConstructor
 
     private JSourceCode sourceCode = null;
 
+    /**
+     * The exceptions that this Constructor throws
+     **/
+    private Vector<JClass> exceptions = null;
+
     private JAnnotations annotations = null;
 
     /**
@@ -104,8 +111,27 @@ public class JConstructor
         this.modifiers = new JModifiers();
         this.params = new JNamedMap();
         this.sourceCode = new JSourceCode();
+        this.exceptions = new Vector<JClass>( 1 );
     }
 
+    /**
+     * Adds the given Exception to this Constructor's throws clause.
+     *
+     * @param exp the JClass representing the Exception
+     **/
+    public void addException( JClass exp )
+    {
+        if ( exp == null ) return;
+
+        //-- make sure exception is not already added
+        for ( int i = 0; i < exceptions.size(); i++ )
+        {
+            JClass jClass = (JClass) exceptions.elementAt( i );
+            if ( exp.getName().equals( jClass.getName() ) ) return;
+        }
+        exceptions.addElement( exp );
+    } //-- addException
+
     /**
      * Adds the given parameter to this Methods list of parameters
      * @param parameter the parameter to add to the this Methods
@@ -194,6 +220,17 @@ public class JConstructor
             jsw.write( params.get( i ) );
         }
         jsw.writeln( ')' );
+        if ( exceptions.size() > 0 )
+        {
+            jsw.write( "    throws " );
+            for ( int i = 0; i < exceptions.size(); i++ )
+            {
+                if ( i > 0 ) jsw.write( ", " );
+                JClass jClass = (JClass) exceptions.elementAt( i );
+                jsw.write( jClass.getName() );
+            }
+            jsw.writeln();
+        }
         jsw.writeln( '{' );
         //jsw.indent();
         sourceCode.print( jsw );
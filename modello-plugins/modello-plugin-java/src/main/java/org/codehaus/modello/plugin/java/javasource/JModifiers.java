@@ -86,6 +86,7 @@ public class JModifiers
     private static final String sPublic = "public";
     private static final String sStatic = "static";
     private static final String sTransient = "transient";
+    private static final String sVolatile = "volatile";
 
     private static final short vPrivate = 1;
     private static final short vProtected = 2;
@@ -124,6 +125,12 @@ public class JModifiers
      **/
     private boolean isTransient = false;
 
+    /**
+     * A flag indicating whether or not the object associated
+     * with this JModifiers is volatile
+     **/
+    private boolean isVolatile = false;
+
     /**
      * Creates a new JModifiers class, by default the
      * modifiers presented are public.
@@ -157,6 +164,7 @@ public class JModifiers
         JModifiers mods = new JModifiers( visibility, isStatic, isFinal );
         mods.setAbstract( isAbstract );
         mods.setTransient( isTransient );
+        mods.setVolatile( isVolatile );
         return mods;
     } //-- copy
 
@@ -266,6 +274,16 @@ public class JModifiers
         return this.isTransient;
     } //-- isTransient
 
+    /**
+     * Returns true if the modifier represented is volatile.
+     * @return true if the modifier represented is volatile.
+     * @since 1.5
+     **/
+    public boolean isVolatile()
+    {
+        return this.isVolatile;
+    } //-- isVolatile
+
     /**
      * Sets whether or not the "abstract" qualifier is present
      * <BR> This applies only to methods or classes.
@@ -307,6 +325,17 @@ public class JModifiers
         this.isTransient = isTransient;
     } //-- setTransient
 
+    /**
+     * Sets whether or not the "volatile" qualifier is present
+     * @param isVolatile is a boolean which when true will indicate
+     * the "volatile" qualifiter is present
+     * @since 1.5
+     **/
+    public void setVolatile( boolean isVolatile )
+    {
+        this.isVolatile = isVolatile;
+    } //-- setVolatile
+
     /**
      * Returns the String represetation of this JModifiers
      * @return the String represetation of this JModifiers
@@ -372,6 +401,15 @@ public class JModifiers
             sb.append( sTransient );
         }
 
+        //-- volatile
+        if ( isVolatile )
+        {
+            if ( sb.length() > 0 )
+            {
+                sb.append( ' ' );
+            }
+            sb.append( sVolatile );
+        }
 
         return sb.toString();
     } //-- toString
@@ -58,6 +58,8 @@ public class JavaClassMetadata
 
     private String cloneHook;
 
+    private boolean compactLocations;
+
     public void setAbstract( boolean abstractMode )
     {
         this.abstractMode = abstractMode;
@@ -98,4 +100,19 @@ public class JavaClassMetadata
         this.cloneHook = cloneHook;
     }
 
+    /**
+     * @since 1.5
+     */
+    public boolean isCompactLocations()
+    {
+        return compactLocations;
+    }
+
+    /**
+     * @since 1.5
+     */
+    public void setCompactLocations( boolean compactLocations )
+    {
+        this.compactLocations = compactLocations;
+    }
 }
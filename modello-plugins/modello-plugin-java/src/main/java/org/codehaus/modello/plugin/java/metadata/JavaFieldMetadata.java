@@ -39,6 +39,8 @@ public class JavaFieldMetadata
 
     private boolean setter = true;
 
+    private boolean lazy;
+
     public boolean isGetter()
     {
         return getter;
@@ -68,4 +70,20 @@ public class JavaFieldMetadata
     {
         this.setter = setter;
     }
-}
\ No newline at end of file
+
+    /**
+     * Whether the field value can be set lazily by a loader, run on first access.
+     *
+     * @return <code>true</code> if the class has a loader for this field
+     * @since 1.5
+     */
+    public boolean isLazy()
+    {
+        return lazy;
+    }
+
+    public void setLazy( boolean lazy )
+    {
+        this.lazy = lazy;
+    }
+}
@@ -67,6 +67,19 @@ public class JavaMetadataPlugin
 
     public static final String JAVA_SUPPRESS_ALL_WARNINGS = "java.suppressAllWarnings";
 
+    /**
+     * On the location tracker class, stores the locations of fields as packed line and column numbers.
+     *
+     * @since 1.5
+     */
+    public static final String JAVA_COMPACT_LOCATIONS = "java.compactLocations";
+
+    /**
+     * The <code>xml.lazy</code> attribute declared by the XML metadata plugin, which this plugin cannot depend on:
+     * fields read lazily by XML readers need a loader in the model class.
+     */
+    private static final String XML_LAZY = "xml.lazy";
+
     // ----------------------------------------------------------------------
     // Map to Metadata
     // ----------------------------------------------------------------------
@@ -92,6 +105,8 @@ public class JavaMetadataPlugin
 
         metadata.setCloneHook( getString( data, JAVA_CLONE_HOOK ) );
 
+        metadata.setCompactLocations( getBoolean( data, JAVA_COMPACT_LOCATIONS, false ) );
+
         return metadata;
     }
 
@@ -111,6 +126,8 @@ public class JavaMetadataPlugin
 
         metadata.setSetter( getBoolean( data, JAVA_SETTER, true ) );
 
+        metadata.setLazy( getBoolean( data, XML_LAZY, false ) );
+
         return metadata;
     }
 
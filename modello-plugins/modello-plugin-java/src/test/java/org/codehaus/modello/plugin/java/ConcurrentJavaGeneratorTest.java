@@ -0,0 +1,92 @@
+package org.codehaus.modello.plugin.java;
+
+/*
+ * Copyright (c) 2004, Codehaus.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import org.codehaus.modello.AbstractModelloJavaGeneratorTest;
+import org.codehaus.modello.ModelloParameterConstants;
+import org.codehaus.modello.core.ModelloCore;
+import org.codehaus.modello.model.Model;
+import org.codehaus.plexus.util.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Check that generating classes concurrently gives the same sources as serial generation.
+ *
+ * @version $Id$
+ */
+public class ConcurrentJavaGeneratorTest
+    extends AbstractModelloJavaGeneratorTest
+{
+    public ConcurrentJavaGeneratorTest()
+    {
+        super( "concurrent" );
+    }
+
+    public void testConcurrentJavaGenerator()
+        throws Throwable
+    {
+        ModelloCore modello = (ModelloCore) lookup( ModelloCore.ROLE );
+
+        Model model = modello.loadModel( getXmlResourceReader( "/models/maven.mdo" ) );
+
+        File serialDirectory = getTestFile( "target/" + getName() + "/serial-sources" );
+        FileUtils.deleteDirectory( serialDirectory );
+
+        Properties parameters = getModelloParameters( "4.0.0" );
+        parameters.setProperty( ModelloParameterConstants.OUTPUT_DIRECTORY, serialDirectory.getAbsolutePath() );
+
+        modello.generate( model, "java", parameters );
+
+        parameters = getModelloParameters( "4.0.0" );
+        parameters.setProperty( ModelloParameterConstants.GENERATION_THREADS, "4" );
+
+        modello.generate( model, "java", parameters );
+
+        List<String> files = FileUtils.getFileNames( serialDirectory, "**/*.java", null, false );
+
+        assertFalse( files.isEmpty() );
+        assertEquals( files.size(), FileUtils.getFileNames( getOutputDirectory(), "**/*.java", null, false ).size() );
+
+        for ( String file : files )
+        {
+            assertEquals( file, read( new File( serialDirectory, file ) ), read( new File( getOutputDirectory(), file ) ) );
+        }
+
+        compileGeneratedSources( "java" );
+
+        verifyCompiledGeneratedSources( "JavaVerifier" );
+    }
+
+    /**
+     * Read a generated source, without the generation date from the header.
+     */
+    private String read( File file )
+        throws IOException
+    {
+        return FileUtils.fileRead( file ).replaceFirst( " on \\d{4}-\\d{2}-\\d{2} \\d{2}:\\d{2}:\\d{2},", "" );
+    }
+}
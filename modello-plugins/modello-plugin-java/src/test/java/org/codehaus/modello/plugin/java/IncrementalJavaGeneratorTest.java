@@ -0,0 +1,103 @@
+package org.codehaus.modello.plugin.java;
+
+/*
+ * Copyright (c) 2004, Codehaus.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import org.codehaus.modello.AbstractModelloGeneratorTest;
+import org.codehaus.modello.ModelloParameterConstants;
+import org.codehaus.modello.core.ModelloCore;
+import org.codehaus.modello.model.Model;
+import org.codehaus.plexus.util.FileUtils;
+
+import java.io.File;
+import java.util.Properties;
+import java.util.regex.Pattern;
+
+/**
+ * Check that generating again from an unchanged model does not rewrite the sources.
+ *
+ * @version $Id$
+ */
+public class IncrementalJavaGeneratorTest
+    extends AbstractModelloGeneratorTest
+{
+    public IncrementalJavaGeneratorTest()
+    {
+        super( "incremental" );
+    }
+
+    public void testUnchangedSourcesAreNotWritten()
+        throws Throwable
+    {
+        ModelloCore modello = (ModelloCore) lookup( ModelloCore.ROLE );
+
+        Model model = modello.loadModel( getXmlResourceReader( "/models/maven.mdo" ) );
+
+        Properties parameters = getModelloParameters( "4.0.0" );
+
+        modello.generate( model, "java", parameters );
+
+        File modelFile = new File( getOutputDirectory(), "org/apache/maven/model/Model.java" );
+        assertTrue( modelFile.isFile() );
+        String content = FileUtils.fileRead( modelFile );
+        assertTrue( content.indexOf( "Generated by Modello" ) >= 0 );
+
+        long lastModified = modelFile.lastModified() - 10000;
+        assertTrue( modelFile.setLastModified( lastModified ) );
+
+        // wait for the header date to change: the file must not be rewritten only because of it
+        Thread.sleep( 1100 );
+
+        modello.generate( model, "java", parameters );
+
+        assertEquals( lastModified, modelFile.lastModified() );
+        assertEquals( content, FileUtils.fileRead( modelFile ) );
+
+        // a modified file is generated again
+        FileUtils.fileWrite( modelFile.getAbsolutePath(), content + "// modified\n" );
+        assertTrue( modelFile.setLastModified( lastModified ) );
+
+        modello.generate( model, "java", parameters );
+
+        assertTrue( lastModified != modelFile.lastModified() );
+        assertTrue( FileUtils.fileRead( modelFile ).indexOf( "// modified" ) < 0 );
+    }
+
+    public void testWithoutTimestamp()
+        throws Throwable
+    {
+        ModelloCore modello = (ModelloCore) lookup( ModelloCore.ROLE );
+
+        Model model = modello.loadModel( getXmlResourceReader( "/models/maven.mdo" ) );
+
+        Properties parameters = getModelloParameters( "4.0.0" );
+        parameters.setProperty( ModelloParameterConstants.OUTPUT_TIMESTAMP, Boolean.toString( false ) );
+
+        modello.generate( model, "java", parameters );
+
+        File modelFile = new File( getOutputDirectory(), "org/apache/maven/model/Model.java" );
+        String content = FileUtils.fileRead( modelFile );
+
+        assertTrue( content.indexOf( "Generated by Modello" ) >= 0 );
+        assertFalse( Pattern.compile( "Generated by Modello.* on \\d{4}-\\d{2}-\\d{2}" ).matcher( content ).find() );
+    }
+}
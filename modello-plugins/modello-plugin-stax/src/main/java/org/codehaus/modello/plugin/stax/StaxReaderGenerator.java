@@ -47,6 +47,8 @@ import java.io.IOException;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
 
 /**
  * @author <a href="mailto:jason@modello.org">Jason van Zyl</a>
@@ -59,12 +61,19 @@ public class StaxReaderGenerator
 
     private boolean requiresDomSupport;
 
+    /** lazy fields are supported only without references, which are resolved through the getters after parsing */
+    private boolean lazySupported;
+
+    /** the classes with lazy fields, which need a lazy parser */
+    private Set<String> lazyClasses = new TreeSet<String>();
+
     public void generate( Model model, Properties parameters )
         throws ModelloException
     {
         initialize( model, parameters );
 
         requiresDomSupport = false;
+        lazyClasses.clear();
 
         try
         {
@@ -137,6 +146,8 @@ public class StaxReaderGenerator
 
         GeneratorNode rootNode = findRequiredReferenceResolvers( root, null );
 
+        lazySupported = !rootNode.isReferencableChildren() && rootNode.getNodesWithReferencableChildren().isEmpty();
+
         writeReferenceResolvers( rootNode, jClass );
         for ( GeneratorNode node : rootNode.getNodesWithReferencableChildren().values() )
         {
@@ -189,6 +200,7 @@ public class StaxReaderGenerator
             writeModelVersionCheck( sc );
         }
 
+        sc.add( "projection = projectionRoot;" );
         sc.add( className + ' ' + variableName + " = parse" + root.getName() + "( xmlStreamReader, strict );" );
 
         sc.add( variableName + ".setModelEncoding( xmlStreamReader.getCharacterEncodingScheme() );" );
@@ -322,6 +334,81 @@ public class StaxReaderGenerator
 
         jClass.addMethod( unmarshall );
 
+        // ----------------------------------------------------------------------
+        // Write the read(FileChannel[,boolean]) and read(File[,boolean]) methods which will do the unmarshalling.
+        // ----------------------------------------------------------------------
+
+        unmarshall = new JMethod( "read", rootType, null );
+        unmarshall.setComment( "Reads a file channel mapped in memory, from its position to its end." );
+
+        unmarshall.addParameter( new JParameter( new JClass( "java.nio.channels.FileChannel" ), "channel" ) );
+        unmarshall.addParameter( new JParameter( JType.BOOLEAN, "strict" ) );
+
+        unmarshall.addException( new JClass( "IOException" ) );
+        unmarshall.addException( new JClass( "XMLStreamException" ) );
+
+        sc = unmarshall.getSourceCode();
+        sc.add( "return read( map( channel ), strict );" );
+
+        jClass.addMethod( unmarshall );
+
+        // ----------------------------------------------------------------------
+
+        unmarshall = new JMethod( "read", rootType, null );
+        unmarshall.setComment( "Reads a file channel mapped in memory, from its position to its end." );
+
+        unmarshall.addParameter( new JParameter( new JClass( "java.nio.channels.FileChannel" ), "channel" ) );
+
+        unmarshall.addException( new JClass( "IOException" ) );
+        unmarshall.addException( new JClass( "XMLStreamException" ) );
+
+        sc = unmarshall.getSourceCode();
+        sc.add( "return read( channel, true );" );
+
+        jClass.addMethod( unmarshall );
+
+        // ----------------------------------------------------------------------
+
+        unmarshall = new JMethod( "read", rootType, null );
+        unmarshall.setComment( "Reads a file mapped in memory. The mapping is released only when the buffer is "
+            + "garbage-collected: on Windows, the file stays locked until then." );
+
+        unmarshall.addParameter( new JParameter( new JClass( "File" ), "file" ) );
+        unmarshall.addParameter( new JParameter( JType.BOOLEAN, "strict" ) );
+
+        unmarshall.addException( new JClass( "IOException" ) );
+        unmarshall.addException( new JClass( "XMLStreamException" ) );
+
+        sc = unmarshall.getSourceCode();
+
+        sc.add( "FileInputStream in = new FileInputStream( file );" );
+        sc.add( "try" );
+        sc.add( "{" );
+        sc.addIndented( "return read( in.getChannel(), strict );" );
+        sc.add( "}" );
+        sc.add( "finally" );
+        sc.add( "{" );
+        sc.addIndented( "in.close();" );
+        sc.add( "}" );
+
+        jClass.addMethod( unmarshall );
+
+        // ----------------------------------------------------------------------
+
+        unmarshall = new JMethod( "read", rootType, null );
+        unmarshall.setComment( "Reads a file mapped in memory. The mapping is released only when the buffer is "
+            + "garbage-collected: on Windows, the file stays locked until then." );
+
+        unmarshall.addParameter( new JParameter( new JClass( "File" ), "file" ) );
+
+        unmarshall.addException( new JClass( "IOException" ) );
+        unmarshall.addException( new JClass( "XMLStreamException" ) );
+
+        sc = unmarshall.getSourceCode();
+        sc.add( "return read( file, true );" );
+
+        jClass.addMethod( unmarshall );
+
         // Determine the version. Currently, it causes the document to be reparsed, but could be made more efficient in
         // future by buffering the read XML and piping that into any consequent read method.
 
@@ -342,12 +429,23 @@ public class StaxReaderGenerator
 
         writeHelpers( jClass );
 
+        writeProjection( jClass );
+
+        writeStringTable( jClass );
+
+        writeMappedInput( jClass );
+
         if ( requiresDomSupport )
         {
             jClass.addImport( "org.codehaus.plexus.util.xml.Xpp3Dom" );
             writeBuildDomMethod( jClass );
         }
 
+        if ( !lazyClasses.isEmpty() )
+        {
+            writeLazyLoading( jClass );
+        }
+
         // ----------------------------------------------------------------------
         //
         // ----------------------------------------------------------------------
@@ -702,6 +800,8 @@ public class StaxReaderGenerator
         {
             sc.add( "java.util.Set parsed = new java.util.HashSet();" );
 
+            sc.add( "java.util.Map projected = projection;" );
+
             String instanceFieldName = getInstanceFieldName( className );
 
             writeAttributes( modelClass, uncapClassName, sc );
@@ -737,6 +837,17 @@ public class StaxReaderGenerator
 
                 if ( !xmlFieldMetadata.isAttribute() && !xmlFieldMetadata.isTransient() )
                 {
+                    writeProjectionSkip( field, xmlFieldMetadata, addElse, sc );
+
+                    addElse = true;
+
+                    if ( lazySupported && isLazy( field, xmlFieldMetadata ) )
+                    {
+                        writeLazyField( jClass, field, xmlFieldMetadata, addElse, sc, className, uncapClassName );
+
+                        addElse = true;
+                    }
+
                     processField( field, xmlFieldMetadata, addElse, sc, uncapClassName, rootElement, jClass );
 
                     addElse = true;
@@ -770,6 +881,8 @@ public class StaxReaderGenerator
                 sc.add( "}" );
             }
 
+            sc.add( "projection = projected;" );
+
             sc.unindent();
             sc.add( "}" );
 
@@ -794,6 +907,230 @@ public class StaxReaderGenerator
         jClass.addMethod( unmarshall );
     }
 
+    /**
+     * Generate code skipping the element of a field not selected by the projection. Otherwise, the field is processed
+     * by the next <code>if</code>. The elements checked are the ones matched by <code>processField</code>: the items of
+     * a flat list or set have the singular tag name.
+     */
+    private void writeProjectionSkip( ModelField field, XmlFieldMetadata xmlFieldMetadata, boolean addElse,
+                                      JSourceCode sc )
+    {
+        String tagName = resolveTagName( field, xmlFieldMetadata );
+
+        boolean flatItems = false;
+
+        if ( field instanceof ModelAssociation && ( (ModelAssociation) field ).isManyMultiplicity() )
+        {
+            ModelAssociation association = (ModelAssociation) field;
+
+            XmlAssociationMetadata xmlAssociationMetadata =
+                (XmlAssociationMetadata) association.getAssociationMetadata( XmlAssociationMetadata.ID );
+
+            if ( !xmlAssociationMetadata.isWrappedItems() && ( ModelDefault.LIST.equals( association.getType() )
+                || ModelDefault.SET.equals( association.getType() ) ) )
+            {
+                tagName = resolveTagName( tagName, xmlAssociationMetadata );
+
+                flatItems = true;
+            }
+        }
+
+        String tagCheck = "\"" + tagName + "\".equals( xmlStreamReader.getLocalName() )";
+
+        if ( !flatItems && StringUtils.isNotEmpty( field.getAlias() ) )
+        {
+            tagCheck = "( " + tagCheck + " || \"" + field.getAlias() + "\".equals( xmlStreamReader.getLocalName() ) )";
+        }
+
+        sc.add( ( addElse ? "else " : "" ) + "if ( projected != null && " + tagCheck
+            + " && !enterProjection( projected, \"" + field.getName() + "\" ) )" );
+
+        sc.add( "{" );
+        sc.addIndented( "skipElement( xmlStreamReader );" );
+        sc.add( "}" );
+    }
+
+    /**
+     * Generate code capturing the element of a lazy field and setting the loader of the field, if lazy loading is
+     * enabled. Otherwise, the field is processed by the next <code>if</code>.
+     */
+    private void writeLazyField( JClass jClass, ModelField field, XmlFieldMetadata xmlFieldMetadata,
+                                 boolean addElse, JSourceCode sc, String className, String objectName )
+    {
+        lazyClasses.add( className );
+
+        String fieldTagName = resolveTagName( field, xmlFieldMetadata );
+
+        String alias;
+        if ( StringUtils.isEmpty( field.getAlias() ) )
+        {
+            alias = "null";
+        }
+        else
+        {
+            alias = "\"" + field.getAlias() + "\"";
+        }
+
+        sc.add( ( addElse ? "else " : "" ) + "if ( lazyLoading && checkFieldWithDuplicate( xmlStreamReader, \""
+            + fieldTagName + "\", " + alias + ", parsed ) )" );
+
+        sc.add( "{" );
+        sc.indent();
+
+        writeLazyLoader( jClass, field, className, objectName, "captureElement( xmlStreamReader )", sc );
+
+        sc.unindent();
+        sc.add( "}" );
+    }
+
+    /**
+     * Write the lazy loading flag and the helpers used to capture elements and to parse them when lazy fields are
+     * accessed.
+     */
+    private void writeLazyLoading( JClass jClass )
+    {
+        writeLazyLoadingFlag( jClass );
+
+        // --------------------------------------------------------------------
+
+        String bufferType = useJava5 ? "StringBuilder" : "StringBuffer";
+
+        JMethod method = new JMethod( "captureElement", new JClass( "String" ), null );
+        method.getModifiers().makePrivate();
+
+        method.setComment( "Capture the current element and its content as XML text, leaving the reader on its end "
+            + "element.\nEntities are already resolved, and comments, processing instructions and namespace prefixes "
+            + "are dropped." );
+
+        method.addParameter( new JParameter( new JClass( "XMLStreamReader" ), "xmlStreamReader" ) );
+        method.addException( new JClass( "XMLStreamException" ) );
+
+        JSourceCode sc = method.getSourceCode();
+
+        sc.add( bufferType + " buffer = new " + bufferType + "( 256 );" );
+
+        sc.add( "int depth = 0;" );
+
+        sc.add( "int eventType = xmlStreamReader.getEventType();" );
+
+        sc.add( "while ( true )" );
+
+        sc.add( "{" );
+        sc.indent();
+
+        sc.add( "if ( eventType == XMLStreamConstants.START_ELEMENT )" );
+
+        sc.add( "{" );
+        sc.indent();
+
+        sc.add( "depth++;" );
+
+        sc.add( "buffer.append( '<' ).append( xmlStreamReader.getLocalName() );" );
+
+        sc.add( "for ( int i = 0; i < xmlStreamReader.getAttributeCount(); i++ )" );
+
+        sc.add( "{" );
+        sc.indent();
+
+        sc.add( "buffer.append( ' ' ).append( xmlStreamReader.getAttributeLocalName( i ) ).append( \"=\\\"\" );" );
+
+        sc.add( "appendEscaped( buffer, xmlStreamReader.getAttributeValue( i ) );" );
+
+        sc.add( "buffer.append( '\"' );" );
+
+        sc.unindent();
+        sc.add( "}" );
+
+        sc.add( "buffer.append( '>' );" );
+
+        sc.unindent();
+        sc.add( "}" );
+
+        sc.add( "else if ( eventType == XMLStreamConstants.END_ELEMENT )" );
+
+        sc.add( "{" );
+        sc.indent();
+
+        sc.add( "buffer.append( \"</\" ).append( xmlStreamReader.getLocalName() ).append( '>' );" );
+
+        sc.add( "if ( --depth == 0 )" );
+
+        sc.add( "{" );
+        sc.addIndented( "return buffer.toString();" );
+        sc.add( "}" );
+
+        sc.unindent();
+        sc.add( "}" );
+
+        sc.add( "else if ( eventType == XMLStreamConstants.CHARACTERS || eventType == XMLStreamConstants.CDATA" );
+        sc.add( "    || eventType == XMLStreamConstants.SPACE )" );
+
+        sc.add( "{" );
+        sc.addIndented( "appendEscaped( buffer, xmlStreamReader.getText() );" );
+        sc.add( "}" );
+
+        sc.add( "eventType = xmlStreamReader.next();" );
+
+        sc.unindent();
+        sc.add( "}" );
+
+        jClass.addMethod( method );
+
+        // --------------------------------------------------------------------
+
+        writeAppendEscaped( bufferType, jClass );
+
+        // --------------------------------------------------------------------
+
+        for ( String className : lazyClasses )
+        {
+            method = new JMethod( "parseLazy" + className, new JClass( className ), null );
+            method.getModifiers().makePrivate();
+            method.getModifiers().setStatic( true );
+
+            method.setComment( "Parse the elements captured for lazy fields of " + className + ", without lazy "
+                + "loading." );
+
+            method.addParameter( new JParameter( new JClass( "String" ), "xml" ) );
+            method.addParameter( new JParameter( JType.BOOLEAN, "strict" ) );
+            method.addParameter( new JParameter( new JClass( "StringTable" ), "stringTable" ) );
+
+            sc = method.getSourceCode();
+
+            sc.add( "try" );
+
+            sc.add( "{" );
+            sc.indent();
+
+            sc.add( "XMLStreamReader xmlStreamReader = XMLInputFactory.newInstance().createXMLStreamReader( "
+                + "new StringReader( \"<lazy>\" + xml + \"</lazy>\" ) );" );
+
+            sc.add( "xmlStreamReader.nextTag();" );
+
+            sc.add( jClass.getLocalName() + " reader = new " + jClass.getLocalName() + "();" );
+
+            sc.add( "reader.lazyLoading = false;" );
+
+            sc.add( "reader.stringTable = stringTable;" );
+
+            sc.add( "return reader.parse" + capitalise( className ) + "( xmlStreamReader, strict );" );
+
+            sc.unindent();
+            sc.add( "}" );
+
+            for ( String exception : new String[] { "IOException", "XMLStreamException" } )
+            {
+                sc.add( "catch ( " + exception + " e )" );
+
+                sc.add( "{" );
+                sc.addIndented( "throw new RuntimeException( \"Unable to parse lazy field: \" + e.getMessage(), e );" );
+                sc.add( "}" );
+            }
+
+            jClass.addMethod( method );
+        }
+    }
+
     private GeneratorNode findRequiredReferenceResolvers( ModelClass modelClass, GeneratorNode parent )
         throws ModelloException
     {
@@ -1207,14 +1544,14 @@ public class StaxReaderGenerator
                         sc.add( "if ( \"key\".equals( xmlStreamReader.getLocalName() ) )" );
 
                         sc.add( "{" );
-                        sc.addIndented( "key = xmlStreamReader.getElementText();" );
+                        sc.addIndented( "key = intern( xmlStreamReader.getElementText() );" );
                         sc.add( "}" );
 
                         sc.add( "else if ( \"value\".equals( xmlStreamReader.getLocalName() ) )" );
 
                         sc.add( "{" );
-                        sc.addIndented( "value = xmlStreamReader.getElementText()"
-                                        + ( xmlFieldMetadata.isTrim() ? ".trim()" : "" ) + ";" );
+                        sc.addIndented( "value = intern( xmlStreamReader.getElementText()"
+                                        + ( xmlFieldMetadata.isTrim() ? ".trim()" : "" ) + " );" );
                         sc.add( "}" );
 
                         sc.add( "else" );
@@ -1231,7 +1568,13 @@ public class StaxReaderGenerator
                         sc.unindent();
                         sc.add( "}" );
 
-                        sc.add( "xmlStreamReader.next();" );
+                        // the end tag of the entry is already consumed: moving to the next event would skip the next
+                        // entry when no whitespace separates them
+                        sc.add( "else" );
+
+                        sc.add( "{" );
+                        sc.addIndented( "xmlStreamReader.getElementText();" );
+                        sc.add( "}" );
 
                         sc.unindent();
                         sc.add( "}" );
@@ -1245,10 +1588,10 @@ public class StaxReaderGenerator
                         sc.add( "{" );
                         sc.indent();
 
-                        sc.add( "String key = xmlStreamReader.getLocalName();" );
+                        sc.add( "String key = intern( xmlStreamReader.getLocalName() );" );
 
-                        sc.add( "String value = xmlStreamReader.getElementText()"
-                                + ( xmlFieldMetadata.isTrim() ? ".trim()" : "" ) + ";" );
+                        sc.add( "String value = intern( xmlStreamReader.getElementText()"
+                                + ( xmlFieldMetadata.isTrim() ? ".trim()" : "" ) + " );" );
 
                         sc.add( objectName + ".add" + capitalise( singularName ) + "( key, value );" );
 
@@ -1403,7 +1746,11 @@ public class StaxReaderGenerator
             sc.add( objectName + "." + setterName + "( getByteValue( " + parserGetter + ", \"" + tagName
                 + "\", xmlStreamReader, strict ) );" );
         }
-        else if ( "String".equals( type ) || "Boolean".equals( type ) )
+        else if ( "String".equals( type ) )
+        {
+            sc.add( objectName + "." + setterName + "( intern( " + parserGetter + " ) );" );
+        }
+        else if ( "Boolean".equals( type ) )
         {
             // TODO: other Primitive types
             sc.add( objectName + "." + setterName + "( " + parserGetter + " );" );
@@ -1762,6 +2109,22 @@ public class StaxReaderGenerator
                         + "\"'\", xmlStreamReader.getLocation() );" );
         sc.add( "}" );
 
+        sc.add( "skipElement( xmlStreamReader );" );
+
+        jClass.addMethod( method );
+
+        // --------------------------------------------------------------------
+
+        method = new JMethod( "skipElement", null, null );
+        method.getModifiers().makePrivate();
+
+        method.setComment( "Skips the current element and its content, leaving the reader on its end element." );
+
+        method.addParameter( new JParameter( new JClass( "XMLStreamReader" ), "xmlStreamReader" ) );
+        method.addException( new JClass( "XMLStreamException" ) );
+
+        sc = method.getSourceCode();
+
         sc.add( "int unrecognizedTagCount = 1;" );
         sc.add( "while( unrecognizedTagCount != 0 )" );
 
@@ -90,7 +90,7 @@ public class StaxSerializerGenerator
         addField( jClass, "String", "NEW_LINE", "\"\\n\"", true );
         addField( jClass, "String", "newLine", "NEW_LINE", false );
         addField( jClass, "String", "indent", "\"  \"", false );
-        addField( jClass, "char[]", "linePrefix", "\"                        \".toCharArray()", false );
+        addField( jClass, "char[]", "linePrefix", null, false );
         addField( jClass, "int", "depth", null, false );
         addField( jClass, "byte[]", "states", "{ 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0 }", false );
         addField( jClass, "int", "ELEMENT_HAS_DATA", "0x1", true );
@@ -106,6 +106,7 @@ public class StaxSerializerGenerator
         jMethod = new JMethod( "setNewLine" );
         jMethod.addParameter( new JParameter( new JType( "String" ), "newLine" ) );
         jMethod.getSourceCode().add( "this.newLine = newLine;" );
+        jMethod.getSourceCode().add( "this.linePrefix = null;" );
         jClass.addMethod( jMethod );
 
         jMethod = new JMethod( "getLineSeparator", new JType( "String" ), null );
@@ -199,15 +200,17 @@ public class StaxSerializerGenerator
         sc.add( "try" );
         sc.add( "{" );
         sc.indent();
-        sc.add( "out.writeCharacters( newLine );" );
-        sc.add( "int prefixLength = depth * indent.length();" );
-        sc.add( "while ( linePrefix.length < prefixLength )" );
+        sc.add( "// the new line and the indentation are written at once" );
+        sc.add( "int prefixLength = newLine.length() + depth * indent.length();" );
+        sc.add( "if ( linePrefix == null || linePrefix.length < prefixLength )" );
         sc.add( "{" );
         sc.indent();
-        sc.add( "char[] tmp = new char[linePrefix.length * 2];" );
-        sc.add( "System.arraycopy( linePrefix, 0, tmp, 0, linePrefix.length );" );
-        sc.add( "System.arraycopy( linePrefix, 0, tmp, linePrefix.length, linePrefix.length );" );
-        sc.add( "linePrefix = tmp;" );
+        sc.add( "StringBuffer buffer = new StringBuffer( newLine );" );
+        sc.add( "for ( int i = 0; i < Math.max( depth, 8 ) * 2; i++ )" );
+        sc.add( "{" );
+        sc.addIndented( "buffer.append( indent );" );
+        sc.add( "}" );
+        sc.add( "linePrefix = buffer.toString().toCharArray();" );
         sc.unindent();
         sc.add( "}" );
         sc.add( "out.writeCharacters( linePrefix, 0, prefixLength );" );
@@ -43,6 +43,7 @@ import org.codehaus.modello.plugins.xml.metadata.XmlFieldMetadata;
 import org.codehaus.modello.plugins.xml.metadata.XmlModelMetadata;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
 
@@ -75,7 +76,10 @@ public class StaxWriterGenerator
             throw new ModelloException( "Exception while generating StAX Writer.", ex );
         }
         
-        serializerGenerator.generate( model, parameters );
+        if ( !compactOutput )
+        {
+            serializerGenerator.generate( model, parameters );
+        }
     }
 
     private void generateStaxWriter()
@@ -133,31 +137,7 @@ public class StaxWriterGenerator
 
         JSourceCode sc = marshall.getSourceCode();
 
-        sc.add( "XMLOutputFactory factory = XMLOutputFactory.newInstance();" );
-
-        // currently, only woodstox supports Windows line endings. It works with Java 6/RI and stax <= 1.1.1 as well
-        // but we have no way to detect them
-        sc.add( "boolean supportWindowsLineEndings = false;" );
-        sc.add( "if ( factory.isPropertySupported( \"com.ctc.wstx.outputEscapeCr\" ) )" );
-        sc.add( "{" );
-        sc.indent();
-        sc.add( "factory.setProperty( \"com.ctc.wstx.outputEscapeCr\", Boolean.FALSE );" );
-        sc.add( "supportWindowsLineEndings = true;" );
-        sc.unindent();
-        sc.add( "}" );
-
-        sc.add( "if ( factory.isPropertySupported( \"org.codehaus.stax2.automaticEmptyElements\" ) )" );
-        sc.add( "{" );
-        sc.addIndented( "factory.setProperty( \"org.codehaus.stax2.automaticEmptyElements\", Boolean.FALSE );" );
-        sc.add( "}" );
-
-        sc.add(
-            "IndentingXMLStreamWriter serializer = new IndentingXMLStreamWriter( factory.createXMLStreamWriter( writer ) );" );
-
-        sc.add( "if ( supportWindowsLineEndings )" );
-        sc.add( "{" );
-        sc.addIndented( "serializer.setNewLine( serializer.getLineSeparator() );" );
-        sc.add( "}" );
+        writeSerializerCreation( sc, "factory.createXMLStreamWriter( writer )" );
 
         sc.add( "serializer.writeStartDocument( " + rootElementParameterName + ".getModelEncoding(), \"1.0\" );" );
 
@@ -181,31 +161,8 @@ public class StaxWriterGenerator
 
         sc = marshall.getSourceCode();
 
-        sc.add( "XMLOutputFactory factory = XMLOutputFactory.newInstance();" );
-
-        // currently, only woodstox supports Windows line endings. It works with Java 6/RI and stax <= 1.1.1 as well
-        // but we have no way to detect them
-        sc.add( "boolean supportWindowsLineEndings = false;" );
-        sc.add( "if ( factory.isPropertySupported( \"com.ctc.wstx.outputEscapeCr\" ) )" );
-        sc.add( "{" );
-        sc.indent();
-        sc.add( "factory.setProperty( \"com.ctc.wstx.outputEscapeCr\", Boolean.FALSE );" );
-        sc.add( "supportWindowsLineEndings = true;" );
-        sc.unindent();
-        sc.add( "}" );
-
-        sc.add( "if ( factory.isPropertySupported( \"org.codehaus.stax2.automaticEmptyElements\" ) )" );
-        sc.add( "{" );
-        sc.addIndented( "factory.setProperty( \"org.codehaus.stax2.automaticEmptyElements\", Boolean.FALSE );" );
-        sc.add( "}" );
-
-        sc.add( "IndentingXMLStreamWriter serializer = new IndentingXMLStreamWriter( factory.createXMLStreamWriter( stream, "
-            + rootElementParameterName + ".getModelEncoding() ) );" );
-
-        sc.add( "if ( supportWindowsLineEndings )" );
-        sc.add( "{" );
-        sc.addIndented( "serializer.setNewLine( serializer.getLineSeparator() );" );
-        sc.add( "}" );
+        writeSerializerCreation( sc, "factory.createXMLStreamWriter( stream, " + rootElementParameterName
+            + ".getModelEncoding() )" );
 
         sc.add( "serializer.writeStartDocument( " + rootElementParameterName + ".getModelEncoding(), \"1.0\" );" );
 
@@ -217,6 +174,8 @@ public class StaxWriterGenerator
 
         writeAllClasses( objectModel, jClass );
 
+        writeStreamWriter( rootClass, jClass );
+
         if ( requiresDomSupport )
         {
             jClass.addImport( "org.codehaus.plexus.util.xml.Xpp3Dom" );
@@ -228,6 +187,51 @@ public class StaxWriterGenerator
         sourceWriter.close();
     }
 
+    /**
+     * Writes the creation of the <code>serializer</code> wrapping the given stream writer: indenting, unless the
+     * output is compact.
+     */
+    private void writeSerializerCreation( JSourceCode sc, String streamWriter )
+    {
+        sc.add( "XMLOutputFactory factory = XMLOutputFactory.newInstance();" );
+
+        // currently, only woodstox supports Windows line endings. It works with Java 6/RI and stax <= 1.1.1 as well
+        // but we have no way to detect them
+        if ( !compactOutput )
+        {
+            sc.add( "boolean supportWindowsLineEndings = false;" );
+        }
+        sc.add( "if ( factory.isPropertySupported( \"com.ctc.wstx.outputEscapeCr\" ) )" );
+        sc.add( "{" );
+        sc.indent();
+        sc.add( "factory.setProperty( \"com.ctc.wstx.outputEscapeCr\", Boolean.FALSE );" );
+        if ( !compactOutput )
+        {
+            sc.add( "supportWindowsLineEndings = true;" );
+        }
+        sc.unindent();
+        sc.add( "}" );
+
+        sc.add( "if ( factory.isPropertySupported( \"org.codehaus.stax2.automaticEmptyElements\" ) )" );
+        sc.add( "{" );
+        sc.addIndented( "factory.setProperty( \"org.codehaus.stax2.automaticEmptyElements\", Boolean.FALSE );" );
+        sc.add( "}" );
+
+        if ( compactOutput )
+        {
+            sc.add( "XMLStreamWriter serializer = " + streamWriter + ";" );
+        }
+        else
+        {
+            sc.add( "IndentingXMLStreamWriter serializer = new IndentingXMLStreamWriter( " + streamWriter + " );" );
+
+            sc.add( "if ( supportWindowsLineEndings )" );
+            sc.add( "{" );
+            sc.addIndented( "serializer.setNewLine( serializer.getLineSeparator() );" );
+            sc.add( "}" );
+        }
+    }
+
     private void writeAllClasses( Model objectModel, JClass jClass )
         throws ModelloException
     {
@@ -261,6 +265,29 @@ public class StaxWriterGenerator
         sc.add( "{" );
         sc.indent();
 
+        writeStartTag( modelClass, sc );
+
+        for ( ModelField field : getFieldsForXml( modelClass, getGeneratedVersion() ) )
+        {
+            writeElementField( modelClass, field, sc );
+        }
+
+        sc.add( "serializer.writeEndElement();" );
+
+        sc.unindent();
+        sc.add( "}" );
+
+        jClass.addMethod( marshall );
+    }
+
+    /**
+     * Writes the start tag of a class, with its namespaces, its attributes and its content.
+     */
+    private void writeStartTag( ModelClass modelClass, JSourceCode sc )
+        throws ModelloException
+    {
+        String uncapClassName = uncapitalise( modelClass.getName() );
+
         ModelClassMetadata classMetadata = (ModelClassMetadata) modelClass.getMetadata( ModelClassMetadata.ID );
 
         String namespace = null;
@@ -339,57 +366,133 @@ public class StaxWriterGenerator
             XmlFieldMetadata xmlFieldMetadata = (XmlFieldMetadata) contentField.getMetadata( XmlFieldMetadata.ID );
             sc.add( "serializer.writeCharacters( " + getValue( contentField.getType(), contentValue, xmlFieldMetadata ) + " );" );
         }
+    }
 
-        // XML tags
-        for ( ModelField field : modelFields )
+    /**
+     * Writes a field of a class written as an XML tag: fields written as attributes or as content are skipped.
+     */
+    private void writeElementField( ModelClass modelClass, ModelField field, JSourceCode sc )
+        throws ModelloException
+    {
+        String uncapClassName = uncapitalise( modelClass.getName() );
+
+        XmlFieldMetadata xmlFieldMetadata = (XmlFieldMetadata) field.getMetadata( XmlFieldMetadata.ID );
+
+        if ( xmlFieldMetadata.isContent() )
         {
-            XmlFieldMetadata xmlFieldMetadata = (XmlFieldMetadata) field.getMetadata( XmlFieldMetadata.ID );
+            // skip field with type Content
+            return;
+        }
 
-            if ( xmlFieldMetadata.isContent() )
-            {
-                // skip field with type Content
-                continue;
-            }
+        String fieldTagName = resolveTagName( field, xmlFieldMetadata );
 
-            String fieldTagName = resolveTagName( field, xmlFieldMetadata );
+        String type = field.getType();
 
-            String type = field.getType();
+        String value = getFieldValue( uncapClassName, field );
 
-            String value = getFieldValue( uncapClassName, field );
+        if ( xmlFieldMetadata.isAttribute() )
+        {
+            return;
+        }
 
-            if ( xmlFieldMetadata.isAttribute() )
+        if ( field instanceof ModelAssociation )
+        {
+            ModelAssociation association = (ModelAssociation) field;
+
+            String associationName = association.getName();
+
+            ModelField referenceIdentifierField = getReferenceIdentifierField( association );
+
+            if ( association.isOneMultiplicity() )
             {
-                continue;
-            }
+                sc.add( getValueChecker( type, value, association ) );
+                sc.add( "{" );
+                sc.indent();
+
+                if ( referenceIdentifierField != null )
+                {
+                    // if xml.reference, then store as a reference instead
+
+                    sc.add( "serializer.writeStartElement( \"" + fieldTagName + "\" );" );
 
-            if ( field instanceof ModelAssociation )
+                    writeElementAttribute( sc, referenceIdentifierField, value );
+
+                    sc.add( "serializer.writeEndElement();" );
+                }
+                else
+                {
+                    sc.add( "write" + association.getTo() + "( (" + association.getTo() + ") " + value + ", \"" +
+                        fieldTagName + "\", serializer );" );
+                }
+
+                sc.unindent();
+                sc.add( "}" );
+            }
+            else
             {
-                ModelAssociation association = (ModelAssociation) field;
+                //MANY_MULTIPLICITY
+
+                XmlAssociationMetadata xmlAssociationMetadata =
+                    (XmlAssociationMetadata) association.getAssociationMetadata( XmlAssociationMetadata.ID );
+
+                String valuesTagName = resolveTagName( fieldTagName, xmlAssociationMetadata );
 
-                String associationName = association.getName();
+                type = association.getType();
+                String toType = association.getTo();
 
-                ModelField referenceIdentifierField = getReferenceIdentifierField( association );
+                boolean wrappedItems = xmlAssociationMetadata.isWrappedItems();
 
-                if ( association.isOneMultiplicity() )
+                if ( ModelDefault.LIST.equals( type ) || ModelDefault.SET.equals( type ) )
                 {
                     sc.add( getValueChecker( type, value, association ) );
+
+                    sc.add( "{" );
+                    sc.indent();
+
+                    if ( wrappedItems )
+                    {
+                        sc.add( "serializer.writeStartElement( " + "\"" + fieldTagName + "\" );" );
+                    }
+
+                    sc.add( "for ( Iterator iter = " + value + ".iterator(); iter.hasNext(); )" );
+
                     sc.add( "{" );
                     sc.indent();
 
-                    if ( referenceIdentifierField != null )
+                    if ( isClassInModel( association.getTo(), modelClass.getModel() ) )
                     {
-                        // if xml.reference, then store as a reference instead
+                        sc.add( toType + " o = (" + toType + ") iter.next();" );
 
-                        sc.add( "serializer.writeStartElement( \"" + fieldTagName + "\" );" );
+                        if ( referenceIdentifierField != null )
+                        {
+                            sc.add( "serializer.writeStartElement( \"" + valuesTagName + "\" );" );
 
-                        writeElementAttribute( sc, referenceIdentifierField, value );
+                            writeElementAttribute( sc, referenceIdentifierField, "o" );
 
-                        sc.add( "serializer.writeEndElement();" );
+                            sc.add( "serializer.writeEndElement();" );
+                        }
+                        else
+                        {
+                            sc.add( "write" + toType + "( o, \"" + valuesTagName + "\", serializer );" );
+                        }
                     }
                     else
                     {
-                        sc.add( "write" + association.getTo() + "( (" + association.getTo() + ") " + value + ", \"" +
-                            fieldTagName + "\", serializer );" );
+                        sc.add( toType + " " + singular( uncapitalise( field.getName() ) ) + " = (" + toType +
+                            ") iter.next();" );
+
+                        sc.add( "serializer.writeStartElement( " + "\"" + valuesTagName + "\" );" );
+                        sc.add(
+                            "serializer.writeCharacters( " + singular( uncapitalise( field.getName() ) ) + " );" );
+                        sc.add( "serializer.writeEndElement();" );
+                    }
+
+                    sc.unindent();
+                    sc.add( "}" );
+
+                    if ( wrappedItems )
+                    {
+                        sc.add( "serializer.writeEndElement();" );
                     }
 
                     sc.unindent();
@@ -397,160 +500,373 @@ public class StaxWriterGenerator
                 }
                 else
                 {
-                    //MANY_MULTIPLICITY
+                    //Map or Properties
+
+                    sc.add( getValueChecker( type, value, field ) );
+
+                    sc.add( "{" );
+                    sc.indent();
+
+                    if ( wrappedItems )
+                    {
+                        sc.add( "serializer.writeStartElement( " + "\"" + fieldTagName + "\" );" );
+                    }
 
-                    XmlAssociationMetadata xmlAssociationMetadata =
-                        (XmlAssociationMetadata) association.getAssociationMetadata( XmlAssociationMetadata.ID );
+                    sc.add( "for ( Iterator iter = " + value + ".keySet().iterator(); iter.hasNext(); )" );
 
-                    String valuesTagName = resolveTagName( fieldTagName, xmlAssociationMetadata );
+                    sc.add( "{" );
+                    sc.indent();
 
-                    type = association.getType();
-                    String toType = association.getTo();
+                    sc.add( "String key = (String) iter.next();" );
 
-                    boolean wrappedItems = xmlAssociationMetadata.isWrappedItems();
+                    sc.add( "String value = (String) " + value + ".get( key );" );
 
-                    if ( ModelDefault.LIST.equals( type ) || ModelDefault.SET.equals( type ) )
+                    if ( xmlAssociationMetadata.isMapExplode() )
+                    {
+                        sc.add( "serializer.writeStartElement( \"" + singular( associationName ) + "\" );" );
+                        sc.add( "serializer.writeStartElement( \"key\" );" );
+                        sc.add( "serializer.writeCharacters( key );" );
+                        sc.add( "serializer.writeEndElement();" );
+                        sc.add( "serializer.writeStartElement( \"value\" );" );
+                        sc.add( "serializer.writeCharacters( value );" );
+                        sc.add( "serializer.writeEndElement();" );
+                        sc.add( "serializer.writeEndElement();" );
+                    }
+                    else
                     {
-                        sc.add( getValueChecker( type, value, association ) );
+                        sc.add( "serializer.writeStartElement( \"\" + key + \"\" );" );
+                        sc.add( "serializer.writeCharacters( value );" );
+                        sc.add( "serializer.writeEndElement();" );
+                    }
 
-                        sc.add( "{" );
-                        sc.indent();
+                    sc.unindent();
+                    sc.add( "}" );
 
-                        if ( wrappedItems )
-                        {
-                            sc.add( "serializer.writeStartElement( " + "\"" + fieldTagName + "\" );" );
-                        }
+                    if ( wrappedItems )
+                    {
+                        sc.add( "serializer.writeEndElement();" );
+                    }
 
-                        sc.add( "for ( Iterator iter = " + value + ".iterator(); iter.hasNext(); )" );
+                    sc.unindent();
+                    sc.add( "}" );
+                }
+            }
+        }
+        else
+        {
+            sc.add( getValueChecker( type, value, field ) );
 
-                        sc.add( "{" );
-                        sc.indent();
+            sc.add( "{" );
+            sc.indent();
 
-                        if ( isClassInModel( association.getTo(), modelClass.getModel() ) )
-                        {
-                            sc.add( toType + " o = (" + toType + ") iter.next();" );
+            if ( "DOM".equals( field.getType() ) )
+            {
+                sc.add( "writeDom( (Xpp3Dom) " + value + ", serializer );" );
 
-                            if ( referenceIdentifierField != null )
-                            {
-                                sc.add( "serializer.writeStartElement( \"" + valuesTagName + "\" );" );
+                requiresDomSupport = true;
+            }
+            else
+            {
+                sc.add( "serializer.writeStartElement( " + "\"" + fieldTagName + "\" );" );
+                sc.add(
+                    "serializer.writeCharacters( " + getValue( field.getType(), value, xmlFieldMetadata ) + " );" );
+                sc.add( "serializer.writeEndElement();" );
+            }
 
-                                writeElementAttribute( sc, referenceIdentifierField, "o" );
+            sc.unindent();
+            sc.add( "}" );
+        }
+    }
 
-                                sc.add( "serializer.writeEndElement();" );
-                            }
-                            else
-                            {
-                                sc.add( "write" + toType + "( o, \"" + valuesTagName + "\", serializer );" );
-                            }
-                        }
-                        else
-                        {
-                            sc.add( toType + " " + singular( uncapitalise( field.getName() ) ) + " = (" + toType +
-                                ") iter.next();" );
+    /**
+     * Write the incremental writing API: <code>open()</code> methods returning a <code>StreamWriter</code>, which
+     * writes the items of the lists of the root element one by one then the rest of the document on
+     * <code>close()</code>. The elements of the root element are numbered in document order, the stream writer
+     * writes them up to the list being streamed with the <code>write&lt;Root&gt;Element</code> method.
+     */
+    private void writeStreamWriter( ModelClass rootClass, JClass jClass )
+        throws ModelloException
+    {
+        String root = rootClass.getName();
 
-                            sc.add( "serializer.writeStartElement( " + "\"" + valuesTagName + "\" );" );
-                            sc.add(
-                                "serializer.writeCharacters( " + singular( uncapitalise( field.getName() ) ) + " );" );
-                            sc.add( "serializer.writeEndElement();" );
-                        }
+        String rootElementParameterName = uncapitalise( root );
 
-                        sc.unindent();
-                        sc.add( "}" );
+        String rootElement = resolveTagName( rootClass );
 
-                        if ( wrappedItems )
-                        {
-                            sc.add( "serializer.writeEndElement();" );
-                        }
+        String writerName = jClass.getName( true );
 
-                        sc.unindent();
-                        sc.add( "}" );
-                    }
-                    else
-                    {
-                        //Map or Properties
+        List<ModelField> elementFields = new ArrayList<ModelField>();
 
-                        sc.add( getValueChecker( type, value, field ) );
+        for ( ModelField field : getFieldsForXml( rootClass, getGeneratedVersion() ) )
+        {
+            XmlFieldMetadata xmlFieldMetadata = (XmlFieldMetadata) field.getMetadata( XmlFieldMetadata.ID );
 
-                        sc.add( "{" );
-                        sc.indent();
+            if ( !xmlFieldMetadata.isContent() && !xmlFieldMetadata.isAttribute() )
+            {
+                elementFields.add( field );
+            }
+        }
 
-                        if ( wrappedItems )
-                        {
-                            sc.add( "serializer.writeStartElement( " + "\"" + fieldTagName + "\" );" );
-                        }
+        // ----------------------------------------------------------------------
+        // open( Writer, Model ) and open( OutputStream, Model )
+        // ----------------------------------------------------------------------
 
-                        sc.add( "for ( Iterator iter = " + value + ".keySet().iterator(); iter.hasNext(); )" );
+        for ( int i = 0; i < 2; i++ )
+        {
+            boolean stream = i > 0;
 
-                        sc.add( "{" );
-                        sc.indent();
+            JMethod method = new JMethod( "open", new JClass( "StreamWriter" ), "a stream writer to write the items "
+                + "of the lists, then to close the document" );
+            if ( stream )
+            {
+                method.addParameter( new JParameter( new JClass( "OutputStream" ), "stream" ) );
+            }
+            else
+            {
+                method.addParameter( new JParameter( new JClass( "Writer" ), "writer" ) );
+            }
+            method.addParameter( new JParameter( new JClass( root ), rootElementParameterName ) );
+            method.addException( new JClass( "java.io.IOException" ) );
+            method.addException( new JClass( "XMLStreamException" ) );
+            method.setComment( "Starts writing a document incrementally from <code>" + rootElementParameterName
+                + "</code>: the items streamed\nin one of its lists are written after the items this list contains." );
 
-                        sc.add( "String key = (String) iter.next();" );
+            JSourceCode sc = method.getSourceCode();
 
-                        sc.add( "String value = (String) " + value + ".get( key );" );
+            if ( stream )
+            {
+                writeSerializerCreation( sc, "factory.createXMLStreamWriter( stream, " + rootElementParameterName
+                    + ".getModelEncoding() )" );
+            }
+            else
+            {
+                writeSerializerCreation( sc, "factory.createXMLStreamWriter( writer )" );
+            }
 
-                        if ( xmlAssociationMetadata.isMapExplode() )
-                        {
-                            sc.add( "serializer.writeStartElement( \"" + singular( associationName ) + "\" );" );
-                            sc.add( "serializer.writeStartElement( \"key\" );" );
-                            sc.add( "serializer.writeCharacters( key );" );
-                            sc.add( "serializer.writeEndElement();" );
-                            sc.add( "serializer.writeStartElement( \"value\" );" );
-                            sc.add( "serializer.writeCharacters( value );" );
-                            sc.add( "serializer.writeEndElement();" );
-                            sc.add( "serializer.writeEndElement();" );
-                        }
-                        else
-                        {
-                            sc.add( "serializer.writeStartElement( \"\" + key + \"\" );" );
-                            sc.add( "serializer.writeCharacters( value );" );
-                            sc.add( "serializer.writeEndElement();" );
-                        }
+            sc.add( "serializer.writeStartDocument( " + rootElementParameterName + ".getModelEncoding(), \"1.0\" );" );
 
-                        sc.unindent();
-                        sc.add( "}" );
+            sc.add( "return new StreamWriter( " + rootElementParameterName + ", serializer );" );
 
-                        if ( wrappedItems )
-                        {
-                            sc.add( "serializer.writeEndElement();" );
-                        }
+            jClass.addMethod( method );
+        }
 
-                        sc.unindent();
-                        sc.add( "}" );
-                    }
-                }
+        // ----------------------------------------------------------------------
+        // write<Root>Element( <Root>, int, XMLStreamWriter )
+        // ----------------------------------------------------------------------
+
+        JMethod method = new JMethod( "write" + root + "Element" );
+        method.addParameter( new JParameter( new JClass( root ), rootElementParameterName ) );
+        method.addParameter( new JParameter( JType.INT, "index" ) );
+        method.addParameter( new JParameter( new JClass( "XMLStreamWriter" ), "serializer" ) );
+        method.addException( new JClass( "java.io.IOException" ) );
+        method.addException( new JClass( "XMLStreamException" ) );
+        method.getModifiers().makePrivate();
+
+        JSourceCode sc = method.getSourceCode();
+
+        sc.add( "switch ( index )" );
+        sc.add( "{" );
+        sc.indent();
+
+        for ( int i = 0; i < elementFields.size(); i++ )
+        {
+            sc.add( "case " + i + ":" );
+            sc.add( "{" );
+            sc.indent();
+            writeElementField( rootClass, elementFields.get( i ), sc );
+            sc.add( "break;" );
+            sc.unindent();
+            sc.add( "}" );
+        }
+
+        sc.unindent();
+        sc.add( "}" );
+
+        jClass.addMethod( method );
+
+        // ----------------------------------------------------------------------
+        // StreamWriter
+        // ----------------------------------------------------------------------
+
+        JClass streamClass = jClass.createInnerClass( "StreamWriter" );
+        streamClass.getJDocComment().setComment( "Writer of a document started by <code>open()</code>, streaming the "
+            + "items of the lists of the root element\nwithout keeping them, and ending the document on "
+            + "<code>close()</code>. Lists must be written in document order." );
+
+        JField field = new JField( new JClass( root ), rootElementParameterName );
+        field.getModifiers().setFinal( true );
+        streamClass.addField( field );
+
+        field = new JField( new JClass( "XMLStreamWriter" ), "serializer" );
+        field.getModifiers().setFinal( true );
+        streamClass.addField( field );
+
+        field = new JField( JType.INT, "position" );
+        field.setComment( "The index of the next element of the root element to write, or of the list being "
+            + "streamed." );
+        streamClass.addField( field );
+
+        field = new JField( JType.BOOLEAN, "streaming" );
+        field.setComment( "Whether the items of the list at <code>position</code> are being streamed." );
+        streamClass.addField( field );
+
+        field = new JField( JType.BOOLEAN, "wrapped" );
+        field.setComment( "Whether the items being streamed are wrapped in an element." );
+        streamClass.addField( field );
+
+        JConstructor constructor = streamClass.createConstructor();
+        constructor.getModifiers().makePrivate();
+        constructor.addParameter( new JParameter( new JClass( root ), rootElementParameterName ) );
+        constructor.addParameter( new JParameter( new JClass( "XMLStreamWriter" ), "serializer" ) );
+        constructor.addException( new JClass( "java.io.IOException" ) );
+        constructor.addException( new JClass( "XMLStreamException" ) );
+        sc = constructor.getSourceCode();
+        sc.add( "this." + rootElementParameterName + " = " + rootElementParameterName + ";" );
+        sc.add( "this.serializer = serializer;" );
+        sc.add( "String tagName = \"" + rootElement + "\";" );
+        writeStartTag( rootClass, sc );
+
+        for ( int i = 0; i < elementFields.size(); i++ )
+        {
+            if ( !( elementFields.get( i ) instanceof ModelAssociation ) )
+            {
+                continue;
             }
-            else
+
+            ModelAssociation association = (ModelAssociation) elementFields.get( i );
+
+            if ( !association.isManyMultiplicity() || !( ModelDefault.LIST.equals( association.getType() )
+                || ModelDefault.SET.equals( association.getType() ) ) )
             {
-                sc.add( getValueChecker( type, value, field ) );
+                continue;
+            }
 
-                sc.add( "{" );
-                sc.indent();
+            XmlFieldMetadata xmlFieldMetadata = (XmlFieldMetadata) association.getMetadata( XmlFieldMetadata.ID );
 
-                if ( "DOM".equals( field.getType() ) )
-                {
-                    sc.add( "writeDom( (Xpp3Dom) " + value + ", serializer );" );
+            XmlAssociationMetadata xmlAssociationMetadata =
+                (XmlAssociationMetadata) association.getAssociationMetadata( XmlAssociationMetadata.ID );
 
-                    requiresDomSupport = true;
-                }
-                else
-                {
-                    sc.add( "serializer.writeStartElement( " + "\"" + fieldTagName + "\" );" );
-                    sc.add(
-                        "serializer.writeCharacters( " + getValue( field.getType(), value, xmlFieldMetadata ) + " );" );
-                    sc.add( "serializer.writeEndElement();" );
-                }
+            String fieldTagName = resolveTagName( association, xmlFieldMetadata );
 
-                sc.unindent();
-                sc.add( "}" );
+            String valuesTagName = resolveTagName( fieldTagName, xmlAssociationMetadata );
+
+            String value = getFieldValue( rootElementParameterName, association );
+
+            String toType = association.getTo();
+
+            String itemName = singular( uncapitalise( association.getName() ) );
+
+            method = new JMethod( "write" + capitalise( itemName ) );
+            method.addParameter( new JParameter( new JClass( toType ), itemName ) );
+            method.addException( new JClass( "java.io.IOException" ) );
+            method.addException( new JClass( "XMLStreamException" ) );
+            method.setComment( "Writes an item of the <code>" + fieldTagName + "</code> list, after the items "
+                + "already in the list of\n<code>" + rootElementParameterName + "</code>." );
+
+            sc = method.getSourceCode();
+            sc.add( "if ( !streaming || position != " + i + " )" );
+            sc.add( "{" );
+            sc.indent();
+            sc.add( "moveTo( " + i + ", \"" + fieldTagName + "\" );" );
+            if ( xmlAssociationMetadata.isWrappedItems() )
+            {
+                sc.add( "serializer.writeStartElement( \"" + fieldTagName + "\" );" );
             }
+            sc.add( "wrapped = " + xmlAssociationMetadata.isWrappedItems() + ";" );
+            sc.add( "if ( " + value + " != null )" );
+            sc.add( "{" );
+            sc.indent();
+            sc.add( "for ( Iterator iter = " + value + ".iterator(); iter.hasNext(); )" );
+            sc.add( "{" );
+            sc.indent();
+            sc.add( toType + " o = (" + toType + ") iter.next();" );
+            writeStreamedItem( sc, writerName, association, "o", valuesTagName );
+            sc.unindent();
+            sc.add( "}" );
+            sc.unindent();
+            sc.add( "}" );
+            sc.add( "streaming = true;" );
+            sc.unindent();
+            sc.add( "}" );
+            writeStreamedItem( sc, writerName, association, itemName, valuesTagName );
+
+            streamClass.addMethod( method );
         }
 
+        method = new JMethod( "flush" );
+        method.addException( new JClass( "XMLStreamException" ) );
+        method.setComment( "Flushes the document written so far." );
+        method.setSourceCode( "serializer.flush();" );
+        streamClass.addMethod( method );
+
+        method = new JMethod( "close" );
+        method.addException( new JClass( "java.io.IOException" ) );
+        method.addException( new JClass( "XMLStreamException" ) );
+        method.setComment( "Writes the end of the document: the underlying writer or stream is not closed." );
+        sc = method.getSourceCode();
+        sc.add( "moveTo( " + elementFields.size() + ", null );" );
         sc.add( "serializer.writeEndElement();" );
+        sc.add( "serializer.writeEndDocument();" );
+        sc.add( "serializer.flush();" );
+        streamClass.addMethod( method );
 
+        method = new JMethod( "moveTo" );
+        method.getModifiers().makePrivate();
+        method.addParameter( new JParameter( JType.INT, "index" ) );
+        method.addParameter( new JParameter( new JClass( "String" ), "tagName" ) );
+        method.addException( new JClass( "java.io.IOException" ) );
+        method.addException( new JClass( "XMLStreamException" ) );
+        method.setComment( "Ends the list being streamed and writes the elements of the root element preceding the "
+            + "given one." );
+        sc = method.getSourceCode();
+        sc.add( "if ( streaming )" );
+        sc.add( "{" );
+        sc.indent();
+        sc.add( "if ( wrapped )" );
+        sc.add( "{" );
+        sc.addIndented( "serializer.writeEndElement();" );
+        sc.add( "}" );
+        sc.add( "streaming = false;" );
+        sc.add( "position++;" );
         sc.unindent();
         sc.add( "}" );
+        sc.add( "if ( index < position )" );
+        sc.add( "{" );
+        sc.addIndented( "throw new IllegalStateException( \"'\" + tagName + \"' element already written\" );" );
+        sc.add( "}" );
+        sc.add( "for ( ; position < index; position++ )" );
+        sc.add( "{" );
+        sc.addIndented( "write" + root + "Element( " + rootElementParameterName + ", position, serializer );" );
+        sc.add( "}" );
+        streamClass.addMethod( method );
+    }
 
-        jClass.addMethod( marshall );
+    private void writeStreamedItem( JSourceCode sc, String writerName, ModelAssociation association, String item,
+                                    String valuesTagName )
+        throws ModelloException
+    {
+        ModelField referenceIdentifierField = getReferenceIdentifierField( association );
+
+        if ( !isClassInModel( association.getTo(), association.getModelClass().getModel() ) )
+        {
+            sc.add( "serializer.writeStartElement( \"" + valuesTagName + "\" );" );
+            sc.add( "serializer.writeCharacters( " + item + " );" );
+            sc.add( "serializer.writeEndElement();" );
+        }
+        else if ( referenceIdentifierField != null )
+        {
+            sc.add( "serializer.writeStartElement( \"" + valuesTagName + "\" );" );
+
+            writeElementAttribute( sc, referenceIdentifierField, item );
+
+            sc.add( "serializer.writeEndElement();" );
+        }
+        else
+        {
+            // the write<Class> method of the writer is hidden by the one of the stream writer
+            sc.add( writerName + ".this.write" + association.getTo() + "( " + item + ", \"" + valuesTagName
+                + "\", serializer );" );
+        }
     }
 
     private void writeElementAttribute( JSourceCode sc, ModelField referenceIdentifierField, String value )
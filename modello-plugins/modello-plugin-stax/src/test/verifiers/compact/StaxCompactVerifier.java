@@ -0,0 +1,75 @@
+package org.codehaus.modello.generator.xml.stax;
+
+/*
+ * Copyright (c) 2004, Codehaus.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import org.codehaus.modello.test.compact.CompactDocument;
+import org.codehaus.modello.test.compact.io.stax.CompactStaxReader;
+import org.codehaus.modello.test.compact.io.stax.CompactStaxWriter;
+import org.codehaus.modello.test.features.Features;
+import org.codehaus.modello.test.features.io.stax.ModelloFeaturesTestStaxReader;
+import org.codehaus.modello.test.features.io.stax.ModelloFeaturesTestStaxWriter;
+import org.codehaus.modello.verifier.AbstractCompactVerifier;
+
+import java.io.Reader;
+import java.io.StringWriter;
+
+/**
+ * Verifies the documents written in compact output mode by the Stax writers.
+ *
+ * @version $Id$
+ */
+public class StaxCompactVerifier
+    extends AbstractCompactVerifier
+{
+    protected Object readFeatures( Reader reader )
+        throws Exception
+    {
+        return new ModelloFeaturesTestStaxReader().read( reader );
+    }
+
+    protected String writeFeatures( Object features )
+        throws Exception
+    {
+        StringWriter buffer = new StringWriter();
+
+        new ModelloFeaturesTestStaxWriter().write( buffer, (Features) features );
+
+        return buffer.toString();
+    }
+
+    protected Object readDocument( Reader reader )
+        throws Exception
+    {
+        return new CompactStaxReader().read( reader );
+    }
+
+    protected String writeDocument( Object document )
+        throws Exception
+    {
+        StringWriter buffer = new StringWriter();
+
+        new CompactStaxWriter().write( buffer, (CompactDocument) document );
+
+        return buffer.toString();
+    }
+}
@@ -74,6 +74,10 @@ public class StaxFeaturesVerifier
         verifyTransientElement();
 
         verifyEncoding();
+
+        verifyProjection();
+
+        verifyFileRead();
     }
 
     public void verifyAPI()
@@ -248,4 +252,73 @@ public class StaxFeaturesVerifier
         checkEncoding( "/features-UTF-8.xml", "UTF-8" );
         checkEncoding( "/features-Latin-15.xml", "ISO-8859-15" );
     }
+
+    public void verifyProjection()
+        throws Exception
+    {
+        String xml = "<features-demo><versionField>1.0.0</versionField><comment>skipped</comment>"
+            + "<node><value>root</value><unknown/></node></features-demo>";
+
+        ModelloFeaturesTestStaxReader reader = new ModelloFeaturesTestStaxReader();
+
+        reader.setProjection( java.util.Collections.singletonList( "versionField" ) );
+
+        // the unknown element is in a skipped subtree: no failure under strict option
+        Features features = reader.read( new StringReader( xml ) );
+
+        Assert.assertEquals( "1.0.0", features.getVersionField() );
+        Assert.assertNull( features.getComment() );
+        Assert.assertNull( features.getNode() );
+
+        reader.setProjection( null );
+
+        features = reader.read( new StringReader( xml ), false );
+
+        Assert.assertEquals( "skipped", features.getComment() );
+        Assert.assertEquals( "root", features.getNode().getValue() );
+
+        // the items of a flat list are skipped or read by the tag name of an item
+        xml = "<features-demo><xmlFeatures><tag-name>skipped</tag-name>"
+            + "<xmlItemsStyleFlat><id>first</id></xmlItemsStyleFlat>"
+            + "<xmlItemsStyleFlat><id>second</id></xmlItemsStyleFlat></xmlFeatures></features-demo>";
+
+        reader.setProjection( java.util.Collections.singletonList( "xmlFeatures/xmlItemsStyleFlats" ) );
+
+        features = reader.read( new StringReader( xml ), false );
+
+        Assert.assertNull( features.getXmlFeatures().getFieldName() );
+        Assert.assertEquals( 2, features.getXmlFeatures().getXmlItemsStyleFlats().size() );
+
+        reader.setProjection( java.util.Collections.singletonList( "xmlFeatures/fieldName" ) );
+
+        features = reader.read( new StringReader( xml ), false );
+
+        Assert.assertEquals( "skipped", features.getXmlFeatures().getFieldName() );
+        Assert.assertEquals( 0, features.getXmlFeatures().getXmlItemsStyleFlats().size() );
+    }
+
+    public void verifyFileRead()
+        throws Exception
+    {
+        File file = File.createTempFile( "features", ".xml" );
+        file.deleteOnExit();
+
+        OutputStream out = new java.io.FileOutputStream( file );
+        try
+        {
+            IOUtil.copy( getClass().getResourceAsStream( "/features.xml" ), out );
+        }
+        finally
+        {
+            out.close();
+        }
+
+        Features expected = verifyReader();
+
+        Features features = new ModelloFeaturesTestStaxReader().read( file );
+
+        Assert.assertEquals( expected.getVersionField(), features.getVersionField() );
+        Assert.assertEquals( expected.getDescription(), features.getDescription() );
+        Assert.assertEquals( expected.getSimpleTypes().getPrimitiveInt(), features.getSimpleTypes().getPrimitiveInt() );
+    }
 }
@@ -38,6 +38,7 @@ import org.codehaus.plexus.util.FileUtils;
 import org.codehaus.plexus.util.ReaderFactory;
 import org.codehaus.plexus.util.xml.Xpp3Dom;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.Reader;
@@ -68,6 +69,8 @@ public class StaxVerifier
 
         verifyWriter();
 
+        verifyStreamWriter();
+
         verifyReader();
 
         verifyReaderAliases();
@@ -278,6 +281,74 @@ public class StaxVerifier
         return s;
     }
 
+    public void verifyStreamWriter()
+        throws IOException, XMLStreamException
+    {
+        String expectedXml = FileUtils.fileRead( getTestFile( "src/test/verifiers/stax/expected.xml" ) );
+
+        Model model = new MavenStaxReader().read( new StringReader( expectedXml ) );
+
+        MavenStaxWriter writer = new MavenStaxWriter();
+
+        StringWriter expected = new StringWriter();
+        writer.write( expected, model );
+
+        ByteArrayOutputStream expectedStream = new ByteArrayOutputStream();
+        writer.write( expectedStream, model );
+
+        List components = model.getComponents();
+        List repositories = model.getRepositories();
+        List mailingLists = model.getMailingLists();
+
+        // the first component stays in the model, the other items are streamed
+        model.setComponents( new java.util.ArrayList( components.subList( 0, 1 ) ) );
+        model.setRepositories( new java.util.ArrayList() );
+        model.setMailingLists( new java.util.ArrayList() );
+
+        StringWriter actual = new StringWriter();
+        MavenStaxWriter.StreamWriter streamWriter = writer.open( actual, model );
+        for ( int i = 1; i < components.size(); i++ )
+        {
+            streamWriter.writeComponent( (Component) components.get( i ) );
+        }
+        for ( int i = 0; i < repositories.size(); i++ )
+        {
+            streamWriter.writeRepository( (Repository) repositories.get( i ) );
+        }
+        streamWriter.writeMailingList( (MailingList) mailingLists.get( 0 ) );
+        streamWriter.close();
+
+        Assert.assertEquals( expected.toString(), actual.toString() );
+
+        // through an output stream, with the components all written from the model
+        model.setComponents( components );
+
+        ByteArrayOutputStream actualStream = new ByteArrayOutputStream();
+        streamWriter = writer.open( actualStream, model );
+        streamWriter.writeRepository( (Repository) repositories.get( 0 ) );
+        streamWriter.flush();
+        streamWriter.writeRepository( (Repository) repositories.get( 1 ) );
+        streamWriter.writeMailingList( (MailingList) mailingLists.get( 0 ) );
+        streamWriter.close();
+
+        Assert.assertEquals( new String( expectedStream.toByteArray(), "UTF-8" ),
+                             new String( actualStream.toByteArray(), "UTF-8" ) );
+
+        // lists are written in document order
+        streamWriter = writer.open( new StringWriter(), model );
+        streamWriter.writeMailingList( (MailingList) mailingLists.get( 0 ) );
+        try
+        {
+            streamWriter.writeRepository( (Repository) repositories.get( 0 ) );
+
+            Assert.fail( "repositories are written before mailing lists" );
+        }
+        catch ( IllegalStateException e )
+        {
+            Assert.assertEquals( "'repositories' element already written", e.getMessage() );
+        }
+    }
+
     public void verifyReader()
         throws IOException, XMLStreamException
     {
@@ -24,7 +24,7 @@ package org.codehaus.modello.plugin.xdoc;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.Writer;
+import java.io.StringWriter;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Properties;
@@ -50,7 +50,6 @@ import org.codehaus.modello.plugins.xml.metadata.XmlClassMetadata;
 import org.codehaus.modello.plugins.xml.metadata.XmlFieldMetadata;
 import org.codehaus.modello.plugins.xml.metadata.XmlModelMetadata;
 import org.codehaus.plexus.util.StringUtils;
-import org.codehaus.plexus.util.WriterFactory;
 import org.codehaus.plexus.util.xml.PrettyPrintXMLWriter;
 import org.codehaus.plexus.util.xml.XMLWriter;
 
@@ -120,7 +119,7 @@ public class XdocGenerator
             f = new File( directory, xdocFileName );
         }
 
-        Writer writer = WriterFactory.newXmlWriter( f );
+        StringWriter writer = new StringWriter();
 
         XMLWriter w = new PrettyPrintXMLWriter( writer );
 
@@ -161,9 +160,7 @@ public class XdocGenerator
 
         w.endElement();
 
-        writer.flush();
-
-        writer.close();
+        writeFile( f, writer.toString(), "UTF-8" );
     }
 
     /**
@@ -26,13 +26,24 @@ import java.util.List;
 import java.util.Properties;
 
 import org.codehaus.modello.ModelloException;
+import org.codehaus.modello.ModelloParameterConstants;
 import org.codehaus.modello.model.Model;
+import org.codehaus.modello.model.ModelAssociation;
 import org.codehaus.modello.model.ModelClass;
 import org.codehaus.modello.model.ModelDefault;
 import org.codehaus.modello.model.ModelField;
 import org.codehaus.modello.model.Version;
 import org.codehaus.modello.plugin.java.AbstractJavaModelloGenerator;
+import org.codehaus.modello.plugin.java.javasource.JArrayType;
+import org.codehaus.modello.plugin.java.javasource.JClass;
+import org.codehaus.modello.plugin.java.javasource.JCollectionType;
+import org.codehaus.modello.plugin.java.javasource.JConstructor;
+import org.codehaus.modello.plugin.java.javasource.JField;
+import org.codehaus.modello.plugin.java.javasource.JMethod;
+import org.codehaus.modello.plugin.java.javasource.JParameter;
 import org.codehaus.modello.plugin.java.javasource.JSourceCode;
+import org.codehaus.modello.plugin.java.javasource.JType;
+import org.codehaus.modello.plugin.java.metadata.JavaFieldMetadata;
 import org.codehaus.modello.plugins.xml.metadata.XmlAssociationMetadata;
 import org.codehaus.modello.plugins.xml.metadata.XmlFieldMetadata;
 
@@ -47,12 +58,39 @@ public abstract class AbstractXmlJavaGenerator
 {
     protected boolean strictXmlAttributes;
 
+    /**
+     * Whether the generated writers omit indentation and the fields equal to their default value.
+     * @since 1.5
+     */
+    protected boolean compactOutput;
+
     protected void initialize( Model model, Properties parameters )
         throws ModelloException
     {
         super.initialize( model, parameters );
 
         strictXmlAttributes = model.getDefault( ModelDefault.STRICT_XML_ATTRIBUTES ).getBoolean();
+
+        compactOutput =
+            Boolean.valueOf( getParameter( parameters, ModelloParameterConstants.COMPACT_OUTPUT, "false" ) ).booleanValue();
+    }
+
+    /**
+     * In compact output, wrapper typed fields equal to their default value are skipped too: the generated readers leave
+     * the default value of missing fields in place.
+     */
+    protected String getValueChecker( String type, String value, ModelField field )
+        throws ModelloException
+    {
+        if ( compactOutput && field.getDefaultValue() != null
+            && ( "Boolean".equals( type ) || "Character".equals( type ) || "Byte".equals( type )
+                || "Short".equals( type ) || "Integer".equals( type ) || "Long".equals( type )
+                || "Float".equals( type ) || "Double".equals( type ) ) )
+        {
+            return "if ( ( " + value + " != null ) && !" + value + ".equals( " + getJavaDefaultValue( field ) + " ) )";
+        }
+
+        return super.getValueChecker( type, value, field );
     }
 
     protected String getFileName( String suffix )
@@ -215,4 +253,568 @@ public abstract class AbstractXmlJavaGenerator
 
         sc.add( "return null;" );
     }
+
+    /**
+     * Check if a field can be read lazily: its whole content must be a single element, set at once with the field
+     * setter.
+     *
+     * @param field the field
+     * @param xmlFieldMetadata its XML metadata
+     * @return <code>true</code> if the field is marked <code>xml.lazy</code> and can be read lazily
+     * @since 1.5
+     */
+    protected boolean isLazy( ModelField field, XmlFieldMetadata xmlFieldMetadata )
+    {
+        if ( !xmlFieldMetadata.isLazy() )
+        {
+            return false;
+        }
+
+        JavaFieldMetadata javaFieldMetadata = (JavaFieldMetadata) field.getMetadata( JavaFieldMetadata.ID );
+
+        if ( !javaFieldMetadata.isLazy() || !javaFieldMetadata.isGetter() || !javaFieldMetadata.isSetter() )
+        {
+            return false;
+        }
+
+        if ( field instanceof ModelAssociation )
+        {
+            ModelAssociation association = (ModelAssociation) field;
+
+            XmlAssociationMetadata xmlAssociationMetadata =
+                (XmlAssociationMetadata) association.getAssociationMetadata( XmlAssociationMetadata.ID );
+
+            if ( association.isManyMultiplicity() && !xmlAssociationMetadata.isWrappedItems()
+                && ( ModelDefault.LIST.equals( association.getType() )
+                    || ModelDefault.SET.equals( association.getType() ) ) )
+            {
+                // flat items are not enclosed in a single element
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Generate code setting the loader of a lazy field, which parses the captured element on first access to the
+     * field with the static <code>parseLazy<i>ClassName</i>( String, boolean, StringTable )</code> method of the
+     * reader. The loader is created by a static method of the reader, so that it keeps only the captured element and
+     * the reader configuration, not the reader itself.
+     *
+     * @param jClass the reader class
+     * @param field the lazy field
+     * @param className the class of the object
+     * @param objectName the object name in the source
+     * @param capture the expression capturing the element of the field as XML text
+     * @param sc the method source code to add to
+     * @since 1.5
+     */
+    protected void writeLazyLoader( JClass jClass, ModelField field, String className, String objectName,
+                                    String capture, JSourceCode sc )
+    {
+        String capFieldName = capitalise( field.getName() );
+
+        String loaderFactory = "new" + className + capFieldName + "Loader";
+
+        sc.add( objectName + ".set" + capFieldName + "Loader( " + loaderFactory + "( " + objectName + ", " + capture
+            + ", strict, stringTable ) );" );
+
+        if ( jClass.getMethod( loaderFactory, 0 ) != null )
+        {
+            return;
+        }
+
+        JavaFieldMetadata javaFieldMetadata = (JavaFieldMetadata) field.getMetadata( JavaFieldMetadata.ID );
+
+        String getter =
+            ( javaFieldMetadata.isBooleanGetter() && !( field instanceof ModelAssociation ) ) ? "is" : "get";
+
+        JMethod method = new JMethod( loaderFactory, new JClass( "Runnable" ), null );
+        method.getModifiers().makePrivate();
+        method.getModifiers().setStatic( true );
+
+        method.setComment( "Create the loader of the " + field.getName() + " field of a " + className
+            + ", parsing the captured element." );
+
+        method.addParameter( new JParameter( new JClass( className ), objectName ) );
+        method.addParameter( new JParameter( new JClass( "String" ), "xml" ) );
+        method.addParameter( new JParameter( JType.BOOLEAN, "strict" ) );
+        method.addParameter( new JParameter( new JClass( "StringTable" ), "stringTable" ) );
+
+        JSourceCode msc = method.getSourceCode();
+
+        String lazyObjectName = "lazy" + capitalise( objectName );
+
+        msc.add( "final " + className + " " + lazyObjectName + " = " + objectName + ";" );
+
+        msc.add( "final String lazyXml = xml;" );
+
+        msc.add( "final boolean lazyStrict = strict;" );
+
+        msc.add( "final StringTable lazyStringTable = stringTable;" );
+
+        msc.add( "" );
+
+        msc.add( "return new Runnable()" );
+
+        msc.add( "{" );
+        msc.indent();
+
+        msc.add( "public void run()" );
+
+        msc.add( "{" );
+        msc.addIndented( lazyObjectName + ".set" + capFieldName + "( parseLazy" + className
+            + "( lazyXml, lazyStrict, lazyStringTable )." + getter + capFieldName + "() );" );
+        msc.add( "}" );
+
+        msc.unindent();
+        msc.add( "};" );
+
+        jClass.addMethod( method );
+    }
+
+    /**
+     * Write the <code>lazyLoading</code> flag of a reader, with its getter and setter.
+     *
+     * @param jClass the reader class
+     * @since 1.5
+     */
+    protected void writeLazyLoadingFlag( JClass jClass )
+    {
+        JField field = new JField( JType.BOOLEAN, "lazyLoading" );
+
+        field.setComment( "If set, the elements of lazy fields are parsed only on first access to the fields." );
+
+        field.setInitString( "true" );
+
+        jClass.addField( field );
+
+        JMethod method = new JMethod( "setLazyLoading" );
+
+        method.addParameter( new JParameter( JType.BOOLEAN, "lazyLoading" ) );
+
+        method.setSourceCode( "this.lazyLoading = lazyLoading;" );
+
+        method.setComment( "Sets the state of the \"lazy loading\" flag." );
+
+        jClass.addMethod( method );
+
+        method = new JMethod( "getLazyLoading", JType.BOOLEAN, null );
+
+        method.setComment( "Returns the state of the \"lazy loading\" flag." );
+
+        method.setSourceCode( "return lazyLoading;" );
+
+        jClass.addMethod( method );
+    }
+
+    /**
+     * Write the <code>appendEscaped( buffer, text )</code> method used to capture elements of lazy fields as XML text.
+     *
+     * @param bufferType the type of the buffer, <code>StringBuilder</code> or <code>StringBuffer</code>
+     * @param jClass the reader class
+     * @since 1.5
+     */
+    protected void writeAppendEscaped( String bufferType, JClass jClass )
+    {
+        JMethod method = new JMethod( "appendEscaped", null, null );
+        method.getModifiers().makePrivate();
+        method.getModifiers().setStatic( true );
+
+        method.addParameter( new JParameter( new JClass( bufferType ), "buffer" ) );
+        method.addParameter( new JParameter( new JClass( "String" ), "text" ) );
+
+        JSourceCode sc = method.getSourceCode();
+
+        sc.add( "for ( int i = 0; i < text.length(); i++ )" );
+
+        sc.add( "{" );
+        sc.indent();
+
+        sc.add( "char c = text.charAt( i );" );
+
+        sc.add( "switch ( c )" );
+
+        sc.add( "{" );
+        sc.indent();
+
+        String[][] escapes = { { "&", "&amp;" }, { "<", "&lt;" }, { ">", "&gt;" }, { "\"", "&quot;" },
+            { "\\r", "&#13;" } };
+
+        for ( String[] escape : escapes )
+        {
+            sc.add( "case '" + ( "\"".equals( escape[0] ) ? "\\\"" : escape[0] ) + "':" );
+            sc.addIndented( "buffer.append( \"" + escape[1] + "\" );" );
+            sc.addIndented( "break;" );
+        }
+
+        sc.add( "default:" );
+        sc.addIndented( "buffer.append( c );" );
+
+        sc.unindent();
+        sc.add( "}" );
+
+        sc.unindent();
+        sc.add( "}" );
+
+        jClass.addMethod( method );
+    }
+
+    /**
+     * Write the projection of a reader: the <code>setProjection( paths )</code> method selecting the fields to read,
+     * and the <code>enterProjection( projected, field )</code> method used by class parsers to check if a field is
+     * selected.
+     * The paths are compiled to a tree of maps from field names to the map of selected sub-fields, or to
+     * <code>Boolean.TRUE</code> if the whole field is selected.
+     *
+     * @param jClass the reader class
+     * @since 1.5
+     */
+    protected void writeProjection( JClass jClass )
+    {
+        JField field = new JField( new JClass( "java.util.Map" ), "projectionRoot" );
+
+        field.setComment( "The tree of the fields selected by the projection, or <code>null</code> to read every "
+            + "field." );
+
+        jClass.addField( field );
+
+        field = new JField( new JClass( "java.util.Map" ), "projection" );
+
+        field.setComment( "The fields selected in the element being parsed, or <code>null</code> to read every "
+            + "field." );
+
+        jClass.addField( field );
+
+        JMethod method = new JMethod( "setProjection" );
+
+        method.setComment( "Sets the paths of the fields to read, like <code>name</code> or "
+            + "<code>parent/child/name</code>.\nOther fields are skipped without being parsed, leaving the objects "
+            + "read partially populated:\nthis is much faster when only a few fields of big documents are needed."
+            + "\nAttributes are always read." );
+
+        method.addParameter( new JParameter( new JCollectionType( "java.util.Collection", new JClass( "String" ),
+                                                                  useJava5 ), "paths" ) );
+
+        method.getJDocComment().getParamDescriptor( "paths" ).setDescription( "the paths of the fields to read, with "
+            + "field names separated by <code>/</code>,\nor <code>null</code> to read every field" );
+
+        JSourceCode sc = method.getSourceCode();
+
+        sc.add( "if ( paths == null )" );
+
+        sc.add( "{" );
+        sc.addIndented( "projectionRoot = null;" );
+        sc.addIndented( "return;" );
+        sc.add( "}" );
+
+        sc.add( "projectionRoot = new java.util.HashMap();" );
+
+        sc.add( "for ( java.util.Iterator i = paths.iterator(); i.hasNext(); )" );
+
+        sc.add( "{" );
+        sc.indent();
+
+        sc.add( "String[] names = ( (String) i.next() ).split( \"/\" );" );
+
+        sc.add( "java.util.Map node = projectionRoot;" );
+
+        // a path already selected as a whole stops the walk down the tree
+        sc.add( "for ( int j = 0; j < names.length && node != null; j++ )" );
+
+        sc.add( "{" );
+        sc.indent();
+
+        sc.add( "Object child = node.get( names[j] );" );
+
+        sc.add( "if ( j == names.length - 1 )" );
+
+        sc.add( "{" );
+        sc.addIndented( "node.put( names[j], Boolean.TRUE );" );
+        sc.add( "}" );
+
+        sc.add( "else if ( child == null )" );
+
+        sc.add( "{" );
+        sc.indent();
+
+        sc.add( "child = new java.util.HashMap();" );
+
+        sc.add( "node.put( names[j], child );" );
+
+        sc.unindent();
+        sc.add( "}" );
+
+        sc.add( "node = ( child instanceof java.util.Map ) ? (java.util.Map) child : null;" );
+
+        sc.unindent();
+        sc.add( "}" );
+
+        sc.unindent();
+        sc.add( "}" );
+
+        jClass.addMethod( method );
+
+        // --------------------------------------------------------------------
+
+        method = new JMethod( "enterProjection", JType.BOOLEAN, null );
+        method.getModifiers().makePrivate();
+
+        method.setComment( "Checks if a field is selected by the projection of the element being parsed, and if so, "
+            + "enters the projection\nof the field, which is restored by the class parser once the field is read." );
+
+        method.addParameter( new JParameter( new JClass( "java.util.Map" ), "projected" ) );
+        method.addParameter( new JParameter( new JClass( "String" ), "field" ) );
+
+        sc = method.getSourceCode();
+
+        sc.add( "Object child = projected.get( field );" );
+
+        sc.add( "if ( child == null )" );
+
+        sc.add( "{" );
+        sc.addIndented( "return false;" );
+        sc.add( "}" );
+
+        sc.add( "projection = ( child instanceof java.util.Map ) ? (java.util.Map) child : null;" );
+
+        sc.add( "return true;" );
+
+        jClass.addMethod( method );
+    }
+
+    /**
+     * Write the string table of a reader: the <code>StringTable</code> inner class, the <code>stringTable</code>
+     * field with its getter and setter, and the <code>intern( s )</code> method used to share the text values read.
+     *
+     * @param jClass the reader class
+     * @since 1.5
+     */
+    protected void writeStringTable( JClass jClass )
+    {
+        JClass stringTable = jClass.createInnerClass( "StringTable" );
+        stringTable.getModifiers().setStatic( true );
+        stringTable.getJDocComment().setComment( "A bounded table of strings, used to share equal text values between "
+            + "the objects read, like the many identical\ngroup ids, scopes or types of big or numerous documents.\n"
+            + "Each string is stored in a slot selected by its hash code, replacing any previous string: the table "
+            + "never\ngrows and needs no lock, so it can be shared by readers used concurrently." );
+
+        JField field = new JField( new JArrayType( new JClass( "String" ), useJava5 ), "strings" );
+        field.getModifiers().setFinal( true );
+        field.setComment( "The slots of the strings, a power of two in number." );
+        stringTable.addField( field );
+
+        field = new JField( JType.INT, "maxLength" );
+        field.getModifiers().setFinal( true );
+        field.setComment( "The maximum length of the strings stored, longer strings being rarely shared." );
+        stringTable.addField( field );
+
+        JConstructor constructor = stringTable.createConstructor();
+
+        constructor.getSourceCode().add( "this( 4096, 128 );" );
+
+        constructor = stringTable.createConstructor( new JParameter[] { new JParameter( JType.INT, "size" ),
+            new JParameter( JType.INT, "maxLength" ) } );
+
+        JSourceCode sc = constructor.getSourceCode();
+
+        // the capacity is doubled up to the size: beyond the largest power of two int, it would overflow
+        sc.add( "if ( size > 1 << 30 )" );
+
+        sc.add( "{" );
+        sc.addIndented( "throw new IllegalArgumentException( \"The size of a string table cannot exceed 2^30: \""
+            + " + size );" );
+        sc.add( "}" );
+
+        // a power of two size lets a mask select the slot
+        sc.add( "int capacity = 1;" );
+
+        sc.add( "while ( capacity < size )" );
+
+        sc.add( "{" );
+        sc.addIndented( "capacity <<= 1;" );
+        sc.add( "}" );
+
+        sc.add( "this.strings = new String[capacity];" );
+
+        sc.add( "this.maxLength = maxLength;" );
+
+        JMethod method = new JMethod( "intern", new JClass( "String" ), null );
+
+        method.setComment( "Returns the string of the table equal to the given one, or stores and returns the given "
+            + "string." );
+
+        method.addParameter( new JParameter( new JClass( "String" ), "s" ) );
+
+        method.getJDocComment().getParamDescriptor( "s" ).setDescription( "the string, not <code>null</code>" );
+
+        sc = method.getSourceCode();
+
+        sc.add( "if ( s.length() > maxLength )" );
+
+        sc.add( "{" );
+        sc.addIndented( "return s;" );
+        sc.add( "}" );
+
+        sc.add( "int h = s.hashCode();" );
+
+        sc.add( "int index = ( h ^ ( h >>> 16 ) ) & ( strings.length - 1 );" );
+
+        // strings are immutable: a racy read sees either a complete string or null
+        sc.add( "String cached = strings[index];" );
+
+        sc.add( "if ( s.equals( cached ) )" );
+
+        sc.add( "{" );
+        sc.addIndented( "return cached;" );
+        sc.add( "}" );
+
+        sc.add( "strings[index] = s;" );
+
+        sc.add( "return s;" );
+
+        stringTable.addMethod( method );
+
+        // --------------------------------------------------------------------
+
+        field = new JField( new JClass( "StringTable" ), "stringTable" );
+
+        field.setComment( "The table sharing the text values read, or <code>null</code> to keep every value read." );
+
+        jClass.addField( field );
+
+        method = new JMethod( "setStringTable" );
+
+        method.addParameter( new JParameter( new JClass( "StringTable" ), "stringTable" ) );
+
+        method.setSourceCode( "this.stringTable = stringTable;" );
+
+        method.setComment( "Sets the table sharing the text values read." );
+
+        jClass.addMethod( method );
+
+        method = new JMethod( "getStringTable", new JClass( "StringTable" ), null );
+
+        method.setComment( "Returns the table sharing the text values read." );
+
+        method.setSourceCode( "return stringTable;" );
+
+        jClass.addMethod( method );
+
+        method = new JMethod( "intern", new JClass( "String" ), null );
+        method.getModifiers().makePrivate();
+
+        method.addParameter( new JParameter( new JClass( "String" ), "s" ) );
+
+        sc = method.getSourceCode();
+
+        sc.add( "if ( s == null || stringTable == null )" );
+
+        sc.add( "{" );
+        sc.addIndented( "return s;" );
+        sc.add( "}" );
+
+        sc.add( "return stringTable.intern( s );" );
+
+        jClass.addMethod( method );
+    }
+
+    /**
+     * Write the <code>map( channel )</code> method used by the readers of file channels, which maps the file in memory
+     * and reads it through a <code>ByteBufferInputStream</code>.
+     *
+     * @param jClass the reader class
+     * @since 1.5
+     */
+    protected void writeMappedInput( JClass jClass )
+    {
+        JMethod method = new JMethod( "map", new JClass( "InputStream" ), null );
+        method.getModifiers().makePrivate();
+        method.getModifiers().setStatic( true );
+        method.setComment( "Maps a file channel in memory, from its position to its end, and moves the position to "
+            + "the end. A channel positioned at or past its end is read as an empty input. Small files are copied "
+            + "in a heap buffer instead, and files too big to be mapped at once are read as a stream." );
+
+        method.addParameter( new JParameter( new JClass( "java.nio.channels.FileChannel" ), "channel" ) );
+        method.addException( new JClass( "IOException" ) );
+
+        JSourceCode sc = method.getSourceCode();
+
+        sc.add( "long position = channel.position();" );
+        sc.add( "long size = channel.size() - position;" );
+        sc.add( "if ( size <= 0 )" );
+        sc.add( "{" );
+        sc.indent();
+        sc.add( "// the channel may be positioned at or past its end" );
+        sc.add( "return new ByteBufferInputStream( java.nio.ByteBuffer.allocate( 0 ) );" );
+        sc.unindent();
+        sc.add( "}" );
+        sc.add( "if ( size > Integer.MAX_VALUE )" );
+        sc.add( "{" );
+        sc.addIndented( "return java.nio.channels.Channels.newInputStream( channel );" );
+        sc.add( "}" );
+        sc.add( "java.nio.ByteBuffer buffer;" );
+        sc.add( "if ( size < 65536 )" );
+        sc.add( "{" );
+        sc.indent();
+        sc.add( "// mapping costs more than a copy for small files" );
+        sc.add( "buffer = java.nio.ByteBuffer.allocate( (int) size );" );
+        sc.add( "while ( buffer.hasRemaining() && channel.read( buffer ) >= 0 )" );
+        sc.add( "{" );
+        sc.addIndented( "// continue" );
+        sc.add( "}" );
+        sc.add( "buffer.flip();" );
+        sc.unindent();
+        sc.add( "}" );
+        sc.add( "else" );
+        sc.add( "{" );
+        sc.indent();
+        sc.add( "buffer = channel.map( java.nio.channels.FileChannel.MapMode.READ_ONLY, position, size );" );
+        sc.add( "channel.position( position + size );" );
+        sc.unindent();
+        sc.add( "}" );
+        sc.add( "return new ByteBufferInputStream( buffer );" );
+
+        jClass.addMethod( method );
+
+        // --------------------------------------------------------------------
+
+        JClass streamClass = jClass.createInnerClass( "ByteBufferInputStream" );
+        streamClass.getModifiers().setStatic( true );
+        streamClass.getModifiers().makePrivate();
+        streamClass.setSuperClass( "InputStream" );
+        streamClass.getJDocComment().setComment( "Input stream reading the bytes of a buffer with bulk copies." );
+
+        JField field = new JField( new JClass( "java.nio.ByteBuffer" ), "buffer" );
+        field.getModifiers().setFinal( true );
+        streamClass.addField( field );
+
+        JConstructor constructor = streamClass.createConstructor( new JParameter[] {
+            new JParameter( new JClass( "java.nio.ByteBuffer" ), "buffer" ) } );
+        constructor.getSourceCode().add( "this.buffer = buffer;" );
+
+        method = new JMethod( "read", JType.INT, null );
+        sc = method.getSourceCode();
+        sc.add( "return buffer.hasRemaining() ? ( buffer.get() & 0xFF ) : -1;" );
+        streamClass.addMethod( method );
+
+        method = new JMethod( "read", JType.INT, null );
+        method.addParameter( new JParameter( new JArrayType( JType.BYTE, useJava5 ), "b" ) );
+        method.addParameter( new JParameter( JType.INT, "off" ) );
+        method.addParameter( new JParameter( JType.INT, "len" ) );
+        sc = method.getSourceCode();
+        sc.add( "if ( !buffer.hasRemaining() )" );
+        sc.add( "{" );
+        sc.addIndented( "return ( len == 0 ) ? 0 : -1;" );
+        sc.add( "}" );
+        sc.add( "len = Math.min( len, buffer.remaining() );" );
+        sc.add( "buffer.get( b, off, len );" );
+        sc.add( "return len;" );
+        streamClass.addMethod( method );
+
+        method = new JMethod( "available", JType.INT, null );
+        method.setSourceCode( "return buffer.remaining();" );
+        streamClass.addMethod( method );
+    }
 }
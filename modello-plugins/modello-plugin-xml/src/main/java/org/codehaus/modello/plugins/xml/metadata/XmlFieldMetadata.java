@@ -47,6 +47,8 @@ public class XmlFieldMetadata
 
     private String insertParentFieldsUpTo;
 
+    private boolean lazy;
+
     public String getFormat()
     {
         return format;
@@ -128,4 +130,20 @@ public class XmlFieldMetadata
     {
         this.insertParentFieldsUpTo = insertParentFieldsUpTo;
     }
+
+    /**
+     * Whether readers capture the XML element of this field and parse it only on first access to the field.
+     *
+     * @return <code>true</code> if the field is read lazily
+     * @since 1.5
+     */
+    public boolean isLazy()
+    {
+        return lazy;
+    }
+
+    public void setLazy( boolean lazy )
+    {
+        this.lazy = lazy;
+    }
 }
@@ -72,6 +72,14 @@ public class XmlMetadataPlugin
 
     public static final String XML_INSERT_PARENT_FIELDS_UP_TO = "xml.insertParentFieldsUpTo";
 
+    /**
+     * Read the element of a field only on the first access to the field. The Java metadata plugin reads this attribute
+     * too, to generate the loader of the field in the model class.
+     *
+     * @since 1.5
+     */
+    public static final String XML_LAZY = "xml.lazy";
+
     // ----------------------------------------------------------------------
     // Map to Metadata
     // ----------------------------------------------------------------------
@@ -121,6 +129,8 @@ public class XmlMetadataPlugin
 
         metadata.setInsertParentFieldsUpTo( getString( data, XML_INSERT_PARENT_FIELDS_UP_TO ) );
 
+        metadata.setLazy( getBoolean( data, XML_LAZY, false ) );
+
         return metadata;
     }
 
@@ -23,8 +23,17 @@ package org.codehaus.modello.plugin.xpp3;
  */
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
 import org.codehaus.modello.ModelloException;
 import org.codehaus.modello.model.Model;
@@ -32,7 +41,10 @@ import org.codehaus.modello.model.ModelAssociation;
 import org.codehaus.modello.model.ModelClass;
 import org.codehaus.modello.model.ModelDefault;
 import org.codehaus.modello.model.ModelField;
+import org.codehaus.modello.plugin.java.javasource.JArrayType;
 import org.codehaus.modello.plugin.java.javasource.JClass;
+import org.codehaus.modello.plugin.java.javasource.JConstructor;
+import org.codehaus.modello.plugin.java.javasource.JDocDescriptor;
 import org.codehaus.modello.plugin.java.javasource.JField;
 import org.codehaus.modello.plugin.java.javasource.JMethod;
 import org.codehaus.modello.plugin.java.javasource.JParameter;
@@ -67,6 +79,18 @@ public class Xpp3ReaderGenerator
 
     private String trackingArgs;
 
+    /** a class has too many fields for a <code>long</code> mask of parsed fields */
+    private boolean wideClasses;
+
+    /** the generated handler of list items */
+    private JClass itemHandler;
+
+    /** the methods of the item handler, as <code>class.method</code> */
+    private Set<String> itemHandlerMethods = new HashSet<String>();
+
+    /** the classes with lazy fields, which need a lazy parser */
+    private Set<String> lazyClasses = new TreeSet<String>();
+
     protected boolean isLocationTracking()
     {
         return false;
@@ -79,6 +103,8 @@ public class Xpp3ReaderGenerator
 
         locationTracker = sourceTracker = null;
         trackingArgs = locationField = "";
+        wideClasses = false;
+        lazyClasses.clear();
 
         if ( isLocationTracking() )
         {
@@ -190,6 +216,8 @@ public class Xpp3ReaderGenerator
                         + "found '\" + parser.getName() + \"'\", parser, null );" );
         sc.add( "}" );
 
+        sc.add( "projection = projectionRoot;" );
+
         sc.add( className + ' ' + variableName + " = parse" + capClassName + "( parser, strict" + trackingArgs
             + " );" );
 
@@ -229,19 +257,18 @@ public class Xpp3ReaderGenerator
 
         sc = unmarshall.getSourceCode();
 
-        sc.add( "XmlPullParser parser = new MXParser();" );
-
-        sc.add( "" );
-
-        sc.add( "parser.setInput( reader );" );
-
-        sc.add( "" );
-
-        sc.add( "initParser( parser );" );
+        sc.add( "XmlPullParser parser = getParser( reader );" );
 
         sc.add( "" );
 
-        sc.add( "return " + readerMethodName + "( parser, strict" + trackingArgs + " );" );
+        sc.add( "try" );
+        sc.add( "{" );
+        sc.addIndented( "return " + readerMethodName + "( parser, strict" + trackingArgs + " );" );
+        sc.add( "}" );
+        sc.add( "finally" );
+        sc.add( "{" );
+        sc.addIndented( "releaseParser( parser );" );
+        sc.add( "}" );
 
         jClass.addMethod( unmarshall );
 
@@ -278,7 +305,7 @@ public class Xpp3ReaderGenerator
 
         sc = unmarshall.getSourceCode();
 
-        sc.add( "return " + readerMethodName + "( ReaderFactory.newXmlReader( in ), strict" + trackingArgs + " );" );
+        sc.add( "return " + readerMethodName + "( newXmlReader( in ), strict" + trackingArgs + " );" );
 
         jClass.addMethod( unmarshall );
 
@@ -295,7 +322,86 @@ public class Xpp3ReaderGenerator
 
             sc = unmarshall.getSourceCode();
 
-            sc.add( "return " + readerMethodName + "( ReaderFactory.newXmlReader( in ) );" );
+            sc.add( "return " + readerMethodName + "( newXmlReader( in ) );" );
+
+            jClass.addMethod( unmarshall );
+        }
+
+        // ----------------------------------------------------------------------
+        // Write the read(FileChannel[,boolean]) and read(File[,boolean]) methods which will do the unmarshalling.
+        // ----------------------------------------------------------------------
+
+        unmarshall = new JMethod( readerMethodName, new JClass( className ), null );
+        unmarshall.setComment( "Reads a file channel mapped in memory, from its position to its end." );
+
+        unmarshall.addParameter( new JParameter( new JClass( "java.nio.channels.FileChannel" ), "channel" ) );
+        unmarshall.addParameter( new JParameter( JClass.BOOLEAN, "strict" ) );
+        addTrackingParameters( unmarshall );
+
+        unmarshall.addException( new JClass( "IOException" ) );
+        unmarshall.addException( new JClass( "XmlPullParserException" ) );
+
+        sc = unmarshall.getSourceCode();
+
+        sc.add( "return " + readerMethodName + "( newXmlReader( map( channel ) ), strict" + trackingArgs + " );" );
+
+        jClass.addMethod( unmarshall );
+
+        unmarshall = new JMethod( readerMethodName, new JClass( className ), null );
+        unmarshall.setComment( "Reads a file mapped in memory. The mapping is released only when the buffer is "
+            + "garbage-collected: on Windows, the file stays locked until then." );
+
+        unmarshall.addParameter( new JParameter( new JClass( "java.io.File" ), "file" ) );
+        unmarshall.addParameter( new JParameter( JClass.BOOLEAN, "strict" ) );
+        addTrackingParameters( unmarshall );
+
+        unmarshall.addException( new JClass( "IOException" ) );
+        unmarshall.addException( new JClass( "XmlPullParserException" ) );
+
+        sc = unmarshall.getSourceCode();
+
+        sc.add( "java.io.FileInputStream in = new java.io.FileInputStream( file );" );
+        sc.add( "try" );
+        sc.add( "{" );
+        sc.addIndented( "return " + readerMethodName + "( in.getChannel(), strict" + trackingArgs + " );" );
+        sc.add( "}" );
+        sc.add( "finally" );
+        sc.add( "{" );
+        sc.addIndented( "in.close();" );
+        sc.add( "}" );
+
+        jClass.addMethod( unmarshall );
+
+        // --------------------------------------------------------------------
+
+        if ( locationTracker == null )
+        {
+            unmarshall = new JMethod( readerMethodName, new JClass( className ), null );
+            unmarshall.setComment( "Reads a file channel mapped in memory, from its position to its end." );
+
+            unmarshall.addParameter( new JParameter( new JClass( "java.nio.channels.FileChannel" ), "channel" ) );
+
+            unmarshall.addException( new JClass( "IOException" ) );
+            unmarshall.addException( new JClass( "XmlPullParserException" ) );
+
+            sc = unmarshall.getSourceCode();
+
+            sc.add( "return " + readerMethodName + "( channel, true );" );
+
+            jClass.addMethod( unmarshall );
+
+            unmarshall = new JMethod( readerMethodName, new JClass( className ), null );
+            unmarshall.setComment( "Reads a file mapped in memory. The mapping is released only when the buffer is "
+                + "garbage-collected: on Windows, the file stays locked until then." );
+
+            unmarshall.addParameter( new JParameter( new JClass( "java.io.File" ), "file" ) );
+
+            unmarshall.addException( new JClass( "IOException" ) );
+            unmarshall.addException( new JClass( "XmlPullParserException" ) );
+
+            sc = unmarshall.getSourceCode();
+
+            sc.add( "return " + readerMethodName + "( file, true );" );
 
             jClass.addMethod( unmarshall );
         }
@@ -366,6 +472,18 @@ public class Xpp3ReaderGenerator
 
         jClass.addMethod( addDefaultEntitiesGetter );
 
+        writeParserReuse( jClass );
+
+        writeUtf8Reader( jClass );
+
+        writeMappedInput( jClass );
+
+        writeItemHandler( jClass );
+
+        writeProjection( jClass );
+
+        writeStringTable( jClass );
+
         // ----------------------------------------------------------------------
         // Write the class readers
         // ----------------------------------------------------------------------
@@ -378,135 +496,932 @@ public class Xpp3ReaderGenerator
 
         writeAllClassesParser( objectModel, jClass );
 
+        if ( !lazyClasses.isEmpty() )
+        {
+            writeLazyLoading( jClass );
+        }
+
         // ----------------------------------------------------------------------
         // Write helpers
         // ----------------------------------------------------------------------
 
-        writeHelpers( jClass );
+        writeHelpers( jClass );
+
+        // ----------------------------------------------------------------------
+        //
+        // ----------------------------------------------------------------------
+
+        jClass.print( sourceWriter );
+
+        sourceWriter.close();
+    }
+
+    /**
+     * Write the option to reuse parsers from one read to the next, keeping their entities: creating a parser and
+     * defining the entities is a large part of the time spent reading small documents. Parsers are taken from a pool
+     * for each read, so a reader can be used concurrently.
+     */
+    private void writeParserReuse( JClass jClass )
+    {
+        JField reuseParser = new JField( JType.BOOLEAN, "reuseParser" );
+
+        reuseParser.setComment( "If set, parsers and their entities are reused by the next reads." );
+
+        reuseParser.setInitString( "false" );
+
+        jClass.addField( reuseParser );
+
+        JMethod method = new JMethod( "setReuseParser" );
+
+        method.addParameter( new JParameter( JType.BOOLEAN, "reuseParser" ) );
+
+        method.setSourceCode( "this.reuseParser = reuseParser;" );
+
+        method.setComment( "Sets the state of the \"reuse parser\" flag." );
+
+        jClass.addMethod( method );
+
+        method = new JMethod( "getReuseParser", JType.BOOLEAN, null );
+
+        method.setComment( "Returns the state of the \"reuse parser\" flag." );
+
+        method.setSourceCode( "return reuseParser;" );
+
+        jClass.addMethod( method );
+
+        String generic = useJava5 ? "<ReusableParser>" : "";
+
+        JField field = new JField( new JType( "java.util.List" + generic ), "reusableParsers" );
+        field.getModifiers().setFinal( true );
+        field.setInitString( "new java.util.ArrayList" + generic + "()" );
+        field.setComment( "The parsers available for the next reads." );
+        jClass.addField( field );
+
+        // --------------------------------------------------------------------
+
+        method = new JMethod( "getParser", new JClass( "XmlPullParser" ), null );
+        method.getModifiers().makePrivate();
+
+        method.addParameter( new JParameter( new JClass( "Reader" ), "reader" ) );
+        method.addException( new JClass( "XmlPullParserException" ) );
+
+        JSourceCode sc = method.getSourceCode();
+
+        sc.add( "if ( !reuseParser )" );
+        sc.add( "{" );
+        sc.indent();
+        sc.add( "XmlPullParser parser = new MXParser();" );
+        sc.add( "parser.setInput( reader );" );
+        sc.add( "initParser( parser );" );
+        sc.add( "return parser;" );
+        sc.unindent();
+        sc.add( "}" );
+
+        sc.add( "" );
+
+        sc.add( "ReusableParser parser = null;" );
+        sc.add( "synchronized ( reusableParsers )" );
+        sc.add( "{" );
+        sc.indent();
+        sc.add( "if ( !reusableParsers.isEmpty() )" );
+        sc.add( "{" );
+        sc.addIndented( "parser = (ReusableParser) reusableParsers.remove( reusableParsers.size() - 1 );" );
+        sc.add( "}" );
+        sc.unindent();
+        sc.add( "}" );
+
+        sc.add( "if ( parser == null || parser.isDefaultEntities() != addDefaultEntities )" );
+        sc.add( "{" );
+        sc.addIndented( "parser = new ReusableParser( addDefaultEntities );" );
+        sc.add( "}" );
+
+        sc.add( "parser.setInput( reader );" );
+
+        sc.add( "if ( !parser.isEntitiesKept() )" );
+        sc.add( "{" );
+        sc.addIndented( "initParser( parser );" );
+        sc.addIndented( "parser.keepEntities();" );
+        sc.add( "}" );
+
+        sc.add( "return parser;" );
+
+        jClass.addMethod( method );
+
+        method = new JMethod( "releaseParser" );
+        method.getModifiers().makePrivate();
+        method.setComment( "Give back a parser obtained with <code>getParser()</code> once the document is read." );
+
+        method.addParameter( new JParameter( new JClass( "XmlPullParser" ), "parser" ) );
+
+        sc = method.getSourceCode();
+
+        sc.add( "if ( parser instanceof ReusableParser )" );
+        sc.add( "{" );
+        sc.indent();
+        sc.add( "synchronized ( reusableParsers )" );
+        sc.add( "{" );
+        sc.addIndented( "reusableParsers.add( (ReusableParser) parser );" );
+        sc.add( "}" );
+        sc.unindent();
+        sc.add( "}" );
+
+        jClass.addMethod( method );
+
+        // --------------------------------------------------------------------
+
+        JClass parserClass = jClass.createInnerClass( "ReusableParser" );
+        parserClass.getModifiers().setStatic( true );
+        parserClass.getModifiers().makePrivate();
+        parserClass.setSuperClass( "MXParser" );
+        parserClass.getJDocComment().setComment( "Parser keeping the entities defined for its first input when it is "
+            + "reset for the next inputs. MXParser.reset() only empties its entity tables, by setting the protected "
+            + "<code>entityEnd</code> field back to <code>0</code>: with plexus-utils versions without this field, "
+            + "the entities are defined again for each input." );
+
+        field = new JField( JType.BOOLEAN, "ENTITY_TABLE_KEPT" );
+        field.getModifiers().setStatic( true );
+        field.getModifiers().setFinal( true );
+        field.setInitString( "isEntityTableKept()" );
+        parserClass.addField( field );
+
+        field = new JField( JType.BOOLEAN, "defaultEntities" );
+        field.getModifiers().setFinal( true );
+        parserClass.addField( field );
+
+        parserClass.addField( new JField( JType.BOOLEAN, "entitiesKept" ) );
+
+        parserClass.addField( new JField( JType.INT, "definedEntities" ) );
+
+        JConstructor constructor =
+            parserClass.createConstructor( new JParameter[] { new JParameter( JType.BOOLEAN, "defaultEntities" ) } );
+        constructor.getSourceCode().add( "this.defaultEntities = defaultEntities;" );
+
+        method = new JMethod( "isEntityTableKept", JType.BOOLEAN, null );
+        method.getModifiers().setStatic( true );
+        method.getModifiers().makePrivate();
+        sc = method.getSourceCode();
+        sc.add( "try" );
+        sc.add( "{" );
+        sc.indent();
+        sc.add( "java.lang.reflect.Field field = MXParser.class.getDeclaredField( \"entityEnd\" );" );
+        sc.add( "return field.getType() == Integer.TYPE "
+            + "&& java.lang.reflect.Modifier.isProtected( field.getModifiers() );" );
+        sc.unindent();
+        sc.add( "}" );
+        sc.add( "catch ( NoSuchFieldException e )" );
+        sc.add( "{" );
+        sc.addIndented( "return false;" );
+        sc.add( "}" );
+        sc.add( "catch ( SecurityException e )" );
+        sc.add( "{" );
+        sc.addIndented( "return false;" );
+        sc.add( "}" );
+        parserClass.addMethod( method );
+
+        method = new JMethod( "isDefaultEntities", JType.BOOLEAN, null );
+        method.setSourceCode( "return defaultEntities;" );
+        parserClass.addMethod( method );
+
+        method = new JMethod( "isEntitiesKept", JType.BOOLEAN, null );
+        method.setSourceCode( "return entitiesKept;" );
+        parserClass.addMethod( method );
+
+        method = new JMethod( "keepEntities" );
+        method.setComment( "Keep the entities defined until now for the next inputs, if the entity table of the "
+            + "parser allows it." );
+        sc = method.getSourceCode();
+        sc.add( "if ( ENTITY_TABLE_KEPT )" );
+        sc.add( "{" );
+        sc.addIndented( "definedEntities = entityEnd;" );
+        sc.addIndented( "entitiesKept = true;" );
+        sc.add( "}" );
+        parserClass.addMethod( method );
+
+        method = new JMethod( "reset" );
+        method.getModifiers().makeProtected();
+        sc = method.getSourceCode();
+        sc.add( "super.reset();" );
+        sc.add( "" );
+        sc.add( "// the entity tables are kept by reset: only their size has to be restored" );
+        sc.add( "if ( entitiesKept )" );
+        sc.add( "{" );
+        sc.addIndented( "entityEnd = definedEntities;" );
+        sc.add( "}" );
+        parserClass.addMethod( method );
+    }
+
+    /**
+     * Write the reader of XML input streams, with a fast path for UTF-8 documents: their bytes are decoded directly
+     * into the buffer of the parser, without the encoding detection and the decoder layers of
+     * <code>ReaderFactory.newXmlReader( in )</code>, which remains used for other encodings.
+     */
+    private void writeUtf8Reader( JClass jClass )
+    {
+        JMethod method = new JMethod( "newXmlReader", new JClass( "Reader" ), null );
+        method.getModifiers().makePrivate();
+        method.getModifiers().setStatic( true );
+        method.setComment( "Creates the reader of an XML input stream: UTF-8 documents are decoded by a "
+            + "<code>Utf8Reader</code>,\nother encodings are detected and decoded by "
+            + "<code>ReaderFactory.newXmlReader( in )</code>." );
+
+        method.addParameter( new JParameter( new JClass( "InputStream" ), "in" ) );
+        method.addException( new JClass( "IOException" ) );
+
+        JSourceCode sc = method.getSourceCode();
+
+        sc.add( "byte[] buffer = new byte[8192];" );
+        sc.add( "int length = 0;" );
+        sc.add( "" );
+        sc.add( "// the byte order mark and the XML declaration tell the encoding" );
+        sc.add( "while ( length < 1024 )" );
+        sc.add( "{" );
+        sc.indent();
+        sc.add( "int n = in.read( buffer, length, 1024 - length );" );
+        sc.add( "if ( n < 0 )" );
+        sc.add( "{" );
+        sc.addIndented( "break;" );
+        sc.add( "}" );
+        sc.add( "length += n;" );
+        sc.unindent();
+        sc.add( "}" );
+        sc.add( "" );
+        sc.add( "int offset = getUtf8Offset( buffer, length );" );
+        sc.add( "if ( offset < 0 )" );
+        sc.add( "{" );
+        sc.indent();
+        sc.add( "InputStream head = new java.io.ByteArrayInputStream( buffer, 0, length );" );
+        sc.add( "return ReaderFactory.newXmlReader( new java.io.SequenceInputStream( head, in ) );" );
+        sc.unindent();
+        sc.add( "}" );
+        sc.add( "return new Utf8Reader( in, buffer, offset, length );" );
+
+        jClass.addMethod( method );
+
+        // --------------------------------------------------------------------
+
+        method = new JMethod( "getUtf8Offset", JType.INT, null );
+        method.getModifiers().makePrivate();
+        method.getModifiers().setStatic( true );
+        method.setComment( "Returns the offset of the content of a UTF-8 document after its byte order mark, or -1 if "
+            + "the document\nis not known to be encoded in UTF-8." );
+
+        method.addParameter( new JParameter( new JArrayType( JType.BYTE, useJava5 ), "b" ) );
+        method.addParameter( new JParameter( JType.INT, "length" ) );
+        method.addException( new JClass( "IOException" ) );
+
+        sc = method.getSourceCode();
+
+        sc.add( "int offset = 0;" );
+        sc.add( "if ( length >= 3 && b[0] == (byte) 0xEF && b[1] == (byte) 0xBB && b[2] == (byte) 0xBF )" );
+        sc.add( "{" );
+        sc.addIndented( "offset = 3;" );
+        sc.add( "}" );
+        sc.add( "if ( length > offset && b[offset] != '<' )" );
+        sc.add( "{" );
+        sc.addIndented( "// other byte order marks, or no XML markup to check" );
+        sc.addIndented( "return -1;" );
+        sc.add( "}" );
+        sc.add( "if ( length > offset + 1 && b[offset + 1] == 0 )" );
+        sc.add( "{" );
+        sc.addIndented( "// UTF-16LE without byte order mark" );
+        sc.addIndented( "return -1;" );
+        sc.add( "}" );
+        sc.add( "if ( length < offset + 5 || b[offset + 1] != '?' || b[offset + 2] != 'x' || b[offset + 3] != 'm'" );
+        sc.addIndented( "|| b[offset + 4] != 'l' )" );
+        sc.add( "{" );
+        sc.addIndented( "// no XML declaration: UTF-8 by default" );
+        sc.addIndented( "return offset;" );
+        sc.add( "}" );
+        sc.add( "int end = offset + 5;" );
+        sc.add( "while ( end < length && b[end] != '>' )" );
+        sc.add( "{" );
+        sc.addIndented( "end++;" );
+        sc.add( "}" );
+        sc.add( "if ( end == length )" );
+        sc.add( "{" );
+        sc.addIndented( "return -1;" );
+        sc.add( "}" );
+        sc.add( "String declaration = new String( b, offset, end - offset, \"ISO-8859-1\" );" );
+        sc.add( "int index = declaration.indexOf( \"encoding\" );" );
+        sc.add( "if ( index < 0 )" );
+        sc.add( "{" );
+        sc.addIndented( "return offset;" );
+        sc.add( "}" );
+        sc.add( "String value = declaration.substring( index + 8 ).trim();" );
+        sc.add( "if ( !value.startsWith( \"=\" ) )" );
+        sc.add( "{" );
+        sc.addIndented( "return -1;" );
+        sc.add( "}" );
+        sc.add( "value = value.substring( 1 ).trim();" );
+        sc.add( "int quote = ( value.length() > 0 ) ? value.indexOf( value.charAt( 0 ), 1 ) : -1;" );
+        sc.add( "String encoding = ( quote < 0 ) ? null : value.substring( 1, quote );" );
+        sc.add( "return ( \"UTF-8\".equalsIgnoreCase( encoding ) || \"UTF8\".equalsIgnoreCase( encoding ) ) ? offset "
+            + ": -1;" );
+
+        jClass.addMethod( method );
+
+        // --------------------------------------------------------------------
+
+        JClass readerClass = jClass.createInnerClass( "Utf8Reader" );
+        readerClass.getModifiers().setStatic( true );
+        readerClass.getModifiers().makePrivate();
+        readerClass.setSuperClass( "Reader" );
+        readerClass.getJDocComment().setComment( "Reader of UTF-8 bytes decoding them directly into the buffer of the "
+            + "parser, with a fast path for ASCII characters.\nMalformed sequences are replaced by "
+            + "<code>U+FFFD</code>, like the decoder of an <code>InputStreamReader</code> does." );
+
+        JField field = new JField( new JClass( "InputStream" ), "in" );
+        field.getModifiers().setFinal( true );
+        readerClass.addField( field );
+
+        field = new JField( new JArrayType( JType.BYTE, useJava5 ), "buffer" );
+        field.getModifiers().setFinal( true );
+        readerClass.addField( field );
+
+        readerClass.addField( new JField( JType.INT, "position" ) );
+
+        readerClass.addField( new JField( JType.INT, "limit" ) );
+
+        field = new JField( JType.CHAR, "pending" );
+        field.setComment( "The low surrogate of a supplementary character not yet read, or 0." );
+        readerClass.addField( field );
+
+        JConstructor constructor = readerClass.createConstructor( new JParameter[] {
+            new JParameter( new JClass( "InputStream" ), "in" ),
+            new JParameter( new JArrayType( JType.BYTE, useJava5 ), "buffer" ), new JParameter( JType.INT, "position" ),
+            new JParameter( JType.INT, "limit" ) } );
+        sc = constructor.getSourceCode();
+        sc.add( "this.in = in;" );
+        sc.add( "this.buffer = buffer;" );
+        sc.add( "this.position = position;" );
+        sc.add( "this.limit = limit;" );
+
+        method = new JMethod( "read", JType.INT, null );
+        method.addParameter( new JParameter( new JArrayType( JType.CHAR, useJava5 ), "cbuf" ) );
+        method.addParameter( new JParameter( JType.INT, "off" ) );
+        method.addParameter( new JParameter( JType.INT, "len" ) );
+        method.addException( new JClass( "IOException" ) );
+        sc = method.getSourceCode();
+        sc.add( "int n = off;" );
+        sc.add( "int end = off + len;" );
+        sc.add( "if ( pending != 0 && n < end )" );
+        sc.add( "{" );
+        sc.indent();
+        sc.add( "cbuf[n++] = pending;" );
+        sc.add( "pending = 0;" );
+        sc.unindent();
+        sc.add( "}" );
+        sc.add( "while ( n < end )" );
+        sc.add( "{" );
+        sc.indent();
+        sc.add( "if ( position == limit && ( n > off || !ensure( 1 ) ) )" );
+        sc.add( "{" );
+        sc.addIndented( "break;" );
+        sc.add( "}" );
+        sc.add( "// ASCII characters first, in a loop on local variables" );
+        sc.add( "byte[] b = buffer;" );
+        sc.add( "int p = position;" );
+        sc.add( "int stop = p + Math.min( limit - p, end - n );" );
+        sc.add( "while ( p < stop && b[p] >= 0 )" );
+        sc.add( "{" );
+        sc.addIndented( "cbuf[n++] = (char) b[p++];" );
+        sc.add( "}" );
+        sc.add( "position = p;" );
+        sc.add( "if ( p == stop )" );
+        sc.add( "{" );
+        sc.addIndented( "continue;" );
+        sc.add( "}" );
+        sc.add( "int c = b[p] & 0xFF;" );
+        sc.add( "int count = ( c < 0xC2 ) ? 1 : ( c < 0xE0 ) ? 2 : ( c < 0xF0 ) ? 3 : ( c < 0xF5 ) ? 4 : 1;" );
+        sc.add( "if ( count == 1 || !ensure( count ) )" );
+        sc.add( "{" );
+        sc.indent();
+        sc.add( "// invalid lead byte or truncated sequence" );
+        sc.add( "cbuf[n++] = '\\uFFFD';" );
+        sc.add( "position++;" );
+        sc.add( "continue;" );
+        sc.unindent();
+        sc.add( "}" );
+        sc.add( "int code = c & ( 0x7F >> count );" );
+        sc.add( "for ( int i = 1; i < count; i++ )" );
+        sc.add( "{" );
+        sc.indent();
+        sc.add( "int next = buffer[position + i];" );
+        sc.add( "if ( ( next & 0xC0 ) != 0x80 )" );
+        sc.add( "{" );
+        sc.addIndented( "code = -1;" );
+        sc.addIndented( "break;" );
+        sc.add( "}" );
+        sc.add( "code = ( code << 6 ) | ( next & 0x3F );" );
+        sc.unindent();
+        sc.add( "}" );
+        sc.add( "if ( code < 0 || ( count == 3 && ( code < 0x800 || ( code >= 0xD800 && code <= 0xDFFF ) ) )" );
+        sc.addIndented( "|| ( count == 4 && ( code < 0x10000 || code > 0x10FFFF ) ) )" );
+        sc.add( "{" );
+        sc.indent();
+        sc.add( "cbuf[n++] = '\\uFFFD';" );
+        sc.add( "position++;" );
+        sc.unindent();
+        sc.add( "}" );
+        sc.add( "else if ( count < 4 )" );
+        sc.add( "{" );
+        sc.indent();
+        sc.add( "cbuf[n++] = (char) code;" );
+        sc.add( "position += count;" );
+        sc.unindent();
+        sc.add( "}" );
+        sc.add( "else" );
+        sc.add( "{" );
+        sc.indent();
+        sc.add( "code -= 0x10000;" );
+        sc.add( "cbuf[n++] = (char) ( 0xD800 | ( code >> 10 ) );" );
+        sc.add( "char low = (char) ( 0xDC00 | ( code & 0x3FF ) );" );
+        sc.add( "if ( n < end )" );
+        sc.add( "{" );
+        sc.addIndented( "cbuf[n++] = low;" );
+        sc.add( "}" );
+        sc.add( "else" );
+        sc.add( "{" );
+        sc.addIndented( "pending = low;" );
+        sc.add( "}" );
+        sc.add( "position += count;" );
+        sc.unindent();
+        sc.add( "}" );
+        sc.unindent();
+        sc.add( "}" );
+        sc.add( "return ( n == off && len > 0 ) ? -1 : n - off;" );
+        readerClass.addMethod( method );
+
+        method = new JMethod( "ensure", JType.BOOLEAN, null );
+        method.getModifiers().makePrivate();
+        method.setComment( "Ensures that a number of bytes are available in the buffer, unless the end of the input "
+            + "is reached." );
+        method.addParameter( new JParameter( JType.INT, "count" ) );
+        method.addException( new JClass( "IOException" ) );
+        sc = method.getSourceCode();
+        sc.add( "if ( limit - position >= count )" );
+        sc.add( "{" );
+        sc.addIndented( "return true;" );
+        sc.add( "}" );
+        sc.add( "System.arraycopy( buffer, position, buffer, 0, limit - position );" );
+        sc.add( "limit -= position;" );
+        sc.add( "position = 0;" );
+        sc.add( "while ( limit < count )" );
+        sc.add( "{" );
+        sc.indent();
+        sc.add( "int n = in.read( buffer, limit, buffer.length - limit );" );
+        sc.add( "if ( n < 0 )" );
+        sc.add( "{" );
+        sc.addIndented( "return false;" );
+        sc.add( "}" );
+        sc.add( "limit += n;" );
+        sc.unindent();
+        sc.add( "}" );
+        sc.add( "return true;" );
+        readerClass.addMethod( method );
+
+        method = new JMethod( "close" );
+        method.addException( new JClass( "IOException" ) );
+        method.setSourceCode( "in.close();" );
+        readerClass.addMethod( method );
+    }
+
+    /**
+     * Write the handler of list items, notified of each item of a list of model objects as soon as it is parsed.
+     * Its methods are added while writing the class parsers.
+     */
+    private void writeItemHandler( JClass jClass )
+    {
+        itemHandler = jClass.createInnerClass( "ItemHandler" );
+        itemHandlerMethods.clear();
+        itemHandler.getModifiers().setStatic( true );
+        itemHandler.getJDocComment().setComment( "Handler of the items of lists of model objects, notified as soon as "
+            + "each item is parsed.\nBy default, every item is added to its list: override a method and return "
+            + "<code>true</code> to process items\nwithout retaining them, for example to read huge documents in "
+            + "constant memory." );
+
+        JField field = new JField( new JClass( "ItemHandler" ), "itemHandler" );
+
+        field.setComment( "The handler of list items, or <code>null</code> to add every item to its list." );
+
+        jClass.addField( field );
+
+        JMethod method = new JMethod( "setItemHandler" );
+
+        method.addParameter( new JParameter( new JClass( "ItemHandler" ), "itemHandler" ) );
+
+        method.setSourceCode( "this.itemHandler = itemHandler;" );
+
+        method.setComment( "Sets the handler of list items." );
+
+        jClass.addMethod( method );
+
+        method = new JMethod( "getItemHandler", new JClass( "ItemHandler" ), null );
+
+        method.setComment( "Returns the handler of list items." );
+
+        method.setSourceCode( "return itemHandler;" );
+
+        jClass.addMethod( method );
+    }
+
+    /**
+     * Add to the item handler the method notified of the items of an association.
+     *
+     * @return the name of the method
+     */
+    private String addItemHandlerMethod( String className, ModelAssociation association )
+    {
+        String methodName = "on" + capitalise( singular( association.getName() ) );
+
+        if ( !itemHandlerMethods.add( className + '.' + methodName ) )
+        {
+            return methodName;
+        }
+
+        JMethod method = new JMethod( methodName, JType.BOOLEAN, null );
+
+        method.addParameter( new JParameter( new JClass( className ), "parent" ) );
+        method.addParameter( new JParameter( new JClass( association.getTo() ), "item" ) );
+
+        method.setComment( "Handle an item of " + className + "." + association.getName() + "." );
+        method.getJDocComment().getParamDescriptor( "parent" ).setDescription( "the object containing the list" );
+        method.getJDocComment().getParamDescriptor( "item" ).setDescription( "the parsed item" );
+        method.getJDocComment().addDescriptor( JDocDescriptor.createReturnDesc( "<code>true</code> if the item has "
+            + "been handled and must not be added to the list" ) );
+
+        method.setSourceCode( "return false;" );
+
+        itemHandler.addMethod( method );
+
+        return methodName;
+    }
+
+    private void writeAllClassesParser( Model objectModel, JClass jClass )
+    {
+        ModelClass root = objectModel.getClass( objectModel.getRoot( getGeneratedVersion() ), getGeneratedVersion() );
+
+        for ( ModelClass clazz : getClasses( objectModel ) )
+        {
+            if ( isTrackingSupport( clazz ) )
+            {
+                continue;
+            }
+
+            writeClassParser( clazz, jClass, root.getName().equals( clazz.getName() ) );
+        }
+    }
+
+    private void writeClassParser( ModelClass modelClass, JClass jClass, boolean rootElement )
+    {
+        JavaClassMetadata javaClassMetadata =
+            (JavaClassMetadata) modelClass.getMetadata( JavaClassMetadata.class.getName() );
+
+        // Skip abstract classes, no way to parse them out into objects
+        if ( javaClassMetadata.isAbstract() )
+        {
+            return;
+        }
+
+        String className = modelClass.getName();
+
+        String capClassName = capitalise( className );
+
+        String uncapClassName = uncapitalise( className );
+
+        JMethod unmarshall = new JMethod( "parse" + capClassName, new JClass( className ), null );
+        unmarshall.getModifiers().makePrivate();
+
+        unmarshall.addParameter( new JParameter( new JClass( "XmlPullParser" ), "parser" ) );
+        unmarshall.addParameter( new JParameter( JClass.BOOLEAN, "strict" ) );
+        addTrackingParameters( unmarshall );
+
+        unmarshall.addException( new JClass( "IOException" ) );
+        unmarshall.addException( new JClass( "XmlPullParserException" ) );
+
+        JSourceCode sc = unmarshall.getSourceCode();
+
+        sc.add( "String tagName = parser.getName();" );
+        sc.add( className + " " + uncapClassName + " = new " + className + "();" );
+
+        if ( locationTracker != null )
+        {
+            sc.add( locationTracker.getName() + " " + LOCATION_VAR + ";" );
+            writeNewSetLocation( "\"\"", uncapClassName, null, sc );
+        }
+
+        ModelField contentField = null;
+
+        List<ModelField> modelFields = getFieldsForXml( modelClass, getGeneratedVersion() );
+
+        // read all XML attributes first
+        contentField = writeClassAttributesParser( modelFields, uncapClassName, rootElement, sc, jClass );
+
+        // then read content, either content field or elements
+        if ( contentField != null )
+        {
+            writePrimitiveField( contentField, contentField.getType(), uncapClassName, uncapClassName, "\"\"", "set"
+                + capitalise( contentField.getName() ), sc, jClass );
+        }
+        else
+        {
+            //Write other fields
+
+            List<ModelField> elementFields = new ArrayList<ModelField>();
+
+            for ( ModelField field : modelFields )
+            {
+                XmlFieldMetadata xmlFieldMetadata = (XmlFieldMetadata) field.getMetadata( XmlFieldMetadata.ID );
+
+                if ( !xmlFieldMetadata.isAttribute() )
+                {
+                    elementFields.add( field );
+                }
+            }
+
+            // parsed fields are tracked with a mask of their index, without allocation unless there are too many
+            boolean wide = elementFields.size() > Long.SIZE;
+
+            if ( wide )
+            {
+                sc.add( "java.util.BitSet parsed = new java.util.BitSet( " + elementFields.size() + " );" );
+
+                wideClasses = true;
+            }
+            else
+            {
+                sc.add( "long parsed = 0;" );
+            }
+
+            if ( !elementFields.isEmpty() )
+            {
+                sc.add( "java.util.Map projected = projection;" );
+            }
+
+            sc.add( "while ( ( strict ? parser.nextTag() : nextTag( parser ) ) == XmlPullParser.START_TAG )" );
+
+            sc.add( "{" );
+            sc.indent();
+
+            if ( elementFields.isEmpty() )
+            {
+                sc.add( "checkUnknownElement( parser, strict );" );
+            }
+            else
+            {
+                // dispatch on the field index instead of comparing the element name with every field
+                String elementIndex = writeElementIndex( capClassName, elementFields, jClass );
+
+                sc.add( "switch ( " + elementIndex + "( parser.getName() ) )" );
+
+                sc.add( "{" );
+                sc.indent();
+
+                for ( int i = 0; i < elementFields.size(); i++ )
+                {
+                    ModelField field = elementFields.get( i );
+
+                    XmlFieldMetadata xmlFieldMetadata = (XmlFieldMetadata) field.getMetadata( XmlFieldMetadata.ID );
+
+                    sc.add( "case " + i + ":" );
+
+                    sc.add( "{" );
+                    sc.indent();
+
+                    sc.add( "if ( projected != null && !enterProjection( projected, \"" + field.getName() + "\" ) )" );
+
+                    sc.add( "{" );
+                    sc.addIndented( "skipElement( parser );" );
+                    sc.addIndented( "break;" );
+                    sc.add( "}" );
+
+                    String tagName = resolveTagName( field, xmlFieldMetadata );
+
+                    String duplicateCheck;
+                    if ( wide )
+                    {
+                        duplicateCheck = "checkDuplicate( parser, \"" + tagName + "\", parsed, " + i + " );";
+                    }
+                    else
+                    {
+                        duplicateCheck = "parsed = checkDuplicate( parser, \"" + tagName + "\", parsed, 0x"
+                            + Long.toHexString( 1L << i ) + "L );";
+                    }
+
+                    if ( locationTracker == null && isLazy( field, xmlFieldMetadata ) )
+                    {
+                        writeLazyField( jClass, field, duplicateCheck, sc, className, uncapClassName );
+
+                        sc.add( "else" );
+
+                        sc.add( "{" );
+                        sc.indent();
+
+                        processField( field, xmlFieldMetadata, duplicateCheck, sc, className, uncapClassName, jClass );
+
+                        sc.unindent();
+                        sc.add( "}" );
+                    }
+                    else
+                    {
+                        processField( field, xmlFieldMetadata, duplicateCheck, sc, className, uncapClassName, jClass );
+                    }
+
+                    sc.add( "break;" );
+
+                    sc.unindent();
+                    sc.add( "}" );
+                }
+
+                sc.add( "default:" );
+
+                sc.add( "{" );
+                sc.addIndented( "checkUnknownElement( parser, strict );" );
+                sc.add( "}" );
+
+                sc.unindent();
+                sc.add( "}" );
+
+                sc.add( "projection = projected;" );
+            }
+
+            sc.unindent();
+            sc.add( "}" );
+        }
+
+        sc.add( "return " + uncapClassName + ";" );
+
+        jClass.addMethod( unmarshall );
+    }
+
+    /**
+     * Generate code capturing the element of a lazy field and setting the loader of the field, if lazy loading is
+     * enabled.
+     */
+    private void writeLazyField( JClass jClass, ModelField field, String duplicateCheck, JSourceCode sc,
+                                 String className, String objectName )
+    {
+        lazyClasses.add( className );
+
+        sc.add( "if ( lazyLoading )" );
+
+        sc.add( "{" );
+        sc.indent();
+
+        sc.add( duplicateCheck );
+
+        writeLazyLoader( jClass, field, className, objectName, "captureElement( parser )", sc );
+
+        sc.unindent();
+        sc.add( "}" );
+    }
+
+    /**
+     * Write the lazy loading flag and the helpers used to capture elements and to parse them when lazy fields are
+     * accessed.
+     */
+    private void writeLazyLoading( JClass jClass )
+    {
+        jClass.addImport( "java.io.StringReader" );
+
+        writeLazyLoadingFlag( jClass );
+
+        // --------------------------------------------------------------------
+
+        String bufferType = useJava5 ? "StringBuilder" : "StringBuffer";
+
+        JMethod method = new JMethod( "captureElement", new JClass( "String" ), null );
+        method.getModifiers().makePrivate();
+
+        method.setComment( "Capture the current element and its content as XML text, leaving the parser on its end "
+            + "tag.\nEntities are already resolved, and comments and processing instructions are dropped." );
+
+        method.addParameter( new JParameter( new JClass( "XmlPullParser" ), "parser" ) );
+        method.addException( new JClass( "IOException" ) );
+        method.addException( new JClass( "XmlPullParserException" ) );
+
+        JSourceCode sc = method.getSourceCode();
+
+        sc.add( bufferType + " buffer = new " + bufferType + "( 256 );" );
+
+        sc.add( "int depth = parser.getDepth();" );
+
+        sc.add( "int eventType = parser.getEventType();" );
+
+        sc.add( "while ( true )" );
+
+        sc.add( "{" );
+        sc.indent();
+
+        sc.add( "if ( eventType == XmlPullParser.START_TAG )" );
+
+        sc.add( "{" );
+        sc.indent();
+
+        sc.add( "buffer.append( '<' ).append( parser.getName() );" );
+
+        sc.add( "for ( int i = 0; i < parser.getAttributeCount(); i++ )" );
+
+        sc.add( "{" );
+        sc.indent();
 
-        // ----------------------------------------------------------------------
-        //
-        // ----------------------------------------------------------------------
+        sc.add( "buffer.append( ' ' ).append( parser.getAttributeName( i ) ).append( \"=\\\"\" );" );
 
-        jClass.print( sourceWriter );
+        sc.add( "appendEscaped( buffer, parser.getAttributeValue( i ) );" );
 
-        sourceWriter.close();
-    }
+        sc.add( "buffer.append( '\"' );" );
 
-    private void writeAllClassesParser( Model objectModel, JClass jClass )
-    {
-        ModelClass root = objectModel.getClass( objectModel.getRoot( getGeneratedVersion() ), getGeneratedVersion() );
+        sc.unindent();
+        sc.add( "}" );
 
-        for ( ModelClass clazz : getClasses( objectModel ) )
-        {
-            if ( isTrackingSupport( clazz ) )
-            {
-                continue;
-            }
+        sc.add( "buffer.append( '>' );" );
 
-            writeClassParser( clazz, jClass, root.getName().equals( clazz.getName() ) );
-        }
-    }
+        sc.unindent();
+        sc.add( "}" );
 
-    private void writeClassParser( ModelClass modelClass, JClass jClass, boolean rootElement )
-    {
-        JavaClassMetadata javaClassMetadata =
-            (JavaClassMetadata) modelClass.getMetadata( JavaClassMetadata.class.getName() );
+        sc.add( "else if ( eventType == XmlPullParser.END_TAG )" );
 
-        // Skip abstract classes, no way to parse them out into objects
-        if ( javaClassMetadata.isAbstract() )
-        {
-            return;
-        }
+        sc.add( "{" );
+        sc.indent();
 
-        String className = modelClass.getName();
+        sc.add( "buffer.append( \"</\" ).append( parser.getName() ).append( '>' );" );
 
-        String capClassName = capitalise( className );
+        sc.add( "if ( parser.getDepth() == depth )" );
 
-        String uncapClassName = uncapitalise( className );
+        sc.add( "{" );
+        sc.addIndented( "return buffer.toString();" );
+        sc.add( "}" );
 
-        JMethod unmarshall = new JMethod( "parse" + capClassName, new JClass( className ), null );
-        unmarshall.getModifiers().makePrivate();
+        sc.unindent();
+        sc.add( "}" );
 
-        unmarshall.addParameter( new JParameter( new JClass( "XmlPullParser" ), "parser" ) );
-        unmarshall.addParameter( new JParameter( JClass.BOOLEAN, "strict" ) );
-        addTrackingParameters( unmarshall );
+        sc.add( "else if ( eventType == XmlPullParser.TEXT )" );
 
-        unmarshall.addException( new JClass( "IOException" ) );
-        unmarshall.addException( new JClass( "XmlPullParserException" ) );
+        sc.add( "{" );
+        sc.addIndented( "appendEscaped( buffer, parser.getText() );" );
+        sc.add( "}" );
 
-        JSourceCode sc = unmarshall.getSourceCode();
+        sc.add( "eventType = parser.next();" );
 
-        sc.add( "String tagName = parser.getName();" );
-        sc.add( className + " " + uncapClassName + " = new " + className + "();" );
+        sc.unindent();
+        sc.add( "}" );
 
-        if ( locationTracker != null )
-        {
-            sc.add( locationTracker.getName() + " " + LOCATION_VAR + ";" );
-            writeNewSetLocation( "\"\"", uncapClassName, null, sc );
-        }
+        jClass.addMethod( method );
 
-        ModelField contentField = null;
+        // --------------------------------------------------------------------
 
-        List<ModelField> modelFields = getFieldsForXml( modelClass, getGeneratedVersion() );
+        writeAppendEscaped( bufferType, jClass );
 
-        // read all XML attributes first
-        contentField = writeClassAttributesParser( modelFields, uncapClassName, rootElement, sc, jClass );
+        // --------------------------------------------------------------------
 
-        // then read content, either content field or elements
-        if ( contentField != null )
-        {
-            writePrimitiveField( contentField, contentField.getType(), uncapClassName, uncapClassName, "\"\"", "set"
-                + capitalise( contentField.getName() ), sc, jClass );
-        }
-        else
+        for ( String className : lazyClasses )
         {
-            //Write other fields
+            method = new JMethod( "parseLazy" + className, new JClass( className ), null );
+            method.getModifiers().makePrivate();
+            method.getModifiers().setStatic( true );
 
-            sc.add( "java.util.Set parsed = new java.util.HashSet();" );
+            method.setComment( "Parse the elements captured for lazy fields of " + className + ", without lazy "
+                + "loading." );
 
-            sc.add( "while ( ( strict ? parser.nextTag() : nextTag( parser ) ) == XmlPullParser.START_TAG )" );
+            method.addParameter( new JParameter( new JClass( "String" ), "xml" ) );
+            method.addParameter( new JParameter( JType.BOOLEAN, "strict" ) );
+            method.addParameter( new JParameter( new JClass( "StringTable" ), "stringTable" ) );
+
+            sc = method.getSourceCode();
+
+            sc.add( "try" );
 
             sc.add( "{" );
             sc.indent();
 
-            boolean addElse = false;
+            sc.add( "XmlPullParser parser = new MXParser();" );
 
-            for ( ModelField field : modelFields )
-            {
-                XmlFieldMetadata xmlFieldMetadata = (XmlFieldMetadata) field.getMetadata( XmlFieldMetadata.ID );
+            sc.add( "parser.setInput( new StringReader( \"<lazy>\" + xml + \"</lazy>\" ) );" );
 
-                if ( !xmlFieldMetadata.isAttribute() )
-                {
-                    processField( field, xmlFieldMetadata, addElse, sc, uncapClassName, jClass );
+            sc.add( "parser.nextTag();" );
 
-                    addElse = true;
-                }
-            }
+            sc.add( jClass.getLocalName() + " reader = new " + jClass.getLocalName() + "();" );
 
-            if ( addElse )
-            {
-                sc.add( "else" );
+            sc.add( "reader.lazyLoading = false;" );
 
-                sc.add( "{" );
-                sc.indent();
-            }
+            sc.add( "reader.stringTable = stringTable;" );
+
+            sc.add( "return reader.parse" + className + "( parser, strict );" );
 
-            sc.add( "checkUnknownElement( parser, strict );" );
+            sc.unindent();
+            sc.add( "}" );
 
-            if ( addElse )
+            for ( String exception : new String[] { "IOException", "XmlPullParserException" } )
             {
-                sc.unindent();
+                sc.add( "catch ( " + exception + " e )" );
+
+                sc.add( "{" );
+                sc.addIndented( "throw new RuntimeException( \"Unable to parse lazy field: \" + e.getMessage(), e );" );
                 sc.add( "}" );
             }
 
-            sc.unindent();
-            sc.add( "}" );
+            jClass.addMethod( method );
         }
-
-        sc.add( "return " + uncapClassName + ";" );
-
-        jClass.addMethod( unmarshall );
     }
 
     private ModelField writeClassAttributesParser( List<ModelField> modelFields, String objectName,
@@ -574,13 +1489,14 @@ public class Xpp3ReaderGenerator
      *
      * @param field the field to process
      * @param xmlFieldMetadata its XML metadata
-     * @param addElse add an <code>else</code> statement before generating a new <code>if</code>
+     * @param duplicateCheck the statement checking that the field has not already been parsed
      * @param sc the method source code to add to
+     * @param className the class of the object
      * @param objectName the object name in the source
      * @param jClass the generated class source file
      */
-    private void processField( ModelField field, XmlFieldMetadata xmlFieldMetadata, boolean addElse, JSourceCode sc,
-                               String objectName, JClass jClass )
+    private void processField( ModelField field, XmlFieldMetadata xmlFieldMetadata, String duplicateCheck,
+                               JSourceCode sc, String className, String objectName, JClass jClass )
     {
         String fieldTagName = resolveTagName( field, xmlFieldMetadata );
 
@@ -588,32 +1504,13 @@ public class Xpp3ReaderGenerator
 
         String singularName = singular( field.getName() );
 
-        String alias;
-        if ( StringUtils.isEmpty( field.getAlias() ) )
-        {
-            alias = "null";
-        }
-        else
-        {
-            alias = "\"" + field.getAlias() + "\"";
-        }
-
-        String tagComparison = ( addElse ? "else " : "" )
-            + "if ( checkFieldWithDuplicate( parser, \"" + fieldTagName + "\", " + alias + ", parsed ) )";
-
         if ( !( field instanceof ModelAssociation ) )
         {
             //ModelField
-            sc.add( tagComparison );
-
-            sc.add( "{" );
-            sc.indent();
+            sc.add( duplicateCheck );
 
             writePrimitiveField( field, field.getType(), objectName, objectName, "\"" + field.getName() + "\"", "set"
                 + capitalise( field.getName() ), sc, jClass );
-
-            sc.unindent();
-            sc.add( "}" );
         }
         else
         { // model association
@@ -623,12 +1520,10 @@ public class Xpp3ReaderGenerator
 
             if ( association.isOneMultiplicity() )
             {
-                sc.add( tagComparison );
+                sc.add( duplicateCheck );
 
-                sc.add( "{" );
-                sc.addIndented( objectName + ".set" + capFieldName + "( parse" + association.getTo()
+                sc.add( objectName + ".set" + capFieldName + "( parse" + association.getTo()
                     + "( parser, strict" + trackingArgs + " ) );" );
-                sc.add( "}" );
             }
             else
             {
@@ -649,10 +1544,7 @@ public class Xpp3ReaderGenerator
 
                     if ( wrappedItems )
                     {
-                        sc.add( tagComparison );
-
-                        sc.add( "{" );
-                        sc.indent();
+                        sc.add( duplicateCheck );
 
                         sc.add( type + " " + associationName + " = " + association.getDefaultValue() + ";" );
 
@@ -676,12 +1568,6 @@ public class Xpp3ReaderGenerator
                     }
                     else
                     {
-                        sc.add( ( addElse ? "else " : "" )
-                            + "if ( \"" + valuesTagName + "\".equals( parser.getName() ) )" );
-
-                        sc.add( "{" );
-                        sc.indent();
-
                         sc.add( type + " " + associationName + " = " + objectName + ".get" + capFieldName + "();" );
 
                         sc.add( "if ( " + associationName + " == null )" );
@@ -711,8 +1597,19 @@ public class Xpp3ReaderGenerator
 
                     if ( inModel )
                     {
-                        sc.add( associationName + ".add( parse" + association.getTo() + "( parser, strict"
-                            + trackingArgs + " ) );" );
+                        String itemName = associationName + "Item";
+
+                        sc.add( association.getTo() + " " + itemName + " = parse" + association.getTo()
+                            + "( parser, strict" + trackingArgs + " );" );
+
+                        String handlerMethod = addItemHandlerMethod( className, association );
+
+                        sc.add( "if ( itemHandler == null || !itemHandler." + handlerMethod + "( " + objectName + ", "
+                            + itemName + " ) )" );
+
+                        sc.add( "{" );
+                        sc.addIndented( associationName + ".add( " + itemName + " );" );
+                        sc.add( "}" );
                     }
                     else
                     {
@@ -744,24 +1641,13 @@ public class Xpp3ReaderGenerator
 
                         sc.unindent();
                         sc.add( "}" );
-
-                        sc.unindent();
-                        sc.add( "}" );
-                    }
-                    else
-                    {
-                        sc.unindent();
-                        sc.add( "}" );
                     }
                 }
                 else
                 {
                     //Map or Properties
 
-                    sc.add( tagComparison );
-
-                    sc.add( "{" );
-                    sc.indent();
+                    sc.add( duplicateCheck );
 
                     if ( locationTracker != null )
                     {
@@ -797,7 +1683,7 @@ public class Xpp3ReaderGenerator
                         sc.add( "if ( \"key\".equals( parser.getName() ) )" );
 
                         sc.add( "{" );
-                        sc.addIndented( "key = parser.nextText();" );
+                        sc.addIndented( "key = intern( parser.nextText() );" );
                         sc.add( "}" );
 
                         sc.add( "else if ( \"value\".equals( parser.getName() ) )" );
@@ -805,7 +1691,8 @@ public class Xpp3ReaderGenerator
                         sc.add( "{" );
                         sc.indent();
                         writeNewLocation( LOCATION_VAR, sc );
-                        sc.add( "value = parser.nextText()" + ( xmlFieldMetadata.isTrim() ? ".trim()" : "" ) + ";" );
+                        sc.add( "value = intern( parser.nextText()" + ( xmlFieldMetadata.isTrim() ? ".trim()" : "" )
+                                + " );" );
                         sc.unindent();
                         sc.add( "}" );
 
@@ -824,7 +1711,13 @@ public class Xpp3ReaderGenerator
                         sc.unindent();
                         sc.add( "}" );
 
-                        sc.add( "parser.next();" );
+                        // the end tag of the entry is already consumed: moving to the next event would skip the next
+                        // entry when no whitespace separates them
+                        sc.add( "else" );
+
+                        sc.add( "{" );
+                        sc.addIndented( "parser.nextText();" );
+                        sc.add( "}" );
 
                         sc.unindent();
                         sc.add( "}" );
@@ -838,24 +1731,136 @@ public class Xpp3ReaderGenerator
                         sc.add( "{" );
                         sc.indent();
 
-                        sc.add( "String key = parser.getName();" );
+                        sc.add( "String key = intern( parser.getName() );" );
 
                         writeNewSetLocation( "key", LOCATION_VAR + "s", null, sc );
 
-                        sc.add( "String value = parser.nextText()" + ( xmlFieldMetadata.isTrim() ? ".trim()" : "" )
-                                + ";" );
+                        sc.add( "String value = intern( parser.nextText()"
+                                + ( xmlFieldMetadata.isTrim() ? ".trim()" : "" ) + " );" );
 
                         sc.add( objectName + ".add" + capitalise( singularName ) + "( key, value );" );
 
                         sc.unindent();
                         sc.add( "}" );
                     }
+                }
+            }
+        }
+    }
 
-                    sc.unindent();
-                    sc.add( "}" );
+    /**
+     * Get the names of the XML elements read into a field: its tag name and its alias, or the tag name of its items
+     * when they are not wrapped.
+     */
+    private List<String> getElementNames( ModelField field, XmlFieldMetadata xmlFieldMetadata )
+    {
+        String fieldTagName = resolveTagName( field, xmlFieldMetadata );
+
+        if ( field instanceof ModelAssociation )
+        {
+            ModelAssociation association = (ModelAssociation) field;
+
+            XmlAssociationMetadata xmlAssociationMetadata =
+                (XmlAssociationMetadata) association.getAssociationMetadata( XmlAssociationMetadata.ID );
+
+            if ( association.isManyMultiplicity() && !xmlAssociationMetadata.isWrappedItems()
+                && ( ModelDefault.LIST.equals( association.getType() )
+                    || ModelDefault.SET.equals( association.getType() ) ) )
+            {
+                return Collections.singletonList( resolveTagName( fieldTagName, xmlAssociationMetadata ) );
+            }
+        }
+
+        if ( StringUtils.isEmpty( field.getAlias() ) )
+        {
+            return Collections.singletonList( fieldTagName );
+        }
+
+        return Arrays.asList( new String[] { fieldTagName, field.getAlias() } );
+    }
+
+    /**
+     * Generate a method giving the index of the field read from an XML element. It switches on the hash code of the
+     * element name, which the Java Language Specification defines, then compares only the names with this hash code
+     * instead of every element name of the class.
+     *
+     * @param capClassName the capitalised class name
+     * @param elementFields the fields represented as XML elements
+     * @param jClass the generated class source file
+     * @return the name of the generated method
+     */
+    private String writeElementIndex( String capClassName, List<ModelField> elementFields, JClass jClass )
+    {
+        // element names by hash code: when names are shared, the first field wins like in an if/else chain
+        Map<Integer, Map<String, Integer>> indexes = new TreeMap<Integer, Map<String, Integer>>();
+
+        for ( int i = 0; i < elementFields.size(); i++ )
+        {
+            ModelField field = elementFields.get( i );
+
+            XmlFieldMetadata xmlFieldMetadata = (XmlFieldMetadata) field.getMetadata( XmlFieldMetadata.ID );
+
+            for ( String name : getElementNames( field, xmlFieldMetadata ) )
+            {
+                Map<String, Integer> names = indexes.get( name.hashCode() );
+
+                if ( names == null )
+                {
+                    names = new LinkedHashMap<String, Integer>();
+
+                    indexes.put( name.hashCode(), names );
+                }
+
+                if ( !names.containsKey( name ) )
+                {
+                    names.put( name, i );
                 }
             }
         }
+
+        String methodName = "get" + capClassName + "ElementIndex";
+
+        JMethod method = new JMethod( methodName, JType.INT, null );
+        method.getModifiers().makePrivate();
+
+        method.addParameter( new JParameter( new JClass( "String" ), "name" ) );
+
+        JSourceCode sc = method.getSourceCode();
+
+        sc.add( "switch ( name.hashCode() )" );
+
+        sc.add( "{" );
+        sc.indent();
+
+        for ( Map.Entry<Integer, Map<String, Integer>> entry : indexes.entrySet() )
+        {
+            sc.add( "case " + entry.getKey() + ":" );
+            sc.indent();
+
+            for ( Map.Entry<String, Integer> name : entry.getValue().entrySet() )
+            {
+                sc.add( "if ( \"" + name.getKey() + "\".equals( name ) )" );
+
+                sc.add( "{" );
+                sc.addIndented( "return " + name.getValue() + ";" );
+                sc.add( "}" );
+            }
+
+            sc.add( "break;" );
+            sc.unindent();
+        }
+
+        sc.add( "default:" );
+        sc.addIndented( "break;" );
+
+        sc.unindent();
+        sc.add( "}" );
+
+        sc.add( "return -1;" );
+
+        jClass.addMethod( method );
+
+        return methodName;
     }
 
     private void writePrimitiveField( ModelField field, String type, String objectName, String locatorName,
@@ -940,7 +1945,11 @@ public class Xpp3ReaderGenerator
             sc.add( objectName + "." + setterName + "( " + keyCapture + "getByteValue( " + parserGetter + ", \""
                 + tagName + "\", parser, strict ) );" );
         }
-        else if ( "String".equals( type ) || "Boolean".equals( type ) )
+        else if ( "String".equals( type ) )
+        {
+            sc.add( objectName + "." + setterName + "( " + keyCapture + "intern( " + parserGetter + " ) );" );
+        }
+        else if ( "Boolean".equals( type ) )
         {
             // TODO: other Primitive types
             sc.add( objectName + "." + setterName + "( " + keyCapture +  parserGetter + " );" );
@@ -1442,31 +2451,52 @@ public class Xpp3ReaderGenerator
 
         // --------------------------------------------------------------------
 
-        method = new JMethod( "checkFieldWithDuplicate", JType.BOOLEAN, null );
+        method = new JMethod( "checkDuplicate", JType.LONG, null );
         method.getModifiers().makePrivate();
 
         method.addParameter( new JParameter( new JClass( "XmlPullParser" ), "parser" ) );
         method.addParameter( new JParameter( new JClass( "String" ), "tagName" ) );
-        method.addParameter( new JParameter( new JClass( "String" ), "alias" ) );
-        method.addParameter( new JParameter( new JClass( "java.util.Set" ), "parsed" ) );
+        method.addParameter( new JParameter( JType.LONG, "parsed" ) );
+        method.addParameter( new JParameter( JType.LONG, "field" ) );
         method.addException( new JClass( "XmlPullParserException" ) );
 
         sc = method.getSourceCode();
 
-        sc.add( "if ( !( parser.getName().equals( tagName ) || parser.getName().equals( alias ) ) )" );
-
-        sc.add( "{" );
-        sc.addIndented( "return false;" );
-        sc.add( "}" );
-
-        sc.add( "if ( !parsed.add( tagName ) )" );
+        sc.add( "if ( ( parsed & field ) != 0 )" );
 
         sc.add( "{" );
         sc.addIndented(
             "throw new XmlPullParserException( \"Duplicated tag: '\" + tagName + \"'\", parser, null );" );
         sc.add( "}" );
 
-        sc.add( "return true;" );
+        sc.add( "return parsed | field;" );
+
+        if ( wideClasses )
+        {
+            jClass.addMethod( method );
+
+            // --------------------------------------------------------------------
+
+            method = new JMethod( "checkDuplicate", null, null );
+            method.getModifiers().makePrivate();
+
+            method.addParameter( new JParameter( new JClass( "XmlPullParser" ), "parser" ) );
+            method.addParameter( new JParameter( new JClass( "String" ), "tagName" ) );
+            method.addParameter( new JParameter( new JClass( "java.util.BitSet" ), "parsed" ) );
+            method.addParameter( new JParameter( JType.INT, "field" ) );
+            method.addException( new JClass( "XmlPullParserException" ) );
+
+            sc = method.getSourceCode();
+
+            sc.add( "if ( parsed.get( field ) )" );
+
+            sc.add( "{" );
+            sc.addIndented(
+                "throw new XmlPullParserException( \"Duplicated tag: '\" + tagName + \"'\", parser, null );" );
+            sc.add( "}" );
+
+            sc.add( "parsed.set( field );" );
+        }
 
         jClass.addMethod( method );
 
@@ -1491,17 +2521,34 @@ public class Xpp3ReaderGenerator
 
         sc.add( "" );
 
-        sc.add( "for ( int unrecognizedTagCount = 1; unrecognizedTagCount > 0; )" );
+        sc.add( "skipElement( parser );" );
+
+        jClass.addMethod( method );
+
+        // --------------------------------------------------------------------
+
+        method = new JMethod( "skipElement", null, null );
+        method.getModifiers().makePrivate();
+
+        method.setComment( "Skips the current element and its content, leaving the parser on its end tag." );
+
+        method.addParameter( new JParameter( new JClass( "XmlPullParser" ), "parser" ) );
+        method.addException( new JClass( "XmlPullParserException" ) );
+        method.addException( new JClass( "IOException" ) );
+
+        sc = method.getSourceCode();
+
+        sc.add( "for ( int depth = 1; depth > 0; )" );
         sc.add( "{" );
         sc.indent();
         sc.add( "int eventType = parser.next();" );
         sc.add( "if ( eventType == XmlPullParser.START_TAG )" );
         sc.add( "{" );
-        sc.addIndented( "unrecognizedTagCount++;" );
+        sc.addIndented( "depth++;" );
         sc.add( "}" );
         sc.add( "else if ( eventType == XmlPullParser.END_TAG )" );
         sc.add( "{" );
-        sc.addIndented( "unrecognizedTagCount--;" );
+        sc.addIndented( "depth--;" );
         sc.add( "}" );
         sc.unindent();
         sc.add( "}" );
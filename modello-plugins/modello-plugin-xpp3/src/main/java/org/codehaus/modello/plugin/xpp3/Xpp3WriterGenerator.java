@@ -28,12 +28,15 @@ import org.codehaus.modello.model.ModelAssociation;
 import org.codehaus.modello.model.ModelClass;
 import org.codehaus.modello.model.ModelDefault;
 import org.codehaus.modello.model.ModelField;
+import org.codehaus.modello.plugin.java.javasource.JArrayType;
 import org.codehaus.modello.plugin.java.javasource.JClass;
+import org.codehaus.modello.plugin.java.javasource.JConstructor;
 import org.codehaus.modello.plugin.java.javasource.JField;
 import org.codehaus.modello.plugin.java.javasource.JMethod;
 import org.codehaus.modello.plugin.java.javasource.JParameter;
 import org.codehaus.modello.plugin.java.javasource.JSourceCode;
 import org.codehaus.modello.plugin.java.javasource.JSourceWriter;
+import org.codehaus.modello.plugin.java.javasource.JType;
 import org.codehaus.modello.plugin.java.metadata.JavaFieldMetadata;
 import org.codehaus.modello.plugin.model.ModelClassMetadata;
 import org.codehaus.modello.plugins.xml.metadata.XmlAssociationMetadata;
@@ -41,7 +44,10 @@ import org.codehaus.modello.plugins.xml.metadata.XmlFieldMetadata;
 import org.codehaus.modello.plugins.xml.metadata.XmlModelMetadata;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.Properties;
 
 /**
@@ -52,6 +58,12 @@ import java.util.Properties;
 public class Xpp3WriterGenerator
     extends AbstractXpp3Generator
 {
+    /**
+     * The tag and attribute names written by the generated writer, encoded once for all by the
+     * <code>Utf8Serializer</code>.
+     */
+    private Set<String> names;
+
     public void generate( Model model, Properties parameters )
         throws ModelloException
     {
@@ -97,6 +109,25 @@ public class Xpp3WriterGenerator
         namespaceField.setInitString( "null" );
         jClass.addField( namespaceField );
 
+        JField bufferedUtf8 = new JField( JType.BOOLEAN, "bufferedUtf8" );
+        bufferedUtf8.setComment( "If set, UTF-8 documents written to streams are encoded by a reused "
+            + "<code>Utf8Serializer</code>,\nso writes must not be done concurrently." );
+        bufferedUtf8.setInitString( "false" );
+        jClass.addField( bufferedUtf8 );
+
+        jClass.addField( new JField( new JClass( "Utf8Serializer" ), "utf8Serializer" ) );
+
+        JMethod method = new JMethod( "setBufferedUtf8" );
+        method.addParameter( new JParameter( JType.BOOLEAN, "bufferedUtf8" ) );
+        method.setSourceCode( "this.bufferedUtf8 = bufferedUtf8;" );
+        method.setComment( "Sets the state of the \"buffered UTF-8\" flag." );
+        jClass.addMethod( method );
+
+        method = new JMethod( "getBufferedUtf8", JType.BOOLEAN, null );
+        method.setComment( "Returns the state of the \"buffered UTF-8\" flag." );
+        method.setSourceCode( "return bufferedUtf8;" );
+        jClass.addMethod( method );
+
         addModelImports( jClass, null );
 
         String root = objectModel.getRoot( getGeneratedVersion() );
@@ -105,6 +136,9 @@ public class Xpp3WriterGenerator
 
         String rootElement = resolveTagName( rootClass );
 
+        names = new TreeSet<String>();
+        names.add( rootElement );
+
         // ----------------------------------------------------------------------
         // Write the write( Writer, Model ) method which will do the unmarshalling.
         // ----------------------------------------------------------------------
@@ -119,15 +153,7 @@ public class Xpp3WriterGenerator
 
         JSourceCode sc = marshall.getSourceCode();
 
-        sc.add( "XmlSerializer serializer = new MXSerializer();" );
-
-        sc.add(
-            "serializer.setProperty( \"http://xmlpull.org/v1/doc/properties.html#serializer-indentation\", \"  \" );" );
-
-        sc.add(
-            "serializer.setProperty( \"http://xmlpull.org/v1/doc/properties.html#serializer-line-separator\", \"\\n\" );" );
-
-        sc.add( "serializer.setOutput( writer );" );
+        writeSerializerCreation( sc, rootElementParameterName, false );
 
         sc.add( "serializer.startDocument( " + rootElementParameterName + ".getModelEncoding(), null );" );
 
@@ -150,15 +176,7 @@ public class Xpp3WriterGenerator
 
         sc = marshall.getSourceCode();
 
-        sc.add( "XmlSerializer serializer = new MXSerializer();" );
-
-        sc.add(
-            "serializer.setProperty( \"http://xmlpull.org/v1/doc/properties.html#serializer-indentation\", \"  \" );" );
-
-        sc.add(
-            "serializer.setProperty( \"http://xmlpull.org/v1/doc/properties.html#serializer-line-separator\", \"\\n\" );" );
-
-        sc.add( "serializer.setOutput( stream, " + rootElementParameterName + ".getModelEncoding() );" );
+        writeSerializerCreation( sc, rootElementParameterName, true );
 
         sc.add( "serializer.startDocument( " + rootElementParameterName + ".getModelEncoding(), null );" );
 
@@ -170,11 +188,75 @@ public class Xpp3WriterGenerator
 
         writeAllClasses( objectModel, jClass );
 
+        writeStreamWriter( rootClass, jClass );
+
+        writeUtf8Serializer( jClass );
+
         jClass.print( sourceWriter );
 
         sourceWriter.close();
     }
 
+    /**
+     * Writes the creation of the <code>serializer</code> writing to the <code>writer</code> or to the
+     * <code>stream</code>, with the encoding of the root element.
+     */
+    private void writeSerializerCreation( JSourceCode sc, String rootElementParameterName, boolean stream )
+    {
+        if ( !stream )
+        {
+            sc.add( "XmlSerializer serializer = new MXSerializer();" );
+
+            writeIndentationProperties( sc );
+
+            sc.add( "serializer.setOutput( writer );" );
+
+            return;
+        }
+
+        sc.add( "String encoding = " + rootElementParameterName + ".getModelEncoding();" );
+
+        sc.add( "XmlSerializer serializer;" );
+
+        sc.add( "if ( bufferedUtf8 && ( encoding == null || \"UTF-8\".equalsIgnoreCase( encoding ) ) )" );
+        sc.add( "{" );
+        sc.indent();
+        sc.add( "if ( utf8Serializer == null )" );
+        sc.add( "{" );
+        sc.addIndented( "utf8Serializer = new Utf8Serializer();" );
+        sc.add( "}" );
+        sc.add( "serializer = utf8Serializer;" );
+        sc.unindent();
+        sc.add( "}" );
+        sc.add( "else" );
+        sc.add( "{" );
+        sc.indent();
+        sc.add( "serializer = new MXSerializer();" );
+
+        writeIndentationProperties( sc );
+        sc.unindent();
+        sc.add( "}" );
+
+        sc.add( "serializer.setOutput( stream, encoding );" );
+    }
+
+    /**
+     * Indents the output of the <code>MXSerializer</code>, unless the output is compact.
+     */
+    private void writeIndentationProperties( JSourceCode sc )
+    {
+        if ( compactOutput )
+        {
+            return;
+        }
+
+        sc.add(
+            "serializer.setProperty( \"http://xmlpull.org/v1/doc/properties.html#serializer-indentation\", \"  \" );" );
+
+        sc.add(
+            "serializer.setProperty( \"http://xmlpull.org/v1/doc/properties.html#serializer-line-separator\", \"\\n\" );" );
+    }
+
     private void writeAllClasses( Model objectModel, JClass jClass )
         throws ModelloException
     {
@@ -203,6 +285,26 @@ public class Xpp3WriterGenerator
 
         JSourceCode sc = marshall.getSourceCode();
 
+        writeStartTag( modelClass, sc );
+
+        for ( ModelField field : getFieldsForXml( modelClass, getGeneratedVersion() ) )
+        {
+            writeElementField( modelClass, field, sc, jClass );
+        }
+
+        sc.add( "serializer.endTag( NAMESPACE, tagName );" );
+
+        jClass.addMethod( marshall );
+    }
+
+    /**
+     * Writes the start tag of a class, with its namespaces, its attributes and its content.
+     */
+    private void writeStartTag( ModelClass modelClass, JSourceCode sc )
+        throws ModelloException
+    {
+        String uncapClassName = uncapitalise( modelClass.getName() );
+
         ModelClassMetadata classMetadata = (ModelClassMetadata) modelClass.getMetadata( ModelClassMetadata.ID );
 
         String namespace = null;
@@ -224,6 +326,8 @@ public class Xpp3WriterGenerator
             sc.add( "serializer.startTag( NAMESPACE, tagName );" );
 
             sc.add( "serializer.attribute( \"\", \"xsi:schemaLocation\", \"" + namespace + " " + url + "\" );" );
+
+            names.add( "xsi:schemaLocation" );
         }
         else
         {
@@ -258,6 +362,8 @@ public class Xpp3WriterGenerator
 
             if ( xmlFieldMetadata.isAttribute() )
             {
+                names.add( fieldTagName );
+
                 sc.add( getValueChecker( type, value, field ) );
 
                 sc.add( "{" );
@@ -273,178 +379,1111 @@ public class Xpp3WriterGenerator
             XmlFieldMetadata xmlFieldMetadata = (XmlFieldMetadata) contentField.getMetadata( XmlFieldMetadata.ID );
             sc.add( "serializer.text( " + getValue( contentField.getType(), contentValue, xmlFieldMetadata ) + " );" );
         }
+    }
 
-        // XML tags
-        for ( ModelField field : modelFields )
+    /**
+     * Writes a field of a class written as an XML tag: fields written as attributes or as content are skipped.
+     */
+    private void writeElementField( ModelClass modelClass, ModelField field, JSourceCode sc, JClass jClass )
+        throws ModelloException
+    {
+        String uncapClassName = uncapitalise( modelClass.getName() );
+
+        XmlFieldMetadata xmlFieldMetadata = (XmlFieldMetadata) field.getMetadata( XmlFieldMetadata.ID );
+
+        if ( xmlFieldMetadata.isContent() )
         {
-            XmlFieldMetadata xmlFieldMetadata = (XmlFieldMetadata) field.getMetadata( XmlFieldMetadata.ID );
+            // skip field with type Content
+            return;
+        }
 
-            if ( xmlFieldMetadata.isContent() )
-            {
-                // skip field with type Content
-                continue;
-            }
+        JavaFieldMetadata javaFieldMetadata = (JavaFieldMetadata) field.getMetadata( JavaFieldMetadata.ID );
 
-            JavaFieldMetadata javaFieldMetadata = (JavaFieldMetadata) field.getMetadata( JavaFieldMetadata.ID );
+        String fieldTagName = resolveTagName( field, xmlFieldMetadata );
 
-            String fieldTagName = resolveTagName( field, xmlFieldMetadata );
+        String type = field.getType();
 
-            String type = field.getType();
+        String value = uncapClassName + "." + getPrefix( javaFieldMetadata ) + capitalise( field.getName() ) + "()";
 
-            String value = uncapClassName + "." + getPrefix( javaFieldMetadata ) + capitalise( field.getName() ) + "()";
+        if ( xmlFieldMetadata.isAttribute() )
+        {
+            return;
+        }
 
-            if ( xmlFieldMetadata.isAttribute() )
+        names.add( fieldTagName );
+
+        if ( field instanceof ModelAssociation )
+        {
+            ModelAssociation association = (ModelAssociation) field;
+
+            String associationName = association.getName();
+
+            if ( association.isOneMultiplicity() )
             {
-                continue;
-            }
+                sc.add( getValueChecker( type, value, association ) );
 
-            if ( field instanceof ModelAssociation )
+                sc.add( "{" );
+                sc.addIndented( "write" + association.getTo() + "( (" + association.getTo() + ") " + value + ", \""
+                                + fieldTagName + "\", serializer );" );
+                sc.add( "}" );
+            }
+            else
             {
-                ModelAssociation association = (ModelAssociation) field;
+                //MANY_MULTIPLICITY
+
+                XmlAssociationMetadata xmlAssociationMetadata =
+                    (XmlAssociationMetadata) association.getAssociationMetadata( XmlAssociationMetadata.ID );
 
-                String associationName = association.getName();
+                String valuesTagName = resolveTagName( fieldTagName, xmlAssociationMetadata );
 
-                if ( association.isOneMultiplicity() )
+                names.add( valuesTagName );
+
+                type = association.getType();
+                String toType = association.getTo();
+
+                boolean wrappedItems = xmlAssociationMetadata.isWrappedItems();
+
+                if ( ModelDefault.LIST.equals( type ) || ModelDefault.SET.equals( type ) )
                 {
                     sc.add( getValueChecker( type, value, association ) );
 
                     sc.add( "{" );
-                    sc.addIndented( "write" + association.getTo() + "( (" + association.getTo() + ") " + value + ", \""
-                                    + fieldTagName + "\", serializer );" );
-                    sc.add( "}" );
-                }
-                else
-                {
-                    //MANY_MULTIPLICITY
+                    sc.indent();
 
-                    XmlAssociationMetadata xmlAssociationMetadata =
-                        (XmlAssociationMetadata) association.getAssociationMetadata( XmlAssociationMetadata.ID );
+                    if ( wrappedItems )
+                    {
+                        sc.add( "serializer.startTag( NAMESPACE, " + "\"" + fieldTagName + "\" );" );
+                    }
 
-                    String valuesTagName = resolveTagName( fieldTagName, xmlAssociationMetadata );
+                    sc.add( "for ( Iterator iter = " + value + ".iterator(); iter.hasNext(); )" );
 
-                    type = association.getType();
-                    String toType = association.getTo();
+                    sc.add( "{" );
+                    sc.indent();
 
-                    boolean wrappedItems = xmlAssociationMetadata.isWrappedItems();
+                    if ( isClassInModel( association.getTo(), modelClass.getModel() ) )
+                    {
+                        sc.add( toType + " o = (" + toType + ") iter.next();" );
 
-                    if ( ModelDefault.LIST.equals( type ) || ModelDefault.SET.equals( type ) )
+                        sc.add( "write" + toType + "( o, \"" + valuesTagName + "\", serializer );" );
+                    }
+                    else
                     {
-                        sc.add( getValueChecker( type, value, association ) );
+                        sc.add( toType + " " + singular( uncapitalise( field.getName() ) ) + " = (" + toType +
+                            ") iter.next();" );
 
-                        sc.add( "{" );
-                        sc.indent();
+                        sc.add( "serializer.startTag( NAMESPACE, " + "\"" + valuesTagName + "\" ).text( " +
+                            singular( uncapitalise( field.getName() ) ) + " ).endTag( NAMESPACE, " + "\"" +
+                            valuesTagName + "\" );" );
+                    }
 
-                        if ( wrappedItems )
-                        {
-                            sc.add( "serializer.startTag( NAMESPACE, " + "\"" + fieldTagName + "\" );" );
-                        }
+                    sc.unindent();
+                    sc.add( "}" );
 
-                        sc.add( "for ( Iterator iter = " + value + ".iterator(); iter.hasNext(); )" );
+                    if ( wrappedItems )
+                    {
+                        sc.add( "serializer.endTag( NAMESPACE, " + "\"" + fieldTagName + "\" );" );
+                    }
 
-                        sc.add( "{" );
-                        sc.indent();
+                    sc.unindent();
+                    sc.add( "}" );
+                }
+                else
+                {
+                    //Map or Properties
 
-                        if ( isClassInModel( association.getTo(), modelClass.getModel() ) )
-                        {
-                            sc.add( toType + " o = (" + toType + ") iter.next();" );
+                    sc.add( getValueChecker( type, value, field ) );
 
-                            sc.add( "write" + toType + "( o, \"" + valuesTagName + "\", serializer );" );
-                        }
-                        else
-                        {
-                            sc.add( toType + " " + singular( uncapitalise( field.getName() ) ) + " = (" + toType +
-                                ") iter.next();" );
+                    sc.add( "{" );
+                    sc.indent();
 
-                            sc.add( "serializer.startTag( NAMESPACE, " + "\"" + valuesTagName + "\" ).text( " +
-                                singular( uncapitalise( field.getName() ) ) + " ).endTag( NAMESPACE, " + "\"" +
-                                valuesTagName + "\" );" );
-                        }
+                    if ( wrappedItems )
+                    {
+                        sc.add( "serializer.startTag( NAMESPACE, " + "\"" + fieldTagName + "\" );" );
+                    }
+
+                    sc.add( "for ( Iterator iter = " + value + ".keySet().iterator(); iter.hasNext(); )" );
+
+                    sc.add( "{" );
+                    sc.indent();
 
-                        sc.unindent();
-                        sc.add( "}" );
+                    sc.add( "String key = (String) iter.next();" );
 
-                        if ( wrappedItems )
-                        {
-                            sc.add( "serializer.endTag( NAMESPACE, " + "\"" + fieldTagName + "\" );" );
-                        }
+                    sc.add( "String value = (String) " + value + ".get( key );" );
 
-                        sc.unindent();
-                        sc.add( "}" );
+                    if ( xmlAssociationMetadata.isMapExplode() )
+                    {
+                        names.add( singular( associationName ) );
+                        names.add( "key" );
+                        names.add( "value" );
+
+                        sc.add( "serializer.startTag( NAMESPACE, \"" + singular( associationName ) + "\" );" );
+                        sc.add(
+                            "serializer.startTag( NAMESPACE, \"key\" ).text( key ).endTag( NAMESPACE, \"key\" );" );
+                        sc.add(
+                            "serializer.startTag( NAMESPACE, \"value\" ).text( value ).endTag( NAMESPACE, \"value\" );" );
+                        sc.add( "serializer.endTag( NAMESPACE, \"" + singular( associationName ) + "\" );" );
                     }
                     else
                     {
-                        //Map or Properties
+                        sc.add(
+                            "serializer.startTag( NAMESPACE, \"\" + key + \"\" ).text( value ).endTag( NAMESPACE, \"\" + key + \"\" );" );
+                    }
 
-                        sc.add( getValueChecker( type, value, field ) );
+                    sc.unindent();
+                    sc.add( "}" );
 
-                        sc.add( "{" );
-                        sc.indent();
+                    if ( wrappedItems )
+                    {
+                        sc.add( "serializer.endTag( NAMESPACE, " + "\"" + fieldTagName + "\" );" );
+                    }
 
-                        if ( wrappedItems )
-                        {
-                            sc.add( "serializer.startTag( NAMESPACE, " + "\"" + fieldTagName + "\" );" );
-                        }
+                    sc.unindent();
+                    sc.add( "}" );
+                }
+            }
+        }
+        else
+        {
+            sc.add( getValueChecker( type, value, field ) );
 
-                        sc.add( "for ( Iterator iter = " + value + ".keySet().iterator(); iter.hasNext(); )" );
+            sc.add( "{" );
+            if ( "DOM".equals( field.getType() ) )
+            {
+                jClass.addImport( "org.codehaus.plexus.util.xml.Xpp3Dom" );
+
+                sc.addIndented( "((Xpp3Dom) " + value + ").writeToSerializer( NAMESPACE, serializer );" );
+            }
+            else
+            {
+                sc.addIndented( "serializer.startTag( NAMESPACE, " + "\"" + fieldTagName + "\" ).text( "
+                    + getValue( field.getType(), value, xmlFieldMetadata ) + " ).endTag( NAMESPACE, " + "\""
+                    + fieldTagName + "\" );" );
+            }
+            sc.add( "}" );
+        }
+    }
 
-                        sc.add( "{" );
-                        sc.indent();
+    /**
+     * Write the incremental writing API: <code>open()</code> methods returning a <code>StreamWriter</code>, which
+     * writes the items of the lists of the root element one by one then the rest of the document on
+     * <code>close()</code>. The elements of the root element are numbered in document order, the stream writer
+     * writes them up to the list being streamed with the <code>write&lt;Root&gt;Element</code> method.
+     */
+    private void writeStreamWriter( ModelClass rootClass, JClass jClass )
+        throws ModelloException
+    {
+        String root = rootClass.getName();
 
-                        sc.add( "String key = (String) iter.next();" );
+        String rootElementParameterName = uncapitalise( root );
 
-                        sc.add( "String value = (String) " + value + ".get( key );" );
+        String rootElement = resolveTagName( rootClass );
 
-                        if ( xmlAssociationMetadata.isMapExplode() )
-                        {
-                            sc.add( "serializer.startTag( NAMESPACE, \"" + singular( associationName ) + "\" );" );
-                            sc.add(
-                                "serializer.startTag( NAMESPACE, \"key\" ).text( key ).endTag( NAMESPACE, \"key\" );" );
-                            sc.add(
-                                "serializer.startTag( NAMESPACE, \"value\" ).text( value ).endTag( NAMESPACE, \"value\" );" );
-                            sc.add( "serializer.endTag( NAMESPACE, \"" + singular( associationName ) + "\" );" );
-                        }
-                        else
-                        {
-                            sc.add(
-                                "serializer.startTag( NAMESPACE, \"\" + key + \"\" ).text( value ).endTag( NAMESPACE, \"\" + key + \"\" );" );
-                        }
+        String writerName = jClass.getName( true );
 
-                        sc.unindent();
-                        sc.add( "}" );
+        List<ModelField> elementFields = new ArrayList<ModelField>();
 
-                        if ( wrappedItems )
-                        {
-                            sc.add( "serializer.endTag( NAMESPACE, " + "\"" + fieldTagName + "\" );" );
-                        }
+        for ( ModelField field : getFieldsForXml( rootClass, getGeneratedVersion() ) )
+        {
+            XmlFieldMetadata xmlFieldMetadata = (XmlFieldMetadata) field.getMetadata( XmlFieldMetadata.ID );
 
-                        sc.unindent();
-                        sc.add( "}" );
-                    }
-                }
+            if ( !xmlFieldMetadata.isContent() && !xmlFieldMetadata.isAttribute() )
+            {
+                elementFields.add( field );
+            }
+        }
+
+        // ----------------------------------------------------------------------
+        // open( Writer, Model ) and open( OutputStream, Model )
+        // ----------------------------------------------------------------------
+
+        for ( int i = 0; i < 2; i++ )
+        {
+            boolean stream = i > 0;
+
+            JMethod method = new JMethod( "open", new JClass( "StreamWriter" ), "a stream writer to write the items "
+                + "of the lists, then to close the document" );
+            if ( stream )
+            {
+                method.addParameter( new JParameter( new JClass( "OutputStream" ), "stream" ) );
             }
             else
             {
-                sc.add( getValueChecker( type, value, field ) );
+                method.addParameter( new JParameter( new JClass( "Writer" ), "writer" ) );
+            }
+            method.addParameter( new JParameter( new JClass( root ), rootElementParameterName ) );
+            method.addException( new JClass( "java.io.IOException" ) );
+            method.setComment( "Starts writing a document incrementally from <code>" + rootElementParameterName
+                + "</code>: the items streamed\nin one of its lists are written after the items this list contains." );
 
-                sc.add( "{" );
-                if ( "DOM".equals( field.getType() ) )
-                {
-                    jClass.addImport( "org.codehaus.plexus.util.xml.Xpp3Dom" );
+            JSourceCode sc = method.getSourceCode();
 
-                    sc.addIndented( "((Xpp3Dom) " + value + ").writeToSerializer( NAMESPACE, serializer );" );
-                }
-                else
-                {
-                    sc.addIndented( "serializer.startTag( NAMESPACE, " + "\"" + fieldTagName + "\" ).text( "
-                        + getValue( field.getType(), value, xmlFieldMetadata ) + " ).endTag( NAMESPACE, " + "\""
-                        + fieldTagName + "\" );" );
-                }
-                sc.add( "}" );
+            writeSerializerCreation( sc, rootElementParameterName, stream );
+
+            sc.add( "serializer.startDocument( " + rootElementParameterName + ".getModelEncoding(), null );" );
+
+            sc.add( "return new StreamWriter( " + rootElementParameterName + ", serializer );" );
+
+            jClass.addMethod( method );
+        }
+
+        // ----------------------------------------------------------------------
+        // write<Root>Element( <Root>, int, XmlSerializer )
+        // ----------------------------------------------------------------------
+
+        JMethod method = new JMethod( "write" + root + "Element" );
+        method.addParameter( new JParameter( new JClass( root ), rootElementParameterName ) );
+        method.addParameter( new JParameter( JType.INT, "index" ) );
+        method.addParameter( new JParameter( new JClass( "XmlSerializer" ), "serializer" ) );
+        method.addException( new JClass( "java.io.IOException" ) );
+        method.getModifiers().makePrivate();
+
+        JSourceCode sc = method.getSourceCode();
+
+        sc.add( "switch ( index )" );
+        sc.add( "{" );
+        sc.indent();
+
+        for ( int i = 0; i < elementFields.size(); i++ )
+        {
+            sc.add( "case " + i + ":" );
+            sc.add( "{" );
+            sc.indent();
+            writeElementField( rootClass, elementFields.get( i ), sc, jClass );
+            sc.add( "break;" );
+            sc.unindent();
+            sc.add( "}" );
+        }
+
+        sc.unindent();
+        sc.add( "}" );
+
+        jClass.addMethod( method );
+
+        // ----------------------------------------------------------------------
+        // StreamWriter
+        // ----------------------------------------------------------------------
+
+        JClass streamClass = jClass.createInnerClass( "StreamWriter" );
+        streamClass.getJDocComment().setComment( "Writer of a document started by <code>open()</code>, streaming the "
+            + "items of the lists of the root element\nwithout keeping them, and ending the document on "
+            + "<code>close()</code>. Lists must be written in document order." );
+
+        JField field = new JField( new JClass( root ), rootElementParameterName );
+        field.getModifiers().setFinal( true );
+        streamClass.addField( field );
+
+        field = new JField( new JClass( "XmlSerializer" ), "serializer" );
+        field.getModifiers().setFinal( true );
+        streamClass.addField( field );
+
+        field = new JField( JType.INT, "position" );
+        field.setComment( "The index of the next element of the root element to write, or of the list being "
+            + "streamed." );
+        streamClass.addField( field );
+
+        field = new JField( JType.BOOLEAN, "streaming" );
+        field.setComment( "Whether the items of the list at <code>position</code> are being streamed." );
+        streamClass.addField( field );
+
+        field = new JField( new JClass( "String" ), "wrapperTag" );
+        field.setComment( "The tag wrapping the items being streamed, if any." );
+        streamClass.addField( field );
+
+        JConstructor constructor = streamClass.createConstructor();
+        constructor.getModifiers().makePrivate();
+        constructor.addParameter( new JParameter( new JClass( root ), rootElementParameterName ) );
+        constructor.addParameter( new JParameter( new JClass( "XmlSerializer" ), "serializer" ) );
+        constructor.addException( new JClass( "java.io.IOException" ) );
+        sc = constructor.getSourceCode();
+        sc.add( "this." + rootElementParameterName + " = " + rootElementParameterName + ";" );
+        sc.add( "this.serializer = serializer;" );
+        sc.add( "String tagName = \"" + rootElement + "\";" );
+        writeStartTag( rootClass, sc );
+
+        for ( int i = 0; i < elementFields.size(); i++ )
+        {
+            if ( !( elementFields.get( i ) instanceof ModelAssociation ) )
+            {
+                continue;
+            }
+
+            ModelAssociation association = (ModelAssociation) elementFields.get( i );
+
+            if ( !association.isManyMultiplicity() || !( ModelDefault.LIST.equals( association.getType() )
+                || ModelDefault.SET.equals( association.getType() ) ) )
+            {
+                continue;
             }
+
+            XmlFieldMetadata xmlFieldMetadata = (XmlFieldMetadata) association.getMetadata( XmlFieldMetadata.ID );
+
+            XmlAssociationMetadata xmlAssociationMetadata =
+                (XmlAssociationMetadata) association.getAssociationMetadata( XmlAssociationMetadata.ID );
+
+            JavaFieldMetadata javaFieldMetadata = (JavaFieldMetadata) association.getMetadata( JavaFieldMetadata.ID );
+
+            String fieldTagName = resolveTagName( association, xmlFieldMetadata );
+
+            String valuesTagName = resolveTagName( fieldTagName, xmlAssociationMetadata );
+
+            String value = rootElementParameterName + "." + getPrefix( javaFieldMetadata )
+                + capitalise( association.getName() ) + "()";
+
+            String toType = association.getTo();
+
+            String itemName = singular( uncapitalise( association.getName() ) );
+
+            method = new JMethod( "write" + capitalise( itemName ) );
+            method.addParameter( new JParameter( new JClass( toType ), itemName ) );
+            method.addException( new JClass( "java.io.IOException" ) );
+            method.setComment( "Writes an item of the <code>" + fieldTagName + "</code> list, after the items "
+                + "already in the list of\n<code>" + rootElementParameterName + "</code>." );
+
+            sc = method.getSourceCode();
+            sc.add( "if ( !streaming || position != " + i + " )" );
+            sc.add( "{" );
+            sc.indent();
+            sc.add( "moveTo( " + i + ", \"" + fieldTagName + "\" );" );
+            if ( xmlAssociationMetadata.isWrappedItems() )
+            {
+                sc.add( "serializer.startTag( NAMESPACE, \"" + fieldTagName + "\" );" );
+                sc.add( "wrapperTag = \"" + fieldTagName + "\";" );
+            }
+            else
+            {
+                sc.add( "wrapperTag = null;" );
+            }
+            sc.add( "if ( " + value + " != null )" );
+            sc.add( "{" );
+            sc.indent();
+            sc.add( "for ( Iterator iter = " + value + ".iterator(); iter.hasNext(); )" );
+            sc.add( "{" );
+            sc.indent();
+            writeStreamedItem( sc, writerName, toType, "(" + toType + ") iter.next()", valuesTagName,
+                               isClassInModel( toType, rootClass.getModel() ) );
+            sc.unindent();
+            sc.add( "}" );
+            sc.unindent();
+            sc.add( "}" );
+            sc.add( "streaming = true;" );
+            sc.unindent();
+            sc.add( "}" );
+            writeStreamedItem( sc, writerName, toType, itemName, valuesTagName,
+                               isClassInModel( toType, rootClass.getModel() ) );
+
+            streamClass.addMethod( method );
         }
 
-        sc.add( "serializer.endTag( NAMESPACE, tagName );" );
+        method = new JMethod( "flush" );
+        method.addException( new JClass( "java.io.IOException" ) );
+        method.setComment( "Flushes the document written so far." );
+        method.setSourceCode( "serializer.flush();" );
+        streamClass.addMethod( method );
+
+        method = new JMethod( "close" );
+        method.addException( new JClass( "java.io.IOException" ) );
+        method.setComment( "Writes the end of the document: the underlying writer or stream is not closed." );
+        sc = method.getSourceCode();
+        sc.add( "moveTo( " + elementFields.size() + ", null );" );
+        sc.add( "serializer.endTag( NAMESPACE, \"" + rootElement + "\" );" );
+        sc.add( "serializer.endDocument();" );
+        streamClass.addMethod( method );
+
+        method = new JMethod( "moveTo" );
+        method.getModifiers().makePrivate();
+        method.addParameter( new JParameter( JType.INT, "index" ) );
+        method.addParameter( new JParameter( new JClass( "String" ), "tagName" ) );
+        method.addException( new JClass( "java.io.IOException" ) );
+        method.setComment( "Ends the list being streamed and writes the elements of the root element preceding the "
+            + "given one." );
+        sc = method.getSourceCode();
+        sc.add( "if ( streaming )" );
+        sc.add( "{" );
+        sc.indent();
+        sc.add( "if ( wrapperTag != null )" );
+        sc.add( "{" );
+        sc.addIndented( "serializer.endTag( NAMESPACE, wrapperTag );" );
+        sc.add( "}" );
+        sc.add( "streaming = false;" );
+        sc.add( "position++;" );
+        sc.unindent();
+        sc.add( "}" );
+        sc.add( "if ( index < position )" );
+        sc.add( "{" );
+        sc.addIndented( "throw new IllegalStateException( \"'\" + tagName + \"' element already written\" );" );
+        sc.add( "}" );
+        sc.add( "for ( ; position < index; position++ )" );
+        sc.add( "{" );
+        sc.addIndented( "write" + root + "Element( " + rootElementParameterName + ", position, serializer );" );
+        sc.add( "}" );
+        streamClass.addMethod( method );
+    }
 
-        jClass.addMethod( marshall );
+    private void writeStreamedItem( JSourceCode sc, String writerName, String toType, String item,
+                                    String valuesTagName, boolean modelClass )
+    {
+        if ( modelClass )
+        {
+            // the write<Class> method of the writer is hidden by the one of the stream writer
+            sc.add( writerName + ".this.write" + toType + "( " + item + ", \"" + valuesTagName
+                + "\", serializer );" );
+        }
+        else
+        {
+            sc.add( "serializer.startTag( NAMESPACE, \"" + valuesTagName + "\" ).text( " + item
+                + " ).endTag( NAMESPACE, \"" + valuesTagName + "\" );" );
+        }
+    }
+
+    /**
+     * Write the <code>Utf8Serializer</code> used by the buffered UTF-8 mode: an <code>XmlSerializer</code> encoding
+     * the document straight into a reused byte buffer, with the tag names encoded once, and writing the buffer to the
+     * stream when it is full. Its output is the same as the output of the <code>MXSerializer</code>.
+     */
+    private void writeUtf8Serializer( JClass jClass )
+    {
+        JClass serializerClass = jClass.createInnerClass( "Utf8Serializer" );
+        serializerClass.getModifiers().setStatic( true );
+        serializerClass.getModifiers().makePrivate();
+        serializerClass.addInterface( "XmlSerializer" );
+        serializerClass.getJDocComment().setComment( "Serializer encoding UTF-8 documents in a reused buffer, "
+            + ( compactOutput ? "without indentation" : "indented" ) + " like <code>MXSerializer</code>." );
+
+        JField field = new JField( new JArrayType( JType.BYTE, useJava5 ), "buf" );
+        field.getModifiers().setFinal( true );
+        field.setInitString( "new byte[16384]" );
+        serializerClass.addField( field );
+
+        serializerClass.addField( new JField( JType.INT, "count" ) );
+
+        serializerClass.addField( new JField( new JClass( "OutputStream" ), "out" ) );
+
+        field = new JField( new JClass( "java.util.Map" ), "MODEL_NAMES" );
+        field.setComment( "The encoded tag and attribute names of the model." );
+        field.getModifiers().setStatic( true );
+        field.getModifiers().setFinal( true );
+        field.setInitString( "new java.util.HashMap()" );
+        serializerClass.addField( field );
+
+        field = new JField( new JArrayType( JType.BOOLEAN, useJava5 ), "TEXT_ESCAPES" );
+        field.setComment( "The ASCII characters escaped in texts." );
+        field.getModifiers().setStatic( true );
+        field.getModifiers().setFinal( true );
+        field.setInitString( "new boolean[0x80]" );
+        serializerClass.addField( field );
+
+        field = new JField( new JArrayType( JType.BOOLEAN, useJava5 ), "ATTRIBUTE_ESCAPES" );
+        field.setComment( "The ASCII characters escaped in attribute values." );
+        field.getModifiers().setStatic( true );
+        field.getModifiers().setFinal( true );
+        field.setInitString( "new boolean[0x80]" );
+        serializerClass.addField( field );
+
+        JSourceCode sc = serializerClass.getStaticInitializationCode();
+        sc.add( "String[] names = {" );
+        sc.indent();
+        for ( String name : names )
+        {
+            sc.add( "\"" + name + "\"," );
+        }
+        sc.unindent();
+        sc.add( "};" );
+        sc.add( "for ( int i = 0; i < names.length; i++ )" );
+        sc.add( "{" );
+        sc.addIndented( "MODEL_NAMES.put( names[i], new EncodedName( names[i] ) );" );
+        sc.add( "}" );
+        sc.add( "" );
+        sc.add( "for ( int c = 0; c < 0x20; c++ )" );
+        sc.add( "{" );
+        sc.indent();
+        sc.add( "TEXT_ESCAPES[c] = ( c != '\\t' && c != '\\n' && c != '\\r' );" );
+        sc.add( "ATTRIBUTE_ESCAPES[c] = true;" );
+        sc.unindent();
+        sc.add( "}" );
+        sc.add( "TEXT_ESCAPES['&'] = ATTRIBUTE_ESCAPES['&'] = true;" );
+        sc.add( "TEXT_ESCAPES['<'] = ATTRIBUTE_ESCAPES['<'] = true;" );
+        sc.add( "TEXT_ESCAPES['>'] = true;" );
+        sc.add( "ATTRIBUTE_ESCAPES['\"'] = true;" );
+
+        field = new JField( new JClass( "java.util.Map" ), "names" );
+        field.setComment( "The encoded names that are not in the model, like the keys of properties." );
+        field.getModifiers().setFinal( true );
+        field.setInitString( "new java.util.HashMap()" );
+        serializerClass.addField( field );
+
+        serializerClass.addField( new JField( JType.INT, "depth" ) );
+
+        serializerClass.addField( new JField( JType.BOOLEAN, "startTagIncomplete" ) );
+
+        if ( !compactOutput )
+        {
+            serializerClass.addField( new JField( JType.BOOLEAN, "seenTag" ) );
+        }
+
+        field = new JField( new JArrayType( new JClass( "String" ), useJava5 ), "prefixes" );
+        field.setInitString( "new String[4]" );
+        serializerClass.addField( field );
+
+        field = new JField( new JArrayType( new JClass( "String" ), useJava5 ), "namespaces" );
+        field.setInitString( "new String[4]" );
+        serializerClass.addField( field );
+
+        serializerClass.addField( new JField( JType.INT, "namespaceCount" ) );
+
+        // --------------------------------------------------------------------
+        // XmlSerializer
+        // --------------------------------------------------------------------
+
+        JMethod method = new JMethod( "setFeature" );
+        method.addParameter( new JParameter( new JClass( "String" ), "name" ) );
+        method.addParameter( new JParameter( JType.BOOLEAN, "state" ) );
+        method.setSourceCode( "throw new IllegalArgumentException( \"unsupported feature \" + name );" );
+        serializerClass.addMethod( method );
+
+        method = new JMethod( "getFeature", JType.BOOLEAN, null );
+        method.addParameter( new JParameter( new JClass( "String" ), "name" ) );
+        method.setSourceCode( "return false;" );
+        serializerClass.addMethod( method );
+
+        method = new JMethod( "setProperty" );
+        method.addParameter( new JParameter( new JClass( "String" ), "name" ) );
+        method.addParameter( new JParameter( new JClass( "Object" ), "value" ) );
+        method.setSourceCode( "throw new IllegalArgumentException( \"unsupported property \" + name );" );
+        serializerClass.addMethod( method );
+
+        method = new JMethod( "getProperty", new JClass( "Object" ), null );
+        method.addParameter( new JParameter( new JClass( "String" ), "name" ) );
+        method.setSourceCode( "return null;" );
+        serializerClass.addMethod( method );
+
+        method = new JMethod( "setOutput" );
+        method.addParameter( new JParameter( new JClass( "OutputStream" ), "out" ) );
+        method.addParameter( new JParameter( new JClass( "String" ), "encoding" ) );
+        sc = method.getSourceCode();
+        sc.add( "this.out = out;" );
+        sc.add( "count = 0;" );
+        sc.add( "depth = 0;" );
+        sc.add( "startTagIncomplete = false;" );
+        addIndentation( sc, "seenTag = false;" );
+        sc.add( "namespaceCount = 0;" );
+        serializerClass.addMethod( method );
+
+        method = new JMethod( "setOutput" );
+        method.addParameter( new JParameter( new JClass( "Writer" ), "writer" ) );
+        method.setSourceCode( "throw new IllegalArgumentException( \"only output streams are supported\" );" );
+        serializerClass.addMethod( method );
+
+        method = new JMethod( "startDocument" );
+        method.addParameter( new JParameter( new JClass( "String" ), "encoding" ) );
+        method.addParameter( new JParameter( new JClass( "Boolean" ), "standalone" ) );
+        method.addException( new JClass( "java.io.IOException" ) );
+        sc = method.getSourceCode();
+        sc.add( "write( \"<?xml version=\\\"1.0\\\"\", false, false );" );
+        sc.add( "if ( encoding != null )" );
+        sc.add( "{" );
+        sc.addIndented( "write( \" encoding=\\\"\" + encoding + '\"', false, false );" );
+        sc.add( "}" );
+        sc.add( "if ( standalone != null )" );
+        sc.add( "{" );
+        sc.addIndented( "write( standalone.booleanValue() ? \" standalone=\\\"yes\\\"\" : \" standalone=\\\"no\\\"\", "
+            + "false, false );" );
+        sc.add( "}" );
+        sc.add( compactOutput ? "write( \"?>\", false, false );" : "write( \"?>\\n\", false, false );" );
+        serializerClass.addMethod( method );
+
+        method = new JMethod( "endDocument" );
+        method.addException( new JClass( "java.io.IOException" ) );
+        sc = method.getSourceCode();
+        addIndentation( sc, "write( \"\\n\", false, false );" );
+        sc.add( "flush();" );
+        sc.add( "out = null;" );
+        serializerClass.addMethod( method );
+
+        method = new JMethod( "setPrefix" );
+        method.addParameter( new JParameter( new JClass( "String" ), "prefix" ) );
+        method.addParameter( new JParameter( new JClass( "String" ), "namespace" ) );
+        sc = method.getSourceCode();
+        sc.add( "if ( namespaceCount == prefixes.length )" );
+        sc.add( "{" );
+        sc.indent();
+        sc.add( "String[] newPrefixes = new String[namespaceCount * 2];" );
+        sc.add( "String[] newNamespaces = new String[namespaceCount * 2];" );
+        sc.add( "System.arraycopy( prefixes, 0, newPrefixes, 0, namespaceCount );" );
+        sc.add( "System.arraycopy( namespaces, 0, newNamespaces, 0, namespaceCount );" );
+        sc.add( "prefixes = newPrefixes;" );
+        sc.add( "namespaces = newNamespaces;" );
+        sc.unindent();
+        sc.add( "}" );
+        sc.add( "prefixes[namespaceCount] = prefix;" );
+        sc.add( "namespaces[namespaceCount++] = namespace;" );
+        serializerClass.addMethod( method );
+
+        method = new JMethod( "getPrefix", new JClass( "String" ), null );
+        method.addParameter( new JParameter( new JClass( "String" ), "namespace" ) );
+        method.addParameter( new JParameter( JType.BOOLEAN, "generatePrefix" ) );
+        method.setSourceCode( "return null;" );
+        serializerClass.addMethod( method );
+
+        method = new JMethod( "getDepth", JType.INT, null );
+        method.setSourceCode( "return depth;" );
+        serializerClass.addMethod( method );
+
+        method = new JMethod( "getNamespace", new JClass( "String" ), null );
+        method.setSourceCode( "return null;" );
+        serializerClass.addMethod( method );
+
+        method = new JMethod( "getName", new JClass( "String" ), null );
+        method.setSourceCode( "return null;" );
+        serializerClass.addMethod( method );
+
+        method = new JMethod( "startTag", new JClass( "XmlSerializer" ), null );
+        method.addParameter( new JParameter( new JClass( "String" ), "namespace" ) );
+        method.addParameter( new JParameter( new JClass( "String" ), "name" ) );
+        method.addException( new JClass( "java.io.IOException" ) );
+        sc = method.getSourceCode();
+        sc.add( "if ( startTagIncomplete )" );
+        sc.add( "{" );
+        sc.addIndented( "closeStartTag();" );
+        sc.add( "}" );
+        if ( !compactOutput )
+        {
+            sc.add( "if ( depth > 0 && seenTag )" );
+            sc.add( "{" );
+            sc.addIndented( "writeIndent( depth );" );
+            sc.add( "}" );
+            sc.add( "seenTag = true;" );
+        }
+        sc.add( "startTagIncomplete = true;" );
+        sc.add( "depth++;" );
+        sc.add( "write( getEncodedName( name ).startTag );" );
+        sc.add( "return this;" );
+        serializerClass.addMethod( method );
+
+        method = new JMethod( "attribute", new JClass( "XmlSerializer" ), null );
+        method.addParameter( new JParameter( new JClass( "String" ), "namespace" ) );
+        method.addParameter( new JParameter( new JClass( "String" ), "name" ) );
+        method.addParameter( new JParameter( new JClass( "String" ), "value" ) );
+        method.addException( new JClass( "java.io.IOException" ) );
+        sc = method.getSourceCode();
+        sc.add( "if ( !startTagIncomplete )" );
+        sc.add( "{" );
+        sc.addIndented( "throw new IllegalStateException( \"startTag() must be called before attribute()\" );" );
+        sc.add( "}" );
+        sc.add( "write( getEncodedName( name ).attribute );" );
+        sc.add( "write( value, true, true );" );
+        sc.add( "writeByte( '\"' );" );
+        sc.add( "return this;" );
+        serializerClass.addMethod( method );
+
+        method = new JMethod( "endTag", new JClass( "XmlSerializer" ), null );
+        method.addParameter( new JParameter( new JClass( "String" ), "namespace" ) );
+        method.addParameter( new JParameter( new JClass( "String" ), "name" ) );
+        method.addException( new JClass( "java.io.IOException" ) );
+        sc = method.getSourceCode();
+        sc.add( "if ( startTagIncomplete )" );
+        sc.add( "{" );
+        sc.indent();
+        sc.add( "writeNamespaces();" );
+        sc.add( "write( \" />\", false, false );" );
+        sc.add( "startTagIncomplete = false;" );
+        sc.add( "depth--;" );
+        sc.unindent();
+        sc.add( "}" );
+        sc.add( "else" );
+        sc.add( "{" );
+        sc.indent();
+        sc.add( "depth--;" );
+        if ( !compactOutput )
+        {
+            sc.add( "if ( seenTag )" );
+            sc.add( "{" );
+            sc.addIndented( "writeIndent( depth );" );
+            sc.add( "}" );
+        }
+        sc.add( "write( getEncodedName( name ).endTag );" );
+        sc.unindent();
+        sc.add( "}" );
+        addIndentation( sc, "seenTag = true;" );
+        sc.add( "return this;" );
+        serializerClass.addMethod( method );
+
+        method = new JMethod( "text", new JClass( "XmlSerializer" ), null );
+        method.addParameter( new JParameter( new JClass( "String" ), "text" ) );
+        method.addException( new JClass( "java.io.IOException" ) );
+        sc = method.getSourceCode();
+        sc.add( "if ( startTagIncomplete )" );
+        sc.add( "{" );
+        sc.addIndented( "closeStartTag();" );
+        sc.add( "}" );
+        addIndentation( sc, "seenTag = false;" );
+        sc.add( "write( text, true, false );" );
+        sc.add( "return this;" );
+        serializerClass.addMethod( method );
+
+        method = new JMethod( "text", new JClass( "XmlSerializer" ), null );
+        method.addParameter( new JParameter( new JArrayType( JType.CHAR, useJava5 ), "buf" ) );
+        method.addParameter( new JParameter( JType.INT, "start" ) );
+        method.addParameter( new JParameter( JType.INT, "len" ) );
+        method.addException( new JClass( "java.io.IOException" ) );
+        method.setSourceCode( "return text( new String( buf, start, len ) );" );
+        serializerClass.addMethod( method );
+
+        writeUtf8SerializerMarkup( serializerClass, "cdsect", "<![CDATA[", "]]>" );
+        writeUtf8SerializerMarkup( serializerClass, "entityRef", "&", ";" );
+        writeUtf8SerializerMarkup( serializerClass, "processingInstruction", "<?", "?>" );
+        writeUtf8SerializerMarkup( serializerClass, "comment", "<!--", "-->" );
+        writeUtf8SerializerMarkup( serializerClass, "docdecl", "<!DOCTYPE", ">" );
+        writeUtf8SerializerMarkup( serializerClass, "ignorableWhitespace", "", "" );
+
+        method = new JMethod( "flush" );
+        method.addException( new JClass( "java.io.IOException" ) );
+        sc = method.getSourceCode();
+        sc.add( "out.write( buf, 0, count );" );
+        sc.add( "count = 0;" );
+        sc.add( "out.flush();" );
+        serializerClass.addMethod( method );
+
+        // --------------------------------------------------------------------
+        // encoding
+        // --------------------------------------------------------------------
+
+        method = new JMethod( "closeStartTag" );
+        method.getModifiers().makePrivate();
+        method.addException( new JClass( "java.io.IOException" ) );
+        sc = method.getSourceCode();
+        sc.add( "writeNamespaces();" );
+        sc.add( "writeByte( '>' );" );
+        sc.add( "startTagIncomplete = false;" );
+        serializerClass.addMethod( method );
+
+        method = new JMethod( "writeNamespaces" );
+        method.getModifiers().makePrivate();
+        if ( compactOutput )
+        {
+            method.setComment( "Writes the namespaces declared by <code>setPrefix</code>." );
+        }
+        else
+        {
+            method.setComment( "Writes the namespaces declared by <code>setPrefix</code>, on a new line when they "
+                + "are long." );
+        }
+        method.addException( new JClass( "java.io.IOException" ) );
+        sc = method.getSourceCode();
+        sc.add( "for ( int i = 0; i < namespaceCount; i++ )" );
+        sc.add( "{" );
+        sc.indent();
+        if ( compactOutput )
+        {
+            sc.add( "write( \" xmlns\", false, false );" );
+        }
+        else
+        {
+            sc.add( "if ( namespaces[i].length() > 40 )" );
+            sc.add( "{" );
+            sc.indent();
+            sc.add( "writeIndent( depth + 1 );" );
+            sc.add( "write( \"xmlns\", false, false );" );
+            sc.unindent();
+            sc.add( "}" );
+            sc.add( "else" );
+            sc.add( "{" );
+            sc.addIndented( "write( \" xmlns\", false, false );" );
+            sc.add( "}" );
+        }
+        sc.add( "if ( prefixes[i].length() > 0 )" );
+        sc.add( "{" );
+        sc.indent();
+        sc.add( "writeByte( ':' );" );
+        sc.add( "write( prefixes[i], false, false );" );
+        sc.unindent();
+        sc.add( "}" );
+        sc.add( "write( \"=\\\"\", false, false );" );
+        sc.add( "write( namespaces[i], true, true );" );
+        sc.add( "writeByte( '\"' );" );
+        sc.unindent();
+        sc.add( "}" );
+        sc.add( "namespaceCount = 0;" );
+        serializerClass.addMethod( method );
+
+        if ( !compactOutput )
+        {
+            method = new JMethod( "writeIndent" );
+            method.getModifiers().makePrivate();
+            method.addParameter( new JParameter( JType.INT, "level" ) );
+            method.addException( new JClass( "java.io.IOException" ) );
+            sc = method.getSourceCode();
+            sc.add( "writeByte( '\\n' );" );
+            sc.add( "for ( int i = 0; i < level; i++ )" );
+            sc.add( "{" );
+            sc.indent();
+            sc.add( "writeByte( ' ' );" );
+            sc.add( "writeByte( ' ' );" );
+            sc.unindent();
+            sc.add( "}" );
+            serializerClass.addMethod( method );
+        }
+
+        method = new JMethod( "writeByte" );
+        method.getModifiers().makePrivate();
+        method.addParameter( new JParameter( JType.INT, "b" ) );
+        method.addException( new JClass( "java.io.IOException" ) );
+        sc = method.getSourceCode();
+        sc.add( "if ( count == buf.length )" );
+        sc.add( "{" );
+        sc.indent();
+        sc.add( "out.write( buf, 0, count );" );
+        sc.add( "count = 0;" );
+        sc.unindent();
+        sc.add( "}" );
+        sc.add( "buf[count++] = (byte) b;" );
+        serializerClass.addMethod( method );
+
+        method = new JMethod( "getEncodedName", new JClass( "EncodedName" ), null );
+        method.getModifiers().makePrivate();
+        method.setComment( "Returns the encoded form of a tag or attribute name: the names of the model are encoded "
+            + "once for all,\nthe few others are kept until they fill the map." );
+        method.addParameter( new JParameter( new JClass( "String" ), "name" ) );
+        sc = method.getSourceCode();
+        sc.add( "EncodedName encodedName = (EncodedName) MODEL_NAMES.get( name );" );
+        sc.add( "if ( encodedName == null )" );
+        sc.add( "{" );
+        sc.indent();
+        sc.add( "encodedName = (EncodedName) names.get( name );" );
+        sc.add( "if ( encodedName == null )" );
+        sc.add( "{" );
+        sc.indent();
+        sc.add( "encodedName = new EncodedName( name );" );
+        sc.add( "if ( names.size() < 1024 )" );
+        sc.add( "{" );
+        sc.addIndented( "names.put( name, encodedName );" );
+        sc.add( "}" );
+        sc.unindent();
+        sc.add( "}" );
+        sc.unindent();
+        sc.add( "}" );
+        sc.add( "return encodedName;" );
+        serializerClass.addMethod( method );
+
+        method = new JMethod( "write" );
+        method.getModifiers().makePrivate();
+        method.addParameter( new JParameter( new JArrayType( JType.BYTE, useJava5 ), "bytes" ) );
+        method.addException( new JClass( "java.io.IOException" ) );
+        sc = method.getSourceCode();
+        sc.add( "if ( count + bytes.length > buf.length )" );
+        sc.add( "{" );
+        sc.indent();
+        sc.add( "out.write( buf, 0, count );" );
+        sc.add( "count = 0;" );
+        sc.add( "if ( bytes.length > buf.length )" );
+        sc.add( "{" );
+        sc.indent();
+        sc.add( "out.write( bytes );" );
+        sc.add( "return;" );
+        sc.unindent();
+        sc.add( "}" );
+        sc.unindent();
+        sc.add( "}" );
+        sc.add( "System.arraycopy( bytes, 0, buf, count, bytes.length );" );
+        sc.add( "count += bytes.length;" );
+        serializerClass.addMethod( method );
+
+        method = new JMethod( "write" );
+        method.getModifiers().makePrivate();
+        method.setComment( "Encodes a string in UTF-8, escaping the markup characters of a text or of an attribute "
+            + "value\nlike <code>MXSerializer</code>. The runs of ASCII characters without escape are copied in a "
+            + "tight loop." );
+        method.addParameter( new JParameter( new JClass( "String" ), "s" ) );
+        method.addParameter( new JParameter( JType.BOOLEAN, "escape" ) );
+        method.addParameter( new JParameter( JType.BOOLEAN, "attribute" ) );
+        method.addException( new JClass( "java.io.IOException" ) );
+        sc = method.getSourceCode();
+        sc.add( "boolean[] escapes = !escape ? null : ( attribute ? ATTRIBUTE_ESCAPES : TEXT_ESCAPES );" );
+        sc.add( "int length = s.length();" );
+        sc.add( "int i = 0;" );
+        sc.add( "while ( i < length )" );
+        sc.add( "{" );
+        sc.indent();
+        sc.add( "int start = i;" );
+        sc.add( "char c = 0;" );
+        sc.add( "while ( i < length && ( c = s.charAt( i ) ) < 0x80 && ( escapes == null || !escapes[c] ) )" );
+        sc.add( "{" );
+        sc.addIndented( "i++;" );
+        sc.add( "}" );
+        sc.add( "while ( start < i )" );
+        sc.add( "{" );
+        sc.indent();
+        sc.add( "if ( count == buf.length )" );
+        sc.add( "{" );
+        sc.indent();
+        sc.add( "out.write( buf, 0, count );" );
+        sc.add( "count = 0;" );
+        sc.unindent();
+        sc.add( "}" );
+        sc.add( "int end = start + Math.min( i - start, buf.length - count );" );
+        sc.add( "while ( start < end )" );
+        sc.add( "{" );
+        sc.addIndented( "buf[count++] = (byte) s.charAt( start++ );" );
+        sc.add( "}" );
+        sc.unindent();
+        sc.add( "}" );
+        sc.add( "if ( i == length )" );
+        sc.add( "{" );
+        sc.addIndented( "break;" );
+        sc.add( "}" );
+        sc.add( "" );
+        sc.add( "if ( count > buf.length - 8 )" );
+        sc.add( "{" );
+        sc.indent();
+        sc.add( "out.write( buf, 0, count );" );
+        sc.add( "count = 0;" );
+        sc.unindent();
+        sc.add( "}" );
+        sc.add( "if ( c < 0x80 )" );
+        sc.add( "{" );
+        sc.indent();
+        sc.add( "String entity = getEntity( s, i, attribute );" );
+        sc.add( "if ( entity == null )" );
+        sc.add( "{" );
+        sc.addIndented( "buf[count++] = (byte) c;" );
+        sc.add( "}" );
+        sc.add( "else" );
+        sc.add( "{" );
+        sc.indent();
+        sc.add( "for ( int j = 0; j < entity.length(); j++ )" );
+        sc.add( "{" );
+        sc.addIndented( "buf[count++] = (byte) entity.charAt( j );" );
+        sc.add( "}" );
+        sc.unindent();
+        sc.add( "}" );
+        sc.unindent();
+        sc.add( "}" );
+        sc.add( "else if ( c < 0x800 )" );
+        sc.add( "{" );
+        sc.indent();
+        sc.add( "buf[count++] = (byte) ( 0xC0 | ( c >> 6 ) );" );
+        sc.add( "buf[count++] = (byte) ( 0x80 | ( c & 0x3F ) );" );
+        sc.unindent();
+        sc.add( "}" );
+        sc.add( "else if ( c < 0xD800 || c > 0xDFFF )" );
+        sc.add( "{" );
+        sc.indent();
+        sc.add( "buf[count++] = (byte) ( 0xE0 | ( c >> 12 ) );" );
+        sc.add( "buf[count++] = (byte) ( 0x80 | ( ( c >> 6 ) & 0x3F ) );" );
+        sc.add( "buf[count++] = (byte) ( 0x80 | ( c & 0x3F ) );" );
+        sc.unindent();
+        sc.add( "}" );
+        sc.add( "else if ( c <= 0xDBFF && i + 1 < length && s.charAt( i + 1 ) >= 0xDC00 && s.charAt( i + 1 ) <= 0xDFFF )" );
+        sc.add( "{" );
+        sc.indent();
+        sc.add( "int codePoint = ( ( c - 0xD800 ) << 10 ) + ( s.charAt( ++i ) - 0xDC00 ) + 0x10000;" );
+        sc.add( "buf[count++] = (byte) ( 0xF0 | ( codePoint >> 18 ) );" );
+        sc.add( "buf[count++] = (byte) ( 0x80 | ( ( codePoint >> 12 ) & 0x3F ) );" );
+        sc.add( "buf[count++] = (byte) ( 0x80 | ( ( codePoint >> 6 ) & 0x3F ) );" );
+        sc.add( "buf[count++] = (byte) ( 0x80 | ( codePoint & 0x3F ) );" );
+        sc.unindent();
+        sc.add( "}" );
+        sc.add( "else" );
+        sc.add( "{" );
+        sc.indent();
+        sc.add( "// unpaired surrogate, replaced like the UTF-8 writer of MXSerializer does" );
+        sc.add( "buf[count++] = (byte) '?';" );
+        sc.unindent();
+        sc.add( "}" );
+        sc.add( "i++;" );
+        sc.unindent();
+        sc.add( "}" );
+        serializerClass.addMethod( method );
+
+        method = new JMethod( "getEntity", new JClass( "String" ), null );
+        method.getModifiers().makePrivate();
+        method.getModifiers().setStatic( true );
+        method.setComment( "Returns the escaped form of a special character, or <code>null</code> if it is written "
+            + "as is." );
+        method.addParameter( new JParameter( new JClass( "String" ), "s" ) );
+        method.addParameter( new JParameter( JType.INT, "i" ) );
+        method.addParameter( new JParameter( JType.BOOLEAN, "attribute" ) );
+        sc = method.getSourceCode();
+        sc.add( "char c = s.charAt( i );" );
+        sc.add( "switch ( c )" );
+        sc.add( "{" );
+        sc.indent();
+        sc.add( "case '&':" );
+        sc.addIndented( "return \"&amp;\";" );
+        sc.add( "case '<':" );
+        sc.addIndented( "return \"&lt;\";" );
+        sc.add( "case '>':" );
+        sc.addIndented( "return ( !attribute && i >= 2 && s.charAt( i - 1 ) == ']' && s.charAt( i - 2 ) == ']' ) "
+            + "? \"&gt;\" : null;" );
+        sc.add( "case '\"':" );
+        sc.addIndented( "return attribute ? \"&quot;\" : null;" );
+        sc.add( "case '\\t':" );
+        sc.addIndented( "return attribute ? \"&#9;\" : null;" );
+        sc.add( "case '\\n':" );
+        sc.addIndented( "return attribute ? \"&#10;\" : null;" );
+        sc.add( "case '\\r':" );
+        sc.addIndented( "return attribute ? \"&#13;\" : null;" );
+        sc.add( "default:" );
+        sc.addIndented( "throw new IllegalStateException( \"character \" + (int) c + \" is not allowed in output\" );" );
+        sc.unindent();
+        sc.add( "}" );
+        serializerClass.addMethod( method );
+
+        // --------------------------------------------------------------------
+
+        JClass nameClass = jClass.createInnerClass( "EncodedName" );
+        nameClass.getModifiers().setStatic( true );
+        nameClass.getModifiers().makePrivate();
+        nameClass.getJDocComment().setComment( "The start tag, end tag and attribute fragments of a name, encoded in "
+            + "UTF-8." );
+
+        String[][] fragments = { { "startTag", "<", "" }, { "endTag", "</", ">" }, { "attribute", " ", "=\\\"" } };
+
+        JConstructor constructor =
+            nameClass.createConstructor( new JParameter[] { new JParameter( new JClass( "String" ), "name" ) } );
+        sc = constructor.getSourceCode();
+        sc.add( "try" );
+        sc.add( "{" );
+        sc.indent();
+        for ( String[] fragment : fragments )
+        {
+            field = new JField( new JArrayType( JType.BYTE, useJava5 ), fragment[0] );
+            field.getModifiers().setFinal( true );
+            nameClass.addField( field );
+
+            String suffix = ( fragment[2].length() > 0 ) ? " + \"" + fragment[2] + "\"" : "";
+            sc.add( fragment[0] + " = ( \"" + fragment[1] + "\" + name" + suffix + " ).getBytes( \"UTF-8\" );" );
+        }
+        sc.unindent();
+        sc.add( "}" );
+        sc.add( "catch ( java.io.UnsupportedEncodingException e )" );
+        sc.add( "{" );
+        sc.addIndented( "throw new IllegalStateException( e.getMessage() );" );
+        sc.add( "}" );
+    }
+
+    /**
+     * Adds a statement of the <code>Utf8Serializer</code> only needed to indent the output.
+     */
+    private void addIndentation( JSourceCode sc, String statement )
+    {
+        if ( !compactOutput )
+        {
+            sc.add( statement );
+        }
+    }
+
+    private void writeUtf8SerializerMarkup( JClass serializerClass, String name, String start, String end )
+    {
+        JMethod method = new JMethod( name );
+        method.addParameter( new JParameter( new JClass( "String" ), "text" ) );
+        method.addException( new JClass( "java.io.IOException" ) );
+        JSourceCode sc = method.getSourceCode();
+        sc.add( "if ( startTagIncomplete )" );
+        sc.add( "{" );
+        sc.addIndented( "closeStartTag();" );
+        sc.add( "}" );
+        addIndentation( sc, "seenTag = false;" );
+        sc.add( "write( \"" + start + "\" + text + \"" + end + "\", false, false );" );
+        serializerClass.addMethod( method );
     }
 }
@@ -0,0 +1,75 @@
+package org.codehaus.modello.generator.xml.xpp3;
+
+/*
+ * Copyright (c) 2004, Codehaus.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import java.io.File;
+import java.util.Properties;
+
+import org.codehaus.modello.AbstractModelloJavaGeneratorTest;
+import org.codehaus.modello.core.ModelloCore;
+import org.codehaus.modello.model.Model;
+import org.codehaus.modello.model.Version;
+import org.codehaus.modello.plugin.java.metadata.JavaClassMetadata;
+import org.codehaus.plexus.util.FileUtils;
+
+/**
+ * The location tracking test, with locations stored in compact form.
+ *
+ * @version $Id$
+ */
+public class CompactLocationsSourceXpp3GeneratorTest
+    extends AbstractModelloJavaGeneratorTest
+{
+
+    public CompactLocationsSourceXpp3GeneratorTest()
+    {
+        super( "compact-locations+src" );
+    }
+
+    public void testCompactLocationsWithSource()
+        throws Throwable
+    {
+        ModelloCore modello = (ModelloCore) lookup( ModelloCore.ROLE );
+
+        Model model = modello.loadModel( getXmlResourceReader( "/locations+source.mdo" ) );
+
+        JavaClassMetadata locationMetadata =
+            (JavaClassMetadata) model.getClass( "Location", new Version( "1.0.0" ) ).getMetadata( JavaClassMetadata.ID );
+        locationMetadata.setCompactLocations( true );
+
+        Properties parameters = getModelloParameters( "1.0.0" );
+
+        modello.generate( model, "java", parameters );
+        modello.generate( model, "xpp3-reader", parameters );
+        modello.generate( model, "xpp3-extended-reader", parameters );
+
+        String modelSource =
+            FileUtils.fileRead( new File( getOutputDirectory(), "org/codehaus/modello/test/locationssrc/Model.java" ) );
+        assertTrue( modelSource.indexOf( "long[] locationPositions" ) >= 0 );
+
+        compileGeneratedSources( "locations+src" );
+
+        verifyCompiledGeneratedSources( "org.codehaus.modello.generator.xml.xpp3.Xpp3LocationsSourceVerifier" );
+    }
+
+}
@@ -0,0 +1,115 @@
+package org.codehaus.modello.generator.xml.xpp3;
+
+/*
+ * Copyright (c) 2004, Codehaus.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import java.io.StringReader;
+import java.util.Properties;
+
+import org.codehaus.modello.AbstractModelloJavaGeneratorTest;
+import org.codehaus.modello.core.ModelloCore;
+import org.codehaus.modello.model.Model;
+
+/**
+ * Generate a reader for a class with more element fields than the bits of a long: it tracks its parsed fields with a
+ * BitSet instead of a mask.
+ */
+public class WideXpp3GeneratorTest
+    extends AbstractModelloJavaGeneratorTest
+{
+    /** number of fields of the wide class */
+    private static final int FIELDS = 70;
+
+    public WideXpp3GeneratorTest()
+    {
+        super( "wide" );
+    }
+
+    public void testWideClass()
+        throws Throwable
+    {
+        ModelloCore modello = (ModelloCore) lookup( ModelloCore.ROLE );
+
+        Model model = modello.loadModel( new StringReader( createWideModel() ) );
+
+        Properties parameters = getModelloParameters( "1.0.0" );
+
+        modello.generate( model, "java", parameters );
+        modello.generate( model, "xpp3-reader", parameters );
+
+        compileGeneratedSources();
+
+        verifyCompiledGeneratedSources( "org.codehaus.modello.generator.xml.xpp3.Xpp3WideVerifier" );
+    }
+
+    private static String createWideModel()
+    {
+        StringBuffer buf = new StringBuffer();
+
+        buf.append( "<model>\n" );
+        buf.append( "  <id>wide</id>\n" );
+        buf.append( "  <name>Wide</name>\n" );
+        buf.append( "  <defaults>\n" );
+        buf.append( "    <default>\n" );
+        buf.append( "      <key>package</key>\n" );
+        buf.append( "      <value>org.codehaus.modello.generator.xml.xpp3.test.wide</value>\n" );
+        buf.append( "    </default>\n" );
+        buf.append( "  </defaults>\n" );
+        buf.append( "  <classes>\n" );
+        buf.append( "    <class rootElement=\"true\">\n" );
+        buf.append( "      <name>WideClass</name>\n" );
+        buf.append( "      <version>1.0.0+</version>\n" );
+        buf.append( "      <fields>\n" );
+        for ( int i = 0; i < FIELDS; i++ )
+        {
+            buf.append( "        <field>\n" );
+            buf.append( "          <name>field" ).append( i ).append( "</name>\n" );
+            buf.append( "          <version>1.0.0+</version>\n" );
+            buf.append( "          <type>String</type>\n" );
+            buf.append( "        </field>\n" );
+        }
+        buf.append( "        <field>\n" );
+        buf.append( "          <name>narrow</name>\n" );
+        buf.append( "          <version>1.0.0+</version>\n" );
+        buf.append( "          <association>\n" );
+        buf.append( "            <type>NarrowClass</type>\n" );
+        buf.append( "          </association>\n" );
+        buf.append( "        </field>\n" );
+        buf.append( "      </fields>\n" );
+        buf.append( "    </class>\n" );
+        buf.append( "    <class>\n" );
+        buf.append( "      <name>NarrowClass</name>\n" );
+        buf.append( "      <version>1.0.0+</version>\n" );
+        buf.append( "      <fields>\n" );
+        buf.append( "        <field>\n" );
+        buf.append( "          <name>name</name>\n" );
+        buf.append( "          <version>1.0.0+</version>\n" );
+        buf.append( "          <type>String</type>\n" );
+        buf.append( "        </field>\n" );
+        buf.append( "      </fields>\n" );
+        buf.append( "    </class>\n" );
+        buf.append( "  </classes>\n" );
+        buf.append( "</model>\n" );
+
+        return buf.toString();
+    }
+}
@@ -0,0 +1,109 @@
+package org.codehaus.modello.generator.xml.xpp3;
+
+/*
+ * Copyright (c) 2004, Codehaus.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import org.codehaus.modello.test.compact.CompactDocument;
+import org.codehaus.modello.test.compact.io.xpp3.CompactXpp3Reader;
+import org.codehaus.modello.test.compact.io.xpp3.CompactXpp3Writer;
+import org.codehaus.modello.test.features.Features;
+import org.codehaus.modello.test.features.io.xpp3.ModelloFeaturesTestXpp3Reader;
+import org.codehaus.modello.test.features.io.xpp3.ModelloFeaturesTestXpp3Writer;
+import org.codehaus.modello.verifier.AbstractCompactVerifier;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Reader;
+import java.io.StringWriter;
+
+/**
+ * Verifies the documents written in compact output mode by the Xpp3 writers.
+ *
+ * @version $Id$
+ */
+public class Xpp3CompactVerifier
+    extends AbstractCompactVerifier
+{
+    public void verify()
+        throws Throwable
+    {
+        super.verify();
+
+        verifyBufferedUtf8();
+    }
+
+    public void verifyBufferedUtf8()
+        throws Exception
+    {
+        Features features = new ModelloFeaturesTestXpp3Reader().read( getXmlResourceReader( "/features.xml" ) );
+
+        // no line break either after the XML declaration
+        String xml = writeFeatures( features );
+        assertTrue( xml, xml.startsWith( "<?xml " ) && xml.indexOf( "?><features-demo " ) > 0 );
+
+        // the buffered UTF-8 serializer does not indent either
+        features.setModelEncoding( "UTF-8" );
+
+        ModelloFeaturesTestXpp3Writer writer = new ModelloFeaturesTestXpp3Writer();
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        writer.write( expected, features );
+
+        writer.setBufferedUtf8( true );
+
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        writer.write( actual, features );
+
+        assertEquals( new String( expected.toByteArray(), "UTF-8" ), new String( actual.toByteArray(), "UTF-8" ) );
+    }
+
+    protected Object readFeatures( Reader reader )
+        throws Exception
+    {
+        return new ModelloFeaturesTestXpp3Reader().read( reader );
+    }
+
+    protected String writeFeatures( Object features )
+        throws Exception
+    {
+        StringWriter buffer = new StringWriter();
+
+        new ModelloFeaturesTestXpp3Writer().write( buffer, (Features) features );
+
+        return buffer.toString();
+    }
+
+    protected Object readDocument( Reader reader )
+        throws Exception
+    {
+        return new CompactXpp3Reader().read( reader );
+    }
+
+    protected String writeDocument( Object document )
+        throws Exception
+    {
+        StringWriter buffer = new StringWriter();
+
+        new CompactXpp3Writer().write( buffer, (CompactDocument) document );
+
+        return buffer.toString();
+    }
+}
@@ -35,6 +35,8 @@ import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
 import org.custommonkey.xmlunit.Diff;
 import org.custommonkey.xmlunit.XMLUnit;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
@@ -63,6 +65,8 @@ public class Xpp3FeaturesVerifier
 
         verifyWriter( features );
 
+        verifyBufferedUtf8Writer( features );
+
         verifyBadVersion();
 
         verifyWrongElement();
@@ -120,6 +124,51 @@ public class Xpp3FeaturesVerifier
         }
     }
 
+    public void verifyBufferedUtf8Writer( Features features )
+        throws Exception
+    {
+        features.setModelEncoding( "UTF-8" );
+        features.setDescription( "<&>\"'\t\n\r]]> a\u00e9\u20ac\ud83d\ude00" );
+        features.getXmlFeatures().getAttributes().setObjectString( "<&>\"'\t\n\r]]> a\u00e9\u20ac\ud83d\ude00" );
+
+        ModelloFeaturesTestXpp3Writer writer = new ModelloFeaturesTestXpp3Writer();
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        writer.write( expected, features );
+
+        writer.setBufferedUtf8( true );
+
+        // the second write reuses the serializer
+        for ( int i = 0; i < 2; i++ )
+        {
+            ByteArrayOutputStream actual = new ByteArrayOutputStream();
+            writer.write( actual, features );
+
+            Assert.assertEquals( new String( expected.toByteArray(), "UTF-8" ), new String( actual.toByteArray(), "UTF-8" ) );
+        }
+
+        // a document bigger than the buffer, with characters of every size
+        StringBuffer description = new StringBuffer();
+        for ( int i = 0; i < 10000; i++ )
+        {
+            description.append( "<a\u00e9\u20ac\ud83d\ude00" );
+        }
+        // and a run of ASCII characters bigger than the buffer
+        for ( int i = 0; i < 2000; i++ )
+        {
+            description.append( "0123456789" );
+        }
+        features.setDescription( description.toString() );
+
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        writer.write( actual, features );
+
+        Features read = new ModelloFeaturesTestXpp3Reader().read( new ByteArrayInputStream( actual.toByteArray() ) );
+        Assert.assertEquals( description.toString(), read.getDescription() );
+        Assert.assertEquals( features.getXmlFeatures().getAttributes().getObjectString(),
+                             read.getXmlFeatures().getAttributes().getObjectString() );
+    }
+
     public void verifyBadVersion()
         throws Exception
     {
@@ -0,0 +1,189 @@
+package org.codehaus.modello.generator.xml.xpp3;
+
+/*
+ * Copyright (c) 2004, Codehaus.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import junit.framework.Assert;
+import org.codehaus.modello.test.lazy.LazyDocument;
+import org.codehaus.modello.test.lazy.io.xpp3.LazyTestXpp3Reader;
+import org.codehaus.modello.verifier.Verifier;
+import org.codehaus.modello.verifier.VerifierException;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.StringReader;
+
+/**
+ * Verifies the fields marked <code>xml.lazy="true"</code>, read by the Xpp3 reader on first access.
+ *
+ * @version $Id$
+ */
+public class Xpp3LazyVerifier
+    extends Verifier
+{
+    private static final String XML = "<lazy-document><name>lazy</name>"
+        + "<node><value>root</value><child><value>child</value></child><unknown/></node>"
+        + "<dom><item key=\"a\">value</item></dom></lazy-document>";
+
+    public void verify()
+        throws Exception
+    {
+        verifyLazyLoading();
+
+        verifySerialization();
+
+        verifyConcurrentLoading();
+
+        verifyEagerLoading();
+    }
+
+    public void verifyLazyLoading()
+        throws Exception
+    {
+        LazyTestXpp3Reader reader = new LazyTestXpp3Reader();
+
+        Assert.assertTrue( reader.getLazyLoading() );
+
+        // the lazy node is parsed only when it is accessed
+        LazyDocument document = reader.read( new StringReader( XML ) );
+
+        Assert.assertEquals( "lazy", document.getName() );
+
+        try
+        {
+            document.getNode();
+
+            throw new VerifierException( "Accessing a lazy field with an unknown element under strict option should fail." );
+        }
+        catch ( RuntimeException e )
+        {
+            checkExpectedFailure( (XmlPullParserException) e.getCause(), "'unknown'" );
+        }
+
+        document = reader.read( new StringReader( XML ), false );
+
+        Assert.assertEquals( "root", document.getNode().getValue() );
+        Assert.assertEquals( "child", document.getNode().getChild().getValue() );
+
+        Xpp3Dom dom = (Xpp3Dom) document.getDom();
+        Assert.assertEquals( "value", dom.getChild( "item" ).getValue() );
+        Assert.assertEquals( "a", dom.getChild( "item" ).getAttribute( "key" ) );
+
+        // a value set before the first access replaces the lazy content
+        document = reader.read( new StringReader( XML ), false );
+
+        document.setNode( null );
+
+        Assert.assertNull( document.getNode() );
+    }
+
+    /**
+     * Lazy fields not accessed yet are loaded before serialization, since their loaders are transient. Xpp3Dom is
+     * not serializable: the DOM field is discarded first.
+     */
+    public void verifySerialization()
+        throws Exception
+    {
+        LazyDocument document = new LazyTestXpp3Reader().read( new StringReader( XML ), false );
+
+        document.setDom( null );
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream( buffer );
+        out.writeObject( document );
+        out.close();
+
+        ObjectInputStream in = new ObjectInputStream( new ByteArrayInputStream( buffer.toByteArray() ) );
+        LazyDocument copy = (LazyDocument) in.readObject();
+
+        Assert.assertEquals( "root", copy.getNode().getValue() );
+        Assert.assertEquals( "child", copy.getNode().getChild().getValue() );
+        Assert.assertNull( copy.getDom() );
+    }
+
+    /**
+     * Concurrent first accesses all see the loaded value.
+     */
+    public void verifyConcurrentLoading()
+        throws Exception
+    {
+        final LazyDocument shared = new LazyTestXpp3Reader().read( new StringReader( XML ), false );
+        final Object[] nodes = new Object[8];
+
+        Thread[] threads = new Thread[nodes.length];
+        for ( int i = 0; i < threads.length; i++ )
+        {
+            final int index = i;
+            threads[i] = new Thread()
+            {
+                public void run()
+                {
+                    nodes[index] = shared.getNode();
+                }
+            };
+            threads[i].start();
+        }
+        for ( int i = 0; i < threads.length; i++ )
+        {
+            threads[i].join();
+            Assert.assertNotNull( nodes[i] );
+            Assert.assertSame( nodes[0], nodes[i] );
+        }
+    }
+
+    public void verifyEagerLoading()
+        throws Exception
+    {
+        LazyTestXpp3Reader reader = new LazyTestXpp3Reader();
+
+        reader.setLazyLoading( false );
+
+        try
+        {
+            reader.read( new StringReader( XML ) );
+
+            throw new VerifierException( "Reading a document with an unknown element under strict option should fail." );
+        }
+        catch ( XmlPullParserException e )
+        {
+            checkExpectedFailure( e, "'unknown'" );
+        }
+
+        LazyDocument document = reader.read( new StringReader( XML ), false );
+
+        Assert.assertEquals( "root", document.getNode().getValue() );
+        Assert.assertEquals( "value", ( (Xpp3Dom) document.getDom() ).getChild( "item" ).getValue() );
+    }
+
+    private void checkExpectedFailure( XmlPullParserException e, String expectedMessage )
+        throws VerifierException
+    {
+        if ( e.getMessage().indexOf( expectedMessage ) < 0 )
+        {
+            throw new VerifierException( "Unexpected failure: \"" + e.getMessage() + "\"", e );
+        }
+    }
+}
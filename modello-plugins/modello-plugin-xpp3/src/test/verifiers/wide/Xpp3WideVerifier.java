@@ -0,0 +1,98 @@
+package org.codehaus.modello.generator.xml.xpp3;
+
+/*
+ * Copyright (c) 2004, Codehaus.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import java.io.StringReader;
+
+import junit.framework.Assert;
+
+import org.codehaus.modello.generator.xml.xpp3.test.wide.WideClass;
+import org.codehaus.modello.generator.xml.xpp3.test.wide.io.xpp3.WideXpp3Reader;
+import org.codehaus.modello.verifier.Verifier;
+import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
+
+/**
+ * Verify the detection of duplicated elements in a class with more than 64 element fields.
+ */
+public class Xpp3WideVerifier
+    extends Verifier
+{
+    private static final int FIELDS = 70;
+
+    public void verify()
+        throws Exception
+    {
+        StringBuffer content = new StringBuffer();
+        for ( int i = 0; i < FIELDS; i++ )
+        {
+            content.append( "<field" ).append( i ).append( '>' ).append( i ).append( "</field" ).append( i ).append( '>' );
+        }
+        content.append( "<narrow><name>narrow</name></narrow>" );
+
+        WideClass wide = read( content.toString() );
+
+        Assert.assertEquals( "0", wide.getField0() );
+        Assert.assertEquals( "63", wide.getField63() );
+        Assert.assertEquals( "64", wide.getField64() );
+        Assert.assertEquals( "69", wide.getField69() );
+        Assert.assertEquals( "narrow", wide.getNarrow().getName() );
+
+        // duplicates at the start, at the end of the first word and beyond it
+        assertDuplicated( "<field0>a</field0><field1>b</field1><field0>c</field0>", "field0" );
+        assertDuplicated( "<field63>a</field63><field62>b</field62><field63>c</field63>", "field63" );
+        assertDuplicated( "<field64>a</field64><field0>b</field0><field64>c</field64>", "field64" );
+        assertDuplicated( "<field69>a</field69><field68>b</field68><field69>c</field69>", "field69" );
+
+        // fields sharing a bit in different words are distinct
+        wide = read( "<field0>a</field0><field64>b</field64><field5>c</field5><field69>d</field69>" );
+
+        Assert.assertEquals( "a", wide.getField0() );
+        Assert.assertEquals( "b", wide.getField64() );
+        Assert.assertEquals( "c", wide.getField5() );
+        Assert.assertEquals( "d", wide.getField69() );
+
+        // the narrow class nested in the wide one has its own mask
+        assertDuplicated( "<field0>a</field0><narrow><name>a</name><name>b</name></narrow>", "name" );
+    }
+
+    private WideClass read( String content )
+        throws Exception
+    {
+        return new WideXpp3Reader().read( new StringReader( "<wideClass>" + content + "</wideClass>" ), true );
+    }
+
+    private void assertDuplicated( String content, String tagName )
+        throws Exception
+    {
+        try
+        {
+            read( content );
+
+            Assert.fail( "Duplicated tag '" + tagName + "' not detected in " + content );
+        }
+        catch ( XmlPullParserException e )
+        {
+            Assert.assertTrue( e.getMessage(), e.getMessage().startsWith( "Duplicated tag: '" + tagName + "'" ) );
+        }
+    }
+}
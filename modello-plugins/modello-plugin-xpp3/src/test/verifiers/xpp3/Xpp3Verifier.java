@@ -45,6 +45,7 @@ import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
 import org.custommonkey.xmlunit.Diff;
 import org.custommonkey.xmlunit.XMLUnit;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.StringReader;
@@ -74,10 +75,24 @@ public class Xpp3Verifier
 
         verifyWriter();
 
+        verifyStreamWriter();
+
         verifyReader();
 
         verifyReaderAliases();
 
+        verifyReaderReuseParser();
+
+        verifyReaderItemHandler();
+
+        verifyReaderProjection();
+
+        verifyReaderStringTable();
+
+        verifyReaderUtf8();
+
+        verifyReaderFile();
+
         verifyReaderDefaultValue();
 
         verifyReaderDuplicates();
@@ -398,6 +413,76 @@ public class Xpp3Verifier
         }
     }
 
+    public void verifyStreamWriter()
+        throws Exception
+    {
+        String expectedXml = FileUtils.fileRead( getTestFile( "src/test/verifiers/xpp3/expected.xml" ) );
+
+        Model model = new MavenXpp3Reader().read( new StringReader( expectedXml ) );
+
+        MavenXpp3Writer writer = new MavenXpp3Writer();
+
+        StringWriter expected = new StringWriter();
+        writer.write( expected, model );
+
+        ByteArrayOutputStream expectedStream = new ByteArrayOutputStream();
+        writer.write( expectedStream, model );
+
+        List components = model.getComponents();
+        List repositories = model.getRepositories();
+        List mailingLists = model.getMailingLists();
+
+        // the first component stays in the model, the other items are streamed
+        model.setComponents( new java.util.ArrayList( components.subList( 0, 1 ) ) );
+        model.setRepositories( new java.util.ArrayList() );
+        model.setMailingLists( new java.util.ArrayList() );
+
+        StringWriter actual = new StringWriter();
+        MavenXpp3Writer.StreamWriter streamWriter = writer.open( actual, model );
+        for ( int i = 1; i < components.size(); i++ )
+        {
+            streamWriter.writeComponent( (Component) components.get( i ) );
+        }
+        for ( int i = 0; i < repositories.size(); i++ )
+        {
+            streamWriter.writeRepository( (Repository) repositories.get( i ) );
+        }
+        streamWriter.writeMailingList( (MailingList) mailingLists.get( 0 ) );
+        streamWriter.close();
+
+        Assert.assertEquals( expected.toString(), actual.toString() );
+
+        // through the buffered UTF-8 serializer, with the components all written from the model
+        model.setComponents( components );
+
+        writer.setBufferedUtf8( true );
+
+        ByteArrayOutputStream actualStream = new ByteArrayOutputStream();
+        streamWriter = writer.open( actualStream, model );
+        streamWriter.writeRepository( (Repository) repositories.get( 0 ) );
+        streamWriter.flush();
+        streamWriter.writeRepository( (Repository) repositories.get( 1 ) );
+        streamWriter.writeMailingList( (MailingList) mailingLists.get( 0 ) );
+        streamWriter.close();
+
+        Assert.assertEquals( new String( expectedStream.toByteArray(), "UTF-8" ),
+                             new String( actualStream.toByteArray(), "UTF-8" ) );
+
+        // lists are written in document order
+        streamWriter = writer.open( new StringWriter(), model );
+        streamWriter.writeMailingList( (MailingList) mailingLists.get( 0 ) );
+        try
+        {
+            streamWriter.writeRepository( (Repository) repositories.get( 0 ) );
+
+            Assert.fail( "repositories are written before mailing lists" );
+        }
+        catch ( IllegalStateException e )
+        {
+            Assert.assertEquals( "'repositories' element already written", e.getMessage() );
+        }
+    }
+
     public void verifyReader()
         throws IOException, XmlPullParserException
     {
@@ -457,6 +542,307 @@ public class Xpp3Verifier
         assertModel( expected, actual );
     }
 
+    public void verifyReaderReuseParser()
+        throws IOException, XmlPullParserException
+    {
+        MavenXpp3Reader reader = new MavenXpp3Reader();
+
+        Assert.assertFalse( reader.getReuseParser() );
+
+        reader.setReuseParser( true );
+
+        Assert.assertTrue( reader.getReuseParser() );
+
+        // entities are still defined for the next documents read by the same parser
+        for ( int i = 0; i < 3; i++ )
+        {
+            String xml = "<mavenModel>\n" + "  <groupId>Laugst&oslash;l" + i + "</groupId>\n" + "</mavenModel>";
+
+            Model expected = new Model();
+
+            expected.setGroupId( "Laugst\u00f8l" + i );
+
+            assertModel( expected, reader.read( new StringReader( xml ) ) );
+        }
+
+        // a parse error doesn't prevent reading the next document
+        try
+        {
+            reader.read( new StringReader( "<mavenModel><groupId>" ) );
+            Assert.fail( "Should have obtained a parse error for an incomplete document" );
+        }
+        catch ( IOException expected )
+        {
+            Assert.assertTrue( true );
+        }
+
+        Model expected = new Model();
+
+        expected.setGroupId( "\u00a9" );
+
+        assertModel( expected, reader.read( new StringReader( "<mavenModel><groupId>&copy;</groupId></mavenModel>" ) ) );
+
+        // without default entities
+        reader.setAddDefaultEntities( false );
+
+        try
+        {
+            reader.read( new StringReader( "<mavenModel><groupId>&copy;</groupId></mavenModel>" ) );
+            Assert.fail( "Should have obtained a parse error for an undefined entity" );
+        }
+        catch ( XmlPullParserException e )
+        {
+            Assert.assertTrue( true );
+        }
+
+        // the same parser defines the entities again
+        reader.setAddDefaultEntities( true );
+
+        assertModel( expected, reader.read( new StringReader( "<mavenModel><groupId>&copy;</groupId></mavenModel>" ) ) );
+
+        // a reader reusing its parsers can be shared by several threads
+        final MavenXpp3Reader shared = reader;
+        final String[] groupIds = new String[8 * 50];
+
+        Thread[] threads = new Thread[8];
+        for ( int i = 0; i < threads.length; i++ )
+        {
+            final int index = i;
+            threads[i] = new Thread()
+            {
+                public void run()
+                {
+                    for ( int j = index; j < groupIds.length; j += 8 )
+                    {
+                        String xml = "<mavenModel><groupId>&copy;" + j + "</groupId></mavenModel>";
+
+                        try
+                        {
+                            groupIds[j] = shared.read( new StringReader( xml ) ).getGroupId();
+                        }
+                        catch ( Exception e )
+                        {
+                            groupIds[j] = e.toString();
+                        }
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for ( int i = 0; i < threads.length; i++ )
+        {
+            try
+            {
+                threads[i].join();
+            }
+            catch ( InterruptedException e )
+            {
+                throw new VerifierException( "Interrupted while reading concurrently.", e );
+            }
+        }
+        for ( int j = 0; j < groupIds.length; j++ )
+        {
+            Assert.assertEquals( "\u00a9" + j, groupIds[j] );
+        }
+    }
+
+    public void verifyReaderItemHandler()
+        throws IOException, XmlPullParserException
+    {
+        final List<String> names = new java.util.ArrayList<String>();
+
+        MavenXpp3Reader reader = new MavenXpp3Reader();
+
+        Assert.assertNull( reader.getItemHandler() );
+
+        reader.setItemHandler( new MavenXpp3Reader.ItemHandler()
+        {
+            public boolean onMailingList( Model parent, MailingList item )
+            {
+                names.add( item.getName() );
+
+                // keep only the first mailing list
+                return names.size() > 1;
+            }
+        } );
+
+        String xml = "<mavenModel>\n" + "  <mailingLists>\n" + "    <mailingList><name>first</name></mailingList>\n"
+            + "    <mailingList><name>second</name></mailingList>\n"
+            + "    <mailingList><name>third</name></mailingList>\n" + "  </mailingLists>\n" + "</mavenModel>";
+
+        Model model = reader.read( new StringReader( xml ) );
+
+        Assert.assertEquals( 3, names.size() );
+        Assert.assertEquals( "first", names.get( 0 ) );
+        Assert.assertEquals( "third", names.get( 2 ) );
+
+        Assert.assertEquals( 1, model.getMailingLists().size() );
+        Assert.assertEquals( "first", ( (MailingList) model.getMailingLists().get( 0 ) ).getName() );
+    }
+
+    public void verifyReaderProjection()
+        throws IOException, XmlPullParserException
+    {
+        MavenXpp3Reader reader = new MavenXpp3Reader();
+
+        reader.setProjection( java.util.Arrays.asList( new String[] { "name", "build/sourceDirectory", "mailingLists" } ) );
+
+        String xml = "<mavenModel>\n" + "  <name>Maven</name>\n" + "  <groupId>maven</groupId>\n"
+            + "  <builder><sourceDirectory>src</sourceDirectory>"
+            + "<unitTestSourceDirectory>test</unitTestSourceDirectory></builder>\n"
+            + "  <scm><connection>scm:svn</connection><unknown><deep/></unknown></scm>\n"
+            + "  <mailingLists><mailingList><name>users</name></mailingList></mailingLists>\n" + "</mavenModel>";
+
+        // unknown elements in skipped subtrees are never looked at, even in strict mode
+        Model model = reader.read( new StringReader( xml ), true );
+
+        Assert.assertEquals( "Maven", model.getName() );
+        Assert.assertNull( model.getGroupId() );
+        Assert.assertNull( model.getScm() );
+        Assert.assertEquals( "src", model.getBuild().getSourceDirectory() );
+        Assert.assertNull( model.getBuild().getUnitTestSourceDirectory() );
+        Assert.assertEquals( 1, model.getMailingLists().size() );
+        Assert.assertEquals( "users", ( (MailingList) model.getMailingLists().get( 0 ) ).getName() );
+
+        reader.setProjection( null );
+
+        model = reader.read( new StringReader( xml ), false );
+
+        Assert.assertEquals( "maven", model.getGroupId() );
+        Assert.assertEquals( "test", model.getBuild().getUnitTestSourceDirectory() );
+        Assert.assertEquals( "scm:svn", model.getScm().getConnection() );
+    }
+
+    public void verifyReaderStringTable()
+        throws IOException, XmlPullParserException
+    {
+        String xml = "<mavenModel><groupId>org.codehaus.modello</groupId></mavenModel>";
+
+        MavenXpp3Reader reader = new MavenXpp3Reader();
+
+        Assert.assertNull( reader.getStringTable() );
+
+        Model first = reader.read( new StringReader( xml ) );
+        Model second = reader.read( new StringReader( xml ) );
+
+        Assert.assertEquals( first.getGroupId(), second.getGroupId() );
+        Assert.assertNotSame( first.getGroupId(), second.getGroupId() );
+
+        // readers sharing a table share the values read
+        MavenXpp3Reader.StringTable stringTable = new MavenXpp3Reader.StringTable();
+
+        reader.setStringTable( stringTable );
+
+        first = reader.read( new StringReader( xml ) );
+
+        reader = new MavenXpp3Reader();
+
+        reader.setStringTable( stringTable );
+
+        second = reader.read( new StringReader( xml ) );
+
+        Assert.assertEquals( "org.codehaus.modello", second.getGroupId() );
+        Assert.assertSame( first.getGroupId(), second.getGroupId() );
+
+        try
+        {
+            new MavenXpp3Reader.StringTable( Integer.MAX_VALUE, 128 );
+
+            Assert.fail( "A string table size above 2^30 should be rejected." );
+        }
+        catch ( IllegalArgumentException e )
+        {
+            // expected
+        }
+    }
+
+    public void verifyReaderUtf8()
+        throws IOException, XmlPullParserException
+    {
+        MavenXpp3Reader reader = new MavenXpp3Reader();
+
+        // a name spanning several buffers, with 1 to 4 bytes characters
+        StringBuffer name = new StringBuffer();
+        for ( int i = 0; i < 3000; i++ )
+        {
+            name.append( "a\u00e9\u20ac\ud83d\ude00" );
+        }
+
+        String xml = "<mavenModel><name>" + name + "</name></mavenModel>";
+
+        Model model = reader.read( new java.io.ByteArrayInputStream( xml.getBytes( "UTF-8" ) ) );
+        Assert.assertEquals( name.toString(), model.getName() );
+        Assert.assertNull( model.getModelEncoding() );
+
+        byte[] bom = { (byte) 0xEF, (byte) 0xBB, (byte) 0xBF };
+        byte[] bytes = ( "<?xml version='1.0' encoding = 'utf-8'?>" + xml ).getBytes( "UTF-8" );
+        byte[] bomBytes = new byte[bom.length + bytes.length];
+        System.arraycopy( bom, 0, bomBytes, 0, bom.length );
+        System.arraycopy( bytes, 0, bomBytes, bom.length, bytes.length );
+
+        model = reader.read( new java.io.ByteArrayInputStream( bomBytes ) );
+        Assert.assertEquals( name.toString(), model.getName() );
+        Assert.assertEquals( "utf-8", model.getModelEncoding() );
+
+        // malformed sequences are replaced
+        bytes = "<mavenModel><name>a?b</name></mavenModel>".getBytes( "UTF-8" );
+        bytes[19] = (byte) 0xC3;
+        model = reader.read( new java.io.ByteArrayInputStream( bytes ) );
+        Assert.assertEquals( "a\ufffdb", model.getName() );
+
+        // other encodings are still detected
+        xml = "<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?><mavenModel><name>\u00a9</name></mavenModel>";
+        model = reader.read( new java.io.ByteArrayInputStream( xml.getBytes( "ISO-8859-1" ) ) );
+        Assert.assertEquals( "\u00a9", model.getName() );
+        Assert.assertEquals( "ISO-8859-1", model.getModelEncoding() );
+
+        // UTF-16LE without byte order mark starts with 3C 00 3F 00
+        xml = "<?xml version=\"1.0\" encoding=\"UTF-16LE\"?><mavenModel><name>\u00e9\u20ac</name></mavenModel>";
+        model = reader.read( new java.io.ByteArrayInputStream( xml.getBytes( "UTF-16LE" ) ) );
+        Assert.assertEquals( "\u00e9\u20ac", model.getName() );
+        Assert.assertEquals( "UTF-16LE", model.getModelEncoding() );
+    }
+
+    public void verifyReaderFile()
+        throws IOException, XmlPullParserException
+    {
+        File file = new File( "src/test/verifiers/xpp3/expected.xml" );
+
+        MavenXpp3Reader reader = new MavenXpp3Reader();
+
+        Model expected = reader.read( ReaderFactory.newXmlReader( file ) );
+
+        assertModel( expected, reader.read( file ) );
+
+        java.io.FileInputStream in = new java.io.FileInputStream( file );
+        try
+        {
+            java.nio.channels.FileChannel channel = in.getChannel();
+
+            assertModel( expected, reader.read( channel, true ) );
+
+            Assert.assertEquals( channel.size(), channel.position() );
+
+            // a channel positioned past its end is an empty document
+            channel.position( channel.size() + 1 );
+
+            try
+            {
+                reader.read( channel, true );
+
+                Assert.fail( "Should have obtained an error for an empty document." );
+            }
+            catch ( IOException e )
+            {
+                Assert.assertTrue( true );
+            }
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
     public void verifyReaderDefaultValue()
         throws IOException, XmlPullParserException
     {
@@ -33,13 +33,12 @@ import org.codehaus.modello.plugins.xml.AbstractXmlGenerator;
 import org.codehaus.modello.plugins.xml.metadata.XmlAssociationMetadata;
 import org.codehaus.modello.plugins.xml.metadata.XmlFieldMetadata;
 import org.codehaus.plexus.util.StringUtils;
-import org.codehaus.plexus.util.WriterFactory;
 import org.codehaus.plexus.util.xml.PrettyPrintXMLWriter;
 import org.codehaus.plexus.util.xml.XMLWriter;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.Writer;
+import java.io.StringWriter;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Properties;
@@ -94,56 +93,51 @@ public class XsdGenerator
             f = new File( directory, xsdFileName );
         }
 
-        Writer writer = WriterFactory.newXmlWriter( f );
+        StringWriter writer = new StringWriter();
 
-        try
-        {
-            XMLWriter w = new PrettyPrintXMLWriter( writer );
+        XMLWriter w = new PrettyPrintXMLWriter( writer );
 
-            writer.write( "<?xml version=\"1.0\"?>\n" );
+        writer.write( "<?xml version=\"1.0\"?>\n" );
 
-            initHeader( w );
+        initHeader( w );
 
-            // TODO: the writer should be knowledgeable of namespaces, but this works
-            w.startElement( "xs:schema" );
-            w.addAttribute( "xmlns:xs", "http://www.w3.org/2001/XMLSchema" );
-            w.addAttribute( "elementFormDefault", "qualified" );
+        // TODO: the writer should be knowledgeable of namespaces, but this works
+        w.startElement( "xs:schema" );
+        w.addAttribute( "xmlns:xs", "http://www.w3.org/2001/XMLSchema" );
+        w.addAttribute( "elementFormDefault", "qualified" );
 
-            ModelClass root = objectModel.getClass( objectModel.getRoot( getGeneratedVersion() ),
-                                                    getGeneratedVersion() );
+        ModelClass root = objectModel.getClass( objectModel.getRoot( getGeneratedVersion() ),
+                                                getGeneratedVersion() );
 
-            String namespace = XsdModelHelper.getNamespace( root.getModel(), getGeneratedVersion() );
+        String namespace = XsdModelHelper.getNamespace( root.getModel(), getGeneratedVersion() );
 
-            w.addAttribute( "xmlns", namespace );
+        w.addAttribute( "xmlns", namespace );
 
-            String targetNamespace = XsdModelHelper.getTargetNamespace( root.getModel(), getGeneratedVersion(), namespace );
+        String targetNamespace = XsdModelHelper.getTargetNamespace( root.getModel(), getGeneratedVersion(), namespace );
 
-            // add targetNamespace if attribute is not blank (specifically set to avoid a target namespace)
-            if ( StringUtils.isNotBlank( targetNamespace ) )
-            {
-                w.addAttribute( "targetNamespace", targetNamespace );
-            }
+        // add targetNamespace if attribute is not blank (specifically set to avoid a target namespace)
+        if ( StringUtils.isNotBlank( targetNamespace ) )
+        {
+            w.addAttribute( "targetNamespace", targetNamespace );
+        }
 
-            w.startElement( "xs:element" );
-            String tagName = resolveTagName( root );
-            w.addAttribute( "name", tagName );
-            w.addAttribute( "type", root.getName() );
+        w.startElement( "xs:element" );
+        String tagName = resolveTagName( root );
+        w.addAttribute( "name", tagName );
+        w.addAttribute( "type", root.getName() );
 
-            writeClassDocumentation( w, root );
+        writeClassDocumentation( w, root );
 
-            w.endElement();
+        w.endElement();
 
-            // Element descriptors
-            // Traverse from root so "abstract" models aren't included
-            int initialCapacity = objectModel.getClasses( getGeneratedVersion() ).size();
-            writeComplexTypeDescriptor( w, objectModel, root, new HashSet<ModelClass>( initialCapacity ) );
+        // Element descriptors
+        // Traverse from root so "abstract" models aren't included
+        int initialCapacity = objectModel.getClasses( getGeneratedVersion() ).size();
+        writeComplexTypeDescriptor( w, objectModel, root, new HashSet<ModelClass>( initialCapacity ) );
 
-            w.endElement();
-        }
-        finally
-        {
-            writer.close();
-        }
+        w.endElement();
+
+        writeFile( f, writer.toString(), "UTF-8" );
     }
 
     private static void writeClassDocumentation( XMLWriter w, ModelClass modelClass )
@@ -30,7 +30,6 @@ import org.xml.sax.SAXParseException;
 import org.xml.sax.helpers.DefaultHandler;
 
 import java.io.File;
-import java.util.Properties;
 
 import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
@@ -55,11 +54,10 @@ public class ModelloXsdGeneratorTest
     {
         ModelloCore modello = (ModelloCore) lookup( ModelloCore.ROLE );
 
-        Properties parameters = getModelloParameters( "1.4.0" );
-
         Model model = modello.loadModel( getTestFile( "../../src/main/mdo/modello.mdo" ) );
 
-        modello.generate( model, "xsd", parameters );
+        modello.generate( model, "xsd", getModelloParameters( "1.4.0" ) );
+        modello.generate( model, "xsd", getModelloParameters( "1.5.0" ) );
 
         /* only available in JAXP 1.3, JDK 5+
         SchemaFactory factory = SchemaFactory.newInstance( XMLConstants.W3C_XML_SCHEMA_NS_URI );
@@ -71,6 +69,23 @@ public class ModelloXsdGeneratorTest
         parser.parse( new InputSource( getClass().getResourceAsStream( "/features.xml" ) ) );
         */
 
+        SAXParser saxParser = newValidatingParser( "modello-1.5.0.xsd" );
+
+        // first self-test: validate Modello model with xsd generated from it
+        saxParser.parse( getTestFile( "../../src/main/mdo/modello.mdo" ), new Handler() );
+
+        // then lazy.mdo, which uses 1.5.0 attributes
+        saxParser.parse( getClass().getResourceAsStream( "/lazy.mdo" ), new Handler() );
+
+        // then features.mdo, with the 1.4.0 xsd
+        saxParser = newValidatingParser( "modello-1.4.0.xsd" );
+
+        saxParser.parse( getClass().getResourceAsStream( "/features.mdo" ), new Handler() );
+    }
+
+    private SAXParser newValidatingParser( String xsd )
+        throws Exception
+    {
         SAXParserFactory factory = SAXParserFactory.newInstance();
         factory.setValidating( true );
         factory.setNamespaceAware( true );
@@ -78,13 +93,8 @@ public class ModelloXsdGeneratorTest
         saxParser.setProperty( "http://java.sun.com/xml/jaxp/properties/schemaLanguage",
                                "http://www.w3.org/2001/XMLSchema" );
         saxParser.setProperty( "http://java.sun.com/xml/jaxp/properties/schemaSource",
-                               new File( getOutputDirectory(), "modello-1.4.0.xsd" ) );
-
-        // first self-test: validate Modello model with xsd generated from it
-        saxParser.parse( getTestFile( "../../src/main/mdo/modello.mdo" ), new Handler() );
-
-        // then features.mdo
-        saxParser.parse( getClass().getResourceAsStream( "/features.mdo" ), new Handler() );
+                               new File( getOutputDirectory(), xsd ) );
+        return saxParser;
     }
 
     private static class Handler
@@ -0,0 +1,169 @@
+package org.codehaus.modello.verifier;
+
+/*
+ * Copyright (c) 2004, Codehaus.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.List;
+
+import org.codehaus.plexus.util.IOUtil;
+import org.custommonkey.xmlunit.Diff;
+import org.custommonkey.xmlunit.XMLUnit;
+
+/**
+ * Verifies the documents written in compact output mode for the <code>features.mdo</code> and
+ * <code>compact.mdo</code> models: without indentation nor default values, and read back to the same model.
+ * Subclasses call the generated readers and writers.
+ *
+ * @version $Id$
+ * @since 1.5
+ */
+public abstract class AbstractCompactVerifier
+    extends Verifier
+{
+    public void verify()
+        throws Throwable
+    {
+        verifyFeatures();
+
+        verifyDefaultValues();
+    }
+
+    /**
+     * Reads a features document with the generated reader.
+     */
+    protected abstract Object readFeatures( Reader reader )
+        throws Exception;
+
+    /**
+     * Writes a features model with the generated writer.
+     */
+    protected abstract String writeFeatures( Object features )
+        throws Exception;
+
+    /**
+     * Reads a compact document with the generated reader.
+     */
+    protected abstract Object readDocument( Reader reader )
+        throws Exception;
+
+    /**
+     * Writes a compact document model with the generated writer.
+     */
+    protected abstract String writeDocument( Object document )
+        throws Exception;
+
+    public void verifyFeatures()
+        throws Exception
+    {
+        Object features = readFeatures( getXmlResourceReader( "/features.xml" ) );
+
+        String initialXml = IOUtil.toString( getXmlResourceReader( "/features.xml" ) );
+        String compactXml = writeFeatures( features );
+
+        if ( getContent( compactXml ).indexOf( '\n' ) >= 0 )
+        {
+            throw new VerifierException( "compact output is indented: " + compactXml );
+        }
+
+        // the original document is 6342 characters long, compact output is 4547
+        if ( compactXml.length() * 4 > initialXml.length() * 3 )
+        {
+            throw new VerifierException( "compact output is " + compactXml.length() + " characters long, for "
+                + initialXml.length() + " originally" );
+        }
+
+        // alias is rendered as default field name => must be reverted here to let the test pass
+        String actualXml = compactXml.replaceFirst( "<id>alias</id>", "<key>alias</key>" );
+
+        XMLUnit.setIgnoreWhitespace( true );
+        XMLUnit.setIgnoreComments( true );
+        Diff diff = XMLUnit.compareXML( initialXml, actualXml );
+
+        if ( !diff.identical() )
+        {
+            System.err.println( actualXml );
+            throw new VerifierException( "writer result is not the same as original content: " + diff );
+        }
+
+        assertEquals( compactXml, writeFeatures( readFeatures( new StringReader( compactXml ) ) ) );
+    }
+
+    public void verifyDefaultValues()
+        throws Exception
+    {
+        // fields equal to their default value and empty lists are skipped
+        Object document = readDocument( new StringReader( "<document><name>doc</name><mode>auto</mode>"
+            + "<count>10</count><enabled>true</enabled><items><item id=\"a\" optional=\"false\"><value>x</value>"
+            + "</item></items><tags></tags></document>" ) );
+
+        String xml = writeDocument( document );
+        assertEquals( "<document><name>doc</name><items><item id=\"a\"><value>x</value></item></items>"
+            + "</document>", getContent( xml ) );
+
+        Object read = readDocument( new StringReader( xml ) );
+        assertEquals( "auto", get( read, "getMode" ) );
+        assertEquals( Integer.valueOf( 10 ), get( read, "getCount" ) );
+        assertEquals( Boolean.TRUE, get( read, "isEnabled" ) );
+        assertEquals( Boolean.FALSE, get( getFirstItem( read ), "isOptional" ) );
+
+        document = readDocument( new StringReader( "<document><name>doc</name><mode>manual</mode>"
+            + "<count>3</count><enabled>false</enabled><items><item id=\"a\" optional=\"true\"><value>x</value>"
+            + "</item></items><tags><tag>t</tag></tags></document>" ) );
+
+        xml = writeDocument( document );
+        assertEquals( "<document><name>doc</name><mode>manual</mode><count>3</count><enabled>false</enabled>"
+            + "<items><item id=\"a\" optional=\"true\"><value>x</value></item></items>"
+            + "<tags><tag>t</tag></tags></document>", getContent( xml ) );
+
+        read = readDocument( new StringReader( xml ) );
+        assertEquals( "manual", get( read, "getMode" ) );
+        assertEquals( Integer.valueOf( 3 ), get( read, "getCount" ) );
+        assertEquals( Boolean.FALSE, get( read, "isEnabled" ) );
+        assertEquals( Boolean.TRUE, get( getFirstItem( read ), "isOptional" ) );
+        assertEquals( "t", ( (List<?>) get( read, "getTags" ) ).get( 0 ) );
+    }
+
+    /**
+     * The content of a document after its XML declaration, whose format depends on the underlying XML library.
+     */
+    protected String getContent( String xml )
+    {
+        return xml.startsWith( "<?xml" ) ? xml.substring( xml.indexOf( "?>" ) + 2 ).trim() : xml;
+    }
+
+    private Object getFirstItem( Object document )
+        throws Exception
+    {
+        return ( (List<?>) get( document, "getItems" ) ).get( 0 );
+    }
+
+    /**
+     * Calls a getter of a generated model class, which is not known when this class is compiled.
+     */
+    private Object get( Object bean, String getter )
+        throws Exception
+    {
+        return bean.getClass().getMethod( getter ).invoke( bean );
+    }
+}